@@ -0,0 +1,125 @@
+package com.codescience.salesforceconnect.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * KeyGenerator for several instances writing the same entity sets. The numeric keys are divided in blocks of blockSize
+ * keys and the blocks are dealt to the instances in turn: instance instanceIndex (0 based) of instanceCount owns the
+ * blocks whose number modulo instanceCount is instanceIndex. Each instance generates keys in sequence in the blocks it
+ * owns, after the largest key observed, so the instances never generate the same key without coordinating
+ */
+public class BlockSequenceKeyGenerator implements KeyGenerator {
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private long blockSize = 1000;
+    private int instanceIndex;
+    private int instanceCount = 1;
+
+    /**
+     * Method moves the current block of the type past the key if it is numeric
+     * @param objectType Full qualified name of the entity type
+     * @param key Primary key of an existing entity
+     */
+    @Override
+    public void observe(String objectType, String key) {
+        long keyValue = SequenceKeyGenerator.parseKey(key);
+        if (keyValue > 0) {
+            Block block = getBlock(objectType);
+            synchronized (block) {
+                block.lastKey = Math.max(block.lastKey, keyValue);
+            }
+        }
+    }
+
+    /**
+     * Method returns the next key of the blocks owned by this instance
+     * @param objectType Full qualified name of the entity type
+     * @return Primary key larger than the keys generated or observed
+     */
+    @Override
+    public String nextKey(String objectType) {
+        Block block = getBlock(objectType);
+        synchronized (block) {
+            long key = block.lastKey + 1;
+            // Key n is in block (n - 1) / blockSize. Move to the start of the next owned block if needed
+            long blockNumber = (key - 1) / blockSize;
+            long offset = Math.floorMod(instanceIndex - blockNumber, (long) instanceCount);
+            if (offset != 0) {
+                key = (blockNumber + offset) * blockSize + 1;
+            }
+            block.lastKey = key;
+            return Long.toString(key);
+        }
+    }
+
+    /**
+     * Method returns the state of the type, creating it on first use
+     * @param objectType Full qualified name of the entity type
+     * @return Block holding the last key of the type
+     */
+    private Block getBlock(String objectType) {
+        return blocks.computeIfAbsent(objectType, type -> new Block());
+    }
+
+    /**
+     * Method returns the number of keys of a block
+     * @return Block size
+     */
+    public long getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Method sets the number of keys of a block. All the instances must use the same block size
+     * @param blockSize Block size, greater than 0
+     */
+    public void setBlockSize(long blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be greater than 0");
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Method returns the index of this instance
+     * @return Instance index, between 0 and instanceCount - 1
+     */
+    public int getInstanceIndex() {
+        return instanceIndex;
+    }
+
+    /**
+     * Method sets the index of this instance. Each instance must have a different index
+     * @param instanceIndex Instance index, between 0 and instanceCount - 1
+     */
+    public void setInstanceIndex(int instanceIndex) {
+        this.instanceIndex = instanceIndex;
+    }
+
+    /**
+     * Method returns the number of instances sharing the keys
+     * @return Instance count
+     */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * Method sets the number of instances sharing the keys
+     * @param instanceCount Instance count, greater than 0
+     */
+    public void setInstanceCount(int instanceCount) {
+        if (instanceCount <= 0) {
+            throw new IllegalArgumentException("instanceCount must be greater than 0");
+        }
+        this.instanceCount = instanceCount;
+    }
+
+    /**
+     * Last key generated or observed for an entity type
+     */
+    private static final class Block {
+        private long lastKey;
+    }
+}
@@ -0,0 +1,968 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.service.Messages;
+import com.codescience.salesforceconnect.translators.EntityMapping;
+import com.codescience.salesforceconnect.translators.EntityMapping.RelatedProperty;
+import com.codescience.salesforceconnect.translators.EntityMapping.WritableProperty;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Entities of one entity type stored column-wise. Each property with a setter is kept in a primitive array chosen from
+ * its type: dictionary encoded Strings (int codes), Dates as epoch days (int), BigDecimals as longs scaled by 10^4,
+ * ints and booleans (bits). The ids of the related entities (relatedId properties) are dictionary encoded as well.
+ * Numeric ids are kept as longs, the rows of the ids are found through an IdIndex. The rows referencing a related
+ * entity are found through a RelatedRowIndex per related column, keyed by the dictionary code of the related id.
+ * Rows are appended and never moved, a deleted row is only flagged. Writes must hold the lock of the table. Reads
+ * don't lock: the row count is published last, but a row updated while it is read can mix old and new values.
+ * Entities are materialized (a new BaseEntity implementation with its related entities) only for the rows that are read
+ */
+public final class ColumnTable implements EntityTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_RELATED_DEPTH = 3;
+
+    private final EntityMapping entityMapping;
+    private final Function<Class<?>, EntityTable> relatedTables;
+    private final Lock lock = new ReentrantLock();
+    private final WritableProperty[] properties;
+    private final Column[] columns;
+    private final RelatedProperty[] relatedProperties;
+    private final DictionaryColumn[] relatedColumns;
+    private final List<RelatedRowIndex<Integer>> relatedRows = new ArrayList<>();
+    private final Map<String, Column> columnsByProperty = new HashMap<>();
+    private final Map<String, Function<Object, Object>> oDataValues = new HashMap<>();
+    private final Map<Integer, String> otherIds = new ConcurrentHashMap<>();
+    private final IdIndex idIndex = new IdIndex();
+    private long[] numericIds = new long[INITIAL_CAPACITY];
+    private long[] deleted = Bits.create(INITIAL_CAPACITY);
+    private int capacity = INITIAL_CAPACITY;
+    private volatile int rowCount;
+    private volatile int deletedCount;
+
+    /**
+     * Constructor creates an empty table for the entity class of the mapping
+     * @param entityMapping Mapping of the BaseEntity implementation stored in the table
+     * @param relatedTables Function returning the table that stores a related entity class, or null if there is none
+     */
+    public ColumnTable(EntityMapping entityMapping, Function<Class<?>, EntityTable> relatedTables) {
+        this.entityMapping = entityMapping;
+        this.relatedTables = relatedTables;
+
+        List<WritableProperty> storedProperties = new ArrayList<>();
+        for (WritableProperty property : entityMapping.getWritableProperties().values()) {
+            if (!Constants.ID.equals(property.getPropertyName())) {
+                storedProperties.add(property);
+            }
+        }
+        properties = storedProperties.toArray(new WritableProperty[0]);
+        columns = new Column[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            columns[i] = createColumn(properties[i]);
+            columnsByProperty.put(properties[i].getPropertyName(), columns[i]);
+            oDataValues.put(properties[i].getPropertyName(), properties[i]::toODataValue);
+        }
+
+        relatedProperties = entityMapping.getRelatedProperties().toArray(new RelatedProperty[0]);
+        relatedColumns = new DictionaryColumn[relatedProperties.length];
+        for (int i = 0; i < relatedProperties.length; i++) {
+            relatedColumns[i] = new DictionaryColumn(relatedProperties[i].getPropertyName(), INITIAL_CAPACITY);
+            columnsByProperty.put(relatedProperties[i].getPropertyName(), relatedColumns[i]);
+            oDataValues.put(relatedProperties[i].getPropertyName(), Function.identity());
+            relatedRows.add(new RelatedRowIndex<>(this::getId));
+        }
+    }
+
+    /**
+     * Method returns the BaseEntity implementation stored in the table
+     * @return Entity class
+     */
+    @Override
+    public Class<? extends BaseEntity> getEntityClass() {
+        return entityMapping.getEntityClass();
+    }
+
+    /**
+     * Method returns the lock that serializes the writes of the table
+     * @return Write lock
+     */
+    @Override
+    public Lock getLock() {
+        return lock;
+    }
+
+    /**
+     * Method returns the number of rows written to the table, including the deleted rows. Rows are numbered from 0
+     * @return Row count
+     */
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Method returns the number of entities stored in the table
+     * @return Number of rows that are not deleted
+     */
+    @Override
+    public int size() {
+        return rowCount - deletedCount;
+    }
+
+    /**
+     * Method returns true if the row was deleted
+     * @param row Row number
+     * @return true if the entity of the row was deleted
+     */
+    @Override
+    public boolean isDeleted(int row) {
+        return Bits.get(deleted, row);
+    }
+
+    /**
+     * Method returns the primary key of the row
+     * @param row Row number
+     * @return Id of the entity
+     */
+    @Override
+    public String getId(int row) {
+        long numericId = numericIds[row];
+        return numericId < 0 ? otherIds.get(row) : Long.toString(numericId);
+    }
+
+    /**
+     * Method returns the row of the entity with the id passed in
+     * @param id Primary key, can be null
+     * @return Row number or -1 if there is no such entity
+     */
+    @Override
+    public int findRow(String id) {
+        if (id == null) {
+            return -1;
+        }
+        int row = idIndex.get(id);
+        // The index can be read while a row is being added, check the row holds the id
+        if ((row < 0) || (row >= rowCount) || !id.equals(getId(row))) {
+            return -1;
+        }
+        return isDeleted(row) ? -1 : row;
+    }
+
+    /**
+     * Method returns the rows whose relationship to the related class holds the related id. It is used to navigate a
+     * one-to-many relationship from the one side (ex the Claims of a Policy), the rows are read from the index of the
+     * related column
+     * @param relatedClass Class of the related entity
+     * @param relatedId Primary key of the related entity
+     * @return Row numbers in primary key order, empty if the table has no relationship to the class
+     */
+    @Override
+    public List<Integer> findRelatedRows(Class<?> relatedClass, String relatedId) {
+        List<Integer> rows = new ArrayList<>();
+        int index = findRelatedIndex(relatedClass);
+        if (index < 0) {
+            return rows;
+        }
+        addRelatedRows(rows, index, relatedColumns[index].getCode(relatedId));
+        return rows;
+    }
+
+    /**
+     * Method returns the rows whose relationship to the related class holds one of the related ids, each id is looked
+     * up in the index of the related column
+     * @param relatedClass Class of the related entity
+     * @param relatedIds Primary keys of the related entities
+     * @return Row numbers in primary key order by related id, ids without rows are left out
+     */
+    @Override
+    public Map<String, List<Integer>> findRelatedRows(Class<?> relatedClass, Set<String> relatedIds) {
+        Map<String, List<Integer>> rows = new HashMap<>();
+        int index = findRelatedIndex(relatedClass);
+        if (index < 0) {
+            return rows;
+        }
+        for (String relatedId : relatedIds) {
+            List<Integer> related = new ArrayList<>();
+            addRelatedRows(related, index, relatedColumns[index].getCode(relatedId));
+            if (!related.isEmpty()) {
+                rows.put(relatedId, related);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Method returns the id of the entity of the related class the row is related to. It is used to navigate a
+     * one-to-many relationship from the many side (ex the Policy of a Claim)
+     * @param row Row number
+     * @param relatedClass Class of the related entity
+     * @return Primary key of the related entity or null if there is none
+     */
+    @Override
+    public String getRelatedId(int row, Class<?> relatedClass) {
+        int index = findRelatedIndex(relatedClass);
+        return index < 0 ? null : (String) relatedColumns[index].get(row);
+    }
+
+    /**
+     * Method returns true if the table holds a relationship to the related class
+     * @param relatedClass Class of the related entity
+     * @return true if a relatedId property references the class
+     */
+    @Override
+    public boolean isRelatedTo(Class<?> relatedClass) {
+        return findRelatedIndex(relatedClass) >= 0;
+    }
+
+    /**
+     * Method creates a predicate on the row numbers that evaluates the condition against the stored column, without
+     * materializing the entity. Values are compared the way the filters compare them
+     * @param condition Comparison between a property and a constant value
+     * @return Predicate or null if the property is not stored in a column (ex a computed property)
+     */
+    @Override
+    public IntPredicate createPredicate(PojoFilter.Condition condition) {
+        BinaryOperatorKind operator = condition.getOperator();
+        Object value = condition.getValue();
+        if (Constants.ID.equals(condition.getPropertyName())) {
+            return row -> ValueComparator.satisfies(operator, ValueComparator.compare(getId(row), value));
+        }
+        Column column = columnsByProperty.get(condition.getPropertyName());
+        if (column == null) {
+            return null;
+        }
+        return column.createPredicate(operator, value, oDataValues.get(condition.getPropertyName()));
+    }
+
+    /**
+     * Method appends the entity to the table. Must be called while holding the lock, the id must be set and not used
+     * by another entity
+     * @param baseEntity BaseEntity implementation to store
+     * @return Row number of the entity
+     * @throws IllegalArgumentException If a value can't be stored (ex a decimal out of range)
+     */
+    @Override
+    public int insert(BaseEntity baseEntity) {
+        validate(baseEntity);
+        int row = rowCount;
+        if (row == capacity) {
+            grow();
+        }
+        String id = baseEntity.getId();
+        long numericId = IdIndex.parseNumericKey(id);
+        numericIds[row] = numericId;
+        if (numericId < 0) {
+            otherIds.put(row, id);
+        }
+        idIndex.put(id, row);
+        write(row, baseEntity);
+        // Publishing the row count makes the row visible to the reads
+        rowCount = row + 1;
+        for (int i = 0; i < relatedColumns.length; i++) {
+            relatedRows.get(i).add(getRelatedCode(row, i), row);
+        }
+        return row;
+    }
+
+    /**
+     * Method replaces the stored values of the row with the values of the entity. Must be called while holding the lock
+     * @param row Row number
+     * @param baseEntity BaseEntity implementation holding the new values, its id must be the id of the row
+     * @throws IllegalArgumentException If a value can't be stored (ex a decimal out of range)
+     */
+    @Override
+    public void update(int row, BaseEntity baseEntity) {
+        validate(baseEntity);
+        Integer[] previousCodes = new Integer[relatedColumns.length];
+        for (int i = 0; i < relatedColumns.length; i++) {
+            previousCodes[i] = getRelatedCode(row, i);
+        }
+        write(row, baseEntity);
+        for (int i = 0; i < relatedColumns.length; i++) {
+            relatedRows.get(i).move(previousCodes[i], getRelatedCode(row, i), row);
+        }
+    }
+
+    /**
+     * Method flags the row as deleted. Must be called while holding the lock
+     * @param row Row number
+     */
+    @Override
+    public void delete(int row) {
+        if (isDeleted(row)) {
+            return;
+        }
+        Bits.set(deleted, row, true);
+        idIndex.remove(getId(row));
+        for (int i = 0; i < relatedColumns.length; i++) {
+            relatedRows.get(i).remove(getRelatedCode(row, i), row);
+        }
+        deletedCount++;
+    }
+
+    /**
+     * Method creates the BaseEntity implementation of the row. The related entities are materialized from their tables
+     * so the computed properties (ex TotalCostAmount) can be evaluated
+     * @param row Row number
+     * @return New BaseEntity implementation holding the values of the row
+     */
+    @Override
+    public BaseEntity materialize(int row) {
+        return materialize(row, MAX_RELATED_DEPTH);
+    }
+
+    /**
+     * Method creates the BaseEntity implementation of the row and its related entities up to the depth passed in
+     * @param row Row number
+     * @param depth Number of relationship levels left to materialize
+     * @return New BaseEntity implementation holding the values of the row
+     */
+    @Override
+    public BaseEntity materialize(int row, int depth) {
+        BaseEntity baseEntity = entityMapping.newInstance();
+        baseEntity.setId(getId(row));
+        for (int i = 0; i < columns.length; i++) {
+            Object value = columns[i].get(row);
+            if (value != null) {
+                properties[i].set(baseEntity, value);
+            }
+        }
+        if (depth > 0) {
+            for (int i = 0; i < relatedColumns.length; i++) {
+                String relatedId = (String) relatedColumns[i].get(row);
+                EntityTable relatedTable = relatedTables.apply(relatedProperties[i].getRelatedClass());
+                int relatedRow = relatedTable == null ? -1 : relatedTable.findRow(relatedId);
+                if ((relatedRow >= 0) && relatedProperties[i].isSettable()) {
+                    relatedProperties[i].set(baseEntity, relatedTable.materialize(relatedRow, depth - 1));
+                }
+            }
+        }
+        return baseEntity;
+    }
+
+    /**
+     * Method checks that every value of the entity can be stored before any column is written
+     * @param baseEntity BaseEntity implementation to store
+     * @throws IllegalArgumentException If a value can't be stored
+     */
+    private void validate(BaseEntity baseEntity) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].validate(properties[i].get(baseEntity));
+        }
+    }
+
+    /**
+     * Method writes the values of the entity to the columns of the row
+     * @param row Row number
+     * @param baseEntity BaseEntity implementation to store
+     */
+    private void write(int row, BaseEntity baseEntity) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].set(row, properties[i].get(baseEntity));
+        }
+        for (int i = 0; i < relatedColumns.length; i++) {
+            BaseEntity related = relatedProperties[i].get(baseEntity);
+            relatedColumns[i].set(row, related == null ? null : related.getId());
+        }
+    }
+
+    /**
+     * Method doubles the capacity of every column. The arrays are copied before they are replaced so reads of the
+     * published rows are not affected
+     */
+    private void grow() {
+        int newCapacity = capacity * 2;
+        numericIds = Arrays.copyOf(numericIds, newCapacity);
+        deleted = Bits.copyOf(deleted, newCapacity);
+        for (Column column : columns) {
+            column.grow(newCapacity);
+        }
+        for (Column column : relatedColumns) {
+            column.grow(newCapacity);
+        }
+        capacity = newCapacity;
+    }
+
+    /**
+     * Method adds the rows of the index of the related column that still reference the related entity. The index can
+     * be read while a row is being deleted or updated, the rows are checked
+     * @param rows List the rows are added to
+     * @param index Index of the related column
+     * @param code Dictionary code of the related id, -1 if the id is not in the dictionary
+     */
+    private void addRelatedRows(List<Integer> rows, int index, int code) {
+        if (code < 0) {
+            return;
+        }
+        for (int row : relatedRows.get(index).get(code)) {
+            if (!isDeleted(row) && (relatedColumns[index].getCodeAt(row) == code)) {
+                rows.add(row);
+            }
+        }
+    }
+
+    /**
+     * Method returns the dictionary code of the related id of the row, the key of the row in the index of the column
+     * @param row Row number
+     * @param index Index of the related column
+     * @return Code or null if the row references no entity
+     */
+    private Integer getRelatedCode(int row, int index) {
+        int code = relatedColumns[index].getCodeAt(row);
+        return code < 0 ? null : code;
+    }
+
+    /**
+     * Method returns the index of the relationship to the related class
+     * @param relatedClass Class of the related entity
+     * @return Index in relatedProperties or -1 if there is none
+     */
+    private int findRelatedIndex(Class<?> relatedClass) {
+        for (int i = 0; i < relatedProperties.length; i++) {
+            if (relatedProperties[i].getRelatedClass().equals(relatedClass)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method creates the column for the type of the property
+     * @param property Property with a setter
+     * @return Column storing the values of the property
+     */
+    private static Column createColumn(WritableProperty property) {
+        Class<?> type = property.getType();
+        String propertyName = property.getPropertyName();
+        if (String.class.equals(type)) {
+            return new DictionaryColumn(propertyName, INITIAL_CAPACITY);
+        } else if (Date.class.equals(type)) {
+            return new DayColumn(propertyName, INITIAL_CAPACITY);
+        } else if (BigDecimal.class.equals(type)) {
+            return new DecimalColumn(propertyName, INITIAL_CAPACITY);
+        } else if (int.class.equals(type) || Integer.class.equals(type)) {
+            return new IntColumn(propertyName, INITIAL_CAPACITY);
+        } else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+            return new BooleanColumn(propertyName, INITIAL_CAPACITY);
+        }
+        return new ObjectColumn(propertyName, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Storage of the values of one property. Values are read and written as the objects held by the entities
+     */
+    private abstract static class Column {
+        private final String propertyName;
+
+        /**
+         * Constructor sets the name of the stored property
+         * @param propertyName Name of the OData property
+         */
+        Column(String propertyName) {
+            this.propertyName = propertyName;
+        }
+
+        /**
+         * Method returns the value of the row
+         * @param row Row number
+         * @return Value of the property, can be null
+         */
+        abstract Object get(int row);
+
+        /**
+         * Method stores the value of the row
+         * @param row Row number
+         * @param value Value of the property, can be null
+         */
+        abstract void set(int row, Object value);
+
+        /**
+         * Method replaces the arrays of the column with copies of the capacity passed in
+         * @param capacity New number of rows
+         */
+        abstract void grow(int capacity);
+
+        /**
+         * Method checks that the value can be stored
+         * @param value Value of the property, can be null
+         * @throws IllegalArgumentException If the value can't be stored
+         */
+        void validate(Object value) {
+            // Every value can be stored by default
+        }
+
+        /**
+         * Method creates a predicate evaluating a comparison of the column with a constant value
+         * @param operator Comparison operator
+         * @param value Constant value
+         * @param oDataValue Function converting a stored value to the value the filters read
+         * @return Predicate on the row numbers
+         */
+        IntPredicate createPredicate(BinaryOperatorKind operator, Object value, Function<Object, Object> oDataValue) {
+            return row -> ValueComparator.satisfies(operator, ValueComparator.compare(oDataValue.apply(get(row)), value));
+        }
+
+        /**
+         * Method throws the exception for a value that can't be stored
+         * @param cause Exception thrown while encoding the value, can be null
+         */
+        void rejectValue(Exception cause) {
+            throw new IllegalArgumentException(Messages.ERROR_VALUE_NOT_STORABLE + propertyName, cause);
+        }
+    }
+
+    /**
+     * Column of Strings. Each distinct value is stored once in the dictionary and the rows hold its code, -1 for null
+     */
+    private static final class DictionaryColumn extends Column {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] dictionary = new String[INITIAL_CAPACITY];
+        private int dictionarySize;
+        private int[] rows;
+
+        /**
+         * Constructor creates an empty column
+         * @param propertyName Name of the OData property
+         * @param capacity Number of rows
+         */
+        DictionaryColumn(String propertyName, int capacity) {
+            super(propertyName);
+            rows = new int[capacity];
+        }
+
+        /**
+         * Method returns the value of the row
+         * @param row Row number
+         * @return Value of the property, can be null
+         */
+        @Override
+        Object get(int row) {
+            int code = rows[row];
+            return code < 0 ? null : dictionary[code];
+        }
+
+        /**
+         * Method stores the value of the row
+         * @param row Row number
+         * @param value Value of the property, can be null
+         */
+        @Override
+        void set(int row, Object value) {
+            if (value == null) {
+                rows[row] = -1;
+                return;
+            }
+            String stringValue = value.toString();
+            Integer code = codes.get(stringValue);
+            if (code == null) {
+                code = dictionarySize;
+                String[] values = dictionary;
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[code] = stringValue;
+                // The dictionary is published before the code can be read from a row
+                dictionary = values;
+                dictionarySize++;
+                codes.put(stringValue, code);
+            }
+            rows[row] = code;
+        }
+
+        /**
+         * Method replaces the arrays of the column with copies of the capacity passed in
+         * @param capacity New number of rows
+         */
+        @Override
+        void grow(int capacity) {
+            rows = Arrays.copyOf(rows, capacity);
+        }
+
+        /**
+         * Method returns the code of the row without decoding it
+         * @param row Row number
+         * @return Code of the value, -1 for null
+         */
+        int getCodeAt(int row) {
+            return rows[row];
+        }
+
+        /**
+         * Method returns the code of a value
+         * @param value Value to look up, can be null
+         * @return Code of the value, -1 if the value is not in the dictionary
+         */
+        int getCode(String value) {
+            Integer code = value == null ? null : codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        /**
+         * Method evaluates the comparison once per distinct value, the rows are then matched by code
+         * @param operator Comparison operator
+         * @param value Constant value
+         * @param oDataValue Function converting a stored value to the value the filters read
+         * @return Predicate on the row numbers
+         */
+        @Override
+        IntPredicate createPredicate(BinaryOperatorKind operator, Object value, Function<Object, Object> oDataValue) {
+            String[] values = dictionary;
+            boolean[] matches = new boolean[values.length];
+            for (int code = 0; (code < values.length) && (values[code] != null); code++) {
+                matches[code] = ValueComparator.satisfies(operator, ValueComparator.compare(oDataValue.apply(values[code]), value));
+            }
+            boolean nullMatches = ValueComparator.satisfies(operator, ValueComparator.compare(null, value));
+            return row -> {
+                int code = rows[row];
+                if (code < 0) {
+                    return nullMatches;
+                } else if (code < matches.length) {
+                    return matches[code];
+                }
+                // Value added after the predicate was created
+                return ValueComparator.satisfies(operator, ValueComparator.compare(oDataValue.apply(dictionary[code]), value));
+            };
+        }
+    }
+
+    /**
+     * Column of Dates stored as the epoch day in the default time zone. The time of the day is not kept, the values
+     * are read back at the start of the day
+     */
+    private static final class DayColumn extends Column {
+        private static final int NULL = Integer.MIN_VALUE;
+        private int[] days;
+
+        /**
+         * Constructor creates an empty column
+         * @param propertyName Name of the OData property
+         * @param capacity Number of rows
+         */
+        DayColumn(String propertyName, int capacity) {
+            super(propertyName);
+            days = new int[capacity];
+        }
+
+        /**
+         * Method returns the value of the row
+         * @param row Row number
+         * @return Value of the property, can be null
+         */
+        @Override
+        Object get(int row) {
+            int day = days[row];
+            return day == NULL ? null : ValueCodec.fromEpochDay(day);
+        }
+
+        /**
+         * Method stores the value of the row
+         * @param row Row number
+         * @param value Value of the property, can be null
+         */
+        @Override
+        void set(int row, Object value) {
+            days[row] = value == null ? NULL : ValueCodec.toEpochDay((Date) value);
+        }
+
+        /**
+         * Method replaces the arrays of the column with copies of the capacity passed in
+         * @param capacity New number of rows
+         */
+        @Override
+        void grow(int capacity) {
+            days = Arrays.copyOf(days, capacity);
+        }
+    }
+
+    /**
+     * Column of BigDecimals stored as longs with 4 decimal places. Values are rounded half even to 4 decimal places,
+     * values larger than a long allows are rejected
+     */
+    private static final class DecimalColumn extends Column {
+        private long[] unscaledValues;
+        private long[] nulls;
+
+        /**
+         * Constructor creates an empty column
+         * @param propertyName Name of the OData property
+         * @param capacity Number of rows
+         */
+        DecimalColumn(String propertyName, int capacity) {
+            super(propertyName);
+            unscaledValues = new long[capacity];
+            nulls = Bits.create(capacity);
+        }
+
+        /**
+         * Method returns the value of the row
+         * @param row Row number
+         * @return Value of the property, can be null
+         */
+        @Override
+        Object get(int row) {
+            if (Bits.get(nulls, row)) {
+                return null;
+            }
+            return ValueCodec.fromScaledLong(unscaledValues[row]);
+        }
+
+        /**
+         * Method stores the value of the row
+         * @param row Row number
+         * @param value Value of the property, can be null
+         */
+        @Override
+        void set(int row, Object value) {
+            Bits.set(nulls, row, value == null);
+            unscaledValues[row] = value == null ? 0 : encode(value);
+        }
+
+        /**
+         * Method checks that the value fits in a long once scaled
+         * @param value Value of the property, can be null
+         * @throws IllegalArgumentException If the value can't be stored
+         */
+        @Override
+        void validate(Object value) {
+            if (value != null) {
+                encode(value);
+            }
+        }
+
+        /**
+         * Method replaces the arrays of the column with copies of the capacity passed in
+         * @param capacity New number of rows
+         */
+        @Override
+        void grow(int capacity) {
+            unscaledValues = Arrays.copyOf(unscaledValues, capacity);
+            nulls = Bits.copyOf(nulls, capacity);
+        }
+
+        /**
+         * Method returns the value scaled to 4 decimal places as a long
+         * @param value BigDecimal value
+         * @return Unscaled value
+         */
+        private long encode(Object value) {
+            try {
+                return ValueCodec.toScaledLong((BigDecimal) value);
+            } catch (ArithmeticException e) {
+                rejectValue(e);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Column of ints
+     */
+    private static final class IntColumn extends Column {
+        private int[] values;
+        private long[] nulls;
+
+        /**
+         * Constructor creates an empty column
+         * @param propertyName Name of the OData property
+         * @param capacity Number of rows
+         */
+        IntColumn(String propertyName, int capacity) {
+            super(propertyName);
+            values = new int[capacity];
+            nulls = Bits.create(capacity);
+        }
+
+        /**
+         * Method returns the value of the row
+         * @param row Row number
+         * @return Value of the property, can be null
+         */
+        @Override
+        Object get(int row) {
+            return Bits.get(nulls, row) ? null : values[row];
+        }
+
+        /**
+         * Method stores the value of the row
+         * @param row Row number
+         * @param value Value of the property, can be null
+         */
+        @Override
+        void set(int row, Object value) {
+            Bits.set(nulls, row, value == null);
+            values[row] = value == null ? 0 : ((Number) value).intValue();
+        }
+
+        /**
+         * Method replaces the arrays of the column with copies of the capacity passed in
+         * @param capacity New number of rows
+         */
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            nulls = Bits.copyOf(nulls, capacity);
+        }
+    }
+
+    /**
+     * Column of booleans stored as bits
+     */
+    private static final class BooleanColumn extends Column {
+        private long[] values;
+        private long[] nulls;
+
+        /**
+         * Constructor creates an empty column
+         * @param propertyName Name of the OData property
+         * @param capacity Number of rows
+         */
+        BooleanColumn(String propertyName, int capacity) {
+            super(propertyName);
+            values = Bits.create(capacity);
+            nulls = Bits.create(capacity);
+        }
+
+        /**
+         * Method returns the value of the row
+         * @param row Row number
+         * @return Value of the property, can be null
+         */
+        @Override
+        Object get(int row) {
+            return Bits.get(nulls, row) ? null : Bits.get(values, row);
+        }
+
+        /**
+         * Method stores the value of the row
+         * @param row Row number
+         * @param value Value of the property, can be null
+         */
+        @Override
+        void set(int row, Object value) {
+            Bits.set(nulls, row, value == null);
+            Bits.set(values, row, Boolean.TRUE.equals(value));
+        }
+
+        /**
+         * Method replaces the arrays of the column with copies of the capacity passed in
+         * @param capacity New number of rows
+         */
+        @Override
+        void grow(int capacity) {
+            values = Bits.copyOf(values, capacity);
+            nulls = Bits.copyOf(nulls, capacity);
+        }
+    }
+
+    /**
+     * Column of values of any other type, stored as references
+     */
+    private static final class ObjectColumn extends Column {
+        private Object[] values;
+
+        /**
+         * Constructor creates an empty column
+         * @param propertyName Name of the OData property
+         * @param capacity Number of rows
+         */
+        ObjectColumn(String propertyName, int capacity) {
+            super(propertyName);
+            values = new Object[capacity];
+        }
+
+        /**
+         * Method returns the value of the row
+         * @param row Row number
+         * @return Value of the property, can be null
+         */
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        /**
+         * Method stores the value of the row
+         * @param row Row number
+         * @param value Value of the property, can be null
+         */
+        @Override
+        void set(int row, Object value) {
+            values[row] = value;
+        }
+
+        /**
+         * Method replaces the arrays of the column with copies of the capacity passed in
+         * @param capacity New number of rows
+         */
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /**
+     * Bit set stored in a long array. Unlike BitSet the array is never replaced by a write, so it can be read while
+     * a row is written
+     */
+    private static final class Bits {
+
+        /**
+         * Private Constructor to ensure static only
+         */
+        private Bits() {
+
+        }
+
+        /**
+         * Method creates a bit set for the number of rows passed in
+         * @param capacity Number of rows
+         * @return Array of longs holding the bits
+         */
+        static long[] create(int capacity) {
+            return new long[(capacity + 63) >>> 6];
+        }
+
+        /**
+         * Method copies the bit set to a bit set for the number of rows passed in
+         * @param bits Bit set
+         * @param capacity Number of rows
+         * @return Copy of the bit set
+         */
+        static long[] copyOf(long[] bits, int capacity) {
+            return Arrays.copyOf(bits, (capacity + 63) >>> 6);
+        }
+
+        /**
+         * Method returns the bit of the row
+         * @param bits Bit set
+         * @param row Row number
+         * @return true if the bit is set
+         */
+        static boolean get(long[] bits, int row) {
+            return (bits[row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * Method sets or clears the bit of the row
+         * @param bits Bit set
+         * @param row Row number
+         * @param value true to set the bit
+         */
+        static void set(long[] bits, int row, boolean value) {
+            if (value) {
+                bits[row >>> 6] |= 1L << row;
+            } else {
+                bits[row >>> 6] &= ~(1L << row);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntPredicate;
+
+/**
+ * Rows of one entity type stored outside of BaseEntity objects (ex in columns or in mapped files). Rows are numbered
+ * from 0 in insertion order and a deleted row keeps its number. Entities are materialized from a row when they are read.
+ * Writes must hold the lock of the table, reads don't lock
+ */
+public interface EntityTable {
+
+    /**
+     * Method returns the BaseEntity implementation stored in the table
+     * @return Entity class
+     */
+    Class<? extends BaseEntity> getEntityClass();
+
+    /**
+     * Method returns the lock that serializes the writes of the table
+     * @return Write lock
+     */
+    Lock getLock();
+
+    /**
+     * Method returns the number of rows written to the table, including the deleted rows
+     * @return Row count
+     */
+    int getRowCount();
+
+    /**
+     * Method returns the number of entities stored in the table
+     * @return Number of rows that are not deleted
+     */
+    int size();
+
+    /**
+     * Method returns true if the row was deleted
+     * @param row Row number
+     * @return true if the entity of the row was deleted
+     */
+    boolean isDeleted(int row);
+
+    /**
+     * Method returns the primary key of the row
+     * @param row Row number
+     * @return Id of the entity
+     */
+    String getId(int row);
+
+    /**
+     * Method returns the row of the entity with the id passed in
+     * @param id Primary key, can be null
+     * @return Row number or -1 if there is no such entity
+     */
+    int findRow(String id);
+
+    /**
+     * Method returns the rows whose relationship to the related class holds the related id (ex the Claims of a Policy)
+     * @param relatedClass Class of the related entity
+     * @param relatedId Primary key of the related entity
+     * @return Row numbers in primary key order, empty if the table has no relationship to the class
+     */
+    List<Integer> findRelatedRows(Class<?> relatedClass, String relatedId);
+
+    /**
+     * Method returns the rows whose relationship to the related class holds one of the related ids, found in one pass
+     * over the table (ex the Claims of a page of Policies)
+     * @param relatedClass Class of the related entity
+     * @param relatedIds Primary keys of the related entities
+     * @return Row numbers in primary key order by related id, ids without rows are left out
+     */
+    Map<String, List<Integer>> findRelatedRows(Class<?> relatedClass, Set<String> relatedIds);
+
+    /**
+     * Method returns the id of the entity of the related class the row is related to (ex the Policy of a Claim)
+     * @param row Row number
+     * @param relatedClass Class of the related entity
+     * @return Primary key of the related entity or null if there is none
+     */
+    String getRelatedId(int row, Class<?> relatedClass);
+
+    /**
+     * Method returns true if the table holds a relationship to the related class
+     * @param relatedClass Class of the related entity
+     * @return true if a relatedId property references the class
+     */
+    boolean isRelatedTo(Class<?> relatedClass);
+
+    /**
+     * Method creates a predicate on the row numbers that evaluates the condition without materializing the entity.
+     * Values are compared the way the filters compare them
+     * @param condition Comparison between a property and a constant value
+     * @return Predicate or null if the property is not stored (ex a computed property)
+     */
+    IntPredicate createPredicate(PojoFilter.Condition condition);
+
+    /**
+     * Method appends the entity to the table. The id must be set and not used by another entity
+     * @param baseEntity BaseEntity implementation to store
+     * @return Row number of the entity
+     * @throws IllegalArgumentException If a value can't be stored
+     */
+    int insert(BaseEntity baseEntity);
+
+    /**
+     * Method replaces the stored values of the row with the values of the entity
+     * @param row Row number
+     * @param baseEntity BaseEntity implementation holding the new values, its id must be the id of the row
+     * @throws IllegalArgumentException If a value can't be stored
+     */
+    void update(int row, BaseEntity baseEntity);
+
+    /**
+     * Method flags the row as deleted
+     * @param row Row number
+     */
+    void delete(int row);
+
+    /**
+     * Method creates the BaseEntity implementation of the row with its related entities
+     * @param row Row number
+     * @return New BaseEntity implementation holding the values of the row
+     */
+    BaseEntity materialize(int row);
+
+    /**
+     * Method creates the BaseEntity implementation of the row and its related entities up to the depth passed in
+     * @param row Row number
+     * @param depth Number of relationship levels left to materialize
+     * @return New BaseEntity implementation holding the values of the row
+     */
+    BaseEntity materialize(int row, int depth);
+}
@@ -0,0 +1,156 @@
+package com.codescience.salesforceconnect.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the primary keys of a table to their row numbers. Numeric keys in canonical form (no leading zero) are kept
+ * in an open addressing hash table of longs with linear probing, so they don't allocate an entry per row, other keys
+ * in a map. Writes must be serialized by the caller, reads don't lock. A read racing a write can return a stale or
+ * unpublished row, callers check that the row holds the key.
+ * Numeric keys are never removed: the row of a key is replaced when the key is added again and callers check that the
+ * row is not deleted
+ */
+public final class IdIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long EMPTY = -1;
+    private final Map<String, Integer> otherKeys = new ConcurrentHashMap<>();
+    private volatile KeyTable numericKeys = new KeyTable(INITIAL_CAPACITY);
+
+    /**
+     * Method returns the row of the key
+     * @param key Primary key, can be null
+     * @return Row number or -1 if the key is not in the index
+     */
+    public int get(String key) {
+        if (key == null) {
+            return -1;
+        }
+        long numericKey = parseNumericKey(key);
+        if (numericKey < 0) {
+            Integer row = otherKeys.get(key);
+            return row == null ? -1 : row;
+        }
+        return numericKeys.get(numericKey);
+    }
+
+    /**
+     * Method sets the row of the key. The table is replaced by a copy twice as large once it is half full
+     * @param key Primary key
+     * @param row Row number
+     */
+    public void put(String key, int row) {
+        long numericKey = parseNumericKey(key);
+        if (numericKey < 0) {
+            otherKeys.put(key, row);
+            return;
+        }
+        KeyTable table = numericKeys;
+        if ((table.size + 1) * 2 > table.keys.length) {
+            table = table.resize();
+            numericKeys = table;
+        }
+        table.put(numericKey, row);
+    }
+
+    /**
+     * Method removes a key that is not numeric. Numeric keys stay in the table
+     * @param key Primary key
+     */
+    public void remove(String key) {
+        otherKeys.remove(key);
+    }
+
+    /**
+     * Method returns the value of a key in canonical numeric form
+     * @param key Primary key
+     * @return Value of the key or -1 if it is not a canonical number
+     */
+    public static long parseNumericKey(String key) {
+        long numericKey = SequenceKeyGenerator.parseKey(key);
+        if ((numericKey < 0) || ((key.length() > 1) && (key.charAt(0) == '0'))) {
+            return -1;
+        }
+        return numericKey;
+    }
+
+    /**
+     * Open addressing hash table of numeric keys to row numbers. A table is filled at most to half its size
+     */
+    private static final class KeyTable {
+        private final long[] keys;
+        private final int[] rows;
+        private final int mask;
+        private int size;
+
+        /**
+         * Constructor creates an empty table
+         * @param capacity Number of slots, a power of 2
+         */
+        private KeyTable(int capacity) {
+            keys = new long[capacity];
+            rows = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * Method returns the row of the key
+         * @param key Numeric key
+         * @return Row number or -1 if the key is not in the table
+         */
+        private int get(long key) {
+            for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+                long slotKey = keys[slot];
+                if (slotKey == key) {
+                    return rows[slot];
+                } else if (slotKey == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * Method sets the row of the key
+         * @param key Numeric key
+         * @param row Row number
+         */
+        private void put(long key, int row) {
+            int slot = slot(key);
+            while ((keys[slot] != EMPTY) && (keys[slot] != key)) {
+                slot = (slot + 1) & mask;
+            }
+            rows[slot] = row;
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+        }
+
+        /**
+         * Method returns a copy of the table twice as large
+         * @return New table with the same entries
+         */
+        private KeyTable resize() {
+            KeyTable resized = new KeyTable(keys.length * 2);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    resized.put(keys[slot], rows[slot]);
+                }
+            }
+            return resized;
+        }
+
+        /**
+         * Method returns the first slot to probe for the key
+         * @param key Numeric key
+         * @return Slot number
+         */
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
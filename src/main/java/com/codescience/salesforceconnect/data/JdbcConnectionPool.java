@@ -0,0 +1,214 @@
+package com.codescience.salesforceconnect.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of JDBC connections opened from a DataSource. At most maxSize connections are open, a caller waits for a free
+ * connection up to the acquire timeout. Each connection keeps its prepared statements in an LRU cache keyed by SQL, so
+ * statements built from the same query shape are only prepared once per connection.
+ * A connection is used by one thread at a time: it is acquired, used and released (the statements of the cache must
+ * not be closed by the caller, their result sets must)
+ */
+public final class JdbcConnectionPool {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcConnectionPool.class);
+
+    private final DataSource dataSource;
+    private final int statementCacheSize;
+    private final long acquireTimeout;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idleConnections;
+    private volatile boolean closed;
+
+    /**
+     * Constructor used to create the pool, connections are opened when they are first needed
+     * @param dataSource DataSource opening the connections
+     * @param maxSize Maximum number of open connections
+     * @param statementCacheSize Maximum number of prepared statements cached per connection
+     * @param acquireTimeout Maximum time in milliseconds to wait for a free connection
+     */
+    public JdbcConnectionPool(DataSource dataSource, int maxSize, int statementCacheSize, long acquireTimeout) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.dataSource = dataSource;
+        this.statementCacheSize = statementCacheSize;
+        this.acquireTimeout = acquireTimeout;
+        this.permits = new Semaphore(maxSize, true);
+        this.idleConnections = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Method returns a free connection, in auto-commit mode. It must be released once it is no longer used
+     * @return Connection
+     * @throws SQLException If no connection is free before the timeout or a connection can't be opened
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("No connection available after " + acquireTimeout + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection pooledConnection = idleConnections.poll();
+            if (pooledConnection == null) {
+                pooledConnection = new PooledConnection(dataSource.getConnection(), statementCacheSize);
+            }
+            return pooledConnection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Method returns the connection to the pool. A connection that failed is closed instead, a new one is opened when
+     * needed
+     * @param pooledConnection Connection returned by acquire
+     * @param broken true if the connection failed and must not be reused
+     */
+    public void release(PooledConnection pooledConnection, boolean broken) {
+        try {
+            if (broken || closed || !reset(pooledConnection) || !idleConnections.offer(pooledConnection)) {
+                pooledConnection.close();
+            } else if (closed && idleConnections.remove(pooledConnection)) {
+                // Closed while the connection was returned
+                pooledConnection.close();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Method closes the idle connections, connections in use are closed when they are released
+     */
+    public void close() {
+        LOG.info("In close method");
+        closed = true;
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.poll()) != null) {
+            pooledConnection.close();
+        }
+    }
+
+    /**
+     * Method puts the connection back in auto-commit mode, rolling back an unfinished transaction
+     * @param pooledConnection Connection to reset
+     * @return true if the connection can be reused
+     */
+    private static boolean reset(PooledConnection pooledConnection) {
+        try {
+            Connection connection = pooledConnection.getConnection();
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOG.error(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Connection of the pool with its cache of prepared statements
+     */
+    public static final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+
+        /**
+         * Constructor used to wrap an open connection
+         * @param connection JDBC connection
+         * @param statementCacheSize Maximum number of cached statements
+         */
+        private PooledConnection(Connection connection, int statementCacheSize) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > statementCacheSize) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Method returns the JDBC connection, used to manage transactions
+         * @return Connection
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Method returns the prepared statement of the SQL, from the cache if it was already prepared on this
+         * connection. Its parameters are cleared
+         * @param sql SQL with ? placeholders
+         * @return Prepared statement, it must not be closed
+         * @throws SQLException If the statement can't be prepared
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if ((statement == null) || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Method closes the cached statements and the connection
+         */
+        private void close() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.error(e.getMessage());
+            }
+        }
+
+        /**
+         * Method closes a statement, logging the failure
+         * @param statement Statement to close
+         */
+        private static void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOG.error(e.getMessage());
+            }
+        }
+    }
+}
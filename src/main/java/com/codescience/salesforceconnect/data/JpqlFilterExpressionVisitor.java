@@ -0,0 +1,24 @@
+package com.codescience.salesforceconnect.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expression visitor that translates a $filter expression into a JPQL condition with positional parameters (?1, ?2...)
+ */
+public class JpqlFilterExpressionVisitor extends QueryFilterExpressionVisitor {
+
+    /**
+     * Constructor sets the persistent properties of the filtered type and the list the parameters are added to
+     * @param properties Persistent properties by OData property name, their paths start with the entity alias
+     * @param parameters Values of the positional parameters, the parameter ?n is at index n - 1
+     */
+    public JpqlFilterExpressionVisitor(Map<String, QueryProperty> properties, List<Object> parameters) {
+        super(properties, parameters);
+    }
+
+    @Override
+    protected String placeholder(int position) {
+        return "?" + position;
+    }
+}
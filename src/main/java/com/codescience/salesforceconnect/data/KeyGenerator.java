@@ -0,0 +1,23 @@
+package com.codescience.salesforceconnect.data;
+
+/**
+ * Strategy that generates the primary key of the entities created without an Id. Storage registers every key in use
+ * through observe (the existing keys once they are loaded, then every key inserted with an explicit Id) so generated
+ * keys never collide with them. Storage calls the generator while it holds the write lock of the entity type
+ */
+public interface KeyGenerator {
+
+    /**
+     * Method registers a key in use for the entity type
+     * @param objectType Full qualified name of the entity type
+     * @param key Primary key of an existing entity
+     */
+    void observe(String objectType, String key);
+
+    /**
+     * Method returns a new key for the entity type
+     * @param objectType Full qualified name of the entity type
+     * @return Primary key not used by any entity of the type
+     */
+    String nextKey(String objectType);
+}
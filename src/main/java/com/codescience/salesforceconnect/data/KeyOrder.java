@@ -0,0 +1,100 @@
+package com.codescience.salesforceconnect.data;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Order of the primary keys in a query, the order of KeyComparator: keys made of digits only by value (as long as they
+ * have no leading zero), then the other keys as Strings. The expressions only use replace, a length function and case
+ * so they work in JPQL and in SQL
+ */
+final class KeyOrder {
+    private final String id;
+    private final String lengthFunction;
+    // 0 for the keys made of digits only, 1 for the other keys
+    private final String keyClass;
+    private final String keyLength;
+    private final String order;
+
+    /**
+     * Constructor used to populate the order
+     * @param id Path of the primary key in the query (ex e.id)
+     * @param lengthFunction Function returning the length of a String (ex length in JPQL)
+     */
+    KeyOrder(String id, String lengthFunction) {
+        this.id = id;
+        this.lengthFunction = lengthFunction;
+        this.keyClass = "case when " + lengthFunction + "(" + removeDigits(id) + ") = 0 then 0 else 1 end";
+        this.keyLength = "case when " + keyClass + " = 0 then " + lengthFunction + "(" + id + ") else 0 end";
+        this.order = getOrder(false);
+    }
+
+    /**
+     * Method returns the ascending order of the keys
+     * @return Order by expressions
+     */
+    String getOrder() {
+        return order;
+    }
+
+    /**
+     * Method returns the order of the keys
+     * @param descending true for the descending order
+     * @return Order by expressions
+     */
+    String getOrder(boolean descending) {
+        String direction = descending ? " desc" : "";
+        return keyClass + direction + ", " + keyLength + direction + ", " + id + direction;
+    }
+
+    /**
+     * Method returns the path of the primary key
+     * @return Path of the primary key in the query
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Method returns the condition selecting the keys that sort after the key passed in (ex the last key of a page)
+     * @param lastKey Key the selected keys sort after
+     * @param parameters Values of the parameters, the values of the condition are added
+     * @param placeholders Returns the placeholder of the parameter at a position, from 1
+     * @return Condition
+     */
+    String after(String lastKey, List<Object> parameters, IntFunction<String> placeholders) {
+        if (lastKey.isEmpty() || !lastKey.chars().allMatch(c -> (c >= '0') && (c <= '9'))) {
+            return "(" + keyClass + " = 1 and " + id + " > " + bind(lastKey, parameters, placeholders) + ")";
+        }
+        // Each value is bound where it is used so the placeholders can be positional or not
+        String length = lengthFunction + "(" + id + ")";
+        return "(" + keyClass + " = 1 or (" + keyClass + " = 0 and (" + length + " > " + bind(lastKey.length(), parameters, placeholders)
+                + " or (" + length + " = " + bind(lastKey.length(), parameters, placeholders)
+                + " and " + id + " > " + bind(lastKey, parameters, placeholders) + "))))";
+    }
+
+    /**
+     * Method adds a parameter
+     * @param value Value of the parameter
+     * @param parameters Values of the parameters
+     * @param placeholders Returns the placeholder of the parameter at a position, from 1
+     * @return Placeholder of the parameter
+     */
+    private static String bind(Object value, List<Object> parameters, IntFunction<String> placeholders) {
+        parameters.add(value);
+        return placeholders.apply(parameters.size());
+    }
+
+    /**
+     * Method returns the expression removing the digits of the String expression passed in
+     * @param expression String expression
+     * @return Expression without digits
+     */
+    private static String removeDigits(String expression) {
+        String result = expression;
+        for (char digit = '0'; digit <= '9'; digit++) {
+            result = "replace(" + result + ", '" + digit + "', '')";
+        }
+        return result;
+    }
+}
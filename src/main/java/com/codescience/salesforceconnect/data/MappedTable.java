@@ -0,0 +1,834 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.service.Messages;
+import com.codescience.salesforceconnect.translators.EntityMapping;
+import com.codescience.salesforceconnect.translators.EntityMapping.RelatedProperty;
+import com.codescience.salesforceconnect.translators.EntityMapping.WritableProperty;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Entities of one entity type stored off heap in memory-mapped files, so the rows survive restarts and don't add to
+ * the garbage collected heap. A row is a fixed-width record in the record segments: a status byte, a bit mask of the
+ * null fields, then one field per property (Strings and ids as offsets in the string heap, Dates as epoch days, decimals
+ * as longs with 4 decimal places, ints, booleans as a byte). Strings are appended to the string heap segments as a
+ * length followed by the UTF-8 bytes, recently written Strings are shared between rows. The header file holds the
+ * layout of the records and the row count.
+ * The rows of the ids are kept in an IdIndex and the rows referencing a related entity in a RelatedRowIndex per
+ * related field, keyed by the related id. Both are rebuilt from the records when the table is opened.
+ * Rows are appended and never moved, a deleted row is only flagged and updated Strings are not reclaimed. Writes must
+ * hold the lock of the table. Reads don't lock: the row count is published last, but a row updated while it is read
+ * can mix old and new values
+ */
+public final class MappedTable implements EntityTable {
+
+    private static final int MAGIC = 0x53434D54;
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_LAYOUT = 4;
+    private static final int HEADER_SEGMENT_SIZE = 8;
+    private static final int HEADER_ROW_COUNT = 12;
+    private static final int HEADER_DELETED_COUNT = 16;
+    private static final int HEADER_STRING_END = 24;
+    private static final byte STATUS_LIVE = 1;
+    private static final byte STATUS_DELETED = 2;
+    private static final int NULLS_OFFSET = 1;
+    private static final int ID_OFFSET = 9;
+    private static final int FIELDS_OFFSET = 17;
+    private static final long NULL_STRING = -1;
+    private static final int MAX_FIELDS = 64;
+    private static final int MAX_RELATED_DEPTH = 3;
+    private static final int MAX_SHARED_STRINGS = 4096;
+
+    private final EntityMapping entityMapping;
+    private final Function<Class<?>, EntityTable> relatedTables;
+    private final Lock lock = new ReentrantLock();
+    private final WritableProperty[] properties;
+    private final RelatedProperty[] relatedProperties;
+    private final FieldType[] fieldTypes;
+    private final int[] fieldOffsets;
+    private final int recordSize;
+    private final Map<String, Integer> fieldsByProperty = new HashMap<>();
+    private final IdIndex idIndex = new IdIndex();
+    private final List<RelatedRowIndex<String>> relatedRows = new ArrayList<>();
+    private final Map<String, Long> sharedStrings = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_SHARED_STRINGS;
+        }
+    };
+    private MappedByteBuffer header;
+    private SegmentedFile records;
+    private SegmentedFile strings;
+    private int recordsPerSegment;
+    private long stringEnd;
+    private volatile int rowCount;
+    private volatile int deletedCount;
+
+    /**
+     * Constructor computes the record layout of the entity class of the mapping. The table must be opened before use
+     * @param entityMapping Mapping of the BaseEntity implementation stored in the table
+     * @param relatedTables Function returning the table that stores a related entity class, or null if there is none
+     */
+    public MappedTable(EntityMapping entityMapping, Function<Class<?>, EntityTable> relatedTables) {
+        this.entityMapping = entityMapping;
+        this.relatedTables = relatedTables;
+
+        // Fields are sorted by name so the layout doesn't depend on the order the methods are reflected in
+        List<WritableProperty> storedProperties = new ArrayList<>();
+        for (WritableProperty property : entityMapping.getWritableProperties().values()) {
+            if (!Constants.ID.equals(property.getPropertyName())) {
+                storedProperties.add(property);
+            }
+        }
+        storedProperties.sort(Comparator.comparing(WritableProperty::getPropertyName));
+        List<RelatedProperty> related = new ArrayList<>(entityMapping.getRelatedProperties());
+        related.sort(Comparator.comparing(RelatedProperty::getPropertyName));
+        properties = storedProperties.toArray(new WritableProperty[0]);
+        relatedProperties = related.toArray(new RelatedProperty[0]);
+        for (int i = 0; i < relatedProperties.length; i++) {
+            relatedRows.add(new RelatedRowIndex<>(this::getId));
+        }
+
+        int fieldCount = properties.length + relatedProperties.length;
+        if (fieldCount > MAX_FIELDS) {
+            throw new IllegalArgumentException("Unable to store more than " + MAX_FIELDS + " properties for " + entityMapping.getEntityClass().getName());
+        }
+        fieldTypes = new FieldType[fieldCount];
+        fieldOffsets = new int[fieldCount];
+        int offset = FIELDS_OFFSET;
+        for (int field = 0; field < fieldCount; field++) {
+            if (field < properties.length) {
+                fieldTypes[field] = FieldType.of(properties[field]);
+                fieldsByProperty.put(properties[field].getPropertyName(), field);
+            } else {
+                fieldTypes[field] = FieldType.STRING;
+                fieldsByProperty.put(relatedProperties[field - properties.length].getPropertyName(), field);
+            }
+            fieldOffsets[field] = offset;
+            offset += fieldTypes[field].width;
+        }
+        recordSize = offset;
+    }
+
+    /**
+     * Method maps the files of the table in the directory, creating them if they don't exist, and rebuilds the indexes
+     * of the ids and of the related ids from the records
+     * @param directory Directory holding the files of the table
+     * @param name Base name of the files (ex the entity type name)
+     * @param segmentSize Size in bytes of the segments of a new table, an existing table keeps its segment size
+     * @throws IOException If the files can't be mapped
+     * @throws IllegalStateException If the files were written with another layout of the entity class
+     */
+    public void open(File directory, String name, int segmentSize) throws IOException {
+        lock.lock();
+        try {
+            boolean exists = new File(directory, name + ".header").exists();
+            header = map(new File(directory, name + ".header"), HEADER_SIZE);
+            if (exists) {
+                if ((header.getInt(HEADER_MAGIC) != MAGIC) || (header.getInt(HEADER_LAYOUT) != layoutHash())) {
+                    throw new IllegalStateException("The files of " + name + " were written with another layout of " + entityMapping.getEntityClass().getName());
+                }
+                segmentSize = header.getInt(HEADER_SEGMENT_SIZE);
+            } else {
+                header.putInt(HEADER_MAGIC, MAGIC);
+                header.putInt(HEADER_LAYOUT, layoutHash());
+                header.putInt(HEADER_SEGMENT_SIZE, segmentSize);
+            }
+            if (segmentSize < recordSize) {
+                throw new IllegalArgumentException("segmentSize must be at least " + recordSize + " bytes for " + name);
+            }
+            recordsPerSegment = segmentSize / recordSize;
+            records = new SegmentedFile(directory, name + ".records", segmentSize);
+            strings = new SegmentedFile(directory, name + ".strings", segmentSize);
+            stringEnd = header.getLong(HEADER_STRING_END);
+            int storedRows = header.getInt(HEADER_ROW_COUNT);
+            records.open((storedRows + recordsPerSegment - 1) / recordsPerSegment);
+            strings.open((int) ((stringEnd + segmentSize - 1) / segmentSize));
+
+            int deletedRows = 0;
+            for (int row = 0; row < storedRows; row++) {
+                if (isDeleted(row)) {
+                    deletedRows++;
+                } else {
+                    idIndex.put(getId(row), row);
+                    for (int i = 0; i < relatedProperties.length; i++) {
+                        relatedRows.get(i).add(getRelatedIdAt(row, i), row);
+                    }
+                }
+            }
+            deletedCount = deletedRows;
+            rowCount = storedRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method writes the changes of the mapped files to the storage device
+     */
+    public void force() {
+        lock.lock();
+        try {
+            records.force();
+            strings.force();
+            header.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method returns the BaseEntity implementation stored in the table
+     * @return Entity class
+     */
+    @Override
+    public Class<? extends BaseEntity> getEntityClass() {
+        return entityMapping.getEntityClass();
+    }
+
+    /**
+     * Method returns the lock that serializes the writes of the table
+     * @return Write lock
+     */
+    @Override
+    public Lock getLock() {
+        return lock;
+    }
+
+    /**
+     * Method returns the number of rows written to the table, including the deleted rows. Rows are numbered from 0
+     * @return Row count
+     */
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Method returns the number of entities stored in the table
+     * @return Number of rows that are not deleted
+     */
+    @Override
+    public int size() {
+        return rowCount - deletedCount;
+    }
+
+    /**
+     * Method returns true if the row was deleted
+     * @param row Row number
+     * @return true if the entity of the row was deleted
+     */
+    @Override
+    public boolean isDeleted(int row) {
+        // A record that was never completed counts as deleted
+        return status(row) != STATUS_LIVE;
+    }
+
+    /**
+     * Method returns the primary key of the row
+     * @param row Row number
+     * @return Id of the entity
+     */
+    @Override
+    public String getId(int row) {
+        return readString(record(row).getLong(recordOffset(row) + ID_OFFSET));
+    }
+
+    /**
+     * Method returns the row of the entity with the id passed in
+     * @param id Primary key, can be null
+     * @return Row number or -1 if there is no such entity
+     */
+    @Override
+    public int findRow(String id) {
+        int row = idIndex.get(id);
+        // The index can be read while a row is being added, check the row holds the id
+        if ((row < 0) || (row >= rowCount) || !id.equals(getId(row))) {
+            return -1;
+        }
+        return isDeleted(row) ? -1 : row;
+    }
+
+    /**
+     * Method returns the rows whose relationship to the related class holds the related id. It is used to navigate a
+     * one-to-many relationship from the one side (ex the Claims of a Policy), the rows are read from the index of the
+     * related field so only their records are read
+     * @param relatedClass Class of the related entity
+     * @param relatedId Primary key of the related entity
+     * @return Row numbers in primary key order, empty if the table has no relationship to the class
+     */
+    @Override
+    public List<Integer> findRelatedRows(Class<?> relatedClass, String relatedId) {
+        List<Integer> rows = new ArrayList<>();
+        int field = findRelatedField(relatedClass);
+        if (field >= 0) {
+            addRelatedRows(rows, field, relatedId);
+        }
+        return rows;
+    }
+
+    /**
+     * Method returns the rows whose relationship to the related class holds one of the related ids, each id is looked
+     * up in the index of the related field
+     * @param relatedClass Class of the related entity
+     * @param relatedIds Primary keys of the related entities
+     * @return Row numbers in primary key order by related id, ids without rows are left out
+     */
+    @Override
+    public Map<String, List<Integer>> findRelatedRows(Class<?> relatedClass, Set<String> relatedIds) {
+        Map<String, List<Integer>> rows = new HashMap<>();
+        int field = findRelatedField(relatedClass);
+        if (field < 0) {
+            return rows;
+        }
+        for (String relatedId : relatedIds) {
+            List<Integer> related = new ArrayList<>();
+            addRelatedRows(related, field, relatedId);
+            if (!related.isEmpty()) {
+                rows.put(relatedId, related);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Method returns the id of the entity of the related class the row is related to. It is used to navigate a
+     * one-to-many relationship from the many side (ex the Policy of a Claim)
+     * @param row Row number
+     * @param relatedClass Class of the related entity
+     * @return Primary key of the related entity or null if there is none
+     */
+    @Override
+    public String getRelatedId(int row, Class<?> relatedClass) {
+        int field = findRelatedField(relatedClass);
+        return field < 0 ? null : (String) readField(row, field);
+    }
+
+    /**
+     * Method returns true if the table holds a relationship to the related class
+     * @param relatedClass Class of the related entity
+     * @return true if a relatedId property references the class
+     */
+    @Override
+    public boolean isRelatedTo(Class<?> relatedClass) {
+        return findRelatedField(relatedClass) >= 0;
+    }
+
+    /**
+     * Method creates a predicate on the row numbers that reads the field of the condition from the mapped record,
+     * without materializing the entity. Values are compared the way the filters compare them
+     * @param condition Comparison between a property and a constant value
+     * @return Predicate or null if the property is not stored in a field (ex a computed property)
+     */
+    @Override
+    public IntPredicate createPredicate(PojoFilter.Condition condition) {
+        BinaryOperatorKind operator = condition.getOperator();
+        Object value = condition.getValue();
+        if (Constants.ID.equals(condition.getPropertyName())) {
+            return row -> ValueComparator.satisfies(operator, ValueComparator.compare(getId(row), value));
+        }
+        Integer field = fieldsByProperty.get(condition.getPropertyName());
+        if (field == null) {
+            return null;
+        } else if (field >= properties.length) {
+            return row -> ValueComparator.satisfies(operator, ValueComparator.compare(readField(row, field), value));
+        }
+        WritableProperty property = properties[field];
+        return row -> ValueComparator.satisfies(operator, ValueComparator.compare(property.toODataValue(readField(row, field)), value));
+    }
+
+    /**
+     * Method appends the entity to the table. Must be called while holding the lock, the id must be set and not used
+     * by another entity
+     * @param baseEntity BaseEntity implementation to store
+     * @return Row number of the entity
+     * @throws IllegalArgumentException If a value can't be stored (ex a decimal out of range)
+     * @throws UncheckedIOException If a new segment can't be mapped
+     */
+    @Override
+    public int insert(BaseEntity baseEntity) {
+        validate(baseEntity);
+        int row = rowCount;
+        records.ensureSegment(row / recordsPerSegment);
+        ByteBuffer record = record(row);
+        int offset = recordOffset(row);
+        record.putLong(offset + ID_OFFSET, writeString(baseEntity.getId(), NULL_STRING));
+        write(row, baseEntity, false);
+        // The status is written last, a record without status is ignored when the table is opened
+        record.put(offset, STATUS_LIVE);
+        idIndex.put(baseEntity.getId(), row);
+        header.putInt(HEADER_ROW_COUNT, row + 1);
+        // Publishing the row count makes the row visible to the reads
+        rowCount = row + 1;
+        for (int i = 0; i < relatedProperties.length; i++) {
+            relatedRows.get(i).add(getRelatedIdAt(row, i), row);
+        }
+        return row;
+    }
+
+    /**
+     * Method replaces the stored values of the row with the values of the entity. Must be called while holding the lock
+     * @param row Row number
+     * @param baseEntity BaseEntity implementation holding the new values, its id must be the id of the row
+     * @throws IllegalArgumentException If a value can't be stored (ex a decimal out of range)
+     * @throws UncheckedIOException If a new string segment can't be mapped
+     */
+    @Override
+    public void update(int row, BaseEntity baseEntity) {
+        validate(baseEntity);
+        String[] previousIds = new String[relatedProperties.length];
+        for (int i = 0; i < relatedProperties.length; i++) {
+            previousIds[i] = getRelatedIdAt(row, i);
+        }
+        write(row, baseEntity, true);
+        for (int i = 0; i < relatedProperties.length; i++) {
+            relatedRows.get(i).move(previousIds[i], getRelatedIdAt(row, i), row);
+        }
+    }
+
+    /**
+     * Method flags the row as deleted. Must be called while holding the lock
+     * @param row Row number
+     */
+    @Override
+    public void delete(int row) {
+        if (isDeleted(row)) {
+            return;
+        }
+        record(row).put(recordOffset(row), STATUS_DELETED);
+        idIndex.remove(getId(row));
+        for (int i = 0; i < relatedProperties.length; i++) {
+            relatedRows.get(i).remove(getRelatedIdAt(row, i), row);
+        }
+        deletedCount++;
+        header.putInt(HEADER_DELETED_COUNT, deletedCount);
+    }
+
+    /**
+     * Method creates the BaseEntity implementation of the row. The related entities are materialized from their tables
+     * so the computed properties (ex TotalCostAmount) can be evaluated
+     * @param row Row number
+     * @return New BaseEntity implementation holding the values of the row
+     */
+    @Override
+    public BaseEntity materialize(int row) {
+        return materialize(row, MAX_RELATED_DEPTH);
+    }
+
+    /**
+     * Method creates the BaseEntity implementation of the row and its related entities up to the depth passed in
+     * @param row Row number
+     * @param depth Number of relationship levels left to materialize
+     * @return New BaseEntity implementation holding the values of the row
+     */
+    @Override
+    public BaseEntity materialize(int row, int depth) {
+        BaseEntity baseEntity = entityMapping.newInstance();
+        baseEntity.setId(getId(row));
+        for (int field = 0; field < properties.length; field++) {
+            Object value = readField(row, field);
+            if (value != null) {
+                properties[field].set(baseEntity, value);
+            }
+        }
+        if (depth > 0) {
+            for (int i = 0; i < relatedProperties.length; i++) {
+                String relatedId = (String) readField(row, properties.length + i);
+                EntityTable relatedTable = relatedTables.apply(relatedProperties[i].getRelatedClass());
+                int relatedRow = relatedTable == null ? -1 : relatedTable.findRow(relatedId);
+                if ((relatedRow >= 0) && relatedProperties[i].isSettable()) {
+                    relatedProperties[i].set(baseEntity, relatedTable.materialize(relatedRow, depth - 1));
+                }
+            }
+        }
+        return baseEntity;
+    }
+
+    /**
+     * Method checks that every value of the entity can be stored before any field is written
+     * @param baseEntity BaseEntity implementation to store
+     * @throws IllegalArgumentException If a value can't be stored
+     */
+    private void validate(BaseEntity baseEntity) {
+        checkString(Constants.ID, baseEntity.getId());
+        for (int field = 0; field < properties.length; field++) {
+            Object value = properties[field].get(baseEntity);
+            if (value == null) {
+                continue;
+            }
+            if (fieldTypes[field] == FieldType.STRING) {
+                checkString(properties[field].getPropertyName(), value.toString());
+            } else if (fieldTypes[field] == FieldType.DECIMAL) {
+                try {
+                    ValueCodec.toScaledLong((BigDecimal) value);
+                } catch (ArithmeticException e) {
+                    throw new IllegalArgumentException(Messages.ERROR_VALUE_NOT_STORABLE + properties[field].getPropertyName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method checks that the String fits in a segment of the string heap
+     * @param propertyName Name of the OData property
+     * @param value String value, can be null
+     * @throws IllegalArgumentException If the String is too long
+     */
+    private void checkString(String propertyName, String value) {
+        if ((value != null) && (Integer.BYTES + (long) value.length() * 3 > strings.segmentSize)) {
+            throw new IllegalArgumentException(Messages.ERROR_VALUE_NOT_STORABLE + propertyName);
+        }
+    }
+
+    /**
+     * Method writes the values of the entity to the fields of the row and updates its null mask
+     * @param row Row number
+     * @param baseEntity BaseEntity implementation to store
+     * @param existing true if the row already holds values, its Strings are kept when they don't change
+     */
+    private void write(int row, BaseEntity baseEntity, boolean existing) {
+        ByteBuffer record = record(row);
+        int offset = recordOffset(row);
+        long nulls = 0;
+        for (int field = 0; field < fieldTypes.length; field++) {
+            Object value;
+            if (field < properties.length) {
+                value = properties[field].get(baseEntity);
+            } else {
+                BaseEntity related = relatedProperties[field - properties.length].get(baseEntity);
+                value = related == null ? null : related.getId();
+            }
+            int position = offset + fieldOffsets[field];
+            if (value == null) {
+                nulls |= 1L << field;
+            }
+            switch (fieldTypes[field]) {
+                case STRING:
+                    long current = existing ? record.getLong(position) : NULL_STRING;
+                    record.putLong(position, value == null ? NULL_STRING : writeString(value.toString(), current));
+                    break;
+                case DATE:
+                    record.putInt(position, value == null ? 0 : ValueCodec.toEpochDay((Date) value));
+                    break;
+                case DECIMAL:
+                    record.putLong(position, value == null ? 0 : ValueCodec.toScaledLong((BigDecimal) value));
+                    break;
+                case INT:
+                    record.putInt(position, value == null ? 0 : ((Number) value).intValue());
+                    break;
+                default:
+                    // FieldType.BOOLEAN
+                    record.put(position, Boolean.TRUE.equals(value) ? (byte) 1 : (byte) 0);
+                    break;
+            }
+        }
+        record.putLong(offset + NULLS_OFFSET, nulls);
+    }
+
+    /**
+     * Method reads the value of a field of the row
+     * @param row Row number
+     * @param field Field number
+     * @return Value as held by the entity, can be null
+     */
+    private Object readField(int row, int field) {
+        ByteBuffer record = record(row);
+        int offset = recordOffset(row);
+        if ((record.getLong(offset + NULLS_OFFSET) & (1L << field)) != 0) {
+            return null;
+        }
+        int position = offset + fieldOffsets[field];
+        switch (fieldTypes[field]) {
+            case STRING:
+                return readString(record.getLong(position));
+            case DATE:
+                return ValueCodec.fromEpochDay(record.getInt(position));
+            case DECIMAL:
+                return ValueCodec.fromScaledLong(record.getLong(position));
+            case INT:
+                return record.getInt(position);
+            default:
+                // FieldType.BOOLEAN
+                return record.get(position) != 0;
+        }
+    }
+
+    /**
+     * Method appends a String to the string heap. A String that was recently written or that is the current value
+     * of the field is not written again. Must be called while holding the lock
+     * @param value String to write
+     * @param current Offset of the current value of the field, NULL_STRING if there is none
+     * @return Offset of the String in the string heap
+     */
+    private long writeString(String value, long current) {
+        Long shared = sharedStrings.get(value);
+        if (shared != null) {
+            return shared;
+        } else if ((current != NULL_STRING) && value.equals(readString(current))) {
+            return current;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Integer.BYTES + bytes.length;
+        int segmentSize = strings.segmentSize;
+        // A String never spans two segments
+        if ((stringEnd % segmentSize) + length > segmentSize) {
+            stringEnd = (stringEnd / segmentSize + 1) * segmentSize;
+        }
+        long offset = stringEnd;
+        ByteBuffer segment = strings.ensureSegment((int) (offset / segmentSize)).duplicate();
+        segment.position((int) (offset % segmentSize));
+        segment.putInt(bytes.length);
+        segment.put(bytes);
+        stringEnd = offset + length;
+        header.putLong(HEADER_STRING_END, stringEnd);
+        sharedStrings.put(value, offset);
+        return offset;
+    }
+
+    /**
+     * Method reads a String from the string heap
+     * @param offset Offset of the String, NULL_STRING for null
+     * @return String value or null
+     */
+    private String readString(long offset) {
+        if (offset == NULL_STRING) {
+            return null;
+        }
+        ByteBuffer segment = strings.segment((int) (offset / strings.segmentSize)).duplicate();
+        segment.position((int) (offset % strings.segmentSize));
+        byte[] bytes = new byte[segment.getInt()];
+        segment.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Method returns the status byte of the row
+     * @param row Row number
+     * @return STATUS_LIVE, STATUS_DELETED or 0 if the record was never completed
+     */
+    private byte status(int row) {
+        return record(row).get(recordOffset(row));
+    }
+
+    /**
+     * Method returns the record segment holding the row
+     * @param row Row number
+     * @return Mapped segment
+     */
+    private ByteBuffer record(int row) {
+        return records.segment(row / recordsPerSegment);
+    }
+
+    /**
+     * Method returns the offset of the row in its segment
+     * @param row Row number
+     * @return Offset of the record
+     */
+    private int recordOffset(int row) {
+        return (row % recordsPerSegment) * recordSize;
+    }
+
+    /**
+     * Method adds the rows of the index of the related field that still reference the related entity. The index can be
+     * read while a row is being deleted or updated, the rows are checked
+     * @param rows List the rows are added to
+     * @param field Field number of the relationship
+     * @param relatedId Primary key of the related entity, can be null
+     */
+    private void addRelatedRows(List<Integer> rows, int field, String relatedId) {
+        for (int row : relatedRows.get(field - properties.length).get(relatedId)) {
+            if (!isDeleted(row) && relatedId.equals(readField(row, field))) {
+                rows.add(row);
+            }
+        }
+    }
+
+    /**
+     * Method returns the related id of the row, the key of the row in the index of the relationship
+     * @param row Row number
+     * @param index Index of the relationship in relatedProperties
+     * @return Primary key of the related entity or null if the row references none
+     */
+    private String getRelatedIdAt(int row, int index) {
+        return (String) readField(row, properties.length + index);
+    }
+
+    /**
+     * Method returns the field of the relationship to the related class
+     * @param relatedClass Class of the related entity
+     * @return Field number or -1 if there is none
+     */
+    private int findRelatedField(Class<?> relatedClass) {
+        for (int i = 0; i < relatedProperties.length; i++) {
+            if (relatedProperties[i].getRelatedClass().equals(relatedClass)) {
+                return properties.length + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method returns a hash of the record layout, files written with another layout can't be read
+     * @return Hash of the entity class, field names and field types
+     */
+    private int layoutHash() {
+        StringBuilder layout = new StringBuilder(entityMapping.getEntityClass().getName());
+        for (int field = 0; field < fieldTypes.length; field++) {
+            String propertyName = field < properties.length ? properties[field].getPropertyName()
+                    : relatedProperties[field - properties.length].getPropertyName();
+            layout.append(';').append(propertyName).append(':').append(fieldTypes[field]);
+        }
+        return layout.toString().hashCode();
+    }
+
+    /**
+     * Method maps a file in read write mode, extending it to the size passed in
+     * @param file File to map
+     * @param size Number of bytes to map
+     * @return Mapped buffer, it stays valid once the file is closed
+     * @throws IOException If the file can't be mapped
+     */
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Type of a field of the record and its width in bytes
+     */
+    private enum FieldType {
+        STRING(Long.BYTES),
+        DATE(Integer.BYTES),
+        DECIMAL(Long.BYTES),
+        INT(Integer.BYTES),
+        BOOLEAN(1);
+
+        private final int width;
+
+        /**
+         * Constructor sets the width of the field
+         * @param width Number of bytes of the field
+         */
+        FieldType(int width) {
+            this.width = width;
+        }
+
+        /**
+         * Method returns the field type used to store the property
+         * @param property Property with a setter
+         * @return Field type
+         * @throws IllegalArgumentException If the type of the property can't be stored
+         */
+        private static FieldType of(WritableProperty property) {
+            Class<?> type = property.getType();
+            if (String.class.equals(type)) {
+                return STRING;
+            } else if (Date.class.equals(type)) {
+                return DATE;
+            } else if (BigDecimal.class.equals(type)) {
+                return DECIMAL;
+            } else if (int.class.equals(type) || Integer.class.equals(type)) {
+                return INT;
+            } else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+                return BOOLEAN;
+            }
+            throw new IllegalArgumentException("Unable to store property " + property.getPropertyName() + " of type " + type.getName());
+        }
+    }
+
+    /**
+     * Sequence of files of the same size (name.0, name.1, ...) mapped in memory. Segments are added by the writes, the
+     * array of the mapped segments is replaced so reads never lock
+     */
+    private static final class SegmentedFile {
+        private final File directory;
+        private final String name;
+        private final int segmentSize;
+        private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+        /**
+         * Constructor used to populate the file names
+         * @param directory Directory holding the segments
+         * @param name Base name of the segments
+         * @param segmentSize Size in bytes of a segment
+         */
+        private SegmentedFile(File directory, String name, int segmentSize) {
+            this.directory = directory;
+            this.name = name;
+            this.segmentSize = segmentSize;
+        }
+
+        /**
+         * Method maps the existing segments
+         * @param count Number of segments holding data
+         * @throws IOException If a segment can't be mapped
+         */
+        private void open(int count) throws IOException {
+            MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+            for (int index = 0; index < count; index++) {
+                mapped[index] = map(new File(directory, name + "." + index), segmentSize);
+            }
+            segments = mapped;
+        }
+
+        /**
+         * Method returns a mapped segment
+         * @param index Segment number, the segment must be mapped
+         * @return Mapped segment
+         */
+        private ByteBuffer segment(int index) {
+            return segments[index];
+        }
+
+        /**
+         * Method returns a segment, mapping the segments up to it if they are not mapped yet. Must be called by the writer
+         * @param index Segment number
+         * @return Mapped segment
+         * @throws UncheckedIOException If a segment can't be mapped
+         */
+        private ByteBuffer ensureSegment(int index) {
+            MappedByteBuffer[] mapped = segments;
+            if (index < mapped.length) {
+                return mapped[index];
+            }
+            MappedByteBuffer[] extended = Arrays.copyOf(mapped, index + 1);
+            try {
+                for (int i = mapped.length; i <= index; i++) {
+                    extended[i] = map(new File(directory, name + "." + i), segmentSize);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments = extended;
+            return extended[index];
+        }
+
+        /**
+         * Method writes the changes of the segments to the storage device
+         */
+        private void force() {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+    }
+}
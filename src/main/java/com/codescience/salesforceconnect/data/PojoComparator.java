@@ -0,0 +1,229 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Comparator that orders BaseEntity implementations according to an $orderby option. The items are compared in the order
+ * of the $orderby, the first one being the primary sort criteria. The properties are read through the accessors of the
+ * type translator so the entities don't need to be translated to be sorted. Callers that compare the same entity many
+ * times (sorts, heaps) should extract its SortKey once and compare the keys.
+ * Nulls are sorted first in ascending order. The primary key is compared with the key comparator. Entities with equal sort properties are ordered by primary key so the order
+ * is total and stable between requests
+ */
+public class PojoComparator implements Comparator<BaseEntity> {
+
+    private final List<Function<BaseEntity, Object>> accessors;
+    private final boolean[] descending;
+    private final boolean[] primaryKey;
+    private final Comparator<String> keyComparator;
+
+    /**
+     * Constructor used to populate the sort properties. Properties are compared in list order
+     * @param accessors Accessors of the sort properties
+     * @param descending true for each sort property in descending order
+     * @param primaryKey true for each sort property that is the primary key
+     * @param keyComparator Comparator of the primary keys used for the primary key and as last sort criteria
+     */
+    private PojoComparator(List<Function<BaseEntity, Object>> accessors, List<Boolean> descending, List<Boolean> primaryKey,
+                           Comparator<String> keyComparator) {
+        this.accessors = new ArrayList<>(accessors);
+        this.descending = new boolean[descending.size()];
+        this.primaryKey = new boolean[primaryKey.size()];
+        for (int i = 0; i < this.descending.length; i++) {
+            this.descending[i] = descending.get(i);
+            this.primaryKey[i] = primaryKey.get(i);
+        }
+        this.keyComparator = keyComparator;
+    }
+
+    /**
+     * Method creates the comparator for the $orderby option passed in. Items that are not primitive properties of the type
+     * are ignored
+     * @param orderByOption OrderBy option passed in, may be null
+     * @param odtt Type translator used to read the properties of the sorted type
+     * @param keyComparator Comparator of the primary keys
+     * @return Comparator or null if there is nothing to sort on
+     */
+    public static PojoComparator create(OrderByOption orderByOption, ODataTypeTranslator odtt, Comparator<String> keyComparator) {
+        if (orderByOption == null) {
+            return null;
+        }
+
+        List<Function<BaseEntity, Object>> accessors = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        List<Boolean> primaryKey = new ArrayList<>();
+        for (OrderByItem orderByItem : orderByOption.getOrders()) {
+            Expression expression = orderByItem.getExpression();
+            if (expression instanceof Member) {
+                for (UriResource uriResource : ((Member) expression).getResourcePath().getUriResourceParts()) {
+                    if (uriResource instanceof UriResourcePrimitiveProperty) {
+                        String sortPropertyName = ((UriResourcePrimitiveProperty) uriResource).getProperty().getName();
+                        Function<BaseEntity, Object> accessor = odtt.getPropertyAccessor(sortPropertyName);
+                        if (accessor != null) {
+                            accessors.add(accessor);
+                            descending.add(orderByItem.isDescending());
+                            primaryKey.add(Constants.ID.equals(sortPropertyName));
+                        }
+                    }
+                }
+            }
+        }
+
+        if (accessors.isEmpty()) {
+            return null;
+        }
+        return new PojoComparator(accessors, descending, primaryKey, keyComparator);
+    }
+
+    /**
+     * Method extracts the sort properties of the entity. The key can be compared to other keys of the same comparator
+     * without reading the entities again
+     * @param entity BaseEntity implementation
+     * @return SortKey holding the entity and its sort property values
+     */
+    public SortKey sortKey(BaseEntity entity) {
+        Object[] values = new Object[accessors.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = accessors.get(i).apply(entity);
+        }
+        return new SortKey(entity, values);
+    }
+
+    /**
+     * Method selects the entities of the page in $orderby order. A bounded heap keeps the skip + top best entities so
+     * the matching entities are never fully sorted
+     * @param candidates Entities to evaluate
+     * @param pojoFilter Compiled filter, may be null
+     * @param skip Number of matching entities to skip
+     * @param top Maximum number of entities to select
+     * @param page List the selected entities are added to in order
+     * @return Number of matching entities
+     * @throws ODataApplicationException Exception thrown if the filter can't be evaluated
+     */
+    public int select(Iterable<BaseEntity> candidates, PojoFilter pojoFilter, int skip, int top, List<BaseEntity> page)
+            throws ODataApplicationException {
+        long limit = (long) skip + top;
+        // The heap is reversed so its head is the entity that drops out first when a better one is found.
+        // Sort keys are extracted once per matching entity instead of on every comparison
+        PriorityQueue<SortKey> heap = new PriorityQueue<>(Collections.reverseOrder());
+        int matched = 0;
+
+        for (BaseEntity baseEntity : candidates) {
+            if ((pojoFilter != null) && !pojoFilter.matches(baseEntity)) {
+                continue;
+            }
+            matched++;
+            if (heap.size() < limit) {
+                heap.add(sortKey(baseEntity));
+            } else if (limit > 0) {
+                SortKey sortKey = sortKey(baseEntity);
+                if (sortKey.compareTo(heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(sortKey);
+                }
+            }
+        }
+
+        List<SortKey> selected = new ArrayList<>(heap);
+        Collections.sort(selected);
+        for (int i = skip; i < selected.size(); i++) {
+            page.add(selected.get(i).getEntity());
+        }
+        return matched;
+    }
+
+    /**
+     * Method compares two entities on the sort properties and then on the primary key
+     * @param entity1 the first entity to be compared.
+     * @param entity2 the second entity to be compared.
+     * @return 0 if equal, a negative value if entity1 sorts first, a positive value otherwise
+     */
+    @Override
+    public int compare(BaseEntity entity1, BaseEntity entity2) {
+        return compareKeys(sortKey(entity1), sortKey(entity2));
+    }
+
+    /**
+     * Method compares two sort keys on the sort properties and then on the primary key
+     * @param key1 the first key to be compared.
+     * @param key2 the second key to be compared.
+     * @return 0 if equal, a negative value if key1 sorts first, a positive value otherwise
+     */
+    private int compareKeys(SortKey key1, SortKey key2) {
+        for (int i = 0; i < descending.length; i++) {
+            int result = primaryKey[i] ? keyComparator.compare((String) key1.values[i], (String) key2.values[i])
+                    : compareValues(key1.values[i], key2.values[i]);
+            if (result != 0) {
+                return descending[i] ? -result : result;
+            }
+        }
+        return keyComparator.compare(key1.entity.getId(), key2.entity.getId());
+    }
+
+    /**
+     * Method compares two property values. Nulls are sorted first, values of the same class are compared with their
+     * natural order, other values are compared the way the filters compare them
+     * @param value1 First value, can be null
+     * @param value2 Second value, can be null
+     * @return 0 if equal, a negative value if value1 is smaller, a positive value if value1 is bigger
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object value1, Object value2) {
+        if ((value1 instanceof Comparable) && (value2 != null) && (value1.getClass() == value2.getClass())) {
+            return ((Comparable<Object>) value1).compareTo(value2);
+        }
+        return ValueComparator.compare(value1, value2);
+    }
+
+    /**
+     * Sort property values of an entity extracted once by sortKey. Keys are ordered by the comparator that created them
+     */
+    public final class SortKey implements Comparable<SortKey> {
+        private final BaseEntity entity;
+        private final Object[] values;
+
+        /**
+         * Constructor used to populate the entity and its sort property values
+         * @param entity BaseEntity implementation
+         * @param values Values of the sort properties in $orderby order
+         */
+        private SortKey(BaseEntity entity, Object[] values) {
+            this.entity = entity;
+            this.values = values;
+        }
+
+        /**
+         * Method returns the entity the key was extracted from
+         * @return BaseEntity implementation
+         */
+        public BaseEntity getEntity() {
+            return entity;
+        }
+
+        /**
+         * Method compares this key to another key of the same comparator
+         * @param other the key to be compared.
+         * @return 0 if equal, a negative value if this key sorts first, a positive value otherwise
+         */
+        @Override
+        public int compareTo(SortKey other) {
+            return compareKeys(this, other);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.server.api.ODataApplicationException;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * EntityIterator that translates the matching BaseEntity implementations one at a time while the serializer writes them,
+ * so a response never holds more than one translated entity. It applies $skip, $top and the maximum page size to the
+ * matches. When the page is full and more entities match, the next property is set to the $skiptoken query of the next
+ * page once the iteration is over. The storage calls prefetch before returning the iterator so the filter is evaluated
+ * on the matches of the page before the response is committed
+ */
+public class PojoEntityIterator extends EntityIterator {
+
+    private final Iterator<BaseEntity> matches;
+    private final Function<BaseEntity, Entity> translator;
+    private final int skip;
+    private final int top;
+    private final int pageSize;
+    private final int position;
+    private final Deque<BaseEntity> prefetched = new ArrayDeque<>();
+    private int skipped;
+    private int returned;
+    private String lastKey;
+    private BaseEntity nextEntity;
+    private boolean finished;
+
+    /**
+     * Constructor used to populate the iterator
+     * @param matches Entities that match the filter in response order
+     * @param translator Function used to translate the entities
+     * @param skip Number of matches to skip
+     * @param top Maximum number of entities to return
+     * @param pageSize Maximum number of entities in the page, 0 if the response is not paged
+     * @param position Number of entities returned by the previous pages
+     */
+    public PojoEntityIterator(Iterator<BaseEntity> matches, Function<BaseEntity, Entity> translator, int skip, int top, int pageSize, int position) {
+        this.matches = matches;
+        this.translator = translator;
+        this.skip = skip;
+        this.top = top;
+        this.pageSize = pageSize;
+        this.position = position;
+    }
+
+    /**
+     * Method reads the matches of the page, and the match telling if there is a next page, before the response is
+     * written. A filter failing on one of them is then returned as an error status instead of cutting off a response
+     * that has started. The matches are kept untranslated. If the response is not paged only the first match is read
+     * @throws ODataApplicationException Exception thrown if the filter can't be evaluated on an entity
+     */
+    public void prefetch() throws ODataApplicationException {
+        long limit = pageSize > 0 ? Math.min(top, pageSize + 1L) : Math.min(top, 1);
+        try {
+            skipMatches();
+            while ((prefetched.size() < limit) && matches.hasNext()) {
+                prefetched.add(matches.next());
+            }
+        } catch (PojoFilter.EvaluationException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Method returns true if there is another entity to return
+     * @return true if next will return an entity
+     */
+    @Override
+    public boolean hasNext() {
+        if ((nextEntity == null) && !finished) {
+            advance();
+        }
+        return nextEntity != null;
+    }
+
+    /**
+     * Method translates and returns the next entity
+     * @return Olingo entity
+     */
+    @Override
+    public Entity next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BaseEntity baseEntity = nextEntity;
+        nextEntity = null;
+        returned++;
+        lastKey = baseEntity.getId();
+        return translator.apply(baseEntity);
+    }
+
+    /**
+     * Method reads the next match to return. If the page is already full the match only means that there is a next page
+     */
+    private void advance() {
+        skipMatches();
+        if ((returned >= top) || (prefetched.isEmpty() && !matches.hasNext())) {
+            finished = true;
+            return;
+        }
+
+        BaseEntity match = prefetched.isEmpty() ? matches.next() : prefetched.poll();
+        if ((pageSize > 0) && (returned >= pageSize)) {
+            SkipToken nextToken = new SkipToken(position + returned, lastKey);
+            setNext(URI.create("?" + Constants.SKIP_TOKEN + "=" + nextToken.encode()));
+            finished = true;
+            return;
+        }
+        nextEntity = match;
+    }
+
+    /**
+     * Method skips the first matches as requested by $skip
+     */
+    private void skipMatches() {
+        while ((skipped < skip) && matches.hasNext()) {
+            matches.next();
+            skipped++;
+        }
+    }
+}
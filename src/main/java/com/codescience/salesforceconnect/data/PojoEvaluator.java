@@ -0,0 +1,20 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import org.apache.olingo.server.api.ODataApplicationException;
+
+/**
+ * A node of a compiled filter expression. Each node evaluates its part of the expression against a BaseEntity
+ * implementation. Literals are parsed once when the node is built so evaluating a row does no parsing
+ */
+@FunctionalInterface
+public interface PojoEvaluator {
+
+    /**
+     * Method evaluates the expression node against the entity passed in
+     * @param entity BaseEntity implementation being evaluated
+     * @return Value of the expression for the entity (ex Boolean for comparisons, BigDecimal for arithmetic)
+     * @throws ODataApplicationException Exception thrown if the operands can't be evaluated
+     */
+    Object evaluate(BaseEntity entity) throws ODataApplicationException;
+}
@@ -0,0 +1,221 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Messages;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.expression.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A $filter expression compiled once into a tree of PojoEvaluator nodes. The compiled filter holds no per request
+ * state so it can be cached and shared by concurrent requests
+ */
+public class PojoFilter {
+
+    private final PojoEvaluator evaluator;
+    private final List<Condition> conditions;
+    private final boolean conditionsOnly;
+
+    /**
+     * Constructor sets the root node of the compiled expression
+     * @param evaluator Root node of the compiled expression
+     * @param conditions Property comparisons that are part of the top level AND of the expression
+     * @param conditionsOnly true if the expression is exactly the AND of the conditions
+     */
+    private PojoFilter(PojoEvaluator evaluator, List<Condition> conditions, boolean conditionsOnly) {
+        this.evaluator = evaluator;
+        this.conditions = conditions;
+        this.conditionsOnly = conditionsOnly;
+    }
+
+    /**
+     * Method compiles the filter expression for the type handled by the type translator
+     * @param filterExpression Filter expression to compile
+     * @param typeTranslator Type translator used to read the properties of the filtered type
+     * @return Compiled filter
+     * @throws ExpressionVisitException Exception thrown if the filter expression can't be visited
+     * @throws ODataApplicationException Exception thrown if the filter expression uses unsupported operations
+     */
+    public static PojoFilter compile(Expression filterExpression, ODataTypeTranslator typeTranslator) throws ExpressionVisitException, ODataApplicationException {
+        List<Condition> conditions = new ArrayList<>();
+        boolean conditionsOnly = collectConditions(filterExpression, conditions);
+        return new PojoFilter(filterExpression.accept(new PojoFilterExpressionVisitor(typeTranslator)), Collections.unmodifiableList(conditions), conditionsOnly);
+    }
+
+    /**
+     * Method returns the comparisons between a property and a literal found in the top level AND of the expression.
+     * Every entity matching the filter matches each of these conditions, so any of them can be used to select candidates from an index
+     * @return List of conditions, empty if there are none
+     */
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    /**
+     * Method returns true if the filter is exactly the AND of its conditions. In that case an entity that matches all
+     * the conditions matches the filter, so an index lookup answers the filter without evaluating it
+     * @return true if the expression only contains the conditions
+     */
+    public boolean isConditionsOnly() {
+        return conditionsOnly;
+    }
+
+    /**
+     * Method returns true if the entity passed in matches the filter
+     * @param entity BaseEntity implementation to evaluate
+     * @return true if the entity matches the filter
+     * @throws ODataApplicationException Exception thrown if the filter doesn't evaluate to a boolean or fails on the
+     * values of the entity (ex a division by zero)
+     */
+    public boolean matches(BaseEntity entity) throws ODataApplicationException {
+        Object result;
+        try {
+            result = evaluator.evaluate(entity);
+        } catch (RuntimeException e) {
+            throw new ODataApplicationException(Messages.ERROR_EVALUATING_FILTER + e.getMessage(), HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH, e);
+        }
+        if (result instanceof Boolean) {
+            return (Boolean) result;
+        }
+        throw new ODataApplicationException("A filter expression must evaluate to type Edm.Boolean", HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH);
+    }
+
+    /**
+     * Method walks the top level AND of the expression and collects the comparisons between a primitive property and a literal
+     * @param expression Expression to inspect
+     * @param conditions List the conditions are added to
+     * @return true if the expression was entirely collected as conditions
+     * @throws ODataApplicationException Exception thrown if a literal can't be parsed
+     */
+    private static boolean collectConditions(Expression expression, List<Condition> conditions) throws ODataApplicationException {
+        if (!(expression instanceof Binary)) {
+            return false;
+        }
+        Binary binary = (Binary) expression;
+        BinaryOperatorKind operator = binary.getOperator();
+        if (operator == BinaryOperatorKind.AND) {
+            boolean leftCollected = collectConditions(binary.getLeftOperand(), conditions);
+            boolean rightCollected = collectConditions(binary.getRightOperand(), conditions);
+            return leftCollected && rightCollected;
+        } else if (operator == BinaryOperatorKind.EQ || operator == BinaryOperatorKind.GT || operator == BinaryOperatorKind.GE
+                || operator == BinaryOperatorKind.LT || operator == BinaryOperatorKind.LE) {
+            String leftProperty = getPropertyName(binary.getLeftOperand());
+            String rightProperty = getPropertyName(binary.getRightOperand());
+            if ((leftProperty != null) && (binary.getRightOperand() instanceof Literal)) {
+                conditions.add(new Condition(leftProperty, operator, PojoFilterExpressionVisitor.parseLiteral((Literal) binary.getRightOperand())));
+                return true;
+            } else if ((rightProperty != null) && (binary.getLeftOperand() instanceof Literal)) {
+                // Literal on the left, ex 100 lt CostPerUnit is CostPerUnit gt 100
+                conditions.add(new Condition(rightProperty, reverse(operator), PojoFilterExpressionVisitor.parseLiteral((Literal) binary.getLeftOperand())));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method returns the name of the primitive property if the expression is a simple member
+     * @param expression Expression to inspect
+     * @return Name of the property or null if the expression is not a simple member
+     */
+    private static String getPropertyName(Expression expression) {
+        if (expression instanceof Member) {
+            List<UriResource> uriResourceParts = ((Member) expression).getResourcePath().getUriResourceParts();
+            if ((uriResourceParts.size() == 1) && (uriResourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+                return ((UriResourcePrimitiveProperty) uriResourceParts.get(0)).getProperty().getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method returns the operator to use when the operands of the comparison are swapped
+     * @param operator Comparison operator
+     * @return Operator with the operands swapped
+     */
+    private static BinaryOperatorKind reverse(BinaryOperatorKind operator) {
+        if (operator == BinaryOperatorKind.GT) {
+            return BinaryOperatorKind.LT;
+        } else if (operator == BinaryOperatorKind.GE) {
+            return BinaryOperatorKind.LE;
+        } else if (operator == BinaryOperatorKind.LT) {
+            return BinaryOperatorKind.GT;
+        } else if (operator == BinaryOperatorKind.LE) {
+            return BinaryOperatorKind.GE;
+        }
+        return operator;
+    }
+
+    /**
+     * Comparison between a property and a constant value (ex ProductType eq 'Life')
+     */
+    public static class Condition {
+        private final String propertyName;
+        private final BinaryOperatorKind operator;
+        private final Object value;
+
+        /**
+         * Constructor sets the parts of the comparison
+         * @param propertyName Name of the property
+         * @param operator Comparison operator
+         * @param value Constant value the property is compared to
+         */
+        public Condition(String propertyName, BinaryOperatorKind operator, Object value) {
+            this.propertyName = propertyName;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        /**
+         * Method returns the name of the property
+         * @return Name of the property
+         */
+        public String getPropertyName() {
+            return propertyName;
+        }
+
+        /**
+         * Method returns the comparison operator
+         * @return Comparison operator
+         */
+        public BinaryOperatorKind getOperator() {
+            return operator;
+        }
+
+        /**
+         * Method returns the constant value the property is compared to
+         * @return Constant value
+         */
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Unchecked exception wrapping the ODataApplicationException thrown while evaluating the filter inside an Iterator
+     */
+    static final class EvaluationException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor used to wrap the exception
+         * @param cause Exception thrown by the filter
+         */
+        EvaluationException(ODataApplicationException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized ODataApplicationException getCause() {
+            return (ODataApplicationException) super.getCause();
+        }
+    }
+}
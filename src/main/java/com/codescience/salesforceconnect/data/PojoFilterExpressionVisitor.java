@@ -1,6 +1,7 @@
 package com.codescience.salesforceconnect.data;
 
-import org.apache.olingo.commons.api.data.Entity;
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
 import org.apache.olingo.commons.api.edm.EdmEnumType;
 import org.apache.olingo.commons.api.edm.EdmType;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
@@ -12,25 +13,34 @@ import org.apache.olingo.server.api.uri.UriResource;
 import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
 import org.apache.olingo.server.api.uri.queryoption.expression.*;
 
-import javax.swing.text.DateFormatter;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Function;
 
-public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
-    Entity currentEntity;
+/**
+ * Expression visitor that compiles a $filter expression into a tree of PojoEvaluator nodes. The tree is built once
+ * per filter and then evaluated directly against each BaseEntity implementation. Member values are read through the
+ * property accessors of the type translator so the Pojo doesn't need to be translated to an Olingo entity
+ */
+public class PojoFilterExpressionVisitor implements ExpressionVisitor<PojoEvaluator> {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    public PojoFilterExpressionVisitor(Entity currentEntity) {
-        this.currentEntity = currentEntity;
+    ODataTypeTranslator typeTranslator;
+
+    /**
+     * Constructor sets the translator used to read the properties of the filtered type
+     * @param typeTranslator Type translator for the type being filtered
+     */
+    public PojoFilterExpressionVisitor(ODataTypeTranslator typeTranslator) {
+        this.typeTranslator = typeTranslator;
     }
 
     @Override
-    public Object visitBinaryOperator(BinaryOperatorKind operator, Object left, Object right) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitBinaryOperator(BinaryOperatorKind operator, PojoEvaluator left, PojoEvaluator right) throws ExpressionVisitException, ODataApplicationException {
         // Binary Operators are split up in three different kinds. Up to the kind of the
         // operator it can be applied to different types
         //   - Arithmetic operations like add, minus, modulo, etc. are allowed on numeric
@@ -38,24 +48,31 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
         //   - Logical operations are allowed on numeric types and also Edm.String
         //   - Boolean operations like and, or are allowed on Edm.Boolean
         // A detailed explanation can be found in OData Version 4.0 Part 2: URL Conventions
-        TypeWrapper tw = new TypeWrapper(left,right);
-
         if (operator == BinaryOperatorKind.ADD
                 || operator == BinaryOperatorKind.MOD
                 || operator == BinaryOperatorKind.MUL
                 || operator == BinaryOperatorKind.DIV
                 || operator == BinaryOperatorKind.SUB) {
-            return evaluateArithmeticOperation(operator, tw);
+            return entity -> evaluateArithmeticOperation(operator, left.evaluate(entity), right.evaluate(entity));
         } else if (operator == BinaryOperatorKind.EQ
                 || operator == BinaryOperatorKind.NE
                 || operator == BinaryOperatorKind.GE
                 || operator == BinaryOperatorKind.GT
                 || operator == BinaryOperatorKind.LE
                 || operator == BinaryOperatorKind.LT) {
-            return evaluateComparisonOperation(operator, tw);
+            return entity -> evaluateComparisonOperation(operator, left.evaluate(entity), right.evaluate(entity));
         } else if (operator == BinaryOperatorKind.AND
                 || operator == BinaryOperatorKind.OR) {
-            return evaluateBooleanOperation(operator, tw);
+            return entity -> {
+                // Short circuit when the left operand already decides the result
+                Object leftValue = left.evaluate(entity);
+                if ((operator == BinaryOperatorKind.AND) && Boolean.FALSE.equals(leftValue)) {
+                    return Boolean.FALSE;
+                } else if ((operator == BinaryOperatorKind.OR) && Boolean.TRUE.equals(leftValue)) {
+                    return Boolean.TRUE;
+                }
+                return evaluateBooleanOperation(operator, leftValue, right.evaluate(entity));
+            };
         } else {
             // HAS and IN are not implemented
             throw new ODataApplicationException("Binary operation " + operator.name() + " is not implemented", HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ENGLISH);
@@ -63,38 +80,43 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
     }
 
     @Override
-    public Object visitUnaryOperator(UnaryOperatorKind unaryOperatorKind, Object operand) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitUnaryOperator(UnaryOperatorKind unaryOperatorKind, PojoEvaluator operand) throws ExpressionVisitException, ODataApplicationException {
         // OData allows two different unary operators. We have to take care, that the type of the
         // operand fits to the operand
-
-        if(unaryOperatorKind == UnaryOperatorKind.NOT && operand instanceof Boolean) {
-            // 1.) boolean negation
-            return !(Boolean) operand;
-        } else if(unaryOperatorKind == UnaryOperatorKind.MINUS && operand instanceof Number){
-            // 2.) arithmetic minus
-            Number number = (Number) operand;
-            BigDecimal bigDecimal = new BigDecimal(number.doubleValue());
-            return bigDecimal.negate();
-        }
-        // Operation not processed, throw an exception
-        throw new ODataApplicationException("Invalid type for unary operator",
-                HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH);
+        return entity -> {
+            Object value = operand.evaluate(entity);
+            if (unaryOperatorKind == UnaryOperatorKind.NOT && value instanceof Boolean) {
+                // 1.) boolean negation
+                return !(Boolean) value;
+            } else if (unaryOperatorKind == UnaryOperatorKind.MINUS && value instanceof Number) {
+                // 2.) arithmetic minus
+                Number number = (Number) value;
+                BigDecimal bigDecimal = new BigDecimal(number.doubleValue());
+                return bigDecimal.negate();
+            }
+            // Operation not processed, throw an exception
+            throw new ODataApplicationException("Invalid type for unary operator",
+                    HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH);
+        };
     }
 
     @Override
-    public Object visitMethodCall(MethodKind methodCall, List<Object> parameters) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitMethodCall(MethodKind methodCall, List<PojoEvaluator> parameters) throws ExpressionVisitException, ODataApplicationException {
         // To keep this tutorial small and simple, we implement only one method call
         // contains(String, String) -> Boolean
         if(methodCall == MethodKind.CONTAINS) {
-            if(parameters.get(0) instanceof String && parameters.get(1) instanceof String) {
-                String valueParam1 = (String) parameters.get(0);
-                String valueParam2 = (String) parameters.get(1);
-
-                return valueParam1.contains(valueParam2);
-            } else {
-                throw new ODataApplicationException("Contains needs two parametes of type Edm.String",
-                        HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH);
-            }
+            PojoEvaluator parameter1 = parameters.get(0);
+            PojoEvaluator parameter2 = parameters.get(1);
+            return entity -> {
+                Object value1 = parameter1.evaluate(entity);
+                Object value2 = parameter2.evaluate(entity);
+                if (value1 instanceof String && value2 instanceof String) {
+                    return ((String) value1).contains((String) value2);
+                } else {
+                    throw new ODataApplicationException("Contains needs two parametes of type Edm.String",
+                            HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH);
+                }
+            };
         } else {
             throw new ODataApplicationException("Method call " + methodCall + " not implemented",
                     HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ENGLISH);
@@ -102,45 +124,20 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
     }
 
     @Override
-    public Object visitLambdaExpression(String s, String s1, Expression expression) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitLambdaExpression(String s, String s1, Expression expression) throws ExpressionVisitException, ODataApplicationException {
         throw new ODataApplicationException("Type literals are not implemented",
                 HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
     }
 
     @Override
-    public Object visitLiteral(Literal literal) throws ExpressionVisitException, ODataApplicationException {
-        // To keep this tutorial simple, our filter expression visitor supports only Edm.Int32 and Edm.String
-        // In real world scenarios it can be difficult to guess the type of an literal.
-        // We can be sure, that the literal is a valid OData literal because the URI Parser checks
-        // the lexicographical structure
-        // String literals start and end with an single quotation mark
-        String literalAsString = literal.getText();
-        if(literal.getType() instanceof EdmString) {
-            String stringLiteral = "";
-            if(literal.getText().length() > 2) {
-                stringLiteral = literalAsString.substring(1, literalAsString.length() - 1);
-            }
-
-            return stringLiteral;
-        } else if (literal.getType() instanceof EdmDate) {
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            return LocalDate.parse(literal.getText(),dtf);
-        } else if (literal.getType() instanceof EdmBoolean) {
-            return Boolean.parseBoolean(literal.getText());
-        }
-        else {
-            // Try to convert the literal into an Java Integer
-            try {
-                return Integer.parseInt(literalAsString);
-            } catch(NumberFormatException e) {
-                throw new ODataApplicationException("Only Edm.Int32 and Edm.String literals are implemented",
-                        HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ENGLISH);
-            }
-        }
+    public PojoEvaluator visitLiteral(Literal literal) throws ExpressionVisitException, ODataApplicationException {
+        // The literal is parsed once when the filter is compiled, the node returns the parsed constant
+        Object value = parseLiteral(literal);
+        return entity -> value;
     }
 
     @Override
-    public Object visitMember(Member member) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitMember(Member member) throws ExpressionVisitException, ODataApplicationException {
 
         final List<UriResource> uriResourceParts = member.getResourcePath().getUriResourceParts();
 
@@ -150,7 +147,12 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
 
         if(uriResourceParts.size() == 1 && uriResourceParts.get(0) instanceof UriResourcePrimitiveProperty) {
             UriResourcePrimitiveProperty uriResourceProperty = (UriResourcePrimitiveProperty) uriResourceParts.get(0);
-            return currentEntity.getProperty(uriResourceProperty.getProperty().getName()).getValue();
+            Function<BaseEntity, Object> accessor = typeTranslator.getPropertyAccessor(uriResourceProperty.getProperty().getName());
+            if (accessor == null) {
+                throw new ODataApplicationException("Property " + uriResourceProperty.getProperty().getName() + " can't be used in filter expressions"
+                        , HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ENGLISH);
+            }
+            return accessor::apply;
         } else {
             // The OData specification allows in addition complex properties and navigation
             // properties with a target cardinality 0..1 or 1.
@@ -165,54 +167,93 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
     }
 
     @Override
-    public Object visitAlias(String s) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitAlias(String s) throws ExpressionVisitException, ODataApplicationException {
         throw new ODataApplicationException("Type literals are not implemented",
                 HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
     }
 
     @Override
-    public Object visitTypeLiteral(EdmType edmType) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitTypeLiteral(EdmType edmType) throws ExpressionVisitException, ODataApplicationException {
         throw new ODataApplicationException("Type literals are not implemented",
                 HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
     }
 
     @Override
-    public Object visitLambdaReference(String s) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitLambdaReference(String s) throws ExpressionVisitException, ODataApplicationException {
         throw new ODataApplicationException("Type literals are not implemented",
                 HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
     }
 
     @Override
-    public Object visitEnum(EdmEnumType edmEnumType, List<String> list) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitEnum(EdmEnumType edmEnumType, List<String> list) throws ExpressionVisitException, ODataApplicationException {
         throw new ODataApplicationException("Type literals are not implemented",
                 HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
     }
 
     @Override
-    public Object visitBinaryOperator(BinaryOperatorKind binaryOperatorKind, Object o, List<Object> list) throws ExpressionVisitException, ODataApplicationException {
+    public PojoEvaluator visitBinaryOperator(BinaryOperatorKind binaryOperatorKind, PojoEvaluator o, List<PojoEvaluator> list) throws ExpressionVisitException, ODataApplicationException {
         throw new ODataApplicationException("Type literals are not implemented",
                 HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
     }
 
+    /**
+     * Method parses the literal into the Java type used when evaluating the expression
+     * @param literal Literal from the filter expression
+     * @return String, LocalDate, Boolean or Integer value of the literal
+     * @throws ODataApplicationException Exception thrown if the literal type is not supported
+     */
+    static Object parseLiteral(Literal literal) throws ODataApplicationException {
+        // To keep this tutorial simple, our filter expression visitor supports only Edm.Int32 and Edm.String
+        // In real world scenarios it can be difficult to guess the type of an literal.
+        // We can be sure, that the literal is a valid OData literal because the URI Parser checks
+        // the lexicographical structure
+        // String literals start and end with an single quotation mark
+        String literalAsString = literal.getText();
+        if(literal.getType() instanceof EdmString) {
+            String stringLiteral = "";
+            if(literal.getText().length() > 2) {
+                stringLiteral = literalAsString.substring(1, literalAsString.length() - 1);
+            }
+
+            return stringLiteral;
+        } else if (literal.getType() instanceof EdmDate) {
+            return LocalDate.parse(literal.getText(), DATE_FORMATTER);
+        } else if (literal.getType() instanceof EdmBoolean) {
+            return Boolean.parseBoolean(literal.getText());
+        }
+        else {
+            // Try to convert the literal into an Java Integer
+            try {
+                return Integer.parseInt(literalAsString);
+            } catch(NumberFormatException e) {
+                throw new ODataApplicationException("Only Edm.Int32 and Edm.String literals are implemented",
+                        HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ENGLISH);
+            }
+        }
+    }
+
     /**
      * Method will perform a boolean Operation AND or OR if both types are or can be converted to Boolean
      * @param operator Binary Operator
-     * @param tw TypeWrapper containing left and right operands with conversions
+     * @param left Left operand
+     * @param right Right operand
      * @return A Boolean value of true or false
      * @throws ODataApplicationException Exception if conversion error occured or invalid types
      */
-    private Object evaluateBooleanOperation(BinaryOperatorKind operator, TypeWrapper tw)
+    private Object evaluateBooleanOperation(BinaryOperatorKind operator, Object left, Object right)
             throws ODataApplicationException {
+        Boolean leftBoolean = ValueComparator.toBoolean(left);
+        Boolean rightBoolean = ValueComparator.toBoolean(right);
 
         // First check that both operands are of type Boolean
-        if(tw.isBothBoolean()) {
+        if ((leftBoolean != null) && (rightBoolean != null)) {
 
             // Than calculate the result value
             if(operator == BinaryOperatorKind.AND) {
-                return tw.leftObjectConvertedToBoolean && tw.rightObjectConvertedToBoolean;
+                return leftBoolean && rightBoolean;
             } else {
                 // OR
-                return tw.leftObjectConvertedToBoolean || tw.rightObjectConvertedToBoolean;
+                return leftBoolean || rightBoolean;
             }
         } else {
             throw new ODataApplicationException("Boolean operations needs two numeric operands",
@@ -223,31 +264,12 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
     /**
      * Method compares two operands and returns the result
      * @param operator Operation being performed
-     * @param tw TypeWrapper containing left and right operands with conversions
+     * @param left Left operand
+     * @param right Right operand
      * @return Result of comparison
-     * @throws ODataApplicationException Exception thrown if parameters can't be evaluated or compared
      */
-    private Object evaluateComparisonOperation(BinaryOperatorKind operator, TypeWrapper tw) throws ODataApplicationException {
-        int result = 0;
-        // All types in our tutorial supports all logical operations, but we have to make sure that
-        // the types are equal
-        if ((tw.leftSourceObject == null) && (tw.rightSourceObject == null)) {
-            result = 0;
-        } else if (tw.leftSourceObject == null) {
-            result = -1;
-        } else if (tw.rightSourceObject == null) {
-            result = 1;
-        } else {
-            if (tw.isBothNumeric()) {
-                result = tw.leftObjectConvertedToNumber.compareTo(tw.rightObjectConvertedToNumber);
-            } else if (tw.isBothBoolean()) {
-                result = tw.leftObjectConvertedToBoolean.compareTo(tw.rightObjectConvertedToBoolean);
-            } else if (tw.isBothDate()) {
-                result = tw.leftObjectConvertedToDate.compareTo(tw.rightObjectConvertedToDate);
-            } else {
-                result = tw.leftObjectConvertedToString.compareTo(tw.rightObjectConvertedToString);
-            }
-        }
+    private Object evaluateComparisonOperation(BinaryOperatorKind operator, Object left, Object right) {
+        int result = ValueComparator.compare(left, right);
 
         if (operator == BinaryOperatorKind.EQ) {
             return result == 0;
@@ -268,15 +290,16 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
     /**
      * Method will evaluate arithmetic operations and return the result
      * @param operator Operator to perform
-     * @param tw TypeWrapper containing left and right operands with conversions
+     * @param left Left operand
+     * @param right Right operand
      * @return The value of the operation
      * @throws ODataApplicationException if an exception occurred trying to evaluate the types
      */
-    private Object evaluateArithmeticOperation(BinaryOperatorKind operator, TypeWrapper tw) throws ODataApplicationException {
+    private Object evaluateArithmeticOperation(BinaryOperatorKind operator, Object left, Object right) throws ODataApplicationException {
         // First check if the type of both operands is numerical
-        if (tw.isBothNumeric()) {
-            BigDecimal valueLeft = tw.leftObjectConvertedToNumber;
-            BigDecimal valueRight = tw.rightObjectConvertedToNumber;
+        if (ValueComparator.isNumeric(left) && ValueComparator.isNumeric(right)) {
+            BigDecimal valueLeft = ValueComparator.toBigDecimal((Number) left);
+            BigDecimal valueRight = ValueComparator.toBigDecimal((Number) right);
 
             // Than calculate the result value
             if(operator == BinaryOperatorKind.ADD) {
@@ -297,4 +320,4 @@ public class PojoFilterExpressionVisitor implements ExpressionVisitor<Object> {
             throw new ODataApplicationException("Arithmetic operations needs two numeric operands", HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,207 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Secondary index on a property of an entity type. A hash index answers equality lookups, a sorted index answers
+ * equality and range lookups (gt, ge, lt, le). The index is maintained incrementally by the storage on every write.
+ * Values are normalized the same way the filter comparison does (numbers by value, dates by day) and a lookup returns
+ * null whenever the index can't answer for sure, in which case the caller falls back to a full scan.
+ * Only stored properties should be indexed, computed properties (ex TotalCostAmount) change without a write to the entity
+ */
+public class PropertyIndex {
+
+    private final String propertyName;
+    private final Function<BaseEntity, Object> accessor;
+    private final boolean sorted;
+    private final Comparator<String> keyComparator;
+    private final ConcurrentMap<Object, ConcurrentNavigableMap<String, BaseEntity>> buckets;
+    private final ConcurrentNavigableMap<String, BaseEntity> nullBucket;
+    private volatile Class<?> valueClass;
+
+    /**
+     * Constructor creates an empty index
+     * @param propertyName Name of the indexed OData property
+     * @param accessor Accessor that reads the property from the BaseEntity
+     * @param sorted true for a sorted (range) index, false for a hash (equality) index
+     * @param keyComparator Comparator of the primary keys, entities of a bucket are kept in that order
+     */
+    public PropertyIndex(String propertyName, Function<BaseEntity, Object> accessor, boolean sorted, Comparator<String> keyComparator) {
+        this.propertyName = propertyName;
+        this.accessor = accessor;
+        this.sorted = sorted;
+        this.keyComparator = keyComparator;
+        this.buckets = sorted ? new ConcurrentSkipListMap<>() : new ConcurrentHashMap<>();
+        this.nullBucket = new ConcurrentSkipListMap<>(keyComparator);
+    }
+
+    /**
+     * Method returns the name of the indexed property
+     * @return Name of the OData property
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    /**
+     * Method returns true if the index supports range lookups
+     * @return true for a sorted index
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Method adds the entity to the index using the current value of the indexed property
+     * @param entity BaseEntity implementation to add
+     */
+    public void add(BaseEntity entity) {
+        Object value = normalize(accessor.apply(entity));
+        if (value == null) {
+            nullBucket.put(entity.getId(), entity);
+            return;
+        }
+        if (valueClass == null) {
+            valueClass = value.getClass();
+        }
+        buckets.computeIfAbsent(value, k -> new ConcurrentSkipListMap<>(keyComparator)).put(entity.getId(), entity);
+    }
+
+    /**
+     * Method removes the entity from the index. It must be called before the indexed property of the entity is changed
+     * @param entity BaseEntity implementation to remove
+     */
+    public void remove(BaseEntity entity) {
+        remove(entity.getId(), getKey(entity));
+    }
+
+    /**
+     * Method returns the key the entity is indexed under, the normalized value of the indexed property
+     * @param entity BaseEntity implementation
+     * @return Key of the entity, null if the property is null
+     */
+    public Object getKey(BaseEntity entity) {
+        return normalize(accessor.apply(entity));
+    }
+
+    /**
+     * Method moves the entity changed in place from the key it was indexed under to the key of its current value. The
+     * entity is added before it is removed, so lookups running meanwhile find it under either key. The callers filter
+     * the entities found, an entity found under its previous key is then discarded if it no longer matches
+     * @param entity BaseEntity implementation that was changed
+     * @param previousKey Key returned by getKey before the change
+     */
+    public void update(BaseEntity entity, Object previousKey) {
+        if (Objects.equals(getKey(entity), previousKey)) {
+            return;
+        }
+        add(entity);
+        remove(entity.getId(), previousKey);
+    }
+
+    /**
+     * Method removes the entity from the bucket of the key passed in
+     * @param id Primary key of the entity
+     * @param key Key the entity is indexed under
+     */
+    private void remove(String id, Object key) {
+        if (key == null) {
+            nullBucket.remove(id);
+            return;
+        }
+        // Writes of a type are serialized by the storage so the bucket can be dropped once it is empty
+        ConcurrentNavigableMap<String, BaseEntity> bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(id);
+            if (bucket.isEmpty()) {
+                buckets.remove(key, bucket);
+            }
+        }
+    }
+
+    /**
+     * Method returns the entities whose property matches the comparison with the value passed in.
+     * Results of an equality lookup are in primary key order, results of a range lookup are not ordered
+     * @param operator Comparison operator (EQ, GT, GE, LT or LE)
+     * @param value Value the property is compared to
+     * @return Matching entities, or null if the index can't answer the lookup
+     */
+    public Collection<BaseEntity> find(BinaryOperatorKind operator, Object value) {
+        Object key = normalize(value);
+        if ((key == null) || ((valueClass != null) && (valueClass != key.getClass())) || isBooleanString(key)) {
+            return null;
+        }
+
+        if (operator == BinaryOperatorKind.EQ) {
+            Map<String, BaseEntity> bucket = buckets.get(key);
+            return bucket == null ? Collections.emptyList() : bucket.values();
+        }
+        if (!sorted) {
+            return null;
+        }
+
+        // Nulls sort before any value so they match less than comparisons
+        ConcurrentNavigableMap<Object, ConcurrentNavigableMap<String, BaseEntity>> sortedBuckets = (ConcurrentNavigableMap<Object, ConcurrentNavigableMap<String, BaseEntity>>) buckets;
+        List<BaseEntity> result = new ArrayList<>();
+        if (operator == BinaryOperatorKind.GT) {
+            addAll(result, sortedBuckets.tailMap(key, false).values());
+        } else if (operator == BinaryOperatorKind.GE) {
+            addAll(result, sortedBuckets.tailMap(key, true).values());
+        } else if (operator == BinaryOperatorKind.LT) {
+            result.addAll(nullBucket.values());
+            addAll(result, sortedBuckets.headMap(key, false).values());
+        } else if (operator == BinaryOperatorKind.LE) {
+            result.addAll(nullBucket.values());
+            addAll(result, sortedBuckets.headMap(key, true).values());
+        } else {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Method adds the entities of all the buckets to the result list
+     * @param result List the entities are added to
+     * @param selectedBuckets Buckets to add
+     */
+    private void addAll(List<BaseEntity> result, Collection<ConcurrentNavigableMap<String, BaseEntity>> selectedBuckets) {
+        for (Map<String, BaseEntity> bucket : selectedBuckets) {
+            result.addAll(bucket.values());
+        }
+    }
+
+    /**
+     * Method normalizes a value the way the filter comparison sees it. Numbers become BigDecimals without trailing zeros
+     * and Dates become LocalDates in the system time zone
+     * @param value Value to normalize
+     * @return Normalized value or null
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Number) {
+            return ValueComparator.toBigDecimal((Number) value).stripTrailingZeros();
+        } else if (value instanceof Date) {
+            return LocalDate.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault());
+        }
+        return value;
+    }
+
+    /**
+     * Method returns true if the value is a String holding true or false. Those are compared as booleans by the filter
+     * so they can't be looked up in a String index
+     * @param value Value to inspect
+     * @return true if the value is a boolean String
+     */
+    private static boolean isBooleanString(Object value) {
+        return (value instanceof String) && (ValueComparator.toBoolean(value) != null);
+    }
+}
@@ -0,0 +1,105 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * $filter translated for a database: the condition evaluated by the database and, if it doesn't answer the whole
+ * filter, the compiled filter evaluated in memory on the entities that match the condition
+ */
+final class QueryFilter {
+    static final QueryFilter NONE = new QueryFilter(null, Collections.emptyList(), null);
+
+    private final String where;
+    private final List<Object> parameters;
+    private final PojoFilter memoryFilter;
+
+    /**
+     * Constructor used to populate the filter
+     * @param where Condition, null if the database selects every entity
+     * @param parameters Values of the parameters of the condition
+     * @param memoryFilter Compiled filter evaluated in memory, null if the condition answers the filter
+     */
+    private QueryFilter(String where, List<Object> parameters, PojoFilter memoryFilter) {
+        this.where = where;
+        this.parameters = parameters;
+        this.memoryFilter = memoryFilter;
+    }
+
+    /**
+     * Method translates the filter expression. If the whole expression can't be translated the conditions of its
+     * top level AND that can be translated are evaluated by the database and the expression in memory
+     * @param filterExpression Filter expression
+     * @param visitors Creates the visitor translating the filter, adding the parameters to the list passed in
+     * @param odtt Type translator used to read the properties in memory
+     * @return Filter
+     * @throws ExpressionVisitException Exception thrown if the filter expression can't be visited
+     * @throws ODataApplicationException Exception thrown if the filter expression can't be compiled
+     */
+    static QueryFilter compile(Expression filterExpression, Function<List<Object>, QueryFilterExpressionVisitor> visitors,
+                               ODataTypeTranslator odtt) throws ExpressionVisitException, ODataApplicationException {
+        List<Object> parameters = new ArrayList<>();
+        String where = visitors.apply(parameters).translate(filterExpression);
+        if (where != null) {
+            return new QueryFilter(where, Collections.unmodifiableList(parameters), null);
+        }
+
+        PojoFilter pojoFilter = PojoFilter.compile(filterExpression, odtt);
+        List<Object> conditionParameters = new ArrayList<>();
+        QueryFilterExpressionVisitor visitor = visitors.apply(conditionParameters);
+        StringJoiner conditions = new StringJoiner(" and ");
+        for (PojoFilter.Condition condition : pojoFilter.getConditions()) {
+            String translated = visitor.translate(condition.getPropertyName(), condition.getOperator(), condition.getValue());
+            if (translated != null) {
+                conditions.add(translated);
+            }
+        }
+        String conditionsWhere = conditions.length() == 0 ? null : conditions.toString();
+        return new QueryFilter(conditionsWhere, Collections.unmodifiableList(conditionParameters), pojoFilter);
+    }
+
+    /**
+     * Method returns the filter restricted by another condition evaluated by the database (ex the Claims of a Policy)
+     * @param condition Condition, its placeholder follows the placeholders of this filter
+     * @param parameter Value of the parameter of the condition
+     * @return New filter with the same filter evaluated in memory
+     */
+    QueryFilter and(String condition, Object parameter) {
+        List<Object> andParameters = new ArrayList<>(parameters);
+        andParameters.add(parameter);
+        String andWhere = where == null ? condition : "(" + where + ") and " + condition;
+        return new QueryFilter(andWhere, Collections.unmodifiableList(andParameters), memoryFilter);
+    }
+
+    /**
+     * Method returns the condition evaluated by the database
+     * @return Condition, null if the database selects every entity
+     */
+    String getWhere() {
+        return where;
+    }
+
+    /**
+     * Method returns the values of the parameters of the condition
+     * @return Parameter values in the order of their placeholders
+     */
+    List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Method returns the filter evaluated in memory on the entities selected by the database
+     * @return Compiled filter, null if the condition answers the filter
+     */
+    PojoFilter getMemoryFilter() {
+        return memoryFilter;
+    }
+}
@@ -0,0 +1,541 @@
+package com.codescience.salesforceconnect.data;
+
+import org.apache.olingo.commons.api.edm.EdmEnumType;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.expression.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expression visitor that translates a $filter expression into a query condition with parameters, so the database
+ * evaluates the filter. The syntax is shared by JPQL and SQL, the subclasses write the parameter placeholders.
+ * It supports what PojoFilterExpressionVisitor supports and gives the same results:
+ * comparisons (a null sorts before any value), add, sub, mul and mod, and, or, not, minus and contains.
+ * An expression that can't be translated with the same results is visited as null, the caller then evaluates it
+ * with a PojoFilter: computed properties (ex TotalCostAmount), div (rounded half even in memory), comparisons between
+ * two nullable values, literals that don't match the type of the property (ex a number compared to a String)
+ */
+public abstract class QueryFilterExpressionVisitor implements ExpressionVisitor<QueryFilterExpressionVisitor.QueryExpression> {
+    private static final char LIKE_ESCAPE = '!';
+    // Marks a parameter in the text of the nodes, it is replaced by the placeholder once the condition is complete
+    private static final char PARAMETER = '?';
+
+    private final Map<String, QueryProperty> properties;
+    private final List<Object> parameters;
+
+    /**
+     * Constructor sets the persistent properties of the filtered type and the list the parameters are added to
+     * @param properties Persistent properties by OData property name
+     * @param parameters Values of the parameters in the order of their placeholders
+     */
+    protected QueryFilterExpressionVisitor(Map<String, QueryProperty> properties, List<Object> parameters) {
+        this.properties = properties;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Method translates the filter expression into a condition. Its parameters are added to the parameters list
+     * @param filterExpression Filter expression
+     * @return Condition or null if the expression can't be translated
+     * @throws ExpressionVisitException Exception thrown if the filter expression can't be visited
+     * @throws ODataApplicationException Exception thrown if a literal can't be parsed
+     */
+    public String translate(Expression filterExpression) throws ExpressionVisitException, ODataApplicationException {
+        return render(toCondition(filterExpression.accept(this)));
+    }
+
+    /**
+     * Method translates the comparison between a property and a constant value (ex a PojoFilter.Condition). Its
+     * parameters are added to the parameters list
+     * @param propertyName Name of the OData property
+     * @param operator Comparison operator
+     * @param value Constant value as parsed from the literal
+     * @return Condition or null if the comparison can't be translated
+     */
+    public String translate(String propertyName, BinaryOperatorKind operator, Object value) {
+        QueryProperty property = properties.get(propertyName);
+        if ((property == null) || (value == null)) {
+            return null;
+        }
+        return render(compare(operator, QueryExpression.member(property), QueryExpression.literal(value)));
+    }
+
+    @Override
+    public QueryExpression visitBinaryOperator(BinaryOperatorKind operator, QueryExpression left, QueryExpression right) throws ExpressionVisitException, ODataApplicationException {
+        if ((left == null) || (right == null)) {
+            return null;
+        }
+        if (operator == BinaryOperatorKind.ADD
+                || operator == BinaryOperatorKind.MOD
+                || operator == BinaryOperatorKind.MUL
+                || operator == BinaryOperatorKind.SUB) {
+            return arithmetic(operator, left, right);
+        } else if (operator == BinaryOperatorKind.EQ
+                || operator == BinaryOperatorKind.NE
+                || operator == BinaryOperatorKind.GE
+                || operator == BinaryOperatorKind.GT
+                || operator == BinaryOperatorKind.LE
+                || operator == BinaryOperatorKind.LT) {
+            return compare(operator, left, right);
+        } else if (operator == BinaryOperatorKind.AND
+                || operator == BinaryOperatorKind.OR) {
+            QueryExpression leftCondition = toCondition(left);
+            QueryExpression rightCondition = toCondition(right);
+            if ((leftCondition == null) || (rightCondition == null)) {
+                return null;
+            }
+            String keyword = operator == BinaryOperatorKind.AND ? " and " : " or ";
+            return QueryExpression.condition("(" + leftCondition.query + keyword + rightCondition.query + ")",
+                    concat(leftCondition.parameters, rightCondition.parameters));
+        }
+        // DIV is rounded half even in memory, HAS and IN are not implemented
+        return null;
+    }
+
+    @Override
+    public QueryExpression visitUnaryOperator(UnaryOperatorKind unaryOperatorKind, QueryExpression operand) throws ExpressionVisitException, ODataApplicationException {
+        if (operand == null) {
+            return null;
+        } else if (unaryOperatorKind == UnaryOperatorKind.NOT) {
+            QueryExpression condition = toCondition(operand);
+            return condition == null ? null : QueryExpression.condition("not " + condition.query, condition.parameters);
+        } else if ((unaryOperatorKind == UnaryOperatorKind.MINUS) && isNumeric(operand.type)) {
+            if (operand.literal != null) {
+                return QueryExpression.literal(ValueComparator.toBigDecimal((Number) operand.literal).negate());
+            }
+            return QueryExpression.value("-" + operand.query, operand.type, operand.nullable, operand.parameters);
+        }
+        return null;
+    }
+
+    @Override
+    public QueryExpression visitMethodCall(MethodKind methodCall, List<QueryExpression> parameters) throws ExpressionVisitException, ODataApplicationException {
+        if ((methodCall != MethodKind.CONTAINS) || (parameters.get(0) == null) || (parameters.get(1) == null)) {
+            return null;
+        }
+        QueryExpression value = parameters.get(0);
+        QueryExpression searched = parameters.get(1);
+        // The searched String is escaped so % and _ are matched literally
+        if ((value.literal != null) || !String.class.equals(value.type) || !(searched.literal instanceof String)) {
+            return null;
+        }
+        String pattern = "%" + escapeLike((String) searched.literal) + "%";
+        return QueryExpression.condition(value.query + " like " + PARAMETER + " escape '" + LIKE_ESCAPE + "'",
+                concat(value.parameters, Collections.singletonList(pattern)));
+    }
+
+    @Override
+    public QueryExpression visitLambdaExpression(String s, String s1, Expression expression) throws ExpressionVisitException, ODataApplicationException {
+        return null;
+    }
+
+    @Override
+    public QueryExpression visitLiteral(Literal literal) throws ExpressionVisitException, ODataApplicationException {
+        // Literals are parsed like the in memory filter, an unsupported literal fails the same way
+        return QueryExpression.literal(PojoFilterExpressionVisitor.parseLiteral(literal));
+    }
+
+    @Override
+    public QueryExpression visitMember(Member member) throws ExpressionVisitException, ODataApplicationException {
+        List<UriResource> uriResourceParts = member.getResourcePath().getUriResourceParts();
+        if ((uriResourceParts.size() != 1) || !(uriResourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+            return null;
+        }
+        QueryProperty property = properties.get(((UriResourcePrimitiveProperty) uriResourceParts.get(0)).getProperty().getName());
+        return property == null ? null : QueryExpression.member(property);
+    }
+
+    @Override
+    public QueryExpression visitAlias(String s) throws ExpressionVisitException, ODataApplicationException {
+        return null;
+    }
+
+    @Override
+    public QueryExpression visitTypeLiteral(EdmType edmType) throws ExpressionVisitException, ODataApplicationException {
+        return null;
+    }
+
+    @Override
+    public QueryExpression visitLambdaReference(String s) throws ExpressionVisitException, ODataApplicationException {
+        return null;
+    }
+
+    @Override
+    public QueryExpression visitEnum(EdmEnumType edmEnumType, List<String> list) throws ExpressionVisitException, ODataApplicationException {
+        return null;
+    }
+
+    @Override
+    public QueryExpression visitBinaryOperator(BinaryOperatorKind binaryOperatorKind, QueryExpression o, List<QueryExpression> list) throws ExpressionVisitException, ODataApplicationException {
+        return null;
+    }
+
+    /**
+     * Method returns the placeholder of a parameter
+     * @param position Position of the parameter in the parameters list, from 1
+     * @return Placeholder (ex ?1 in JPQL)
+     */
+    protected abstract String placeholder(int position);
+
+    /**
+     * Method translates a comparison. A null value is smaller than any other value in memory, so a comparison between
+     * a nullable property and a constant also matches the nulls when a smaller value matches
+     * @param operator Comparison operator
+     * @param left Left operand
+     * @param right Right operand
+     * @return Condition or null if the comparison can't be translated
+     */
+    private QueryExpression compare(BinaryOperatorKind operator, QueryExpression left, QueryExpression right) {
+        if (left.condition || right.condition || ((left.literal != null) && (right.literal != null))) {
+            return null;
+        }
+        QueryExpression leftValue;
+        QueryExpression rightValue;
+        if (right.literal != null) {
+            leftValue = left;
+            rightValue = bind(right.literal, left.type);
+        } else if (left.literal != null) {
+            leftValue = bind(left.literal, right.type);
+            rightValue = right;
+        } else if (!left.nullable && !right.nullable && isComparable(left.type, right.type)) {
+            leftValue = left;
+            rightValue = right;
+        } else {
+            return null;
+        }
+        if ((leftValue == null) || (rightValue == null)) {
+            return null;
+        }
+
+        String comparison = leftValue.query + " " + toOperator(operator) + " " + rightValue.query;
+        List<Object> comparisonParameters = concat(leftValue.parameters, rightValue.parameters);
+        if (left.member && left.nullable && matchesSmaller(operator)) {
+            return QueryExpression.condition("(" + comparison + " or " + left.query + " is null)", comparisonParameters);
+        } else if (right.member && right.nullable && matchesSmaller(reverse(operator))) {
+            return QueryExpression.condition("(" + comparison + " or " + right.query + " is null)", comparisonParameters);
+        }
+        return QueryExpression.condition(comparison, comparisonParameters);
+    }
+
+    /**
+     * Method translates an arithmetic operation between two numbers. Mod is only translated for Integers, in memory
+     * it truncates the operands
+     * @param operator Arithmetic operator
+     * @param left Left operand
+     * @param right Right operand
+     * @return Value or null if the operation can't be translated
+     */
+    private QueryExpression arithmetic(BinaryOperatorKind operator, QueryExpression left, QueryExpression right) {
+        if (!isNumeric(left.type) || !isNumeric(right.type)) {
+            return null;
+        }
+        Class<?> type = Integer.class.equals(left.type) && Integer.class.equals(right.type) ? Integer.class : BigDecimal.class;
+        QueryExpression leftValue = left.literal != null ? bind(left.literal, type) : left;
+        QueryExpression rightValue = right.literal != null ? bind(right.literal, type) : right;
+        if ((leftValue == null) || (rightValue == null)) {
+            return null;
+        }
+        boolean nullable = left.nullable || right.nullable;
+        List<Object> valueParameters = concat(leftValue.parameters, rightValue.parameters);
+        if (operator == BinaryOperatorKind.MOD) {
+            // A modulo by zero is left to the in memory filter, which rejects it as a bad request
+            boolean zeroDivisor = (right.literal instanceof Number) && (((Number) right.literal).doubleValue() == 0);
+            return Integer.class.equals(type) && !zeroDivisor
+                    ? QueryExpression.value("mod(" + leftValue.query + ", " + rightValue.query + ")", type, nullable, valueParameters)
+                    : null;
+        }
+        String queryOperator = operator == BinaryOperatorKind.ADD ? " + " : operator == BinaryOperatorKind.SUB ? " - " : " * ";
+        return QueryExpression.value("(" + leftValue.query + queryOperator + rightValue.query + ")", type, nullable, valueParameters);
+    }
+
+    /**
+     * Method returns the expression as a condition. A Boolean value (ex the Approved property) is true when it is true
+     * @param expression Translated expression, can be null
+     * @return Condition or null if the expression is not a condition
+     */
+    private QueryExpression toCondition(QueryExpression expression) {
+        if (expression == null) {
+            return null;
+        } else if (expression.condition) {
+            return expression;
+        } else if ((expression.literal == null) && Boolean.class.equals(expression.type) && !expression.nullable) {
+            return QueryExpression.condition(expression.query + " = true", expression.parameters);
+        }
+        return null;
+    }
+
+    /**
+     * Method writes the condition, its parameters are added to the parameters list in the order of their placeholders
+     * @param condition Translated condition, can be null
+     * @return Condition or null if there is none
+     */
+    private String render(QueryExpression condition) {
+        if (condition == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder(condition.query.length());
+        int parameterIndex = 0;
+        for (int i = 0; i < condition.query.length(); i++) {
+            char c = condition.query.charAt(i);
+            if (c == PARAMETER) {
+                parameters.add(condition.parameters.get(parameterIndex++));
+                query.append(placeholder(parameters.size()));
+            } else {
+                query.append(c);
+            }
+        }
+        return query.toString();
+    }
+
+    /**
+     * Method creates the parameter of a literal, converted to the type it is compared with
+     * @param value Constant value as parsed from the literal
+     * @param type Type of the other operand
+     * @return Parameter node or null if the value can't be converted
+     */
+    private static QueryExpression bind(Object value, Class<?> type) {
+        Object converted = null;
+        if (String.class.equals(type) && (value instanceof String)) {
+            converted = value;
+        } else if (Boolean.class.equals(type) && (value instanceof Boolean)) {
+            converted = value;
+        } else if (Integer.class.equals(type) && (value instanceof Integer)) {
+            converted = value;
+        } else if (BigDecimal.class.equals(type) && (value instanceof Number)) {
+            converted = ValueComparator.toBigDecimal((Number) value);
+        } else if (Date.class.equals(type) && (value instanceof LocalDate)) {
+            // Date properties are stored as days, the day of the literal is compared
+            converted = ValueCodec.fromEpochDay((int) ((LocalDate) value).toEpochDay());
+        }
+        return converted == null ? null : QueryExpression.value(String.valueOf(PARAMETER), type, false, Collections.singletonList(converted));
+    }
+
+    /**
+     * Method returns the parameters of two nodes, in the order the nodes are written
+     * @param first Parameters of the first node
+     * @param second Parameters of the second node
+     * @return Parameters of both nodes
+     */
+    private static List<Object> concat(List<Object> first, List<Object> second) {
+        if (first.isEmpty()) {
+            return second;
+        } else if (second.isEmpty()) {
+            return first;
+        }
+        List<Object> both = new ArrayList<>(first.size() + second.size());
+        both.addAll(first);
+        both.addAll(second);
+        return both;
+    }
+
+    /**
+     * Method escapes the wildcards of a like pattern
+     * @param value String searched
+     * @return Escaped String
+     */
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c == '%') || (c == '_') || (c == LIKE_ESCAPE)) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Method returns true if a value smaller than the other operand satisfies the comparison
+     * @param operator Comparison operator, with the nullable operand on the left
+     * @return true for ne, lt and le
+     */
+    private static boolean matchesSmaller(BinaryOperatorKind operator) {
+        return (operator == BinaryOperatorKind.NE) || (operator == BinaryOperatorKind.LT) || (operator == BinaryOperatorKind.LE);
+    }
+
+    /**
+     * Method returns the operator of the comparison with the operands swapped (ex lt for gt)
+     * @param operator Comparison operator
+     * @return Reversed operator
+     */
+    private static BinaryOperatorKind reverse(BinaryOperatorKind operator) {
+        switch (operator) {
+            case GT:
+                return BinaryOperatorKind.LT;
+            case GE:
+                return BinaryOperatorKind.LE;
+            case LT:
+                return BinaryOperatorKind.GT;
+            case LE:
+                return BinaryOperatorKind.GE;
+            default:
+                // EQ and NE are symmetric
+                return operator;
+        }
+    }
+
+    /**
+     * Method returns true if the type is a number
+     * @param type Type of a value
+     * @return true for Integer and BigDecimal
+     */
+    private static boolean isNumeric(Class<?> type) {
+        return Integer.class.equals(type) || BigDecimal.class.equals(type);
+    }
+
+    /**
+     * Method returns true if values of the two types are compared the same way in memory and in the database
+     * @param left Type of the left operand
+     * @param right Type of the right operand
+     * @return true if both are numbers or both have the same type
+     */
+    private static boolean isComparable(Class<?> left, Class<?> right) {
+        return left.equals(right) || (isNumeric(left) && isNumeric(right));
+    }
+
+    /**
+     * Method returns the operator of a comparison
+     * @param operator Comparison operator
+     * @return Query operator
+     */
+    private static String toOperator(BinaryOperatorKind operator) {
+        switch (operator) {
+            case EQ:
+                return "=";
+            case NE:
+                return "<>";
+            case GT:
+                return ">";
+            case GE:
+                return ">=";
+            case LT:
+                return "<";
+            default:
+                // BinaryOperatorKind.LE
+                return "<=";
+        }
+    }
+
+    /**
+     * Persistent property of the filtered type
+     */
+    public static final class QueryProperty {
+        private final String path;
+        private final Class<?> type;
+        private final boolean nullable;
+
+        /**
+         * Constructor used to populate the property
+         * @param path Path of the property in the query (ex e.policy.id in JPQL)
+         * @param type Type of the property, primitive types are boxed
+         * @param nullable true if the property can be null
+         */
+        public QueryProperty(String path, Class<?> type, boolean nullable) {
+            this.path = path;
+            this.type = type;
+            this.nullable = nullable;
+        }
+
+        /**
+         * Method returns the path of the property in the query
+         * @return Path (ex e.policy.id in JPQL)
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Method returns the type of the property
+         * @return Class of the property, primitive types are boxed
+         */
+        public Class<?> getType() {
+            return type;
+        }
+    }
+
+    /**
+     * Translated node of the expression: a condition, a value (property, arithmetic operation or parameter) or a
+     * literal that becomes a parameter once the type it is compared with is known. The parameters of a node are in
+     * the order of their markers in its text
+     */
+    public static final class QueryExpression {
+        private final String query;
+        private final Class<?> type;
+        private final boolean condition;
+        private final boolean member;
+        private final boolean nullable;
+        private final Object literal;
+        private final List<Object> parameters;
+
+        /**
+         * Constructor used to populate the node
+         * @param query Query text of the node, null for a literal
+         * @param type Type of the value, Boolean for a condition
+         * @param condition true if the node is a condition
+         * @param member true if the node is a property
+         * @param nullable true if the value can be null
+         * @param literal Constant value of a literal, null otherwise
+         * @param parameters Values of the parameters of the node
+         */
+        private QueryExpression(String query, Class<?> type, boolean condition, boolean member, boolean nullable, Object literal, List<Object> parameters) {
+            this.query = query;
+            this.type = type;
+            this.condition = condition;
+            this.member = member;
+            this.nullable = nullable;
+            this.literal = literal;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Method creates the node of a property
+         * @param property Persistent property
+         * @return Node
+         */
+        private static QueryExpression member(QueryProperty property) {
+            return new QueryExpression(property.path, property.type, false, true, property.nullable, null, Collections.emptyList());
+        }
+
+        /**
+         * Method creates the node of a computed value
+         * @param query Query text of the value
+         * @param type Type of the value
+         * @param nullable true if the value can be null
+         * @param parameters Values of the parameters of the value
+         * @return Node
+         */
+        private static QueryExpression value(String query, Class<?> type, boolean nullable, List<Object> parameters) {
+            return new QueryExpression(query, type, false, false, nullable, null, parameters);
+        }
+
+        /**
+         * Method creates the node of a condition
+         * @param query Query condition
+         * @param parameters Values of the parameters of the condition
+         * @return Node
+         */
+        private static QueryExpression condition(String query, List<Object> parameters) {
+            return new QueryExpression(query, Boolean.class, true, false, false, null, parameters);
+        }
+
+        /**
+         * Method creates the node of a literal
+         * @param value Constant value
+         * @return Node
+         */
+        private static QueryExpression literal(Object value) {
+            Class<?> type = value instanceof Number ? (value instanceof Integer ? Integer.class : BigDecimal.class) : value.getClass();
+            return new QueryExpression(null, type, false, false, false, value, Collections.emptyList());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.util.KeyComparator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Index of the rows of a table by the related entity they reference (ex the rows of the Claims by Policy), so the rows
+ * of a one-to-many relationship are found without scanning the table. The rows of a related entity are kept in primary
+ * key order, like the related objects of StoragePojo. Each list is an array replaced by a copy on every write. Writes
+ * must be serialized by the caller, reads don't lock. A read racing a write can return a row that was deleted or
+ * changed to reference another entity meanwhile, callers check the row
+ * @param <K> Key of the related entity in the table (ex the dictionary code of its id)
+ */
+public final class RelatedRowIndex<K> {
+
+    private static final int[] NO_ROWS = new int[0];
+    private final Map<K, int[]> rowsByRelated = new ConcurrentHashMap<>();
+    private final IntFunction<String> ids;
+
+    /**
+     * Constructor creates an empty index
+     * @param ids Function returning the primary key of a row of the table
+     */
+    public RelatedRowIndex(IntFunction<String> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Method returns the rows referencing the related entity
+     * @param related Key of the related entity, can be null
+     * @return Row numbers in primary key order, must not be modified
+     */
+    public int[] get(K related) {
+        int[] rows = related == null ? null : rowsByRelated.get(related);
+        return rows == null ? NO_ROWS : rows;
+    }
+
+    /**
+     * Method adds a row referencing the related entity at the position of its primary key
+     * @param related Key of the related entity, null if the row references none
+     * @param row Row number
+     */
+    public void add(K related, int row) {
+        if (related == null) {
+            return;
+        }
+        int[] rows = get(related);
+        int found = find(rows, ids.apply(row));
+        if (found >= 0) {
+            // A row with the key is replaced, ids are unique among the rows that are not deleted
+            if (rows[found] != row) {
+                int[] replaced = rows.clone();
+                replaced[found] = row;
+                rowsByRelated.put(related, replaced);
+            }
+            return;
+        }
+        int position = -(found + 1);
+        int[] added = new int[rows.length + 1];
+        System.arraycopy(rows, 0, added, 0, position);
+        added[position] = row;
+        System.arraycopy(rows, position, added, position + 1, rows.length - position);
+        rowsByRelated.put(related, added);
+    }
+
+    /**
+     * Method removes a row from the rows of the related entity
+     * @param related Key of the related entity, null if the row references none
+     * @param row Row number
+     */
+    public void remove(K related, int row) {
+        if (related == null) {
+            return;
+        }
+        int[] rows = get(related);
+        int position = find(rows, ids.apply(row));
+        if ((position < 0) || (rows[position] != row)) {
+            return;
+        }
+        if (rows.length == 1) {
+            rowsByRelated.remove(related);
+            return;
+        }
+        int[] removed = new int[rows.length - 1];
+        System.arraycopy(rows, 0, removed, 0, position);
+        System.arraycopy(rows, position + 1, removed, position, rows.length - position - 1);
+        rowsByRelated.put(related, removed);
+    }
+
+    /**
+     * Method moves a row whose reference changed
+     * @param previous Key of the related entity referenced before, can be null
+     * @param current Key of the related entity referenced now, can be null
+     * @param row Row number
+     */
+    public void move(K previous, K current, int row) {
+        if ((previous == null) ? (current == null) : previous.equals(current)) {
+            return;
+        }
+        remove(previous, row);
+        add(current, row);
+    }
+
+    /**
+     * Method searches the position of a primary key in the rows
+     * @param rows Row numbers in primary key order
+     * @param id Primary key to search
+     * @return Position of the key, or -(insertion point) - 1 if no row has the key
+     */
+    private int find(int[] rows, String id) {
+        int low = 0;
+        int high = rows.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = KeyComparator.INSTANCE.compare(ids.apply(rows[middle]), id);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,237 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import org.apache.olingo.commons.api.edm.provider.CsdlEdmProvider;
+import org.apache.olingo.commons.api.edm.provider.CsdlEntityContainer;
+import org.apache.olingo.commons.api.edm.provider.CsdlEntitySet;
+import org.apache.olingo.commons.api.edm.provider.CsdlEntityType;
+import org.apache.olingo.commons.api.edm.provider.CsdlNavigationProperty;
+import org.apache.olingo.commons.api.edm.provider.CsdlNavigationPropertyBinding;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Registry of the relationships between the entity types, built once from the navigation property bindings of the
+ * entity sets of the EDM provider. Each relationship holds the getter of the navigation property bound on the
+ * BaseEntity implementation of its source type (ex Policy.getClaims for Policies/Claims), so following a relationship
+ * is a map lookup and a direct call. A new entity type is navigable as soon as it is declared in the EDM provider with
+ * its type translator and its BaseEntity implementation has a getter named after each navigation property
+ */
+final class RelationshipRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(RelationshipRegistry.class);
+
+    private final Map<String, Map<String, Relationship>> byNavigation = new HashMap<>();
+    private final Map<String, Map<String, Relationship>> byTargetType = new HashMap<>();
+    private final Map<Class<?>, String> typeNames = new HashMap<>();
+
+    /**
+     * Constructor used to build the registry
+     * @param edmProvider Provider of the entity container whose navigation property bindings are registered
+     * @param typeTranslators Type translators by entity type name, giving the BaseEntity implementation of each type
+     * @throws ODataException Exception thrown if the provider can't return the entity container or an entity type
+     */
+    RelationshipRegistry(CsdlEdmProvider edmProvider, Map<String, ODataTypeTranslator> typeTranslators) throws ODataException {
+        LOG.info("In RelationshipRegistry constructor");
+        for (ODataTypeTranslator odtt : typeTranslators.values()) {
+            typeNames.put(odtt.getEntityMapping().getEntityClass(), odtt.getEntityTypeName());
+        }
+        CsdlEntityContainer entityContainer = edmProvider.getEntityContainer();
+        List<CsdlEntitySet> entitySets = entityContainer == null ? Collections.emptyList() : entityContainer.getEntitySets();
+        for (CsdlEntitySet entitySet : entitySets) {
+            String sourceTypeName = entitySet.getTypeFQN().getFullQualifiedNameAsString();
+            CsdlEntityType entityType = edmProvider.getEntityType(entitySet.getTypeFQN());
+            ODataTypeTranslator odtt = typeTranslators.get(sourceTypeName);
+            if ((entityType == null) || (odtt == null)) {
+                continue;
+            }
+            for (CsdlNavigationPropertyBinding binding : entitySet.getNavigationPropertyBindings()) {
+                CsdlNavigationProperty navigationProperty = entityType.getNavigationProperty(binding.getPath());
+                if (navigationProperty == null) {
+                    LOG.warn("No navigation property {} on {}", binding.getPath(), sourceTypeName);
+                    continue;
+                }
+                register(new Relationship(sourceTypeName, navigationProperty.getName(),
+                        navigationProperty.getTypeFQN().getFullQualifiedNameAsString(), navigationProperty.isCollection(),
+                        odtt.getEntityMapping().bindNavigationGetter(navigationProperty.getName()),
+                        odtt.getEntityMapping().bindNavigationSetter(navigationProperty.getName())));
+            }
+        }
+    }
+
+    /**
+     * Method returns the relationship of the navigation property
+     * @param sourceTypeName Full qualified name of the source type
+     * @param navigationName Name of the navigation property
+     * @return Relationship or null if the source type has no such navigation property
+     */
+    Relationship getRelationship(String sourceTypeName, String navigationName) {
+        Map<String, Relationship> relationships = byNavigation.get(sourceTypeName);
+        return relationships == null ? null : relationships.get(navigationName);
+    }
+
+    /**
+     * Method returns the relationship from the source type to the target type. If several navigation properties of the
+     * source type lead to the target type, the first one bound is returned
+     * @param sourceTypeName Full qualified name of the source type
+     * @param targetTypeName Full qualified name of the target type
+     * @return Relationship or null if the types are not related
+     */
+    Relationship findRelationship(String sourceTypeName, String targetTypeName) {
+        Map<String, Relationship> relationships = byTargetType.get(sourceTypeName);
+        return relationships == null ? null : relationships.get(targetTypeName);
+    }
+
+    /**
+     * Method returns the entity type of the BaseEntity implementation
+     * @param entityClass BaseEntity implementation
+     * @return Full qualified name of the entity type or null if the class has no type translator
+     */
+    String getTypeName(Class<?> entityClass) {
+        return typeNames.get(entityClass);
+    }
+
+    /**
+     * Method adds the relationship to the lookup maps
+     * @param relationship Relationship to add
+     */
+    private void register(Relationship relationship) {
+        byNavigation.computeIfAbsent(relationship.getSourceTypeName(), typeName -> new HashMap<>())
+                .put(relationship.getNavigationName(), relationship);
+        byTargetType.computeIfAbsent(relationship.getSourceTypeName(), typeName -> new HashMap<>())
+                .putIfAbsent(relationship.getTargetTypeName(), relationship);
+    }
+
+    /**
+     * Navigation property of a source type with the bound getter of the related objects
+     */
+    static final class Relationship {
+        private final String sourceTypeName;
+        private final String navigationName;
+        private final String targetTypeName;
+        private final boolean collection;
+        private final Function<BaseEntity, Object> getter;
+        private final BiConsumer<BaseEntity, Object> setter;
+
+        /**
+         * Constructor used to populate the relationship
+         * @param sourceTypeName Full qualified name of the source type
+         * @param navigationName Name of the navigation property
+         * @param targetTypeName Full qualified name of the target type
+         * @param collection true if the navigation property is a collection
+         * @param getter Bound getter of the navigation property
+         * @param setter Bound setter of the navigation property, null if there is none
+         */
+        private Relationship(String sourceTypeName, String navigationName, String targetTypeName, boolean collection,
+                             Function<BaseEntity, Object> getter, BiConsumer<BaseEntity, Object> setter) {
+            this.sourceTypeName = sourceTypeName;
+            this.navigationName = navigationName;
+            this.targetTypeName = targetTypeName;
+            this.collection = collection;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        /**
+         * Method returns the full qualified name of the source type
+         * @return Source type name
+         */
+        String getSourceTypeName() {
+            return sourceTypeName;
+        }
+
+        /**
+         * Method returns the name of the navigation property
+         * @return Navigation property name
+         */
+        String getNavigationName() {
+            return navigationName;
+        }
+
+        /**
+         * Method returns the full qualified name of the target type
+         * @return Target type name
+         */
+        String getTargetTypeName() {
+            return targetTypeName;
+        }
+
+        /**
+         * Method returns if the navigation property is a collection
+         * @return true for a collection, false for a single entity
+         */
+        boolean isCollection() {
+            return collection;
+        }
+
+        /**
+         * Method returns the objects related to the source object
+         * @param source Object of the source type
+         * @return Related objects, a new list that can be changed by the caller, empty if there are none
+         */
+        @SuppressWarnings("unchecked")
+        List<BaseEntity> getRelated(BaseEntity source) {
+            Object related = getter.apply(source);
+            if (related == null) {
+                return new ArrayList<>();
+            } else if (collection) {
+                return new ArrayList<>((Collection<? extends BaseEntity>) related);
+            }
+            List<BaseEntity> single = new ArrayList<>(1);
+            single.add((BaseEntity) related);
+            return single;
+        }
+
+        /**
+         * Method adds the related object to the collection of the source object, creating the collection if the source
+         * object has none. The collections are concurrent, so they are changed in place while they are read. Callers
+         * hold the write lock of the target type, which serializes the changes of the collections of that type.
+         * A single entity relationship is held by the related object itself and is left as is
+         * @param source Object of the source type
+         * @param related Object of the target type
+         */
+        @SuppressWarnings("unchecked")
+        void addRelated(BaseEntity source, BaseEntity related) {
+            if (!collection) {
+                return;
+            }
+            Collection<BaseEntity> relatedObjects = (Collection<BaseEntity>) getter.apply(source);
+            if (relatedObjects != null) {
+                relatedObjects.add(related);
+            } else if (setter != null) {
+                relatedObjects = new ConcurrentSkipListSet<>();
+                relatedObjects.add(related);
+                setter.accept(source, relatedObjects);
+            } else {
+                throw new IllegalStateException("The navigation property " + navigationName + " of " + sourceTypeName + " can't be set");
+            }
+        }
+
+        /**
+         * Method removes the related object from the collection of the source object. Callers hold the write lock of
+         * the target type
+         * @param source Object of the source type
+         * @param related Object of the target type
+         */
+        void removeRelated(BaseEntity source, BaseEntity related) {
+            if (!collection) {
+                return;
+            }
+            Object relatedObjects = getter.apply(source);
+            if (relatedObjects != null) {
+                ((Collection<?>) relatedObjects).remove(related);
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.*;
+import com.codescience.salesforceconnect.service.OdataEdmProvider;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Default records of the entity model loaded by the Storage implementations. Each call creates new instances so the
+ * storages never share entities
+ */
+public final class SampleData {
+
+    /**
+     * Private Constructor to ensure static only
+     */
+    private SampleData() {
+
+    }
+
+    /**
+     * Method returns the BaseEntity implementation of each entity type of the model
+     * @return Map of full qualified entity type name to class, in load order
+     */
+    public static Map<String, Class<? extends BaseEntity>> getEntityClasses() {
+        Map<String, Class<? extends BaseEntity>> entityClasses = new LinkedHashMap<>();
+        entityClasses.put(OdataEdmProvider.ET_PRODUCT_FQN.getFullQualifiedNameAsString(), Product.class);
+        entityClasses.put(OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString(), Policy.class);
+        entityClasses.put(OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString(), Claim.class);
+        entityClasses.put(OdataEdmProvider.ET_BENEFICIARY_FQN.getFullQualifiedNameAsString(), Beneficiary.class);
+        return entityClasses;
+    }
+
+    /**
+     * Method creates the default records. Related records reference each other (ex a Claim and its Policy)
+     * @return Map of full qualified entity type name to the records of the type in key order. Types are in the order of
+     * getEntityClasses, a type is loaded after the types it references
+     */
+    public static Map<String, List<BaseEntity>> create() {
+        Map<String, List<BaseEntity>> data = new LinkedHashMap<>();
+        List<BaseEntity> listOfProducts = createEntityList(data, OdataEdmProvider.ET_PRODUCT_FQN);
+
+        Product prod = new Product();
+        prod.setActive(true);
+        prod.setCostPerUnit(new BigDecimal(100));
+        prod.setId("1000");
+        prod.setProductName("Long Term Disability");
+        prod.setProductType("Disability");
+        listOfProducts.add(prod);
+
+        Product prod2 = new Product();
+        prod2.setActive(true);
+        prod2.setCostPerUnit(new BigDecimal(150));
+        prod2.setId("1001");
+        prod2.setProductName("Short Term Disability");
+        prod2.setProductType("Disability");
+        listOfProducts.add(prod2);
+
+        Product prod3 = new Product();
+        prod3.setActive(false);
+        prod3.setCostPerUnit(new BigDecimal(200));
+        prod3.setId("1002");
+        prod3.setProductName("Umbrella Policy");
+        prod3.setProductType("Liability");
+        listOfProducts.add(prod3);
+
+        Product prod4 = new Product();
+        prod4.setActive(true);
+        prod4.setCostPerUnit(new BigDecimal(250));
+        prod4.setId("1003");
+        prod4.setProductName("Umbrella Policy");
+        prod4.setProductType("Liability");
+        listOfProducts.add(prod4);
+
+        Product prod5 = new Product();
+        prod5.setActive(true);
+        prod5.setCostPerUnit(new BigDecimal(300));
+        prod5.setId("1004");
+        prod5.setProductName("Life");
+        prod5.setProductType("Life");
+        listOfProducts.add(prod5);
+
+        Product prod6 = new Product();
+        prod6.setActive(true);
+        prod6.setCostPerUnit(new BigDecimal(350));
+        prod6.setId("1005");
+        prod6.setProductName("Accidental Death");
+        prod6.setProductType("Life");
+        listOfProducts.add(prod6);
+
+        List<BaseEntity> listOfPolicies = createEntityList(data, OdataEdmProvider.ET_POLICY_FQN);
+
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(2010,Calendar.APRIL, 10);
+
+        Policy policy = new Policy();
+        policy.setId("2000");
+        policy.setNumberOfUnits(100);
+        policy.setPolicyHolderId("10000");
+        policy.setProduct(prod);
+        policy.setPolicyStartDate(cal.getTime());
+        listOfPolicies.add(policy);
+
+        Policy policy2 = new Policy();
+        policy2.setId("2001");
+        policy2.setNumberOfUnits(200);
+        policy2.setPolicyHolderId("10000");
+        policy2.setProduct(prod3);
+        cal.set(2011, Calendar.JUNE, 20);
+        policy2.setPolicyStartDate(cal.getTime());
+        listOfPolicies.add(policy2);
+
+        cal.set(2014,Calendar.DECEMBER, 5);
+        policy2.setPolicyEndDate(cal.getTime());
+
+        Policy policy3 = new Policy();
+        policy3.setId("2002");
+        policy3.setNumberOfUnits(300);
+        policy3.setPolicyHolderId("10001");
+        policy3.setProduct(prod4);
+        cal.set(2011, Calendar.JUNE, 20);
+        policy3.setPolicyStartDate(cal.getTime());
+        listOfPolicies.add(policy3);
+
+        List<BaseEntity> listOfClaims = createEntityList(data, OdataEdmProvider.ET_CLAIM_FQN);
+
+        cal.set( 2016, Calendar.JULY, 28);
+        Claim claim = new Claim();
+        claim.setId("3000");
+        claim.setApproved(true);
+        claim.setClaimAmount(new BigDecimal(10000));
+        claim.setClaimDate(cal.getTime());
+        claim.setClaimReason("Injury");
+        policy.addClaim(claim);
+        listOfClaims.add(claim);
+
+        cal.set( 2009, Calendar.MARCH, 4);
+        Claim claim2 = new Claim();
+        claim2.setId("3001");
+        claim2.setApproved(false);
+        claim2.setClaimAmount(new BigDecimal(25000));
+        claim2.setClaimDate(cal.getTime());
+        claim2.setClaimReason("Accident");
+        policy.addClaim(claim2);
+        listOfClaims.add(claim2);
+
+        cal.set( 2012, Calendar.AUGUST, 12);
+        Claim claim3 = new Claim();
+        claim3.setId("3002");
+        claim3.setApproved(false);
+        claim3.setClaimAmount(new BigDecimal(25000));
+        claim3.setClaimDate(cal.getTime());
+        claim3.setClaimReason("Lawsuit");
+        policy2.addClaim(claim3);
+        listOfClaims.add(claim3);
+
+        List<BaseEntity> listOfBeneficiaries = createEntityList(data, OdataEdmProvider.ET_BENEFICIARY_FQN);
+
+        Beneficiary beneficiary = new Beneficiary();
+        beneficiary.setId("4000");
+        beneficiary.setBeneficiaryPercent(new BigDecimal(100));
+        beneficiary.setContactIdentifierId("20000");
+        claim.addBeneficiary(beneficiary);
+        listOfBeneficiaries.add(beneficiary);
+
+        Beneficiary beneficiary2 = new Beneficiary();
+        beneficiary2.setId("4001");
+        beneficiary2.setBeneficiaryPercent(new BigDecimal(75));
+        beneficiary2.setContactIdentifierId("20001");
+        claim2.addBeneficiary(beneficiary2);
+        listOfBeneficiaries.add(beneficiary2);
+
+        Beneficiary beneficiary3 = new Beneficiary();
+        beneficiary3.setId("4002");
+        beneficiary3.setBeneficiaryPercent(new BigDecimal(25));
+        beneficiary3.setContactIdentifierId("20002");
+        claim2.addBeneficiary(beneficiary3);
+        listOfBeneficiaries.add(beneficiary3);
+        return data;
+    }
+
+    /**
+     * Method creates the list that holds the records of the type passed in
+     * @param data Map the list is added to
+     * @param fqn Full qualified name of the entity type
+     * @return List of records of the type
+     */
+    private static List<BaseEntity> createEntityList(Map<String, List<BaseEntity>> data, FullQualifiedName fqn) {
+        List<BaseEntity> entities = new ArrayList<>();
+        data.put(fqn.getFullQualifiedNameAsString(), entities);
+        return entities;
+    }
+}
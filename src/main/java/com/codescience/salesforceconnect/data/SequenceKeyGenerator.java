@@ -0,0 +1,70 @@
+package com.codescience.salesforceconnect.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * KeyGenerator that keeps an atomic sequence per entity type. The sequence is seeded with the largest numeric key
+ * observed and moves past explicit numeric keys as they are inserted, so generating a key is O(1).
+ * Keys that are not numeric are ignored. This is the default generator of StoragePojo, it is suited to a single instance
+ */
+public class SequenceKeyGenerator implements KeyGenerator {
+
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Method moves the sequence of the type past the key if it is numeric
+     * @param objectType Full qualified name of the entity type
+     * @param key Primary key of an existing entity
+     */
+    @Override
+    public void observe(String objectType, String key) {
+        long keyValue = parseKey(key);
+        if (keyValue > 0) {
+            getSequence(objectType).accumulateAndGet(keyValue, Math::max);
+        }
+    }
+
+    /**
+     * Method returns the next value of the sequence of the type
+     * @param objectType Full qualified name of the entity type
+     * @return Primary key one more than the largest key generated or observed
+     */
+    @Override
+    public String nextKey(String objectType) {
+        return Long.toString(getSequence(objectType).incrementAndGet());
+    }
+
+    /**
+     * Method returns the sequence of the type, creating it on first use
+     * @param objectType Full qualified name of the entity type
+     * @return Sequence holding the last key
+     */
+    private AtomicLong getSequence(String objectType) {
+        return sequences.computeIfAbsent(objectType, type -> new AtomicLong());
+    }
+
+    /**
+     * Method parses a numeric key
+     * @param key Primary key, can be null
+     * @return Value of the key or -1 if it is not a positive number
+     */
+    static long parseKey(String key) {
+        if ((key == null) || key.isEmpty()) {
+            return -1;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            // Larger than a long
+            return -1;
+        }
+    }
+}
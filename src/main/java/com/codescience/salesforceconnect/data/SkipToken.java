@@ -0,0 +1,83 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.service.Messages;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.SkipTokenOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Position of a page in a paged result. It is sent to the client as an opaque url safe base64 $skiptoken holding the
+ * number of entities already returned and the key of the last one
+ */
+public final class SkipToken {
+    private static final Logger LOG = LoggerFactory.getLogger(SkipToken.class);
+    private static final char SEPARATOR = ':';
+
+    private final int position;
+    private final String lastKey;
+
+    /**
+     * Constructor used to populate the token
+     * @param position Number of entities returned by the previous pages
+     * @param lastKey Key of the last entity returned
+     */
+    public SkipToken(int position, String lastKey) {
+        this.position = position;
+        this.lastKey = lastKey;
+    }
+
+    /**
+     * Method returns the number of entities returned by the previous pages
+     * @return Position of the next page in the result
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Method returns the key of the last entity returned by the previous page
+     * @return Primary key
+     */
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * Method encodes the token
+     * @return Url safe value of the $skiptoken
+     */
+    public String encode() {
+        String value = Integer.toString(position) + SEPARATOR + lastKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method decodes the $skiptoken passed in
+     * @param skipTokenOption SkipToken option passed in, may be null
+     * @return SkipToken or null if no $skiptoken was passed in
+     * @throws ODataApplicationException Exception thrown if the token was not created by encode
+     */
+    public static SkipToken parse(SkipTokenOption skipTokenOption) throws ODataApplicationException {
+        if ((skipTokenOption == null) || (skipTokenOption.getValue() == null)) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(skipTokenOption.getValue()), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            int position = Integer.parseInt(value.substring(0, separator));
+            if (position < 0) {
+                throw new IllegalArgumentException(value);
+            }
+            return new SkipToken(position, value.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_SKIP_TOKEN + "{}", skipTokenOption.getValue());
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_SKIP_TOKEN, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT, e);
+        }
+    }
+}
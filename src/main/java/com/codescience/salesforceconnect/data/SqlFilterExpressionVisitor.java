@@ -0,0 +1,25 @@
+package com.codescience.salesforceconnect.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expression visitor that translates a $filter expression into a SQL condition for a PreparedStatement. The condition
+ * only uses standard SQL (comparisons, arithmetic, MOD, LIKE with an escape character, IS NULL)
+ */
+public class SqlFilterExpressionVisitor extends QueryFilterExpressionVisitor {
+
+    /**
+     * Constructor sets the columns of the filtered table and the list the parameters are added to
+     * @param properties Columns by OData property name, their paths are the qualified column names
+     * @param parameters Values of the parameters, in the order of the ? placeholders
+     */
+    public SqlFilterExpressionVisitor(Map<String, QueryProperty> properties, List<Object> parameters) {
+        super(properties, parameters);
+    }
+
+    @Override
+    protected String placeholder(int position) {
+        return "?";
+    }
+}
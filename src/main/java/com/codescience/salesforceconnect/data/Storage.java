@@ -2,11 +2,14 @@ package com.codescience.salesforceconnect.data;
 
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.server.api.uri.UriInfo;
 import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
 
 import java.util.List;
 
@@ -17,11 +20,24 @@ import java.util.List;
 public interface Storage {
 
     /**
-     * Method returns an EntityCollection for the given Entity Set passed in
+     * Method returns an EntityIterator for the given Entity Set passed in. The $filter, $orderby, $skip and $top
+     * options are applied by the storage and the count of the filtered collection is set if $count=true.
+     * Entities should be produced as the iterator is read so the response can be streamed. If the storage pages the
+     * result, the next property holds the relative query ("?$skiptoken=...") of the next page once the iteration is over
      * @param edmEntitySet EDM Entity Set for the type to return
-     * @return EntityCollection containing object objects for the entitySet
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the entities of the entitySet
      */
-    EntityCollection readEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException;
+    EntityIterator readEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException;
+
+    /**
+     * Method returns the number of entities of the Entity Set that match the $filter option. It is used for /$count
+     * requests and should not build the entities
+     * @param edmEntitySet EDM Entity Set for the type to count
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching entities
+     */
+    int countEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException;
 
     /**
      * Method returns a single Entity for the EntitySet. It filters based on the keyParams
@@ -31,6 +47,45 @@ public interface Storage {
      */
     Entity readEntityData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams) throws ODataException;
 
+    /**
+     * Method follows a navigation path (ex Policies('2000')/Claims('3000')/Beneficiaries) from the entity of the Entity
+     * Set with the keyParams over the stored relationships and returns the entities at the end of the path. Only those
+     * entities are translated. A navigation segment with key predicates selects the related entity with that key
+     * @param edmEntitySet EDM Entity Set of the first segment
+     * @param keyParams List of key parameters of the entity of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Entities at the end of the path, 0 or 1 entity if the last segment is single valued or has a key.
+     * null if an entity of the path before the last segment is not found
+     */
+    EntityCollection readNavigationData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations) throws ODataException;
+
+    /**
+     * Method returns an EntityIterator over the collection at the end of a navigation path whose last segment is a
+     * collection without key (ex Policies('2000')/Claims). The $filter, $orderby, $skip, $top and $count options are
+     * applied by the storage to the related entities like readEntitySetData does to an entity set, and the result is
+     * paged the same way
+     * @param edmEntitySet EDM Entity Set of the first segment
+     * @param keyParams List of key parameters of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the related entities, null if an entity of the path before the last segment is not found
+     */
+    EntityIterator readNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                         UriInfo uriInfo) throws ODataException;
+
+    /**
+     * Method returns the number of entities of the collection at the end of a navigation path (ex
+     * Policies('2000')/Claims/$count) that match the $filter option. It is used for /$count requests on a navigation
+     * and should not build the entities
+     * @param edmEntitySet EDM Entity Set of the first segment
+     * @param keyParams List of key parameters of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching related entities, null if an entity of the path before the last segment is not found
+     */
+    Integer countNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                   UriInfo uriInfo) throws ODataException;
+
     /**
      * Method returns the related entity collection for the source entity passed in. This allows
      * the returning of Claims for a given policy or Beneficiaries for a given claim
@@ -40,6 +95,17 @@ public interface Storage {
      */
     EntityCollection getRelatedEntityCollection(Entity sourceEntity, EdmEntityType targetEntityType) throws ODataException;
 
+    /**
+     * Method returns the related entities of each source entity passed in, read together instead of once per source.
+     * It is used by $expand so a page of entities and their related entities are read in a few round trips. For a
+     * relationship to a single entity (ex the Policy of a Claim) the collection holds the related entity if there is one.
+     * The relationship is the one of the navigation property, not any relationship to its type
+     * @param sourceEntities Source entities, all of the same type
+     * @param navigationProperty Navigation property of the source type followed from each source entity
+     * @return One EntityCollection per source entity, in the order of the source entities
+     */
+    List<EntityCollection> getRelatedEntityCollections(List<Entity> sourceEntities, EdmNavigationProperty navigationProperty) throws ODataException;
+
     /**
      * Method returns the related entity for the source entity passed in. Can be filtered by URIParameters
      * @param entity Source entity
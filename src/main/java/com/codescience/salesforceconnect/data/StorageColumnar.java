@@ -0,0 +1,33 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.translators.EntityMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * Implementation of the Storage interface that stores each entity set column-wise in a ColumnTable (dictionary encoded
+ * Strings, epoch day Dates, scaled long decimals, bit set booleans), see TableStorage for the queries.
+ * Storage trades the precision of some values for the footprint: Dates only keep the day and decimals keep 4 decimal places
+ */
+public class StorageColumnar extends TableStorage {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageColumnar.class);
+
+    public StorageColumnar() {
+        initializeData();
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method used to create the tables and load the default records
+     */
+    private void initializeData() {
+        LOG.info("In initializeData method");
+        for (Map.Entry<String, Class<? extends BaseEntity>> entityClass : SampleData.getEntityClasses().entrySet()) {
+            addTable(entityClass.getKey(), new ColumnTable(EntityMapping.forClass(entityClass.getValue()), this::getTable));
+        }
+        loadSampleData();
+    }
+}
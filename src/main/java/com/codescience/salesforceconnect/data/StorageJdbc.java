@@ -0,0 +1,1958 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.data.JdbcConnectionPool.PooledConnection;
+import com.codescience.salesforceconnect.data.QueryFilterExpressionVisitor.QueryProperty;
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.service.Messages;
+import com.codescience.salesforceconnect.translators.EntityMapping;
+import com.codescience.salesforceconnect.translators.EntityMapping.RelatedProperty;
+import com.codescience.salesforceconnect.translators.EntityMapping.WritableProperty;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import com.codescience.salesforceconnect.util.KeyComparator;
+import com.codescience.salesforceconnect.util.Util;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Implementation of the Storage interface that stores the entities in a relational database through JDBC. Each entity
+ * type is stored in a table named after its class, with a column per writable property and a foreign key column per
+ * relatedId property (ex policyId). The tables are created if they don't exist.
+ * $filter, $orderby, $skip, $top and $count are translated into SQL with parameters (WHERE, ORDER BY, LIMIT and
+ * OFFSET) so the database filters, sorts and pages the entities, and the related entities are read by the same query.
+ * A filter or an order on a computed property (ex TotalCostAmount) is evaluated in memory on the entities selected by
+ * the conditions the database can evaluate. Collections are returned in primary key order (numeric keys by value)
+ * unless they are ordered.
+ * Connections come from a pool and each keeps its prepared statements, so a query shape is only prepared once per
+ * connection
+ */
+public class StorageJdbc implements Storage {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageJdbc.class);
+    private static final int MAX_COMPILED_FILTERS = 256;
+    private static final int MAX_JOIN_DEPTH = 3;
+    private static final int FETCH_SIZE = 500;
+    private static final int MAX_IN_PARAMETERS = 500;
+    private static final String ALIAS = "t0";
+    private static final String ID_COLUMN = "id";
+    private static final KeyOrder KEY_ORDER = new KeyOrder(ALIAS + "." + ID_COLUMN, "char_length");
+    private Map<String, ODataTypeTranslator> typeTranslators = new HashMap<>();
+    private final Map<String, JdbcTable> tables = new LinkedHashMap<>();
+    private DataSource dataSource;
+    private int maxPageSize;
+    private int maxPoolSize = 10;
+    private int statementCacheSize = 100;
+    private long acquireTimeout = 30000;
+    private KeyGenerator keyGenerator = new SequenceKeyGenerator();
+    private JdbcConnectionPool connectionPool;
+    private final Map<String, QueryFilter> compiledFilters = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryFilter> eldest) {
+            return size() > MAX_COMPILED_FILTERS;
+        }
+    });
+
+    /**
+     * Method opens the connection pool, creates the tables that don't exist and loads the default records if the
+     * tables are empty. Called by Spring once the properties are set
+     */
+    public void open() {
+        LOG.info("In open method");
+        connectionPool = new JdbcConnectionPool(dataSource, maxPoolSize, statementCacheSize, acquireTimeout);
+        for (Map.Entry<String, Class<? extends BaseEntity>> entityClass : SampleData.getEntityClasses().entrySet()) {
+            tables.put(entityClass.getKey(), new JdbcTable(entityClass.getValue()));
+        }
+        try {
+            inTransaction(connection -> {
+                createTables(connection);
+                if (isEmpty(connection)) {
+                    loadSampleData(connection);
+                }
+                return null;
+            });
+        } catch (ODataException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method closes the connections of the pool. Called by Spring when the context is closed
+     */
+    public void close() {
+        LOG.info("In close method");
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    /**
+     * Method reads the collection of entities of the type passed in. The $filter, $orderby, $skip, $top and $count
+     * options are translated into the query when the database can evaluate them, otherwise the entities matching the
+     * conditions the database evaluates are read and the rest of the filter and the order are applied in memory.
+     * If the result is larger than maxPageSize only the first page is returned and the next property of the iterator
+     * holds the $skiptoken query of the next page
+     * @param edmEntitySet EntitySet (collection) type to be read
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the Entities read
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
+     */
+    @Override
+    public EntityIterator readEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
+        LOG.info("In readEntitySetData method");
+        return query(edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString(), uriInfo, null, null);
+    }
+
+    /**
+     * Method reads the entities related to the entity at the end of the navigation path (ex the Claims of
+     * Policies('2000')/Claims). The path is followed by key first, then the related entities are selected by foreign
+     * key with the $filter, $orderby, $skip, $top and $count options like readEntitySetData does
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the related Entities, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if an invalid option is passed in or the database can't be read
+     */
+    @Override
+    public EntityIterator readNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                                UriInfo uriInfo) throws ODataException {
+        LOG.info("In readNavigationSetData method");
+        return queryRelated(edmEntitySet, keyParams, navigations,
+                (targetTypeName, foreignKey, relatedId) -> query(targetTypeName, uriInfo, foreignKey, relatedId));
+    }
+
+    /**
+     * Method counts the entities related to the entity at the end of the navigation path that match the $filter
+     * option (ex Policies('2000')/Claims/$count) without reading them
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching related entities, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the filter can't be evaluated or the database can't be read
+     */
+    @Override
+    public Integer countNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                          UriInfo uriInfo) throws ODataException {
+        LOG.info("In countNavigationSetData method");
+        return queryRelated(edmEntitySet, keyParams, navigations,
+                (targetTypeName, foreignKey, relatedId) -> count(targetTypeName, uriInfo, foreignKey, relatedId));
+    }
+
+    /**
+     * Method follows the navigation path up to its last segment and runs the query of the related entities, restricted
+     * to the entity the path leads to
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param relatedQuery Query of the entities of the last segment
+     * @param <T> Type of the result of the query
+     * @return Result of the query, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the query fails or the database can't be read
+     */
+    private <T> T queryRelated(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                               RelatedQuery<T> relatedQuery) throws ODataException {
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+        List<UriResourceNavigation> path = navigations.subList(0, navigations.size() - 1);
+        JdbcTable sourceTable = tables.get(path.isEmpty() ? objectType : getTypeName(path.get(path.size() - 1)));
+        String targetTypeName = getTypeName(navigations.get(navigations.size() - 1));
+        JdbcTable targetTable = tables.get(targetTypeName);
+        JdbcColumn foreignKey = (sourceTable == null) || (targetTable == null) ? null : targetTable.getForeignKey(sourceTable.entityClass);
+        if ((keyValue == null) || (tables.get(objectType) == null) || (foreignKey == null)) {
+            return null;
+        }
+
+        String sourceId = read(connection -> followNavigations(connection, objectType, keyValue, path));
+        if (sourceId == null) {
+            return null;
+        }
+        return relatedQuery.execute(targetTypeName, foreignKey, sourceId);
+    }
+
+    /**
+     * Method selects the entities of the type with the $filter, $orderby, $skip, $top, $count and $skiptoken options,
+     * restricted to the entities related to an entity if a foreign key is passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the query options
+     * @param foreignKey Foreign key column of the table holding the related entity, null to read the whole entity set
+     * @param relatedId Primary key of the related entity
+     * @return EntityIterator over the Entities
+     * @throws ODataException Exception thrown if an invalid option is passed in or the database can't be read
+     */
+    private EntityIterator query(String objectType, UriInfo uriInfo, JdbcColumn foreignKey, String relatedId) throws ODataException {
+        ODataTypeTranslator odtt = typeTranslators.get(objectType);
+        JdbcTable table = tables.get(objectType);
+
+        QueryFilter filter = getFilter(objectType, uriInfo, foreignKey, relatedId);
+        String order = getOrder(table, uriInfo.getOrderByOption());
+        PojoComparator memoryOrder = order == null ? PojoComparator.create(uriInfo.getOrderByOption(), odtt, KeyComparator.INSTANCE) : null;
+        CountOption countOption = uriInfo.getCountOption();
+        boolean countRequested = (countOption != null) && countOption.getValue();
+        int skip = getSkip(uriInfo);
+        int top = getTop(uriInfo);
+
+        SkipToken skipToken = SkipToken.parse(uriInfo.getSkipTokenOption());
+        int position = skipToken == null ? 0 : skipToken.getPosition();
+        int remaining = top == Integer.MAX_VALUE ? top : Math.max(0, top - position);
+        // One more entity than the page size is selected to know if there is a next page
+        int limit = maxPageSize > 0 ? (int) Math.min(remaining, maxPageSize + 1L) : remaining;
+        int offset = (int) Math.min((long) skip + position, Integer.MAX_VALUE);
+        // Only the $select properties are translated
+        Function<BaseEntity, Entity> translator = odtt.getProjection(Util.getSelectedProperties(uriInfo));
+
+        if ((memoryOrder == null) && (limit > FETCH_SIZE)) {
+            return queryByChunks(table, filter, order, skipToken, offset, limit, countRequested, translator, remaining, position);
+        }
+
+        List<BaseEntity> page = new ArrayList<>();
+        Integer count = read(connection -> {
+            if ((filter.getMemoryFilter() != null) || (memoryOrder != null)) {
+                return selectInMemory(connection, table, filter, order, memoryOrder, offset, limit, countRequested, page);
+            }
+
+            // Without $orderby the next page resumes after the last key, even if that entity was deleted since
+            List<Object> parameters = new ArrayList<>(filter.getParameters());
+            String where = filter.getWhere();
+            int pageOffset = offset;
+            if ((skipToken != null) && (order.equals(KEY_ORDER.getOrder()))) {
+                String after = KEY_ORDER.after(skipToken.getLastKey(), parameters, index -> "?");
+                where = where == null ? after : where + " and " + after;
+                pageOffset = 0;
+            }
+            if (limit > 0) {
+                parameters.add(limit);
+                parameters.add(pageOffset);
+                String sql = table.select + (where == null ? "" : " where " + where) + " order by " + order + " limit ? offset ?";
+                select(connection, table, sql, parameters, page);
+            }
+            return countRequested ? count(connection, table, filter) : null;
+        });
+
+        PojoEntityIterator entityIterator = new PojoEntityIterator(page.iterator(), translator, 0, remaining, maxPageSize, position);
+        entityIterator.setCount(count);
+        return entityIterator;
+    }
+
+    /**
+     * Method selects the entities of a query that is not bounded by a small page (ex without $top and maximum page
+     * size) by chunks of FETCH_SIZE rows, so the response holds one chunk at a time instead of every entity. The first
+     * chunk and the count are read before the method returns, so a failure to read them is an error response. The
+     * entities ordered in memory are not read by chunks, they must all be read to be sorted
+     * @param table Table of the entities
+     * @param filter Filter of the query
+     * @param order SQL order of the entities
+     * @param skipToken Skip token of the request, null for the first page
+     * @param offset Number of matching entities to skip ($skip and the entities of the previous pages)
+     * @param limit Maximum number of entities to read
+     * @param countRequested true if the number of matching entities must be set on the iterator
+     * @param translator Function translating the selected properties
+     * @param remaining Maximum number of entities to return ($top less the entities of the previous pages)
+     * @param position Number of entities returned by the previous pages
+     * @return EntityIterator over the Entities
+     * @throws ODataException Exception thrown if the first chunk can't be read
+     */
+    private EntityIterator queryByChunks(JdbcTable table, QueryFilter filter, String order, SkipToken skipToken, int offset, int limit,
+                                         boolean countRequested, Function<BaseEntity, Entity> translator, int remaining, int position) throws ODataException {
+        ChunkIterator chunks;
+        int skip = 0;
+        if (filter.getMemoryFilter() != null) {
+            // The rows are filtered in memory, so the matches to skip are only known once the rows are read
+            chunks = new ChunkIterator(table, filter, order, null, 0, Integer.MAX_VALUE);
+            skip = offset;
+        } else if ((skipToken != null) && order.equals(KEY_ORDER.getOrder())) {
+            // Without $orderby the next page resumes after the last key, even if that entity was deleted since
+            chunks = new ChunkIterator(table, filter, order, skipToken.getLastKey(), 0, limit);
+        } else {
+            chunks = new ChunkIterator(table, filter, order, null, offset, limit);
+        }
+        Integer count = read(connection -> {
+            chunks.fetch(connection);
+            if (!countRequested) {
+                return null;
+            }
+            return filter.getMemoryFilter() == null ? count(connection, table, filter)
+                    : selectInMemory(connection, table, filter, KEY_ORDER.getOrder(), null, 0, 0, true, new ArrayList<>());
+        });
+
+        PojoEntityIterator entityIterator = new PojoEntityIterator(chunks, translator, skip, remaining, maxPageSize, position);
+        entityIterator.setCount(count);
+        return entityIterator;
+    }
+
+    /**
+     * Method returns the number of entities of the entity set that match the $filter option
+     * @param edmEntitySet EntitySet (collection) type to be counted
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching entities
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    @Override
+    public int countEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
+        LOG.info("In countEntitySetData method");
+        return count(edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString(), uriInfo, null, null);
+    }
+
+    /**
+     * Method counts the entities of the type that match the $filter option, restricted to the entities related to an
+     * entity if a foreign key is passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the filter option
+     * @param foreignKey Foreign key column of the table holding the related entity, null to count the whole entity set
+     * @param relatedId Primary key of the related entity
+     * @return Number of matching entities
+     * @throws ODataException Exception thrown if the filter can't be evaluated or the database can't be read
+     */
+    private int count(String objectType, UriInfo uriInfo, JdbcColumn foreignKey, String relatedId) throws ODataException {
+        JdbcTable table = tables.get(objectType);
+        QueryFilter filter = getFilter(objectType, uriInfo, foreignKey, relatedId);
+        return read(connection -> {
+            if (filter.getMemoryFilter() == null) {
+                return count(connection, table, filter);
+            }
+            return selectInMemory(connection, table, filter, KEY_ORDER.getOrder(), null, 0, 0, true, new ArrayList<>());
+        });
+    }
+
+    /**
+     * Method returns the translated $filter option, restricted to the entities related to an entity if a foreign key
+     * is passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the filter option
+     * @param foreignKey Foreign key column of the table holding the related entity, null for the whole entity set
+     * @param relatedId Primary key of the related entity
+     * @return Filter
+     * @throws ODataApplicationException Exception thrown if the filter expression can't be compiled
+     */
+    private QueryFilter getFilter(String objectType, UriInfo uriInfo, JdbcColumn foreignKey, String relatedId) throws ODataApplicationException {
+        QueryFilter compiledFilter = getCompiledFilter(uriInfo.getFilterOption(), objectType, typeTranslators.get(objectType));
+        return foreignKey == null ? compiledFilter : compiledFilter.and(ALIAS + "." + foreignKey.name + " = ?", relatedId);
+    }
+
+    /**
+     * Method reads an individual entity from the database
+     * @param edmEntitySet Type of object to read
+     * @param keyParams  Identity keys to read from the data storage
+     * @return Entity object containing data or null if nothing found
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public Entity readEntityData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams) throws ODataException {
+        LOG.info("In readEntityData method");
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+
+        // No primary key sent nothing to return
+        if (keyValue == null) {
+            return null;
+        }
+        BaseEntity baseEntity = read(connection -> find(connection, tables.get(objectType), keyValue));
+        return baseEntity == null ? null : typeTranslators.get(objectType).translate(baseEntity);
+    }
+
+    /**
+     * Method follows the navigation path with one connection. Only the keys are read until the last segment: a
+     * reference is read from the foreign key of the source row (ex the Policy of a Claim) and a related entity with a
+     * key is checked by key (ex a Claim of a Policy). The entities at the end of the path are the only ones selected
+     * and translated
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Entities at the end of the path, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public EntityCollection readNavigationData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations) throws ODataException {
+        LOG.info("In readNavigationData method");
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+        String resultType = navigations.isEmpty() ? objectType : getTypeName(navigations.get(navigations.size() - 1));
+        if ((keyValue == null) || (tables.get(objectType) == null)) {
+            return null;
+        }
+
+        int last = navigations.size() - 1;
+        UriResourceNavigation lastNavigation = last < 0 ? null : navigations.get(last);
+        boolean relatedRows = (lastNavigation != null) && lastNavigation.getProperty().isCollection() && lastNavigation.getKeyPredicates().isEmpty();
+        List<BaseEntity> results = read(connection -> {
+            if (relatedRows) {
+                // The entities of a collection at the end of the path are selected by foreign key
+                String sourceTypeName = last == 0 ? objectType : getTypeName(navigations.get(last - 1));
+                JdbcTable sourceTable = tables.get(sourceTypeName);
+                JdbcTable targetTable = tables.get(resultType);
+                JdbcColumn foreignKey = (sourceTable == null) || (targetTable == null) ? null : targetTable.getForeignKey(sourceTable.entityClass);
+                String sourceId = foreignKey == null ? null : followNavigations(connection, objectType, keyValue, navigations.subList(0, last));
+                if (sourceId == null) {
+                    return null;
+                }
+                List<BaseEntity> related = new ArrayList<>();
+                select(connection, targetTable, targetTable.select + " where " + ALIAS + "." + foreignKey.name + " = ? order by "
+                        + KEY_ORDER.getOrder(), Collections.singletonList(sourceId), related);
+                return related;
+            }
+            String id = followNavigations(connection, objectType, keyValue, navigations);
+            if (id == null) {
+                return navigations.isEmpty() ? null : Collections.<BaseEntity>emptyList();
+            }
+            BaseEntity baseEntity = find(connection, tables.get(resultType), id);
+            return baseEntity == null ? Collections.<BaseEntity>emptyList() : Collections.singletonList(baseEntity);
+        });
+        if (results == null) {
+            return null;
+        }
+
+        EntityCollection ec = new EntityCollection();
+        ODataTypeTranslator odtt = typeTranslators.get(resultType);
+        for (BaseEntity baseEntity : results) {
+            ec.getEntities().add(odtt.translate(baseEntity));
+        }
+        return ec;
+    }
+
+    /**
+     * Method follows the navigation path by key from the entity with the key: a reference is read from the row of the
+     * entity (ex the Policy of a Claim) and a keyed segment is checked against the foreign key of the target row (ex
+     * the Claim of Policies('2000')/Claims('3000'))
+     * @param connection Connection of the read
+     * @param objectType Full qualified name of the type of the first segment
+     * @param keyValue Primary key of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, single valued or with a key
+     * @return Primary key of the entity at the end of the path, null if an entity of the path is not found
+     * @throws SQLException If the database can't be read
+     */
+    private String followNavigations(PooledConnection connection, String objectType, String keyValue, List<UriResourceNavigation> navigations) throws SQLException {
+        JdbcTable table = tables.get(objectType);
+        String id = exists(connection, table, keyValue) ? keyValue : null;
+        for (UriResourceNavigation navigation : navigations) {
+            EdmEntityType targetEntityType = navigation.getProperty().getType();
+            JdbcTable targetTable = tables.get(targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
+            if ((id == null) || (targetTable == null)) {
+                return null;
+            }
+            String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), navigation.getKeyPredicates());
+            JdbcColumn reference = table.getForeignKey(targetTable.entityClass);
+            JdbcColumn foreignKey = targetTable.getForeignKey(table.entityClass);
+
+            if (reference != null) {
+                String relatedId = selectKey(connection, "select " + reference.name + " from " + table.name + " where " + ID_COLUMN + " = ?", Collections.singletonList(id));
+                id = (targetEntityId == null) || targetEntityId.equals(relatedId) ? relatedId : null;
+            } else if ((foreignKey != null) && (targetEntityId != null)) {
+                id = selectKey(connection, "select " + ID_COLUMN + " from " + targetTable.name + " where " + ID_COLUMN + " = ? and "
+                        + foreignKey.name + " = ?", Arrays.asList(targetEntityId, id));
+            } else {
+                return null;
+            }
+            table = targetTable;
+        }
+        return id;
+    }
+
+    /**
+     * Method returns the full qualified name of the type of a navigation segment
+     * @param navigation Navigation segment
+     * @return Full qualified name of the target type
+     */
+    private static String getTypeName(UriResourceNavigation navigation) {
+        return navigation.getProperty().getType().getFullQualifiedName().getFullQualifiedNameAsString();
+    }
+
+    /**
+     * Method takes a source entity and returns the entities of the target type that reference it through a relatedId
+     * property (ex the Claims of a Policy)
+     * @param sourceEntity Source entity that is related to the returned target entity collection
+     * @param targetEntityType Target entity type that should be returned
+     * @return EntityCollection populated with 0 or more TargetEntityType objects
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public EntityCollection getRelatedEntityCollection(Entity sourceEntity, EdmEntityType targetEntityType) throws ODataException {
+        LOG.info("In getRelatedEntityCollection method");
+        JdbcTable sourceTable = tables.get(sourceEntity.getType());
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        JdbcTable targetTable = tables.get(targetTypeName);
+        EntityCollection ec = new EntityCollection();
+
+        JdbcColumn foreignKey = (sourceTable == null) || (targetTable == null) ? null : targetTable.getForeignKey(sourceTable.entityClass);
+        if (foreignKey == null) {
+            return ec;
+        }
+        String sourceId = Util.parseId(sourceEntity.getId());
+        String sql = targetTable.select + " where " + ALIAS + "." + foreignKey.name + " = ? order by " + KEY_ORDER.getOrder();
+        List<BaseEntity> related = new ArrayList<>();
+        read(connection -> select(connection, targetTable, sql, Collections.singletonList(sourceId), related));
+        ODataTypeTranslator odtt = typeTranslators.get(targetTypeName);
+        for (BaseEntity baseEntity : related) {
+            ec.getEntities().add(odtt.translate(baseEntity));
+        }
+        return ec;
+    }
+
+    /**
+     * Method returns the related entities of each source entity passed in. The related entities of up to
+     * MAX_IN_PARAMETERS sources are read by one query: the sources joined with their references for a single valued
+     * navigation property (ex the Policies of Claims), the entities of the target type referencing them for a
+     * collection (ex the Claims of Policies)
+     * @param sourceEntities Source entities, all of the same type
+     * @param navigationProperty Navigation property of the source type followed from each source entity
+     * @return One EntityCollection per source entity, in the order of the source entities
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public List<EntityCollection> getRelatedEntityCollections(List<Entity> sourceEntities, EdmNavigationProperty navigationProperty) throws ODataException {
+        LOG.info("In getRelatedEntityCollections method");
+        String targetTypeName = navigationProperty.getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        JdbcTable targetTable = tables.get(targetTypeName);
+        JdbcTable sourceTable = sourceEntities.isEmpty() ? null : tables.get(sourceEntities.get(0).getType());
+        Map<String, List<BaseEntity>> relatedEntities = new HashMap<>();
+
+        if ((sourceTable != null) && (targetTable != null)) {
+            Set<String> distinctIds = new LinkedHashSet<>();
+            for (Entity sourceEntity : sourceEntities) {
+                distinctIds.add(Util.parseId(sourceEntity.getId()));
+            }
+            List<Object> sourceIds = new ArrayList<>(distinctIds);
+            JdbcColumn reference = navigationProperty.isCollection() ? null : sourceTable.getForeignKey(targetTable.entityClass);
+            JdbcColumn foreignKey = navigationProperty.isCollection() ? targetTable.getForeignKey(sourceTable.entityClass) : null;
+            for (int from = 0; from < sourceIds.size(); from += MAX_IN_PARAMETERS) {
+                List<Object> parameters = sourceIds.subList(from, Math.min(from + MAX_IN_PARAMETERS, sourceIds.size()));
+                String in = " in (" + String.join(", ", Collections.nCopies(parameters.size(), "?")) + ")";
+                if ((reference != null) && reference.relatedProperty.isSettable()) {
+                    // The id is the first column, the reference is materialized from the join
+                    String sql = sourceTable.select + " where " + ALIAS + "." + ID_COLUMN + in;
+                    read(connection -> selectRelated(connection, sourceTable, sql, parameters, 1, reference.relatedProperty::get, relatedEntities));
+                } else if (foreignKey != null) {
+                    String sql = targetTable.select + " where " + ALIAS + "." + foreignKey.name + in + " order by " + KEY_ORDER.getOrder();
+                    int keyColumn = targetTable.columns.indexOf(foreignKey) + 1;
+                    read(connection -> selectRelated(connection, targetTable, sql, parameters, keyColumn, related -> related, relatedEntities));
+                }
+            }
+        }
+
+        // An entity related to several sources is translated once
+        ODataTypeTranslator odtt = typeTranslators.get(targetTypeName);
+        Map<String, Entity> translated = new HashMap<>();
+        List<EntityCollection> collections = new ArrayList<>(sourceEntities.size());
+        for (Entity sourceEntity : sourceEntities) {
+            EntityCollection ec = new EntityCollection();
+            for (BaseEntity related : relatedEntities.getOrDefault(Util.parseId(sourceEntity.getId()), Collections.emptyList())) {
+                ec.getEntities().add(translated.computeIfAbsent(related.getId(), id -> odtt.translate(related)));
+            }
+            collections.add(ec);
+        }
+        return collections;
+    }
+
+    /**
+     * Method returns the entity that is related to the source entity. If the source entity references the target type
+     * (ex the Policy of a Claim) the referenced entity is returned, otherwise the first entity of the target type
+     * referencing the source entity that matches the key predicates (ex a Claim of a Policy)
+     * @param sourceEntity Source entity that contains a reference to the target
+     * @param targetEntityType type of target object that will be returned
+     * @param keyPredicates  Filter parameters that can be sent it
+     * @return Entity of target type that matches the entity.
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public Entity getRelatedEntity(Entity sourceEntity, EdmEntityType targetEntityType, List<UriParameter> keyPredicates) throws ODataException {
+        LOG.info("In getRelatedEntity method");
+        JdbcTable sourceTable = tables.get(sourceEntity.getType());
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        JdbcTable targetTable = tables.get(targetTypeName);
+        if ((sourceTable == null) || (targetTable == null)) {
+            return null;
+        }
+        String sourceId = Util.parseId(sourceEntity.getId());
+
+        String sql;
+        List<Object> parameters = new ArrayList<>();
+        JdbcColumn reference = sourceTable.getForeignKey(targetTable.entityClass);
+        JdbcColumn foreignKey = targetTable.getForeignKey(sourceTable.entityClass);
+        if (reference != null) {
+            // The referenced entity is read by its key, found in the foreign key of the source
+            parameters.add(sourceId);
+            sql = targetTable.select + " where " + ALIAS + "." + ID_COLUMN + " = (select s." + reference.name + " from "
+                    + sourceTable.name + " s where s." + ID_COLUMN + " = ?)";
+        } else if (foreignKey != null) {
+            String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), keyPredicates);
+            parameters.add(sourceId);
+            String where = ALIAS + "." + foreignKey.name + " = ?";
+            if (targetEntityId != null) {
+                parameters.add(targetEntityId);
+                where += " and " + ALIAS + "." + ID_COLUMN + " = ?";
+            }
+            sql = targetTable.select + " where " + where + " order by " + KEY_ORDER.getOrder() + " limit 1";
+        } else {
+            return null;
+        }
+        List<BaseEntity> related = new ArrayList<>();
+        read(connection -> select(connection, targetTable, sql, parameters, related));
+        return related.isEmpty() ? null : typeTranslators.get(targetTypeName).translate(related.get(0));
+    }
+
+    /**
+     * Method returns the entity that is related to the source entity. The returned entity is of targetEntity type
+     * @param sourceEntity Source entity that contains a reference to the target
+     * @param targetEntityType type of target object that will be returned
+     * @return Entity that is related to the source entity
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public Entity getRelatedEntity(Entity sourceEntity, EdmEntityType targetEntityType) throws ODataException {
+        return getRelatedEntity(sourceEntity, targetEntityType, null);
+    }
+
+    /**
+     * Method Creates the entity for the source entity passed in and inserts it in the table of its type
+     * @param entity Source entity
+     * @return Entity that was newly created
+     * @throws ODataException if error occurred creating the entity
+     */
+    @Override
+    public Entity createEntity(Entity entity) throws ODataException {
+        LOG.info("In createEntity method");
+        if (entity == null) {
+            return null;
+        }
+        JdbcTable table = getWriteTable(entity);
+        return typeTranslators.get(entity.getType()).translate(inTransaction(connection -> insert(connection, table, entity)));
+    }
+
+    /**
+     * Method Updates the entity passed in. The stored entity is read, merged with the entity and written back
+     * @param entity Source entity
+     * @param forceNulls If true a null passed in will replace a value, if false it won't
+     * @return Entity that was newly updated
+     * @throws ODataException if error occurred updating the entity
+     */
+    @Override
+    public Entity updateEntity(Entity entity, boolean forceNulls) throws ODataException {
+        LOG.info("In updateEntity method");
+        if (entity == null) {
+            return null;
+        }
+        JdbcTable table = getWriteTable(entity);
+        return typeTranslators.get(entity.getType()).translate(inTransaction(connection -> {
+            BaseEntity baseEntity = findForUpdate(connection, table, entity);
+            if (baseEntity == null) {
+                throw new ODataException(Messages.ERROR_ENTITY_NOT_FOUND_FOR_UPDATE);
+            }
+            return update(connection, table, typeTranslators.get(entity.getType()).merge(entity, baseEntity, forceNulls,
+                    (relatedClass, id) -> resolveRelated(connection, relatedClass, id)));
+        }));
+    }
+
+    /**
+     * Method Deletes the entity passed in. The foreign keys referencing it are set to null
+     * @param edmEntitySet Source entitySet type
+     * @param keyPredicates Primary key to find record to delete
+     * @return Entity that was deleted from persistent storage
+     */
+    @Override
+    public Entity deleteEntity(EdmEntitySet edmEntitySet, List<UriParameter> keyPredicates) {
+        LOG.info("In deleteEntity method");
+        // Null check
+        if ((edmEntitySet == null) || (keyPredicates == null)) {
+            return null;
+        }
+        String objectType = edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString();
+        JdbcTable table = tables.get(objectType);
+        String id = Util.getPrimaryKeyFromParam(edmEntitySet.getEntityType().getKeyPredicateNames(), keyPredicates);
+        if (id == null) {
+            return null;
+        }
+
+        try {
+            return inTransaction(connection -> {
+                BaseEntity baseEntity = find(connection, table, id);
+                if (baseEntity == null) {
+                    return null;
+                }
+                Entity deleted = typeTranslators.get(objectType).translate(baseEntity);
+                for (JdbcTable referencingTable : tables.values()) {
+                    JdbcColumn foreignKey = referencingTable.getForeignKey(table.entityClass);
+                    if (foreignKey != null) {
+                        execute(connection, "update " + referencingTable.name + " set " + foreignKey.name + " = null where "
+                                + foreignKey.name + " = ?", Collections.singletonList(id));
+                    }
+                }
+                execute(connection, "delete from " + table.name + " where " + ID_COLUMN + " = ?", Collections.singletonList(id));
+                return deleted;
+            });
+        } catch (ODataException e) {
+            throw new ODataRuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method Upserts the entity for the source entity passed in.
+     * It will update it if it matches an existing entity by key, otherwise it will create new
+     * @param entity Source entity
+     * @param forceNulls If true a null passed in will replace a value, if false it won't
+     * @return Entity that was upserted in storage
+     * @throws ODataException if error occurred creating or updating the entity
+     */
+    @Override
+    public Entity upsertEntity(Entity entity, boolean forceNulls) throws ODataException {
+        LOG.info("In upsertEntity method");
+        if (entity == null) {
+            return null;
+        }
+        // The check and the insert or update run in the same transaction
+        JdbcTable table = getWriteTable(entity);
+        return typeTranslators.get(entity.getType()).translate(inTransaction(connection -> {
+            BaseEntity baseEntity = findForUpdate(connection, table, entity);
+            if (baseEntity == null) {
+                return insert(connection, table, entity);
+            }
+            return update(connection, table, typeTranslators.get(entity.getType()).merge(entity, baseEntity, forceNulls,
+                    (relatedClass, id) -> resolveRelated(connection, relatedClass, id)));
+        }));
+    }
+
+    /**
+     * Method returns the TypeTranslators Map.
+     * @return TypeTranslator map that contains type translators for each object
+     */
+    public Map<String, ODataTypeTranslator> getTypeTranslators() {
+        return typeTranslators;
+    }
+
+    /**
+     * Method sets the TypeTranslators.
+     * @param typeTranslators Map of object type to Type Translator
+     */
+    public void setTypeTranslators(Map<String, ODataTypeTranslator> typeTranslators) {
+        this.typeTranslators = typeTranslators;
+    }
+
+    /**
+     * Method returns the DataSource the connections are opened from
+     * @return DataSource
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Method sets the DataSource the connections are opened from. It should not pool the connections itself
+     * @param dataSource DataSource
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Method returns the maximum number of entities returned in a page
+     * @return Maximum page size, 0 if the results are not paged
+     */
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Method sets the maximum number of entities returned in a page. Larger results return a nextLink to the next page
+     * @param maxPageSize Maximum page size, 0 disables paging
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Method returns the maximum number of open connections
+     * @return Maximum pool size
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Method sets the maximum number of open connections, it must be set before open is called
+     * @param maxPoolSize Maximum pool size, 10 by default
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Method returns the maximum number of prepared statements cached per connection
+     * @return Statement cache size
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Method sets the maximum number of prepared statements cached per connection, it must be set before open is called
+     * @param statementCacheSize Statement cache size, 100 by default
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Method returns the maximum time to wait for a free connection
+     * @return Timeout in milliseconds
+     */
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Method sets the maximum time to wait for a free connection, it must be set before open is called
+     * @param acquireTimeout Timeout in milliseconds, 30 seconds by default
+     */
+    public void setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    /**
+     * Method returns the generator of the keys of the entities created without an Id
+     * @return KeyGenerator
+     */
+    public KeyGenerator getKeyGenerator() {
+        return keyGenerator;
+    }
+
+    /**
+     * Method sets the generator of the keys of the entities created without an Id. The keys already stored are
+     * registered with it
+     * @param keyGenerator KeyGenerator
+     */
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method inserts the entity passed in, generating its key if it has none
+     * @param connection Connection of the transaction
+     * @param table Table of the entity
+     * @param entity Source entity
+     * @return Inserted BaseEntity implementation
+     * @throws SQLException If the entity can't be inserted
+     * @throws ODataException If an entity with the same key exists or the entity can't be translated
+     */
+    private BaseEntity insert(PooledConnection connection, JdbcTable table, Entity entity) throws SQLException, ODataException {
+        String key = getKey(entity);
+        if ((key != null) && exists(connection, table, key)) {
+            LOG.error(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+            throw new ODataException(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+        }
+        BaseEntity be = typeTranslators.get(entity.getType()).translate(entity, true,
+                (relatedClass, id) -> resolveRelated(connection, relatedClass, id));
+        if (be.getId() == null) {
+            setNextKey(connection, be, entity.getType(), table);
+        } else {
+            keyGenerator.observe(entity.getType(), be.getId());
+        }
+        execute(connection, table.insert, table.getValues(be));
+        return be;
+    }
+
+    /**
+     * Method writes the values of the entity to its row
+     * @param connection Connection of the transaction
+     * @param table Table of the entity
+     * @param baseEntity Merged BaseEntity implementation
+     * @return Updated BaseEntity implementation
+     * @throws SQLException If the entity can't be written
+     */
+    private BaseEntity update(PooledConnection connection, JdbcTable table, BaseEntity baseEntity) throws SQLException {
+        List<Object> values = table.getValues(baseEntity);
+        // The id is the first column, it is moved to the where clause
+        values.add(values.remove(0));
+        execute(connection, table.update, values);
+        return baseEntity;
+    }
+
+    /**
+     * Method reads the stored entity of the entity passed in
+     * @param connection Connection of the transaction
+     * @param table Table of the entity
+     * @param entity Source entity
+     * @return BaseEntity implementation or null if there is none
+     * @throws SQLException If the table can't be read
+     */
+    private BaseEntity findForUpdate(PooledConnection connection, JdbcTable table, Entity entity) throws SQLException {
+        String key = getKey(entity);
+        return key == null ? null : find(connection, table, key);
+    }
+
+    /**
+     * Method sets the key of the BaseEntity's subclass to a new key from the key generator
+     * @param connection Connection of the transaction
+     * @param baseEntity Base Entity value whose key to set
+     * @param objectType Full qualified name of the entity type
+     * @param table Table of the entity
+     * @throws SQLException If the table can't be read
+     */
+    private void setNextKey(PooledConnection connection, BaseEntity baseEntity, String objectType, JdbcTable table) throws SQLException {
+        LOG.info("In setNextKey method");
+        String newKey = keyGenerator.nextKey(objectType);
+        // Only possible if a key was inserted by another writer, the next keys are checked until a free one is found
+        while (exists(connection, table, newKey)) {
+            newKey = keyGenerator.nextKey(objectType);
+        }
+        baseEntity.setId(newKey);
+    }
+
+    /**
+     * Method registers the keys of the stored entities with the key generator. It is called once the database is
+     * opened and when the key generator is replaced
+     */
+    private void seedKeyGenerator() {
+        LOG.info("In seedKeyGenerator method");
+        if (connectionPool == null) {
+            return;
+        }
+        try {
+            read(connection -> {
+                for (Map.Entry<String, JdbcTable> table : tables.entrySet()) {
+                    PreparedStatement statement = connection.prepare("select " + ID_COLUMN + " from " + table.getValue().name);
+                    statement.setFetchSize(FETCH_SIZE);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            keyGenerator.observe(table.getKey(), resultSet.getString(1));
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (ODataException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method creates the tables that don't exist, the tables are created after the tables they reference
+     * @param connection Connection of the transaction
+     * @throws SQLException If a table can't be created
+     */
+    private void createTables(PooledConnection connection) throws SQLException {
+        Set<String> existingTables = new HashSet<>();
+        DatabaseMetaData metaData = connection.getConnection().getMetaData();
+        try (ResultSet resultSet = metaData.getTables(null, null, "%", new String[] {"TABLE"})) {
+            while (resultSet.next()) {
+                existingTables.add(resultSet.getString("TABLE_NAME").toUpperCase(Locale.ROOT));
+            }
+        }
+        for (JdbcTable table : tables.values()) {
+            if (!existingTables.contains(table.name.toUpperCase(Locale.ROOT))) {
+                LOG.info("Creating table {}", table.name);
+                execute(connection, table.getCreateTable(tables.values()), Collections.emptyList());
+            }
+        }
+    }
+
+    /**
+     * Method returns true if the tables hold no entity
+     * @param connection Connection
+     * @return true if every table is empty
+     * @throws SQLException If a table can't be read
+     */
+    private boolean isEmpty(PooledConnection connection) throws SQLException {
+        for (JdbcTable table : tables.values()) {
+            if (count(connection, table, QueryFilter.NONE) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method inserts the default records, in batches per table
+     * @param connection Connection of the transaction
+     * @throws SQLException If the records can't be inserted
+     */
+    private void loadSampleData(PooledConnection connection) throws SQLException {
+        LOG.info("In loadSampleData method");
+        // Types are inserted after the types they reference
+        for (Map.Entry<String, List<BaseEntity>> sampleEntities : SampleData.create().entrySet()) {
+            JdbcTable table = tables.get(sampleEntities.getKey());
+            PreparedStatement statement = connection.prepare(table.insert);
+            for (BaseEntity baseEntity : sampleEntities.getValue()) {
+                setParameters(statement, table.getValues(baseEntity), table.columns);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Method selects a page of the entities that match the filter when part of the filter or the order are evaluated
+     * in memory. The entities matching the conditions the database evaluates are read in the database order
+     * @param connection Connection
+     * @param table Table of the entities
+     * @param filter Filter, its memoryFilter is evaluated on the entities read
+     * @param order SQL order, or null if the entities are ordered in memory
+     * @param memoryOrder Comparator ordering the entities in memory, null if the database orders them
+     * @param skip Number of matching entities to skip
+     * @param limit Maximum number of entities to add to the page
+     * @param countRequested true if every entity must be evaluated to count the matches
+     * @param page List the entities of the page are added to
+     * @return Number of matching entities if they were counted, null otherwise
+     * @throws SQLException If the table can't be read
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    private Integer selectInMemory(PooledConnection connection, JdbcTable table, QueryFilter filter, String order, PojoComparator memoryOrder,
+                                   int skip, int limit, boolean countRequested, List<BaseEntity> page) throws SQLException, ODataException {
+        String sql = table.select + (filter.getWhere() == null ? "" : " where " + filter.getWhere())
+                + " order by " + (order == null ? KEY_ORDER.getOrder() : order);
+        PreparedStatement statement = connection.prepare(sql);
+        setParameters(statement, filter.getParameters(), null);
+        statement.setFetchSize(FETCH_SIZE);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            Iterable<BaseEntity> candidates = () -> new ResultSetIterator(resultSet, table);
+            if (memoryOrder != null) {
+                int matched = memoryOrder.select(candidates, filter.getMemoryFilter(), skip, limit, page);
+                return countRequested ? matched : null;
+            }
+            int matched = 0;
+            Iterator<BaseEntity> iterator = candidates.iterator();
+            while (iterator.hasNext() && (countRequested || (page.size() < limit))) {
+                BaseEntity candidate = iterator.next();
+                if ((filter.getMemoryFilter() == null) || filter.getMemoryFilter().matches(candidate)) {
+                    if ((matched >= skip) && (page.size() < limit)) {
+                        page.add(candidate);
+                    }
+                    matched++;
+                }
+            }
+            return countRequested ? matched : null;
+        } catch (JdbcRuntimeException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Method reads the entities selected by the query
+     * @param connection Connection
+     * @param table Table of the entities, the query selects its columns and joins
+     * @param sql Query
+     * @param parameters Values of the parameters of the query
+     * @param entities List the entities are added to
+     * @return null
+     * @throws SQLException If the query fails
+     */
+    private Void select(PooledConnection connection, JdbcTable table, String sql, List<Object> parameters, List<BaseEntity> entities) throws SQLException {
+        PreparedStatement statement = connection.prepare(sql);
+        setParameters(statement, parameters, null);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                entities.add(table.join.materialize(resultSet));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method reads the entities selected by the query and groups the related entities by the key of their source
+     * @param connection Connection
+     * @param table Table of the entities, the query selects its columns and joins
+     * @param sql Query
+     * @param parameters Values of the parameters of the query
+     * @param keyColumn Index of the column holding the key of the source entity
+     * @param related Function returning the related entity of an entity read, can return null
+     * @param relatedEntities Related entities by source key, the entities are added to it
+     * @return null
+     * @throws SQLException If the query fails
+     */
+    private Void selectRelated(PooledConnection connection, JdbcTable table, String sql, List<Object> parameters, int keyColumn,
+                               Function<BaseEntity, BaseEntity> related, Map<String, List<BaseEntity>> relatedEntities) throws SQLException {
+        PreparedStatement statement = connection.prepare(sql);
+        setParameters(statement, parameters, null);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                String key = resultSet.getString(keyColumn);
+                BaseEntity relatedEntity = related.apply(table.join.materialize(resultSet));
+                if (relatedEntity != null) {
+                    relatedEntities.computeIfAbsent(key, id -> new ArrayList<>()).add(relatedEntity);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method returns the key selected by the query
+     * @param connection Connection
+     * @param sql Query selecting a key
+     * @param parameters Values of the parameters of the query
+     * @return Key of the first row, null if there is none or the key is null
+     * @throws SQLException If the query fails
+     */
+    private String selectKey(PooledConnection connection, String sql, List<Object> parameters) throws SQLException {
+        PreparedStatement statement = connection.prepare(sql);
+        setParameters(statement, parameters, null);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
+    /**
+     * Method reads the entity with the key passed in
+     * @param connection Connection
+     * @param table Table of the entity
+     * @param id Primary key
+     * @return BaseEntity implementation or null if there is none
+     * @throws SQLException If the table can't be read
+     */
+    private BaseEntity find(PooledConnection connection, JdbcTable table, String id) throws SQLException {
+        List<BaseEntity> found = new ArrayList<>(1);
+        select(connection, table, table.select + " where " + ALIAS + "." + ID_COLUMN + " = ?", Collections.singletonList(id), found);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Method reads the entity referenced by a relatedId property of an entity being written
+     * @param connection Connection of the transaction
+     * @param relatedClass BaseEntity implementation of the referenced entity
+     * @param id Primary key of the referenced entity
+     * @return BaseEntity implementation or null if there is none
+     * @throws ODataException If the table can't be read
+     */
+    private BaseEntity resolveRelated(PooledConnection connection, Class<?> relatedClass, String id) throws ODataException {
+        for (JdbcTable table : tables.values()) {
+            if (table.entityClass.equals(relatedClass)) {
+                try {
+                    return find(connection, table, id);
+                } catch (SQLException e) {
+                    LOG.error(e.getMessage());
+                    throw new ODataException(e.getMessage(), e);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method returns true if the table holds an entity with the key passed in
+     * @param connection Connection
+     * @param table Table of the entity
+     * @param id Primary key
+     * @return true if the key is used
+     * @throws SQLException If the table can't be read
+     */
+    private boolean exists(PooledConnection connection, JdbcTable table, String id) throws SQLException {
+        PreparedStatement statement = connection.prepare("select " + ID_COLUMN + " from " + table.name + " where " + ID_COLUMN + " = ?");
+        statement.setString(1, id);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * Method counts the entities that match the conditions of the filter evaluated by the database
+     * @param connection Connection
+     * @param table Table of the entities
+     * @param filter Filter evaluated by the database
+     * @return Number of matching entities
+     * @throws SQLException If the table can't be read
+     */
+    private int count(PooledConnection connection, JdbcTable table, QueryFilter filter) throws SQLException {
+        PreparedStatement statement = connection.prepare("select count(*) from " + table.name + " " + ALIAS
+                + (filter.getWhere() == null ? "" : " where " + filter.getWhere()));
+        setParameters(statement, filter.getParameters(), null);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Method executes a statement that doesn't return rows
+     * @param connection Connection
+     * @param sql Statement
+     * @param parameters Values of the parameters
+     * @return Number of rows written
+     * @throws SQLException If the statement fails
+     */
+    private int execute(PooledConnection connection, String sql, List<Object> parameters) throws SQLException {
+        PreparedStatement statement = connection.prepare(sql);
+        setParameters(statement, parameters, null);
+        return statement.executeUpdate();
+    }
+
+    /**
+     * Method translates the $orderby option into a SQL order. The primary key breaks the ties like in memory
+     * @param table Table of the entities
+     * @param orderByOption OrderBy option passed in, may be null
+     * @return SQL order or null if an ordered property is not stored (ex TotalCostAmount)
+     */
+    private String getOrder(JdbcTable table, OrderByOption orderByOption) {
+        if ((orderByOption == null) || orderByOption.getOrders().isEmpty()) {
+            return KEY_ORDER.getOrder();
+        }
+        StringBuilder order = new StringBuilder();
+        for (OrderByItem item : orderByOption.getOrders()) {
+            QueryProperty property = null;
+            Expression expression = item.getExpression();
+            if (expression instanceof Member) {
+                List<UriResource> resourceParts = ((Member) expression).getResourcePath().getUriResourceParts();
+                if ((resourceParts.size() == 1) && (resourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+                    property = table.properties.get(((UriResourcePrimitiveProperty) resourceParts.get(0)).getProperty().getName());
+                }
+            }
+            if (property == null) {
+                return null;
+            }
+            if (KEY_ORDER.getId().equals(property.getPath())) {
+                order.append(KEY_ORDER.getOrder(item.isDescending())).append(", ");
+            } else {
+                // Nulls sort first like in memory
+                order.append(property.getPath()).append(item.isDescending() ? " desc nulls last, " : " asc nulls first, ");
+            }
+        }
+        return order.append(KEY_ORDER.getOrder()).toString();
+    }
+
+    /**
+     * Method returns the translated filter for the filter option passed in. Filters are cached by entity type and
+     * normalized filter expression so repeated queries (ex Salesforce list views) skip the translation, and their SQL
+     * is the same so the prepared statements are reused
+     * @param filterOption Filter option passed in, may be null
+     * @param objectType Full qualified name of the filtered type
+     * @param odtt Type translator used to read the properties of the filtered type
+     * @return Filter, QueryFilter.NONE if no filter was passed in
+     * @throws ODataApplicationException Exception thrown if the filter expression can't be visited (400) or uses
+     * unsupported operations
+     */
+    private QueryFilter getCompiledFilter(FilterOption filterOption, String objectType, ODataTypeTranslator odtt) throws ODataApplicationException {
+        if ((filterOption == null) || (filterOption.getExpression() == null)) {
+            return QueryFilter.NONE;
+        }
+        Expression filterExpression = filterOption.getExpression();
+        String cacheKey = objectType + ":" + filterExpression;
+        QueryFilter filter = compiledFilters.get(cacheKey);
+        if (filter == null) {
+            Map<String, QueryProperty> properties = tables.get(objectType).properties;
+            try {
+                filter = QueryFilter.compile(filterExpression, parameters -> new SqlFilterExpressionVisitor(properties, parameters), odtt);
+            } catch (ExpressionVisitException e) {
+                throw new ODataApplicationException(Messages.ERROR_INVALID_FILTER + e.getMessage(), HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT, e);
+            }
+            compiledFilters.put(cacheKey, filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Method returns the value of the $skip option
+     * @param uriInfo URI Info object containing the skip parameter
+     * @return Number of entities to skip, 0 if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid skip value is passed in
+     */
+    private int getSkip(UriInfo uriInfo) throws ODataApplicationException {
+        SkipOption skipOption = uriInfo.getSkipOption();
+        if (skipOption == null) {
+            return 0;
+        }
+        int skip = skipOption.getValue();
+        if (skip < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_SKIP + "{}", skip);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_SKIP + skip, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+        }
+        return skip;
+    }
+
+    /**
+     * Method returns the value of the $top option
+     * @param uriInfo URI Info object containing the top parameter
+     * @return Maximum number of entities to return, Integer.MAX_VALUE if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid top value is passed in
+     */
+    private int getTop(UriInfo uriInfo) throws ODataApplicationException {
+        TopOption topOption = uriInfo.getTopOption();
+        if (topOption == null) {
+            return Integer.MAX_VALUE;
+        }
+        int top = topOption.getValue();
+        if (top < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_TOP + "{}", top);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_TOP + top, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+        }
+        return top;
+    }
+
+    /**
+     * Method returns the table of the entity passed in
+     * @param entity Entity whose type is being written
+     * @return Table of the entity
+     * @throws ODataException If the entity type is not set or not known
+     */
+    private JdbcTable getWriteTable(Entity entity) throws ODataException {
+        JdbcTable table = entity.getType() == null ? null : tables.get(entity.getType());
+        if (table == null) {
+            throw new ODataException(Messages.ERROR_ENTITY_TYPE_NOT_FOUND);
+        }
+        return table;
+    }
+
+    /**
+     * Method returns the primary key of the entity passed in
+     * @param entity Olingo entity
+     * @return Id or null if it is not set
+     */
+    private String getKey(Entity entity) {
+        Property property = entity.getProperty(Constants.ID);
+        return (property == null) || (property.getValue() == null) ? null : (String) property.getValue();
+    }
+
+    /**
+     * Method runs the work with a connection of the pool in auto-commit mode
+     * @param work Work reading the database
+     * @param <T> Type of the result
+     * @return Result of the work
+     * @throws ODataException Exception thrown by the work or if the database can't be read
+     */
+    private <T> T read(Work<T> work) throws ODataException {
+        PooledConnection connection = acquire();
+        boolean broken = false;
+        try {
+            return work.execute(connection);
+        } catch (SQLException e) {
+            LOG.error(e.getMessage());
+            broken = isConnectionFailure(e);
+            throw new ODataException(e.getMessage(), e);
+        } finally {
+            connectionPool.release(connection, broken);
+        }
+    }
+
+    /**
+     * Method runs the work in a transaction with a connection of the pool. The transaction is rolled back if the
+     * work fails
+     * @param work Work writing the database
+     * @param <T> Type of the result
+     * @return Result of the work
+     * @throws ODataException Exception thrown by the work or if the transaction can't be committed
+     */
+    private <T> T inTransaction(Work<T> work) throws ODataException {
+        PooledConnection connection = acquire();
+        boolean broken = false;
+        try {
+            connection.getConnection().setAutoCommit(false);
+            T result = work.execute(connection);
+            connection.getConnection().commit();
+            return result;
+        } catch (SQLException e) {
+            LOG.error(e.getMessage());
+            broken = isConnectionFailure(e);
+            throw new ODataException(e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            LOG.error(e.getMessage());
+            throw new ODataException(e.getMessage(), e);
+        } finally {
+            // The pool rolls back an unfinished transaction
+            connectionPool.release(connection, broken);
+        }
+    }
+
+    /**
+     * Method returns a connection of the pool
+     * @return Connection
+     * @throws ODataException If no connection is available
+     */
+    private PooledConnection acquire() throws ODataException {
+        try {
+            return connectionPool.acquire();
+        } catch (SQLException e) {
+            LOG.error(e.getMessage());
+            throw new ODataException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method returns true if the exception means the connection can't be used anymore
+     * @param e Exception thrown by the driver
+     * @return true for the connection exceptions (SQL state 08)
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        return (e.getSQLState() != null) && e.getSQLState().startsWith("08");
+    }
+
+    /**
+     * Method sets the parameters of a statement
+     * @param statement Prepared statement
+     * @param parameters Values of the parameters
+     * @param columns Columns the parameters are written to, used to type the nulls, null if no value is null
+     * @throws SQLException If a parameter can't be set
+     */
+    private static void setParameters(PreparedStatement statement, List<Object> parameters, List<JdbcColumn> columns) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            if (value == null) {
+                statement.setNull(i + 1, columns == null ? Types.VARCHAR : columns.get(i).sqlType);
+            } else if (value instanceof Date) {
+                // Dates are stored as days
+                statement.setDate(i + 1, new java.sql.Date(((Date) value).getTime()));
+            } else {
+                statement.setObject(i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * Work done with a connection
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    private interface Work<T> {
+
+        /**
+         * Method does the work
+         * @param connection Connection of the pool
+         * @return Result of the work
+         * @throws SQLException Exception thrown if the database can't be read or written
+         * @throws ODataException Exception thrown if the work fails
+         */
+        T execute(PooledConnection connection) throws SQLException, ODataException;
+    }
+
+    /**
+     * Query of the entities related to the entity at the end of a navigation path
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    private interface RelatedQuery<T> {
+
+        /**
+         * Method runs the query
+         * @param objectType Full qualified name of the type of the related entities
+         * @param foreignKey Foreign key column of the table holding the entity the path leads to
+         * @param relatedId Primary key of the entity the path leads to
+         * @return Result of the query
+         * @throws ODataException Exception thrown if the query fails
+         */
+        T execute(String objectType, JdbcColumn foreignKey, String relatedId) throws ODataException;
+    }
+
+    /**
+     * Unchecked exception wrapping the SQLException thrown while iterating over a ResultSet
+     */
+    private static final class JdbcRuntimeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor used to wrap the exception
+         * @param cause Exception thrown by the driver
+         */
+        private JdbcRuntimeException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    /**
+     * Iterator over the entities of a ResultSet, the rows are read as the iterator advances
+     */
+    private static final class ResultSetIterator implements Iterator<BaseEntity> {
+        private final ResultSet resultSet;
+        private final JdbcTable table;
+        private Boolean hasNext;
+
+        /**
+         * Constructor used to iterate over the ResultSet
+         * @param resultSet ResultSet of a query selecting the columns and joins of the table
+         * @param table Table of the entities
+         */
+        private ResultSetIterator(ResultSet resultSet, JdbcTable table) {
+            this.resultSet = resultSet;
+            this.table = table;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                try {
+                    hasNext = resultSet.next();
+                } catch (SQLException e) {
+                    throw new JdbcRuntimeException(e);
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public BaseEntity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            try {
+                return table.join.materialize(resultSet);
+            } catch (SQLException e) {
+                throw new JdbcRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Iterator over the entities of a query read by chunks of FETCH_SIZE rows. Each chunk is read by its own statement
+     * with a connection of the pool, so no connection is held while the response is written. In key order the next
+     * chunk resumes after the last key read, otherwise at the offset of the rows read, so rows written between two
+     * chunks can be missed or returned twice as with the pages of a paged response. If a chunk after the first one
+     * can't be read the response is aborted
+     */
+    private final class ChunkIterator implements Iterator<BaseEntity> {
+        private final JdbcTable table;
+        private final QueryFilter filter;
+        private final String order;
+        private final boolean keyOrder;
+        private String lastKey;
+        private int offset;
+        private int remaining;
+        private Iterator<BaseEntity> chunk = Collections.emptyIterator();
+        private boolean exhausted;
+
+        /**
+         * Constructor used to populate the iterator, no row is read until fetch or hasNext is called
+         * @param table Table of the entities
+         * @param filter Filter of the query, its memory filter is evaluated on each row read
+         * @param order SQL order of the entities
+         * @param lastKey Key the entities sort after in key order, null to start at the offset
+         * @param offset Number of rows to skip
+         * @param limit Maximum number of rows to read
+         */
+        private ChunkIterator(JdbcTable table, QueryFilter filter, String order, String lastKey, int offset, int limit) {
+            this.table = table;
+            this.filter = filter;
+            this.order = order;
+            this.keyOrder = order.equals(KEY_ORDER.getOrder());
+            this.lastKey = lastKey;
+            this.offset = offset;
+            this.remaining = limit;
+        }
+
+        /**
+         * Method reads the next chunk of rows
+         * @param connection Connection
+         * @throws SQLException If the table can't be read
+         * @throws ODataException Exception thrown if the filter can't be evaluated on a row
+         */
+        private void fetch(PooledConnection connection) throws SQLException, ODataException {
+            List<Object> parameters = new ArrayList<>(filter.getParameters());
+            String where = filter.getWhere();
+            if (lastKey != null) {
+                String after = KEY_ORDER.after(lastKey, parameters, index -> "?");
+                where = where == null ? after : where + " and " + after;
+            }
+            int size = Math.min(FETCH_SIZE, remaining);
+            parameters.add(size);
+            parameters.add(offset);
+            List<BaseEntity> rows = new ArrayList<>(size);
+            select(connection, table, table.select + (where == null ? "" : " where " + where) + " order by " + order
+                    + " limit ? offset ?", parameters, rows);
+
+            remaining -= rows.size();
+            exhausted = (rows.size() < size) || (remaining == 0);
+            if (keyOrder && !rows.isEmpty()) {
+                lastKey = rows.get(rows.size() - 1).getId();
+                offset = 0;
+            } else {
+                offset += rows.size();
+            }
+            if (filter.getMemoryFilter() != null) {
+                List<BaseEntity> matches = new ArrayList<>(rows.size());
+                for (BaseEntity row : rows) {
+                    if (filter.getMemoryFilter().matches(row)) {
+                        matches.add(row);
+                    }
+                }
+                rows = matches;
+            }
+            chunk = rows.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!chunk.hasNext() && !exhausted) {
+                try {
+                    read(connection -> {
+                        fetch(connection);
+                        return null;
+                    });
+                } catch (ODataException e) {
+                    throw new ODataRuntimeException(e.getMessage(), e);
+                }
+            }
+            return chunk.hasNext();
+        }
+
+        @Override
+        public BaseEntity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.next();
+        }
+    }
+
+    /**
+     * Column of a table: a writable property or the foreign key of a relatedId property
+     */
+    private static final class JdbcColumn {
+        private final String name;
+        private final WritableProperty property;
+        private final RelatedProperty relatedProperty;
+        private final Class<?> type;
+        private final int sqlType;
+
+        /**
+         * Constructor used to populate the column
+         * @param name Column name
+         * @param property Writable property stored in the column, null for a foreign key
+         * @param relatedProperty relatedId property whose related entity key is stored in the column, null otherwise
+         * @param type Type of the values, a primitive class for primitive properties
+         */
+        private JdbcColumn(String name, WritableProperty property, RelatedProperty relatedProperty, Class<?> type) {
+            this.name = name;
+            this.property = property;
+            this.relatedProperty = relatedProperty;
+            this.type = type;
+            this.sqlType = toSqlType(type);
+        }
+
+        /**
+         * Method returns the value of the column for the entity
+         * @param baseEntity BaseEntity implementation
+         * @return Value to store, can be null
+         */
+        private Object getValue(BaseEntity baseEntity) {
+            if (property != null) {
+                return property.get(baseEntity);
+            }
+            BaseEntity related = relatedProperty.get(baseEntity);
+            return related == null ? null : related.getId();
+        }
+
+        /**
+         * Method reads the value of the column
+         * @param resultSet ResultSet positioned on a row
+         * @param index Index of the column in the ResultSet
+         * @return Value of the property, null if the column is null
+         * @throws SQLException If the value can't be read
+         */
+        private Object read(ResultSet resultSet, int index) throws SQLException {
+            switch (sqlType) {
+                case Types.DATE:
+                    java.sql.Date date = resultSet.getDate(index);
+                    return date == null ? null : new Date(date.getTime());
+                case Types.DECIMAL:
+                    // The trailing zeros of the column scale are removed so the value reads as it was written
+                    BigDecimal decimal = resultSet.getBigDecimal(index);
+                    if (decimal == null) {
+                        return null;
+                    }
+                    decimal = decimal.stripTrailingZeros();
+                    return decimal.scale() < 0 ? decimal.setScale(0) : decimal;
+                case Types.INTEGER:
+                    int integer = resultSet.getInt(index);
+                    return resultSet.wasNull() ? null : integer;
+                case Types.BOOLEAN:
+                    boolean bool = resultSet.getBoolean(index);
+                    return resultSet.wasNull() ? null : bool;
+                default:
+                    return resultSet.getString(index);
+            }
+        }
+
+        /**
+         * Method returns the SQL definition of the column
+         * @return Column definition
+         */
+        private String getDefinition() {
+            String definition;
+            switch (sqlType) {
+                case Types.DATE:
+                    definition = "date";
+                    break;
+                case Types.DECIMAL:
+                    definition = "decimal(19, 4)";
+                    break;
+                case Types.INTEGER:
+                    definition = "integer";
+                    break;
+                case Types.BOOLEAN:
+                    definition = "boolean";
+                    break;
+                default:
+                    definition = "varchar(255)";
+                    break;
+            }
+            if (ID_COLUMN.equals(name)) {
+                return name + " " + definition + " primary key";
+            }
+            return name + " " + definition + (type.isPrimitive() ? " not null" : "");
+        }
+
+        /**
+         * Method returns the SQL type of the values of a property
+         * @param type Type of the property
+         * @return java.sql.Types constant
+         */
+        private static int toSqlType(Class<?> type) {
+            if (String.class.equals(type)) {
+                return Types.VARCHAR;
+            } else if (Date.class.equals(type)) {
+                return Types.DATE;
+            } else if (BigDecimal.class.equals(type)) {
+                return Types.DECIMAL;
+            } else if (int.class.equals(type) || Integer.class.equals(type)) {
+                return Types.INTEGER;
+            } else if (boolean.class.equals(type) || Boolean.class.equals(type)) {
+                return Types.BOOLEAN;
+            }
+            throw new IllegalArgumentException("Unsupported property type " + type.getName());
+        }
+    }
+
+    /**
+     * Table of an entity type: its columns, the statements writing it and the query selecting its entities with the
+     * related entities read by the translator
+     */
+    private static final class JdbcTable {
+        private final Class<? extends BaseEntity> entityClass;
+        private final String name;
+        private final List<JdbcColumn> columns;
+        private final Map<String, QueryProperty> properties = new HashMap<>();
+        private final Map<Class<?>, JdbcColumn> foreignKeys = new HashMap<>();
+        private final JoinNode join;
+        private final String select;
+        private final String insert;
+        private final String update;
+
+        /**
+         * Constructor maps the properties of the entity class to columns
+         * @param entityClass BaseEntity implementation stored in the table
+         */
+        private JdbcTable(Class<? extends BaseEntity> entityClass) {
+            this.entityClass = entityClass;
+            this.name = entityClass.getSimpleName();
+            this.columns = getColumns(entityClass);
+            for (JdbcColumn column : columns) {
+                String path = ALIAS + "." + column.name;
+                if (column.property != null) {
+                    boolean nullable = !column.type.isPrimitive() && !ID_COLUMN.equals(column.name);
+                    properties.put(column.property.getPropertyName(), new QueryProperty(path, box(column.type), nullable));
+                } else {
+                    properties.put(column.relatedProperty.getPropertyName(), new QueryProperty(path, String.class, true));
+                    foreignKeys.put(column.relatedProperty.getRelatedClass(), column);
+                }
+            }
+
+            StringJoiner selectColumns = new StringJoiner(", ");
+            StringBuilder from = new StringBuilder(name).append(' ').append(ALIAS);
+            this.join = new JoinNode(entityClass, ALIAS, MAX_JOIN_DEPTH, selectColumns, from, new int[] {1, 1});
+            this.select = "select " + selectColumns + " from " + from;
+
+            StringJoiner insertColumns = new StringJoiner(", ");
+            StringJoiner insertValues = new StringJoiner(", ");
+            StringJoiner updateColumns = new StringJoiner(", ");
+            for (JdbcColumn column : columns) {
+                insertColumns.add(column.name);
+                insertValues.add("?");
+                if (!ID_COLUMN.equals(column.name)) {
+                    updateColumns.add(column.name + " = ?");
+                }
+            }
+            this.insert = "insert into " + name + " (" + insertColumns + ") values (" + insertValues + ")";
+            this.update = "update " + name + " set " + updateColumns + " where " + ID_COLUMN + " = ?";
+        }
+
+        /**
+         * Method returns the foreign key column referencing the related class
+         * @param relatedClass Class of the related entity
+         * @return Column or null if the table doesn't reference the class
+         */
+        private JdbcColumn getForeignKey(Class<?> relatedClass) {
+            return foreignKeys.get(relatedClass);
+        }
+
+        /**
+         * Method returns the values of the columns for the entity, in column order (the id first)
+         * @param baseEntity BaseEntity implementation
+         * @return Values of the columns
+         */
+        private List<Object> getValues(BaseEntity baseEntity) {
+            List<Object> values = new ArrayList<>(columns.size());
+            for (JdbcColumn column : columns) {
+                values.add(column.getValue(baseEntity));
+            }
+            return values;
+        }
+
+        /**
+         * Method returns the statement creating the table, with the foreign keys to the tables passed in
+         * @param referencedTables Tables the foreign keys can reference
+         * @return Create table statement
+         */
+        private String getCreateTable(Collection<JdbcTable> referencedTables) {
+            StringJoiner definitions = new StringJoiner(", ");
+            for (JdbcColumn column : columns) {
+                definitions.add(column.getDefinition());
+            }
+            for (JdbcTable referencedTable : referencedTables) {
+                JdbcColumn foreignKey = getForeignKey(referencedTable.entityClass);
+                if (foreignKey != null) {
+                    definitions.add("foreign key (" + foreignKey.name + ") references " + referencedTable.name + " (" + ID_COLUMN + ")");
+                }
+            }
+            return "create table " + name + " (" + definitions + ")";
+        }
+
+        /**
+         * Method returns the columns of an entity class: the id, the other writable properties and the foreign keys
+         * @param entityClass BaseEntity implementation
+         * @return Columns, the id first
+         */
+        private static List<JdbcColumn> getColumns(Class<? extends BaseEntity> entityClass) {
+            EntityMapping entityMapping = EntityMapping.forClass(entityClass);
+            List<JdbcColumn> columns = new ArrayList<>();
+            for (WritableProperty property : entityMapping.getWritableProperties().values()) {
+                if (property.getAttributeName() != null) {
+                    JdbcColumn column = new JdbcColumn(property.getAttributeName(), property, null, property.getType());
+                    columns.add(ID_COLUMN.equals(column.name) ? 0 : columns.size(), column);
+                }
+            }
+            for (RelatedProperty relatedProperty : entityMapping.getRelatedProperties()) {
+                if (relatedProperty.getAttributeName() != null) {
+                    columns.add(new JdbcColumn(relatedProperty.getAttributeName() + "Id", null, relatedProperty, String.class));
+                }
+            }
+            return columns;
+        }
+
+        /**
+         * Method returns the wrapper class of a primitive type
+         * @param type Type of a property
+         * @return Wrapper class or the type itself if it is not primitive
+         */
+        private static Class<?> box(Class<?> type) {
+            if (int.class.equals(type)) {
+                return Integer.class;
+            } else if (boolean.class.equals(type)) {
+                return Boolean.class;
+            }
+            return type;
+        }
+    }
+
+    /**
+     * Table of the select query: the root table or a related table joined through a foreign key. It materializes its
+     * entity from the columns it selects
+     */
+    private static final class JoinNode {
+        private final EntityMapping entityMapping;
+        private final List<JdbcColumn> columns;
+        private final int firstColumn;
+        private final Map<RelatedProperty, JoinNode> children = new HashMap<>();
+
+        /**
+         * Constructor adds the columns of the table and the joins of its related tables up to the depth passed in
+         * @param entityClass BaseEntity implementation stored in the table
+         * @param alias Alias of the table in the query
+         * @param depth Number of relationship levels left to join
+         * @param selectColumns Selected columns
+         * @param from From clause, the joins are appended
+         * @param counters Index of the next selected column and number of the next alias
+         */
+        private JoinNode(Class<? extends BaseEntity> entityClass, String alias, int depth, StringJoiner selectColumns, StringBuilder from, int[] counters) {
+            this.entityMapping = EntityMapping.forClass(entityClass);
+            this.columns = JdbcTable.getColumns(entityClass);
+            this.firstColumn = counters[0];
+            for (JdbcColumn column : columns) {
+                selectColumns.add(alias + "." + column.name);
+            }
+            counters[0] += columns.size();
+            if (depth == 0) {
+                return;
+            }
+            for (JdbcColumn column : columns) {
+                if ((column.relatedProperty != null) && column.relatedProperty.isSettable()) {
+                    @SuppressWarnings("unchecked")
+                    Class<? extends BaseEntity> relatedClass = (Class<? extends BaseEntity>) column.relatedProperty.getRelatedClass();
+                    String relatedAlias = "t" + counters[1]++;
+                    from.append(" left join ").append(relatedClass.getSimpleName()).append(' ').append(relatedAlias)
+                            .append(" on ").append(relatedAlias).append('.').append(ID_COLUMN).append(" = ").append(alias).append('.').append(column.name);
+                    children.put(column.relatedProperty, new JoinNode(relatedClass, relatedAlias, depth - 1, selectColumns, from, counters));
+                }
+            }
+        }
+
+        /**
+         * Method creates the entity of the current row with its related entities. A related entity past the join
+         * depth only holds its id
+         * @param resultSet ResultSet positioned on a row
+         * @return New BaseEntity implementation
+         * @throws SQLException If a value can't be read
+         */
+        private BaseEntity materialize(ResultSet resultSet) throws SQLException {
+            BaseEntity baseEntity = entityMapping.newInstance();
+            for (int i = 0; i < columns.size(); i++) {
+                JdbcColumn column = columns.get(i);
+                Object value = column.read(resultSet, firstColumn + i);
+                if (column.property != null) {
+                    if (value != null) {
+                        column.property.set(baseEntity, value);
+                    }
+                } else if ((value != null) && column.relatedProperty.isSettable()) {
+                    JoinNode child = children.get(column.relatedProperty);
+                    BaseEntity related;
+                    if (child != null) {
+                        related = child.materialize(resultSet);
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        Class<? extends BaseEntity> relatedClass = (Class<? extends BaseEntity>) column.relatedProperty.getRelatedClass();
+                        related = EntityMapping.forClass(relatedClass).newInstance();
+                        related.setId((String) value);
+                    }
+                    column.relatedProperty.set(baseEntity, related);
+                }
+            }
+            return baseEntity;
+        }
+    }
+}
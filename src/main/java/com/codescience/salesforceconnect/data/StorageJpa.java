@@ -0,0 +1,1235 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.data.QueryFilterExpressionVisitor.QueryProperty;
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.service.Messages;
+import com.codescience.salesforceconnect.translators.EntityMapping;
+import com.codescience.salesforceconnect.translators.EntityMapping.RelatedProperty;
+import com.codescience.salesforceconnect.translators.EntityMapping.WritableProperty;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import com.codescience.salesforceconnect.util.KeyComparator;
+import com.codescience.salesforceconnect.util.Util;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of the Storage interface that stores the entities in a relational database through JPA. The entities
+ * package is mapped to tables by its JPA annotations. $filter, $orderby, $skip, $top and $count are translated into
+ * JPQL with bound parameters so the database filters, sorts and pages the entities, and only the entities returned are
+ * loaded (with their related entities in the same query). A filter or an order on a computed property (ex
+ * TotalCostAmount) is evaluated in memory on the entities selected by the conditions the database can evaluate.
+ * Collections are returned in primary key order (numeric keys by value) unless they are ordered.
+ * Each operation runs in its own EntityManager, writes in a transaction
+ */
+public class StorageJpa implements Storage {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageJpa.class);
+    private static final int MAX_COMPILED_FILTERS = 256;
+    private static final int MAX_FETCH_DEPTH = 3;
+    private static final int FETCH_SIZE = 500;
+    private static final int MAX_IN_PARAMETERS = 500;
+    private static final String ALIAS = "e";
+    private static final KeyOrder KEY_ORDER = new KeyOrder(ALIAS + ".id", "length");
+    private Map<String, ODataTypeTranslator> typeTranslators = new HashMap<>();
+    private final Map<String, JpaType> types = new HashMap<>();
+    private EntityManagerFactory entityManagerFactory;
+    private int maxPageSize;
+    private KeyGenerator keyGenerator = new SequenceKeyGenerator();
+    private final Map<String, QueryFilter> compiledFilters = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryFilter> eldest) {
+            return size() > MAX_COMPILED_FILTERS;
+        }
+    });
+
+    /**
+     * Method maps the entity types to their JPA entities and loads the default records if the database holds no entity.
+     * Called by Spring once the properties are set
+     */
+    public void open() {
+        LOG.info("In open method");
+        for (Map.Entry<String, Class<? extends BaseEntity>> entityClass : SampleData.getEntityClasses().entrySet()) {
+            types.put(entityClass.getKey(), new JpaType(entityManagerFactory.getMetamodel().entity(entityClass.getValue())));
+        }
+        try {
+            if (read(this::isEmpty)) {
+                loadSampleData();
+            }
+        } catch (ODataException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method reads the collection of entities of the type passed in. The $filter, $orderby, $skip, $top and $count
+     * options are translated into the query when the database can evaluate them, otherwise the entities matching the
+     * conditions the database evaluates are streamed and the rest of the filter and the order are applied in memory.
+     * If the result is larger than maxPageSize only the first page is returned and the next property of the iterator
+     * holds the $skiptoken query of the next page
+     * @param edmEntitySet EntitySet (collection) type to be read
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the Entities read
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
+     */
+    @Override
+    public EntityIterator readEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
+        LOG.info("In readEntitySetData method");
+        return query(edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString(), uriInfo, null, null);
+    }
+
+    /**
+     * Method reads the entities related to the entity at the end of the navigation path (ex the Claims of
+     * Policies('2000')/Claims). The path is followed first, then the related entities are queried with the $filter,
+     * $orderby, $skip, $top and $count options like readEntitySetData does, restricted to the relationship
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the related Entities, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if an invalid option is passed in or the database can't be read
+     */
+    @Override
+    public EntityIterator readNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                                UriInfo uriInfo) throws ODataException {
+        LOG.info("In readNavigationSetData method");
+        return queryRelated(edmEntitySet, keyParams, navigations,
+                (targetTypeName, relationship, relatedId) -> query(targetTypeName, uriInfo, relationship, relatedId));
+    }
+
+    /**
+     * Method counts the entities related to the entity at the end of the navigation path that match the $filter
+     * option (ex Policies('2000')/Claims/$count) without reading them
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching related entities, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the filter can't be evaluated or the database can't be read
+     */
+    @Override
+    public Integer countNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                          UriInfo uriInfo) throws ODataException {
+        LOG.info("In countNavigationSetData method");
+        return queryRelated(edmEntitySet, keyParams, navigations,
+                (targetTypeName, relationship, relatedId) -> count(targetTypeName, uriInfo, relationship, relatedId));
+    }
+
+    /**
+     * Method follows the navigation path up to its last segment and runs the query of the related entities, restricted
+     * to the entity the path leads to
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param relatedQuery Query of the entities of the last segment
+     * @param <T> Type of the result of the query
+     * @return Result of the query, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the query fails or the database can't be read
+     */
+    private <T> T queryRelated(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                               RelatedQuery<T> relatedQuery) throws ODataException {
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+        List<UriResourceNavigation> path = navigations.subList(0, navigations.size() - 1);
+        String sourceTypeName = path.isEmpty() ? objectType : getTypeName(path.get(path.size() - 1));
+        String targetTypeName = getTypeName(navigations.get(navigations.size() - 1));
+        JpaType sourceType = types.get(sourceTypeName);
+        JpaType targetType = types.get(targetTypeName);
+        RelatedProperty relationship = (sourceType == null) || (targetType == null) ? null : targetType.getRelationship(sourceType.entityClass);
+        if ((keyValue == null) || (types.get(objectType) == null) || (relationship == null)) {
+            return null;
+        }
+
+        List<BaseEntity> sources = read(em -> followNavigations(em, objectType, keyValue, path));
+        if ((sources == null) || sources.isEmpty()) {
+            return null;
+        }
+        return relatedQuery.execute(targetTypeName, relationship, sources.get(0).getId());
+    }
+
+    /**
+     * Method queries the entities of the type with the $filter, $orderby, $skip, $top, $count and $skiptoken options,
+     * restricted to the entities related to an entity if a relationship is passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the query options
+     * @param relationship relatedId property of the type holding the related entity, null to read the whole entity set
+     * @param relatedId Primary key of the related entity
+     * @return EntityIterator over the Entities
+     * @throws ODataException Exception thrown if an invalid option is passed in or the database can't be read
+     */
+    private EntityIterator query(String objectType, UriInfo uriInfo, RelatedProperty relationship, String relatedId) throws ODataException {
+        ODataTypeTranslator odtt = typeTranslators.get(objectType);
+        JpaType type = types.get(objectType);
+
+        QueryFilter filter = getFilter(objectType, uriInfo, relationship, relatedId);
+        String order = getOrder(type, uriInfo.getOrderByOption());
+        PojoComparator memoryOrder = order == null ? PojoComparator.create(uriInfo.getOrderByOption(), odtt, KeyComparator.INSTANCE) : null;
+        CountOption countOption = uriInfo.getCountOption();
+        boolean countRequested = (countOption != null) && countOption.getValue();
+        int skip = getSkip(uriInfo);
+        int top = getTop(uriInfo);
+
+        SkipToken skipToken = SkipToken.parse(uriInfo.getSkipTokenOption());
+        int position = skipToken == null ? 0 : skipToken.getPosition();
+        int remaining = top == Integer.MAX_VALUE ? top : Math.max(0, top - position);
+        // One more entity than the page size is selected to know if there is a next page
+        int limit = maxPageSize > 0 ? (int) Math.min(remaining, maxPageSize + 1L) : remaining;
+
+        List<BaseEntity> page = new ArrayList<>();
+        Integer count = read(em -> {
+            if ((filter.getMemoryFilter() != null) || (memoryOrder != null)) {
+                int pageSkip = (int) Math.min((long) skip + position, Integer.MAX_VALUE);
+                return selectInMemory(em, type, filter, order, memoryOrder, pageSkip, limit, countRequested, page);
+            }
+
+            // Without $orderby the next page resumes after the last key, even if that entity was deleted since
+            List<Object> parameters = new ArrayList<>(filter.getParameters());
+            String where = filter.getWhere();
+            int firstResult = (int) Math.min((long) skip + position, Integer.MAX_VALUE);
+            if ((skipToken != null) && (order.equals(KEY_ORDER.getOrder()))) {
+                String after = KEY_ORDER.after(skipToken.getLastKey(), parameters, index -> "?" + index);
+                where = where == null ? after : where + " and " + after;
+                firstResult = 0;
+            }
+            if (limit > 0) {
+                TypedQuery<BaseEntity> query = createQuery(em, type, where, order, parameters);
+                page.addAll(query.setFirstResult(firstResult).setMaxResults(limit).getResultList());
+            }
+            return countRequested ? count(em, type, filter) : null;
+        });
+
+        // Only the $select properties are translated
+        Function<BaseEntity, Entity> translator = odtt.getProjection(Util.getSelectedProperties(uriInfo));
+        PojoEntityIterator entityIterator = new PojoEntityIterator(page.iterator(), translator, 0, remaining, maxPageSize, position);
+        entityIterator.setCount(count);
+        return entityIterator;
+    }
+
+    /**
+     * Method returns the number of entities of the entity set that match the $filter option
+     * @param edmEntitySet EntitySet (collection) type to be counted
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching entities
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    @Override
+    public int countEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
+        LOG.info("In countEntitySetData method");
+        return count(edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString(), uriInfo, null, null);
+    }
+
+    /**
+     * Method counts the entities of the type that match the $filter option, restricted to the entities related to an
+     * entity if a relationship is passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the filter option
+     * @param relationship relatedId property of the type holding the related entity, null to count the whole entity set
+     * @param relatedId Primary key of the related entity
+     * @return Number of matching entities
+     * @throws ODataException Exception thrown if the filter can't be evaluated or the database can't be read
+     */
+    private int count(String objectType, UriInfo uriInfo, RelatedProperty relationship, String relatedId) throws ODataException {
+        JpaType type = types.get(objectType);
+        QueryFilter filter = getFilter(objectType, uriInfo, relationship, relatedId);
+        return read(em -> {
+            if (filter.getMemoryFilter() == null) {
+                return count(em, type, filter);
+            }
+            return selectInMemory(em, type, filter, KEY_ORDER.getOrder(), null, 0, 0, true, new ArrayList<>());
+        });
+    }
+
+    /**
+     * Method returns the translated $filter option, restricted to the entities related to an entity if a relationship
+     * is passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the filter option
+     * @param relationship relatedId property of the type holding the related entity, null for the whole entity set
+     * @param relatedId Primary key of the related entity
+     * @return Filter
+     * @throws ODataApplicationException Exception thrown if the filter expression can't be compiled
+     */
+    private QueryFilter getFilter(String objectType, UriInfo uriInfo, RelatedProperty relationship, String relatedId) throws ODataApplicationException {
+        QueryFilter compiledFilter = getCompiledFilter(uriInfo.getFilterOption(), objectType, typeTranslators.get(objectType));
+        return relationship == null ? compiledFilter : compiledFilter.and(ALIAS + "." + relationship.getAttributeName()
+                + ".id = ?" + (compiledFilter.getParameters().size() + 1), relatedId);
+    }
+
+    /**
+     * Method reads an individual entity from the database
+     * @param edmEntitySet Type of object to read
+     * @param keyParams  Identity keys to read from the data storage
+     * @return Entity object containing data or null if nothing found
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public Entity readEntityData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams) throws ODataException {
+        LOG.info("In readEntityData method");
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+
+        // No primary key sent nothing to return
+        if (keyValue == null) {
+            return null;
+        }
+        BaseEntity baseEntity = read(em -> em.find(types.get(objectType).entityClass, keyValue));
+        return baseEntity == null ? null : typeTranslators.get(objectType).translate(baseEntity);
+    }
+
+    /**
+     * Method follows the navigation path with one EntityManager: references are read from the loaded entities (ex the
+     * Policy of a Claim), related entities with a key are found by key and checked, and the entities referencing the
+     * last entity are queried (ex the Claims of a Policy). Only the entities at the end of the path are translated
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Entities at the end of the path, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public EntityCollection readNavigationData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations) throws ODataException {
+        LOG.info("In readNavigationData method");
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+        String resultType = navigations.isEmpty() ? objectType : getTypeName(navigations.get(navigations.size() - 1));
+        if ((keyValue == null) || (types.get(objectType) == null)) {
+            return null;
+        }
+
+        List<BaseEntity> results = read(em -> followNavigations(em, objectType, keyValue, navigations));
+        if ((results == null) || (navigations.isEmpty() && results.isEmpty())) {
+            return null;
+        }
+
+        EntityCollection ec = new EntityCollection();
+        ODataTypeTranslator odtt = typeTranslators.get(resultType);
+        for (BaseEntity baseEntity : results) {
+            ec.getEntities().add(odtt.translate(baseEntity));
+        }
+        return ec;
+    }
+
+    /**
+     * Method follows the navigation path from the entity with the key: a reference is read from the entity (ex the
+     * Policy of a Claim) and the entities referencing an entity are queried (ex the Claims of a Policy)
+     * @param em EntityManager of the read
+     * @param objectType Full qualified name of the type of the first segment
+     * @param keyValue Primary key of the entity of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Entities at the end of the path, null if an entity before the last segment is not found or the types
+     * are not related
+     */
+    private List<BaseEntity> followNavigations(EntityManager em, String objectType, String keyValue, List<UriResourceNavigation> navigations) {
+        JpaType type = types.get(objectType);
+        BaseEntity source = em.find(type.entityClass, keyValue);
+        List<BaseEntity> current = source == null ? Collections.emptyList() : Collections.singletonList(source);
+        for (UriResourceNavigation navigation : navigations) {
+            EdmEntityType targetEntityType = navigation.getProperty().getType();
+            JpaType targetType = types.get(targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
+            // Only the last segment can return several entities
+            if (current.isEmpty() || (targetType == null)) {
+                return null;
+            }
+            source = current.get(0);
+            String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), navigation.getKeyPredicates());
+            RelatedProperty reference = type.getRelationship(targetType.entityClass);
+            RelatedProperty relationship = targetType.getRelationship(type.entityClass);
+
+            if (reference != null) {
+                BaseEntity related = reference.get(source);
+                boolean matches = (related != null) && ((targetEntityId == null) || targetEntityId.equals(related.getId()));
+                current = matches ? Collections.singletonList(related) : Collections.emptyList();
+            } else if ((relationship != null) && (targetEntityId != null)) {
+                BaseEntity related = em.find(targetType.entityClass, targetEntityId);
+                boolean matches = (related != null) && (relationship.get(related) != null) && source.getId().equals(relationship.get(related).getId());
+                current = matches ? Collections.singletonList(related) : Collections.emptyList();
+            } else if (relationship != null) {
+                current = createQuery(em, targetType, ALIAS + "." + relationship.getAttributeName() + ".id = ?1",
+                        KEY_ORDER.getOrder(), Collections.singletonList(source.getId())).getResultList();
+            } else {
+                return null;
+            }
+            type = targetType;
+        }
+        return current;
+    }
+
+    /**
+     * Method returns the full qualified name of the type of a navigation segment
+     * @param navigation Navigation segment
+     * @return Full qualified name of the target type
+     */
+    private static String getTypeName(UriResourceNavigation navigation) {
+        return navigation.getProperty().getType().getFullQualifiedName().getFullQualifiedNameAsString();
+    }
+
+    /**
+     * Method takes a source entity and returns the entities of the target type that reference it through a relatedId
+     * property (ex the Claims of a Policy)
+     * @param sourceEntity Source entity that is related to the returned target entity collection
+     * @param targetEntityType Target entity type that should be returned
+     * @return EntityCollection populated with 0 or more TargetEntityType objects
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public EntityCollection getRelatedEntityCollection(Entity sourceEntity, EdmEntityType targetEntityType) throws ODataException {
+        LOG.info("In getRelatedEntityCollection method");
+        JpaType sourceType = types.get(sourceEntity.getType());
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        JpaType targetType = types.get(targetTypeName);
+        EntityCollection ec = new EntityCollection();
+
+        RelatedProperty relationship = (sourceType == null) || (targetType == null) ? null : targetType.getRelationship(sourceType.entityClass);
+        if (relationship == null) {
+            return ec;
+        }
+        String sourceId = Util.parseId(sourceEntity.getId());
+        List<BaseEntity> related = read(em -> createQuery(em, targetType, ALIAS + "." + relationship.getAttributeName() + ".id = ?1",
+                KEY_ORDER.getOrder(), Collections.singletonList(sourceId)).getResultList());
+        ODataTypeTranslator odtt = typeTranslators.get(targetTypeName);
+        for (BaseEntity baseEntity : related) {
+            ec.getEntities().add(odtt.translate(baseEntity));
+        }
+        return ec;
+    }
+
+    /**
+     * Method returns the related entities of each source entity passed in. The related entities of up to
+     * MAX_IN_PARAMETERS sources are read by one query: the sources with their references for a single valued
+     * navigation property (ex the Policies of Claims), the entities of the target type referencing them for a
+     * collection (ex the Claims of Policies)
+     * @param sourceEntities Source entities, all of the same type
+     * @param navigationProperty Navigation property of the source type followed from each source entity
+     * @return One EntityCollection per source entity, in the order of the source entities
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public List<EntityCollection> getRelatedEntityCollections(List<Entity> sourceEntities, EdmNavigationProperty navigationProperty) throws ODataException {
+        LOG.info("In getRelatedEntityCollections method");
+        String targetTypeName = navigationProperty.getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        JpaType targetType = types.get(targetTypeName);
+        JpaType sourceType = sourceEntities.isEmpty() ? null : types.get(sourceEntities.get(0).getType());
+        Map<String, List<BaseEntity>> relatedEntities = new HashMap<>();
+
+        if ((sourceType != null) && (targetType != null)) {
+            Set<String> distinctIds = new LinkedHashSet<>();
+            for (Entity sourceEntity : sourceEntities) {
+                distinctIds.add(Util.parseId(sourceEntity.getId()));
+            }
+            List<String> sourceIds = new ArrayList<>(distinctIds);
+            RelatedProperty reference = navigationProperty.isCollection() ? null : sourceType.getRelationship(targetType.entityClass);
+            RelatedProperty relationship = navigationProperty.isCollection() ? targetType.getRelationship(sourceType.entityClass) : null;
+            for (int from = 0; from < sourceIds.size(); from += MAX_IN_PARAMETERS) {
+                List<Object> parameters = Collections.singletonList(sourceIds.subList(from, Math.min(from + MAX_IN_PARAMETERS, sourceIds.size())));
+                if (reference != null) {
+                    read(em -> {
+                        for (BaseEntity source : createQuery(em, sourceType, ALIAS + ".id in (?1)", KEY_ORDER.getOrder(), parameters).getResultList()) {
+                            BaseEntity related = reference.get(source);
+                            if (related != null) {
+                                relatedEntities.put(source.getId(), Collections.singletonList(related));
+                            }
+                        }
+                        return null;
+                    });
+                } else if (relationship != null) {
+                    read(em -> {
+                        for (BaseEntity related : createQuery(em, targetType, ALIAS + "." + relationship.getAttributeName() + ".id in (?1)",
+                                KEY_ORDER.getOrder(), parameters).getResultList()) {
+                            relatedEntities.computeIfAbsent(relationship.get(related).getId(), id -> new ArrayList<>()).add(related);
+                        }
+                        return null;
+                    });
+                }
+            }
+        }
+
+        // An entity related to several sources is translated once
+        ODataTypeTranslator odtt = typeTranslators.get(targetTypeName);
+        Map<String, Entity> translated = new HashMap<>();
+        List<EntityCollection> collections = new ArrayList<>(sourceEntities.size());
+        for (Entity sourceEntity : sourceEntities) {
+            EntityCollection ec = new EntityCollection();
+            for (BaseEntity related : relatedEntities.getOrDefault(Util.parseId(sourceEntity.getId()), Collections.emptyList())) {
+                ec.getEntities().add(translated.computeIfAbsent(related.getId(), id -> odtt.translate(related)));
+            }
+            collections.add(ec);
+        }
+        return collections;
+    }
+
+    /**
+     * Method returns the entity that is related to the source entity. If the source entity references the target type
+     * (ex the Policy of a Claim) the referenced entity is returned, otherwise the first entity of the target type
+     * referencing the source entity that matches the key predicates (ex a Claim of a Policy)
+     * @param sourceEntity Source entity that contains a reference to the target
+     * @param targetEntityType type of target object that will be returned
+     * @param keyPredicates  Filter parameters that can be sent it
+     * @return Entity of target type that matches the entity.
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public Entity getRelatedEntity(Entity sourceEntity, EdmEntityType targetEntityType, List<UriParameter> keyPredicates) throws ODataException {
+        LOG.info("In getRelatedEntity method");
+        JpaType sourceType = types.get(sourceEntity.getType());
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        JpaType targetType = types.get(targetTypeName);
+        if ((sourceType == null) || (targetType == null)) {
+            return null;
+        }
+        String sourceId = Util.parseId(sourceEntity.getId());
+
+        BaseEntity related;
+        RelatedProperty reference = sourceType.getRelationship(targetType.entityClass);
+        RelatedProperty relationship = targetType.getRelationship(sourceType.entityClass);
+        if (reference != null) {
+            related = read(em -> {
+                BaseEntity source = em.find(sourceType.entityClass, sourceId);
+                return source == null ? null : reference.get(source);
+            });
+        } else if (relationship != null) {
+            String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), keyPredicates);
+            List<Object> parameters = new ArrayList<>();
+            parameters.add(sourceId);
+            String where = ALIAS + "." + relationship.getAttributeName() + ".id = ?1"
+                    + (targetEntityId == null ? "" : " and " + ALIAS + ".id = ?2");
+            if (targetEntityId != null) {
+                parameters.add(targetEntityId);
+            }
+            List<BaseEntity> matches = read(em -> createQuery(em, targetType, where, KEY_ORDER.getOrder(), parameters).setMaxResults(1).getResultList());
+            related = matches.isEmpty() ? null : matches.get(0);
+        } else {
+            return null;
+        }
+        return related == null ? null : typeTranslators.get(targetTypeName).translate(related);
+    }
+
+    /**
+     * Method returns the entity that is related to the source entity. The returned entity is of targetEntity type
+     * @param sourceEntity Source entity that contains a reference to the target
+     * @param targetEntityType type of target object that will be returned
+     * @return Entity that is related to the source entity
+     * @throws ODataException Exception thrown if the database can't be read
+     */
+    @Override
+    public Entity getRelatedEntity(Entity sourceEntity, EdmEntityType targetEntityType) throws ODataException {
+        return getRelatedEntity(sourceEntity, targetEntityType, null);
+    }
+
+    /**
+     * Method Creates the entity for the source entity passed in and inserts it in the table of its type
+     * @param entity Source entity
+     * @return Entity that was newly created
+     * @throws ODataException if error occurred creating the entity
+     */
+    @Override
+    public Entity createEntity(Entity entity) throws ODataException {
+        LOG.info("In createEntity method");
+        if (entity == null) {
+            return null;
+        }
+        JpaType type = getWriteType(entity);
+        return typeTranslators.get(entity.getType()).translate(inTransaction(em -> insert(em, type, entity)));
+    }
+
+    /**
+     * Method Updates the entity passed in. The stored entity is loaded, merged with the entity and written back
+     * @param entity Source entity
+     * @param forceNulls If true a null passed in will replace a value, if false it won't
+     * @return Entity that was newly updated
+     * @throws ODataException if error occurred updating the entity
+     */
+    @Override
+    public Entity updateEntity(Entity entity, boolean forceNulls) throws ODataException {
+        LOG.info("In updateEntity method");
+        if (entity == null) {
+            return null;
+        }
+        JpaType type = getWriteType(entity);
+        return typeTranslators.get(entity.getType()).translate(inTransaction(em -> {
+            BaseEntity baseEntity = findForUpdate(em, type, entity);
+            if (baseEntity == null) {
+                throw new ODataException(Messages.ERROR_ENTITY_NOT_FOUND_FOR_UPDATE);
+            }
+            return typeTranslators.get(entity.getType()).merge(entity, baseEntity, forceNulls,
+                    (relatedClass, id) -> resolveRelated(em, relatedClass, id));
+        }));
+    }
+
+    /**
+     * Method Deletes the entity passed in. The relatedId properties referencing it are set to null
+     * @param edmEntitySet Source entitySet type
+     * @param keyPredicates Primary key to find record to delete
+     * @return Entity that was deleted from persistent storage
+     */
+    @Override
+    public Entity deleteEntity(EdmEntitySet edmEntitySet, List<UriParameter> keyPredicates) {
+        LOG.info("In deleteEntity method");
+        // Null check
+        if ((edmEntitySet == null) || (keyPredicates == null)) {
+            return null;
+        }
+        String objectType = edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString();
+        JpaType type = types.get(objectType);
+        String id = Util.getPrimaryKeyFromParam(edmEntitySet.getEntityType().getKeyPredicateNames(), keyPredicates);
+        if (id == null) {
+            return null;
+        }
+
+        try {
+            return inTransaction(em -> {
+                BaseEntity baseEntity = em.find(type.entityClass, id);
+                if (baseEntity == null) {
+                    return null;
+                }
+                Entity deleted = typeTranslators.get(objectType).translate(baseEntity);
+                for (JpaType referencingType : types.values()) {
+                    RelatedProperty relationship = referencingType.getRelationship(type.entityClass);
+                    if (relationship != null) {
+                        em.createQuery("update " + referencingType.entityName + " " + ALIAS + " set " + ALIAS + "." + relationship.getAttributeName()
+                                + " = null where " + ALIAS + "." + relationship.getAttributeName() + ".id = ?1").setParameter(1, id).executeUpdate();
+                    }
+                }
+                em.remove(baseEntity);
+                return deleted;
+            });
+        } catch (ODataException e) {
+            throw new ODataRuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method Upserts the entity for the source entity passed in.
+     * It will update it if it matches an existing entity by key, otherwise it will create new
+     * @param entity Source entity
+     * @param forceNulls If true a null passed in will replace a value, if false it won't
+     * @return Entity that was upserted in storage
+     * @throws ODataException if error occurred creating or updating the entity
+     */
+    @Override
+    public Entity upsertEntity(Entity entity, boolean forceNulls) throws ODataException {
+        LOG.info("In upsertEntity method");
+        if (entity == null) {
+            return null;
+        }
+        // The check and the create or update run in the same transaction
+        JpaType type = getWriteType(entity);
+        return typeTranslators.get(entity.getType()).translate(inTransaction(em -> {
+            BaseEntity baseEntity = findForUpdate(em, type, entity);
+            if (baseEntity == null) {
+                return insert(em, type, entity);
+            }
+            return typeTranslators.get(entity.getType()).merge(entity, baseEntity, forceNulls,
+                    (relatedClass, id) -> resolveRelated(em, relatedClass, id));
+        }));
+    }
+
+    /**
+     * Method returns the TypeTranslators Map.
+     * @return TypeTranslator map that contains type translators for each object
+     */
+    public Map<String, ODataTypeTranslator> getTypeTranslators() {
+        return typeTranslators;
+    }
+
+    /**
+     * Method sets the TypeTranslators.
+     * @param typeTranslators Map of object type to Type Translator
+     */
+    public void setTypeTranslators(Map<String, ODataTypeTranslator> typeTranslators) {
+        this.typeTranslators = typeTranslators;
+    }
+
+    /**
+     * Method returns the EntityManagerFactory of the database
+     * @return EntityManagerFactory
+     */
+    public EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+
+    /**
+     * Method sets the EntityManagerFactory of the database, its persistence unit must map the entities package
+     * @param entityManagerFactory EntityManagerFactory
+     */
+    public void setEntityManagerFactory(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Method returns the maximum number of entities returned in a page
+     * @return Maximum page size, 0 if the results are not paged
+     */
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Method sets the maximum number of entities returned in a page. Larger results return a nextLink to the next page
+     * @param maxPageSize Maximum page size, 0 disables paging
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Method returns the generator of the keys of the entities created without an Id
+     * @return KeyGenerator
+     */
+    public KeyGenerator getKeyGenerator() {
+        return keyGenerator;
+    }
+
+    /**
+     * Method sets the generator of the keys of the entities created without an Id. The keys already stored are
+     * registered with it
+     * @param keyGenerator KeyGenerator
+     */
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method inserts the entity passed in, generating its key if it has none
+     * @param em EntityManager of the transaction
+     * @param type Type of the entity
+     * @param entity Source entity
+     * @return Inserted BaseEntity implementation
+     * @throws ODataException If an entity with the same key exists or the entity can't be translated
+     */
+    private BaseEntity insert(EntityManager em, JpaType type, Entity entity) throws ODataException {
+        String key = getKey(entity);
+        if ((key != null) && (em.find(type.entityClass, key) != null)) {
+            LOG.error(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+            throw new ODataException(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+        }
+        BaseEntity be = typeTranslators.get(entity.getType()).translate(entity, true,
+                (relatedClass, id) -> resolveRelated(em, relatedClass, id));
+        if (be.getId() == null) {
+            setNextKey(em, be, entity.getType(), type);
+        } else {
+            keyGenerator.observe(entity.getType(), be.getId());
+        }
+        em.persist(be);
+        return be;
+    }
+
+    /**
+     * Method loads the entity referenced by a relatedId property of an entity being written
+     * @param em EntityManager of the transaction
+     * @param relatedClass BaseEntity implementation of the referenced entity
+     * @param id Primary key of the referenced entity
+     * @return Managed BaseEntity implementation or null if there is none
+     */
+    private BaseEntity resolveRelated(EntityManager em, Class<?> relatedClass, String id) {
+        return (BaseEntity) em.find(relatedClass, id);
+    }
+
+    /**
+     * Method loads the stored entity of the entity passed in
+     * @param em EntityManager of the transaction
+     * @param type Type of the entity
+     * @param entity Source entity
+     * @return Managed BaseEntity implementation or null if there is none
+     */
+    private BaseEntity findForUpdate(EntityManager em, JpaType type, Entity entity) {
+        String key = getKey(entity);
+        return key == null ? null : em.find(type.entityClass, key);
+    }
+
+    /**
+     * Method sets the key of the BaseEntity's subclass to a new key from the key generator
+     * @param em EntityManager of the transaction
+     * @param baseEntity Base Entity value whose key to set
+     * @param objectType Full qualified name of the entity type
+     * @param type Type of the entity
+     */
+    private void setNextKey(EntityManager em, BaseEntity baseEntity, String objectType, JpaType type) {
+        LOG.info("In setNextKey method");
+        String newKey = keyGenerator.nextKey(objectType);
+        // Only possible if a key was inserted by another writer, the next keys are checked until a free one is found
+        while (em.find(type.entityClass, newKey) != null) {
+            newKey = keyGenerator.nextKey(objectType);
+        }
+        baseEntity.setId(newKey);
+    }
+
+    /**
+     * Method registers the keys of the stored entities with the key generator. It is called once the database is
+     * opened and when the key generator is replaced
+     */
+    private void seedKeyGenerator() {
+        LOG.info("In seedKeyGenerator method");
+        if (types.isEmpty()) {
+            return;
+        }
+        try {
+            read(em -> {
+                for (Map.Entry<String, JpaType> type : types.entrySet()) {
+                    try (Stream<String> keys = em.createQuery("select " + ALIAS + ".id from " + type.getValue().entityName + " " + ALIAS, String.class)
+                            .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE).getResultStream()) {
+                        keys.forEach(key -> keyGenerator.observe(type.getKey(), key));
+                    }
+                }
+                return null;
+            });
+        } catch (ODataException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method returns true if the database holds no entity of the mapped types
+     * @param em EntityManager
+     * @return true if every table is empty
+     */
+    private boolean isEmpty(EntityManager em) {
+        for (JpaType type : types.values()) {
+            if (count(em, type, QueryFilter.NONE) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method inserts the default records
+     */
+    private void loadSampleData() {
+        LOG.info("In loadSampleData method");
+        try {
+            inTransaction(em -> {
+                // Types are inserted after the types they reference
+                for (List<BaseEntity> sampleEntities : SampleData.create().values()) {
+                    for (BaseEntity baseEntity : sampleEntities) {
+                        em.persist(baseEntity);
+                    }
+                }
+                return null;
+            });
+        } catch (ODataException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method selects a page of the entities that match the filter when part of the filter or the order are evaluated
+     * in memory. The entities matching the conditions the database evaluates are streamed in the database order
+     * @param em EntityManager
+     * @param type Type of the entities
+     * @param filter Filter, its memoryFilter is evaluated on the streamed entities
+     * @param order JPQL order, or null if the entities are ordered in memory
+     * @param memoryOrder Comparator ordering the entities in memory, null if the database orders them
+     * @param skip Number of matching entities to skip
+     * @param limit Maximum number of entities to add to the page
+     * @param countRequested true if every entity must be evaluated to count the matches
+     * @param page List the entities of the page are added to
+     * @return Number of matching entities if they were counted, null otherwise
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    private Integer selectInMemory(EntityManager em, JpaType type, QueryFilter filter, String order, PojoComparator memoryOrder,
+                                   int skip, int limit, boolean countRequested, List<BaseEntity> page) throws ODataException {
+        TypedQuery<BaseEntity> query = createQuery(em, type, filter.getWhere(), order == null ? KEY_ORDER.getOrder() : order, filter.getParameters());
+        query.setHint(HibernateHints.HINT_READ_ONLY, true).setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE);
+        try (Stream<BaseEntity> candidates = query.getResultStream()) {
+            if (memoryOrder != null) {
+                int matched = memoryOrder.select(candidates::iterator, filter.getMemoryFilter(), skip, limit, page);
+                return countRequested ? matched : null;
+            }
+            int matched = 0;
+            Iterator<BaseEntity> iterator = candidates.iterator();
+            while (iterator.hasNext() && (countRequested || (page.size() < limit))) {
+                BaseEntity candidate = iterator.next();
+                boolean added = false;
+                if ((filter.getMemoryFilter() == null) || filter.getMemoryFilter().matches(candidate)) {
+                    if ((matched >= skip) && (page.size() < limit)) {
+                        page.add(candidate);
+                        added = true;
+                    }
+                    matched++;
+                }
+                // The streamed entities don't stay in the persistence context once evaluated
+                if (!added) {
+                    em.detach(candidate);
+                }
+            }
+            return countRequested ? matched : null;
+        }
+    }
+
+    /**
+     * Method counts the entities that match the conditions of the filter evaluated by the database
+     * @param em EntityManager
+     * @param type Type of the entities
+     * @param filter Filter evaluated by the database
+     * @return Number of matching entities
+     */
+    private int count(EntityManager em, JpaType type, QueryFilter filter) {
+        TypedQuery<Long> query = em.createQuery("select count(" + ALIAS + ") from " + type.entityName + " " + ALIAS
+                + (filter.getWhere() == null ? "" : " where " + filter.getWhere()), Long.class);
+        for (int i = 0; i < filter.getParameters().size(); i++) {
+            query.setParameter(i + 1, filter.getParameters().get(i));
+        }
+        return query.getSingleResult().intValue();
+    }
+
+    /**
+     * Method creates the query of the entities of the type. The related entities read by the translator are fetched
+     * by the same query
+     * @param em EntityManager
+     * @param type Type of the entities
+     * @param where JPQL condition, null to select every entity
+     * @param order JPQL order
+     * @param parameters Values of the positional parameters of the condition
+     * @return Query
+     */
+    private TypedQuery<BaseEntity> createQuery(EntityManager em, JpaType type, String where, String order, List<Object> parameters) {
+        String jpql = type.select + (where == null ? "" : " where " + where) + " order by " + order;
+        TypedQuery<BaseEntity> query = em.createQuery(jpql, BaseEntity.class);
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+        return query;
+    }
+
+    /**
+     * Method translates the $orderby option into a JPQL order. The primary key breaks the ties like in memory
+     * @param type Type of the entities
+     * @param orderByOption OrderBy option passed in, may be null
+     * @return JPQL order or null if an ordered property is not persistent (ex TotalCostAmount)
+     */
+    private String getOrder(JpaType type, OrderByOption orderByOption) {
+        if ((orderByOption == null) || orderByOption.getOrders().isEmpty()) {
+            return KEY_ORDER.getOrder();
+        }
+        StringBuilder order = new StringBuilder();
+        for (OrderByItem item : orderByOption.getOrders()) {
+            QueryProperty property = null;
+            Expression expression = item.getExpression();
+            if (expression instanceof Member) {
+                List<UriResource> resourceParts = ((Member) expression).getResourcePath().getUriResourceParts();
+                if ((resourceParts.size() == 1) && (resourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+                    property = type.properties.get(((UriResourcePrimitiveProperty) resourceParts.get(0)).getProperty().getName());
+                }
+            }
+            if (property == null) {
+                return null;
+            }
+            if (KEY_ORDER.getId().equals(property.getPath())) {
+                order.append(KEY_ORDER.getOrder(item.isDescending())).append(", ");
+            } else {
+                // Nulls sort first like in memory
+                order.append(property.getPath()).append(item.isDescending() ? " desc nulls last, " : " asc nulls first, ");
+            }
+        }
+        return order.append(KEY_ORDER.getOrder()).toString();
+    }
+
+    /**
+     * Method returns the translated filter for the filter option passed in. Filters are cached by entity type and
+     * normalized filter expression so repeated queries (ex Salesforce list views) skip the translation
+     * @param filterOption Filter option passed in, may be null
+     * @param objectType Full qualified name of the filtered type
+     * @param odtt Type translator used to read the properties of the filtered type
+     * @return Filter, QueryFilter.NONE if no filter was passed in
+     * @throws ODataApplicationException Exception thrown if the filter expression can't be visited (400) or uses
+     * unsupported operations
+     */
+    private QueryFilter getCompiledFilter(FilterOption filterOption, String objectType, ODataTypeTranslator odtt) throws ODataApplicationException {
+        if ((filterOption == null) || (filterOption.getExpression() == null)) {
+            return QueryFilter.NONE;
+        }
+        Expression filterExpression = filterOption.getExpression();
+        String cacheKey = objectType + ":" + filterExpression;
+        QueryFilter filter = compiledFilters.get(cacheKey);
+        if (filter == null) {
+            try {
+                filter = QueryFilter.compile(filterExpression, parameters -> new JpqlFilterExpressionVisitor(types.get(objectType).properties, parameters), odtt);
+            } catch (ExpressionVisitException e) {
+                throw new ODataApplicationException(Messages.ERROR_INVALID_FILTER + e.getMessage(), HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT, e);
+            }
+            compiledFilters.put(cacheKey, filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Method returns the value of the $skip option
+     * @param uriInfo URI Info object containing the skip parameter
+     * @return Number of entities to skip, 0 if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid skip value is passed in
+     */
+    private int getSkip(UriInfo uriInfo) throws ODataApplicationException {
+        SkipOption skipOption = uriInfo.getSkipOption();
+        if (skipOption == null) {
+            return 0;
+        }
+        int skip = skipOption.getValue();
+        if (skip < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_SKIP + "{}", skip);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_SKIP + skip, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+        }
+        return skip;
+    }
+
+    /**
+     * Method returns the value of the $top option
+     * @param uriInfo URI Info object containing the top parameter
+     * @return Maximum number of entities to return, Integer.MAX_VALUE if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid top value is passed in
+     */
+    private int getTop(UriInfo uriInfo) throws ODataApplicationException {
+        TopOption topOption = uriInfo.getTopOption();
+        if (topOption == null) {
+            return Integer.MAX_VALUE;
+        }
+        int top = topOption.getValue();
+        if (top < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_TOP + "{}", top);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_TOP + top, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+        }
+        return top;
+    }
+
+    /**
+     * Method returns the type of the entity passed in
+     * @param entity Entity whose type is being written
+     * @return Type of the entity
+     * @throws ODataException If the entity type is not set or not known
+     */
+    private JpaType getWriteType(Entity entity) throws ODataException {
+        JpaType type = entity.getType() == null ? null : types.get(entity.getType());
+        if (type == null) {
+            throw new ODataException(Messages.ERROR_ENTITY_TYPE_NOT_FOUND);
+        }
+        return type;
+    }
+
+    /**
+     * Method returns the primary key of the entity passed in
+     * @param entity Olingo entity
+     * @return Id or null if it is not set
+     */
+    private String getKey(Entity entity) {
+        Property property = entity.getProperty(Constants.ID);
+        return (property == null) || (property.getValue() == null) ? null : (String) property.getValue();
+    }
+
+    /**
+     * Method runs the work with a new EntityManager, outside of a transaction
+     * @param work Work reading the database
+     * @param <T> Type of the result
+     * @return Result of the work
+     * @throws ODataException Exception thrown by the work or if the database can't be read
+     */
+    private <T> T read(Work<T> work) throws ODataException {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            return work.execute(em);
+        } catch (PersistenceException e) {
+            LOG.error(e.getMessage());
+            throw new ODataException(e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Method runs the work in a transaction with a new EntityManager. The transaction is rolled back if the work fails
+     * @param work Work writing the database
+     * @param <T> Type of the result
+     * @return Result of the work
+     * @throws ODataException Exception thrown by the work or if the transaction can't be committed
+     */
+    private <T> T inTransaction(Work<T> work) throws ODataException {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            T result = work.execute(em);
+            transaction.commit();
+            return result;
+        } catch (PersistenceException | IllegalArgumentException e) {
+            LOG.error(e.getMessage());
+            throw new ODataException(e.getMessage(), e);
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Work done with an EntityManager
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    private interface Work<T> {
+
+        /**
+         * Method does the work
+         * @param em EntityManager
+         * @return Result of the work
+         * @throws ODataException Exception thrown if the work fails
+         */
+        T execute(EntityManager em) throws ODataException;
+    }
+
+    /**
+     * Query of the entities related to the entity at the end of a navigation path
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    private interface RelatedQuery<T> {
+
+        /**
+         * Method runs the query
+         * @param objectType Full qualified name of the type of the related entities
+         * @param relationship relatedId property of the type holding the entity the path leads to
+         * @param relatedId Primary key of the entity the path leads to
+         * @return Result of the query
+         * @throws ODataException Exception thrown if the query fails
+         */
+        T execute(String objectType, RelatedProperty relationship, String relatedId) throws ODataException;
+    }
+
+    /**
+     * JPA entity of an entity type: its persistent properties, the relationships to the other types and the query
+     * selecting its entities with the related entities read by the translator
+     */
+    private static final class JpaType {
+        private final Class<? extends BaseEntity> entityClass;
+        private final String entityName;
+        private final Map<String, QueryProperty> properties = new HashMap<>();
+        private final Map<Class<?>, RelatedProperty> relationships = new HashMap<>();
+        private final String select;
+
+        /**
+         * Constructor maps the OData properties of the entity to its persistent attributes
+         * @param entityType JPA entity type
+         */
+        private JpaType(EntityType<? extends BaseEntity> entityType) {
+            this.entityClass = entityType.getJavaType();
+            this.entityName = entityType.getName();
+            EntityMapping entityMapping = EntityMapping.forClass(entityClass);
+            for (WritableProperty property : entityMapping.getWritableProperties().values()) {
+                Attribute<?, ?> attribute = findAttribute(entityType, property.getAttributeName());
+                if (attribute != null) {
+                    Class<?> javaType = attribute.getJavaType();
+                    boolean nullable = !javaType.isPrimitive() && !Constants.ID.equals(property.getPropertyName());
+                    properties.put(property.getPropertyName(), new QueryProperty(ALIAS + "." + attribute.getName(), box(javaType), nullable));
+                }
+            }
+            for (RelatedProperty relatedProperty : entityMapping.getRelatedProperties()) {
+                if (findAttribute(entityType, relatedProperty.getAttributeName()) != null) {
+                    properties.put(relatedProperty.getPropertyName(), new QueryProperty(ALIAS + "." + relatedProperty.getAttributeName() + ".id", String.class, true));
+                    relationships.put(relatedProperty.getRelatedClass(), relatedProperty);
+                }
+            }
+            StringBuilder fetches = new StringBuilder();
+            appendFetches(entityClass, ALIAS, MAX_FETCH_DEPTH, fetches);
+            this.select = "select " + ALIAS + " from " + entityName + " " + ALIAS + fetches;
+        }
+
+        /**
+         * Method returns the relationship of the type to the related class
+         * @param relatedClass Class of the related entity
+         * @return relatedId property referencing the class or null if there is none
+         */
+        private RelatedProperty getRelationship(Class<?> relatedClass) {
+            return relationships.get(relatedClass);
+        }
+
+        /**
+         * Method appends the fetch joins of the related entities up to the depth passed in
+         * @param entityClass Class whose related entities are fetched
+         * @param alias Alias of the class in the query
+         * @param depth Number of relationship levels left to fetch
+         * @param fetches Fetch joins
+         */
+        private static void appendFetches(Class<? extends BaseEntity> entityClass, String alias, int depth, StringBuilder fetches) {
+            if (depth == 0) {
+                return;
+            }
+            for (RelatedProperty relatedProperty : EntityMapping.forClass(entityClass).getRelatedProperties()) {
+                String relatedAlias = alias + "_" + relatedProperty.getAttributeName();
+                fetches.append(" left join fetch ").append(alias).append('.').append(relatedProperty.getAttributeName()).append(' ').append(relatedAlias);
+                @SuppressWarnings("unchecked")
+                Class<? extends BaseEntity> relatedClass = (Class<? extends BaseEntity>) relatedProperty.getRelatedClass();
+                appendFetches(relatedClass, relatedAlias, depth - 1, fetches);
+            }
+        }
+
+        /**
+         * Method returns the persistent attribute of the entity
+         * @param entityType JPA entity type
+         * @param attributeName Name of the attribute, can be null
+         * @return Attribute or null if the property is not persistent
+         */
+        private static Attribute<?, ?> findAttribute(EntityType<?> entityType, String attributeName) {
+            if (attributeName == null) {
+                return null;
+            }
+            try {
+                return entityType.getAttribute(attributeName);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Method returns the wrapper class of a primitive type
+         * @param type Type of an attribute
+         * @return Wrapper class or the type itself if it is not primitive
+         */
+        private static Class<?> box(Class<?> type) {
+            if (int.class.equals(type)) {
+                return Integer.class;
+            } else if (boolean.class.equals(type)) {
+                return Boolean.class;
+            }
+            return type;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.translators.EntityMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Implementation of the Storage interface that stores each entity set off heap in the memory-mapped files of a
+ * MappedTable, see TableStorage for the queries. The entities survive restarts: the default records are only loaded
+ * when the data directory holds no entity. Reads go to the mapped files, which the operating system pages in and out.
+ * Storage trades the precision of some values for the footprint: Dates only keep the day and decimals keep 4 decimal places
+ */
+public class StorageMapped extends TableStorage {
+    private static final Logger LOG = LoggerFactory.getLogger(StorageMapped.class);
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private String dataDirectory = new File(System.getProperty("java.io.tmpdir"), "salesforceconnect").getPath();
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private boolean syncWrites;
+
+    /**
+     * Method maps the files of the tables and loads the default records if there is no entity yet. Called by Spring
+     * once the properties are set
+     * @throws IOException If the data directory can't be created or a file can't be mapped
+     */
+    public void open() throws IOException {
+        LOG.info("In open method");
+        File directory = new File(dataDirectory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the data directory " + dataDirectory);
+        }
+        boolean empty = true;
+        for (Map.Entry<String, Class<? extends BaseEntity>> entityClass : SampleData.getEntityClasses().entrySet()) {
+            MappedTable table = new MappedTable(EntityMapping.forClass(entityClass.getValue()), this::getTable);
+            table.open(directory, entityClass.getKey(), segmentSize);
+            addTable(entityClass.getKey(), table);
+            empty &= table.getRowCount() == 0;
+        }
+        if (empty) {
+            loadSampleData();
+            force();
+        }
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method writes the changes of the tables to the storage device. Called by Spring when the context is closed
+     */
+    public void close() {
+        LOG.info("In close method");
+        force();
+    }
+
+    /**
+     * Method writes the table to the storage device after each write when syncWrites is set
+     * @param table Table that was written
+     */
+    @Override
+    protected void afterWrite(EntityTable table) {
+        if (syncWrites) {
+            ((MappedTable) table).force();
+        }
+    }
+
+    /**
+     * Method writes the changes of every table to the storage device
+     */
+    private void force() {
+        for (EntityTable table : getTables().values()) {
+            ((MappedTable) table).force();
+        }
+    }
+
+    /**
+     * Method returns the directory holding the mapped files
+     * @return Path of the directory
+     */
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    /**
+     * Method sets the directory holding the mapped files, it is created if it doesn't exist
+     * @param dataDirectory Path of the directory
+     */
+    public void setDataDirectory(String dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Method returns the size of the mapped files of a new table
+     * @return Size in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Method sets the size of the mapped files of a new table. Existing tables keep the size they were created with
+     * @param segmentSize Size in bytes
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Method returns true if the tables are written to the storage device after each write
+     * @return Sync flag
+     */
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /**
+     * Method sets whether the tables are written to the storage device after each write. Otherwise the operating
+     * system writes the mapped files back on its own and on close
+     * @param syncWrites Sync flag
+     */
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+}
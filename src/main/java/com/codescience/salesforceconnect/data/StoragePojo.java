@@ -4,43 +4,92 @@ import com.codescience.salesforceconnect.entities.*;
 import com.codescience.salesforceconnect.service.Constants;
 import com.codescience.salesforceconnect.service.Messages;
 import com.codescience.salesforceconnect.service.OdataEdmProvider;
+import com.codescience.salesforceconnect.translators.EntityMapping.RelatedProperty;
 import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import com.codescience.salesforceconnect.util.KeyComparator;
 import com.codescience.salesforceconnect.util.Util;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.data.Property;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
 import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edm.provider.CsdlEdmProvider;
 import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.uri.UriInfo;
 import org.apache.olingo.server.api.uri.UriParameter;
-import org.apache.olingo.server.api.uri.UriResource;
-import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
 import org.apache.olingo.server.api.uri.queryoption.FilterOption;
-import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
-import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
 import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
 import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
-import org.apache.olingo.server.api.uri.queryoption.expression.Member;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 /**
- * Implementation of the Storage interface that stores Simple Java objects in a Map
+ * Implementation of the Storage interface that stores Simple Java objects in a Map.
+ * Each entity set is kept in a ConcurrentSkipListMap so reads are lock free and iterate in key order. Numeric keys are
+ * ordered by value (see KeyComparator).
+ * Updates merge the stored object in place, as the objects related to it hold it (ex the Product of a Policy, the
+ * Claims of a Policy) and a copy would leave them with the previous state. A read running during an update is
+ * therefore not isolated from it: it may see some of the properties merged and not others yet. Each property is
+ * written at once, the indexes find the object under its previous or its new values while it is updated, and a
+ * translation of a partly merged object is no longer returned once the update is done, as the version is incremented
+ * after the merge.
+ * Writes (create, update, delete, upsert) are serialized per entity type by a lock so that check-then-act
+ * sequences such as create and upsert are atomic. A delete also takes the locks of the types referencing the deleted
+ * type, as it removes their references. Secondary indexes can be configured per property (hashIndexes for
+ * equality filters, sortedIndexes for equality and range filters), they are maintained by each write.
+ * If maxPageSize is set, responses are limited to that many entities and a nextLink with a $skiptoken is returned.
+ * Entity sets are returned as iterators so the entities are only translated while the response is written.
+ * Translated entities are kept in the entityCache until the entity or a related entity it reads is written
  */
 public class StoragePojo implements Storage {
     private static final Logger LOG = LoggerFactory.getLogger(StoragePojo.class);
+    private static final int MAX_COMPILED_FILTERS = 256;
     private Map<String, ODataTypeTranslator> typeTranslators = new HashMap<>();
-    private final Map<String, Map<String, BaseEntity>> objects = new HashMap <> ();
+    private final Map<String, ConcurrentNavigableMap<String, BaseEntity>> objects = new ConcurrentHashMap<>();
+    private final Map<String, Lock> writeLocks = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> entityCounts = new ConcurrentHashMap<>();
+    private final Comparator<String> keyComparator = KeyComparator.INSTANCE;
+    private Map<String, List<String>> hashIndexes = new HashMap<>();
+    private Map<String, List<String>> sortedIndexes = new HashMap<>();
+    private final Map<String, Map<String, PropertyIndex>> propertyIndexes = new ConcurrentHashMap<>();
+    private int maxPageSize;
+    private TranslatedEntityCache entityCache = new TranslatedEntityCache();
+    private KeyGenerator keyGenerator = new SequenceKeyGenerator();
+    private CsdlEdmProvider edmProvider = new OdataEdmProvider();
+    private volatile RelationshipRegistry relationships;
+    private final Map<String, PojoFilter> compiledFilters = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PojoFilter> eldest) {
+            return size() > MAX_COMPILED_FILTERS;
+        }
+    });
 
     public StoragePojo() {
         initializeData();
+        for (Map.Entry<String, ConcurrentNavigableMap<String, BaseEntity>> entityMap : objects.entrySet()) {
+            entityCounts.put(entityMap.getKey(), new AtomicInteger(entityMap.getValue().size()));
+        }
+        seedKeyGenerator();
     }
 
     /**
@@ -48,171 +97,151 @@ public class StoragePojo implements Storage {
      */
     private void initializeData() {
         LOG.info("In initializeData method");
-        Map <String, BaseEntity> mapOfProducts = new TreeMap<>();
-        objects.put(OdataEdmProvider.ET_PRODUCT_FQN.getFullQualifiedNameAsString(), mapOfProducts);
-
-        Product prod = new Product();
-        prod.setActive(true);
-        prod.setCostPerUnit(new BigDecimal(100));
-        prod.setId("1000");
-        prod.setProductName("Long Term Disability");
-        prod.setProductType("Disability");
-        mapOfProducts.put(prod.getId(), prod);
-
-        Product prod2 = new Product();
-        prod2.setActive(true);
-        prod2.setCostPerUnit(new BigDecimal(150));
-        prod2.setId("1001");
-        prod2.setProductName("Short Term Disability");
-        prod2.setProductType("Disability");
-        mapOfProducts.put(prod2.getId(), prod2);
-
-        Product prod3 = new Product();
-        prod3.setActive(false);
-        prod3.setCostPerUnit(new BigDecimal(200));
-        prod3.setId("1002");
-        prod3.setProductName("Umbrella Policy");
-        prod3.setProductType("Liability");
-        mapOfProducts.put(prod3.getId(), prod3);
-
-        Product prod4 = new Product();
-        prod4.setActive(true);
-        prod4.setCostPerUnit(new BigDecimal(250));
-        prod4.setId("1003");
-        prod4.setProductName("Umbrella Policy");
-        prod4.setProductType("Liability");
-        mapOfProducts.put(prod4.getId(), prod4);
-
-        Product prod5 = new Product();
-        prod5.setActive(true);
-        prod5.setCostPerUnit(new BigDecimal(300));
-        prod5.setId("1004");
-        prod5.setProductName("Life");
-        prod5.setProductType("Life");
-        mapOfProducts.put(prod5.getId(), prod5);
-
-        Product prod6 = new Product();
-        prod6.setActive(true);
-        prod6.setCostPerUnit(new BigDecimal(350));
-        prod6.setId("1005");
-        prod6.setProductName("Accidental Death");
-        prod6.setProductType("Life");
-        mapOfProducts.put(prod6.getId(), prod6);
-
-        Map <String, BaseEntity> mapOfPolicies = new TreeMap<>();
-        objects.put(OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString(), mapOfPolicies);
-
-
-        Calendar cal = Calendar.getInstance();
-        cal.set(2010,Calendar.APRIL, 10);
-
-        Policy policy = new Policy();
-        policy.setId("2000");
-        policy.setNumberOfUnits(100);
-        policy.setPolicyHolderId("10000");
-        policy.setProduct(prod);
-        policy.setPolicyStartDate(cal.getTime());
-        mapOfPolicies.put(policy.getId(), policy);
-
-        Policy policy2 = new Policy();
-        policy2.setId("2001");
-        policy2.setNumberOfUnits(200);
-        policy2.setPolicyHolderId("10000");
-        policy2.setProduct(prod3);
-        cal.set(2011, Calendar.JUNE, 20);
-        policy2.setPolicyStartDate(cal.getTime());
-        mapOfPolicies.put(policy2.getId(), policy2);
-
-        cal.set(2014,Calendar.DECEMBER, 5);
-        policy2.setPolicyEndDate(cal.getTime());
-
-        Policy policy3 = new Policy();
-        policy3.setId("2002");
-        policy3.setNumberOfUnits(300);
-        policy3.setPolicyHolderId("10001");
-        policy3.setProduct(prod4);
-        cal.set(2011, Calendar.JUNE, 20);
-        policy3.setPolicyStartDate(cal.getTime());
-        mapOfPolicies.put(policy3.getId(), policy3);
-
-        Map <String, BaseEntity> mapOfClaims = new TreeMap<>();
-        objects.put(OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString(), mapOfClaims);
-
-        cal.set( 2016, Calendar.JULY, 28);
-        Claim claim = new Claim();
-        claim.setId("3000");
-        claim.setApproved(true);
-        claim.setClaimAmount(new BigDecimal(10000));
-        claim.setClaimDate(cal.getTime());
-        claim.setClaimReason("Injury");
-        policy.addClaim(claim);
-        mapOfClaims.put(claim.getId(), claim);
-
-        cal.set( 2009, Calendar.MARCH, 4);
-        Claim claim2 = new Claim();
-        claim2.setId("3001");
-        claim2.setApproved(false);
-        claim2.setClaimAmount(new BigDecimal(25000));
-        claim2.setClaimDate(cal.getTime());
-        claim2.setClaimReason("Accident");
-        policy.addClaim(claim2);
-        mapOfClaims.put(claim2.getId(), claim2);
-
-        cal.set( 2012, Calendar.AUGUST, 12);
-        Claim claim3 = new Claim();
-        claim3.setId("3002");
-        claim3.setApproved(false);
-        claim3.setClaimAmount(new BigDecimal(25000));
-        claim3.setClaimDate(cal.getTime());
-        claim3.setClaimReason("Lawsuit");
-        policy2.addClaim(claim3);
-        mapOfClaims.put(claim3.getId(), claim3);
-
-        Map <String, BaseEntity> mapOfBeneficiaries = new TreeMap<>();
-        objects.put(OdataEdmProvider.ET_BENEFICIARY_FQN.getFullQualifiedNameAsString(), mapOfBeneficiaries);
-
-        Beneficiary beneficiary = new Beneficiary();
-        beneficiary.setId("4000");
-        beneficiary.setBeneficiaryPercent(new BigDecimal(100));
-        beneficiary.setContactIdentifierId("20000");
-        claim.addBeneficiary(beneficiary);
-        mapOfBeneficiaries.put(beneficiary.getId(), beneficiary);
-
-        Beneficiary beneficiary2 = new Beneficiary();
-        beneficiary2.setId("4001");
-        beneficiary2.setBeneficiaryPercent(new BigDecimal(75));
-        beneficiary2.setContactIdentifierId("20001");
-        claim2.addBeneficiary(beneficiary2);
-        mapOfBeneficiaries.put(beneficiary2.getId(), beneficiary2);
-
-        Beneficiary beneficiary3 = new Beneficiary();
-        beneficiary3.setId("4002");
-        beneficiary3.setBeneficiaryPercent(new BigDecimal(25));
-        beneficiary3.setContactIdentifierId("20002");
-        claim2.addBeneficiary(beneficiary3);
-        mapOfBeneficiaries.put(beneficiary3.getId(), beneficiary3);
-    }
-
-    /**
-     * Method reads the collection of objects based on the type passed in
+        for (Map.Entry<String, List<BaseEntity>> sampleEntities : SampleData.create().entrySet()) {
+            Map<String, BaseEntity> entityMap = createEntityMap(sampleEntities.getKey());
+            for (BaseEntity baseEntity : sampleEntities.getValue()) {
+                entityMap.put(baseEntity.getId(), baseEntity);
+            }
+        }
+    }
+
+    /**
+     * Method reads the collection of objects based on the type passed in. The $filter, $orderby, $skip, $top and $count
+     * options are applied to the Pojo objects and the entities are translated one at a time while they are serialized.
+     * Without $orderby the matches are read lazily in primary key order, with $orderby a bounded heap selects them.
+     * If the result is larger than maxPageSize only the first page is returned and the next property of the iterator
+     * holds the $skiptoken query of the next page
      * @param edmEntitySet EntitySet (collection) type to be read
-     * @return EntityCollection containing Entities read from Pojo storage
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the Entities read from Pojo storage
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
      */
     @Override
-    public EntityCollection readEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) {
+    public EntityIterator readEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
         LOG.info("In readEntitySetData method");
-        EntityCollection entitySet = new EntityCollection();
+        return query(edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString(), uriInfo, null);
+    }
 
-        try {
-            filterEntities(uriInfo.getFilterOption(), entitySet, edmEntitySet);
-            processOrder(entitySet, uriInfo);
-        } catch (ODataApplicationException e) {
-            throw new RuntimeException(e);
-        } catch (ExpressionVisitException e) {
-            throw new RuntimeException(e);
+    /**
+     * Method reads the objects related to the entity at the end of the navigation path (ex the Claims of
+     * Policies('2000')/Claims). The $filter, $orderby, $skip, $top and $count options are applied to the related objects
+     * like readEntitySetData does, only the objects returned are translated
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the related Entities, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
+     */
+    @Override
+    public EntityIterator readNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                                UriInfo uriInfo) throws ODataException {
+        LOG.info("In readNavigationSetData method");
+        List<BaseEntity> related = followNavigations(edmEntitySet, keyParams, navigations);
+        if (related == null) {
+            return null;
         }
+        // The related objects are evaluated in primary key order like an entity set
+        related.sort(Comparator.comparing(BaseEntity::getId, keyComparator));
+        String objectType = navigations.get(navigations.size() - 1).getProperty().getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        return query(objectType, uriInfo, related);
+    }
 
-        return entitySet;
+    /**
+     * Method counts the objects related to the entity at the end of the navigation path that match the $filter option
+     * (ex Policies('2000')/Claims/$count). No object is translated
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching related objects, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    @Override
+    public Integer countNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                          UriInfo uriInfo) throws ODataException {
+        LOG.info("In countNavigationSetData method");
+        List<BaseEntity> related = followNavigations(edmEntitySet, keyParams, navigations);
+        if (related == null) {
+            return null;
+        }
+        String objectType = navigations.get(navigations.size() - 1).getProperty().getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        return countMatches(related, getCompiledFilter(uriInfo.getFilterOption(), objectType, getTypeTranslators().get(objectType)));
+    }
+
+    /**
+     * Method applies the $filter, $orderby, $skip, $top, $count and $skiptoken options to the objects of the type, or
+     * to the related objects passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the query options
+     * @param related Related objects in primary key order, null to read the whole entity set
+     * @return EntityIterator over the Entities
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
+     */
+    private EntityIterator query(String objectType, UriInfo uriInfo, List<BaseEntity> related) throws ODataException {
+        ODataTypeTranslator odtt = getTypeTranslators().get(objectType);
+
+        PojoFilter pojoFilter = getCompiledFilter(uriInfo.getFilterOption(), objectType, odtt);
+        PojoComparator order = PojoComparator.create(uriInfo.getOrderByOption(), odtt, keyComparator);
+        CountOption countOption = uriInfo.getCountOption();
+        boolean countRequested = (countOption != null) && countOption.getValue();
+        int skip = getSkip(uriInfo);
+        int top = getTop(uriInfo);
+
+        // Entities already returned by the previous pages. Without $orderby the next page resumes after the last key
+        SkipToken skipToken = SkipToken.parse(uriInfo.getSkipTokenOption());
+        int position = skipToken == null ? 0 : skipToken.getPosition();
+        String afterKey = (skipToken == null) || (order != null) ? null : skipToken.getLastKey();
+        int remaining = top == Integer.MAX_VALUE ? top : Math.max(0, top - position);
+        int pageSkip = afterKey == null ? (int) Math.min((long) skip + position, Integer.MAX_VALUE) : 0;
+
+        // Only the $select properties are translated, entities already cached are returned whole
+        Set<String> selected = Util.getSelectedProperties(uriInfo);
+        Function<BaseEntity, Entity> projection = odtt.getProjection(selected);
+        Function<BaseEntity, Entity> translator = selected == null ? baseEntity -> entityCache.translate(objectType, odtt, baseEntity)
+                : baseEntity -> entityCache.project(objectType, projection, baseEntity);
+        PojoEntityIterator entityIterator;
+        Integer count = null;
+        if (order == null) {
+            if (countRequested) {
+                count = related == null ? countMatches(objectType, pojoFilter) : countMatches(related, pojoFilter);
+            }
+            Collection<BaseEntity> candidates = related == null ? selectCandidates(objectType, pojoFilter, afterKey) : related;
+            Iterator<BaseEntity> matches = new MatchingIterator(candidates, pojoFilter, afterKey);
+            entityIterator = new PojoEntityIterator(matches, translator, pageSkip, remaining, maxPageSize, position);
+            entityIterator.prefetch();
+        } else {
+            // One more entity than the page size is selected to know if there is a next page
+            int limit = maxPageSize > 0 ? (int) Math.min(remaining, maxPageSize + 1L) : remaining;
+            List<BaseEntity> sorted = new ArrayList<>();
+            if (limit > 0) {
+                Collection<BaseEntity> candidates = related == null ? selectCandidates(objectType, pojoFilter, null) : related;
+                int matched = order.select(candidates, pojoFilter, pageSkip, limit, sorted);
+                count = countRequested ? matched : null;
+            } else if (countRequested) {
+                // Only the count is needed ($top=0)
+                count = related == null ? countMatches(objectType, pojoFilter) : countMatches(related, pojoFilter);
+            }
+            entityIterator = new PojoEntityIterator(sorted.iterator(), translator, 0, remaining, maxPageSize, position);
+        }
+        entityIterator.setCount(count);
+        return entityIterator;
+    }
+
+    /**
+     * Method returns the number of entities of the entity set that match the $filter option. No entity is translated
+     * @param edmEntitySet EntitySet (collection) type to be counted
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching entities
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    @Override
+    public int countEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
+        LOG.info("In countEntitySetData method");
+        String objectType = edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString();
+        ODataTypeTranslator odtt = getTypeTranslators().get(objectType);
+
+        return countMatches(objectType, getCompiledFilter(uriInfo.getFilterOption(), objectType, odtt));
     }
 
     /**
@@ -237,7 +266,33 @@ public class StoragePojo implements Storage {
         ODataTypeTranslator odtt = getTypeTranslators().get(objectType);
 
         // Find the object with the key
-        return odtt.translate(objects.get(objectType).get(keyValue));
+        return entityCache.translate(objectType, odtt, objects.get(objectType).get(keyValue));
+    }
+
+    /**
+     * Method follows the navigation path over the references between the objects, only the objects at the end of the
+     * path are translated
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Entities at the end of the path, null if an entity before the last segment is not found
+     */
+    @Override
+    public EntityCollection readNavigationData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations) {
+        LOG.info("In readNavigationData method");
+        List<BaseEntity> current = followNavigations(edmEntitySet, keyParams, navigations);
+        if (current == null) {
+            return null;
+        }
+
+        EdmEntityType resultType = navigations.isEmpty() ? edmEntitySet.getEntityType() : navigations.get(navigations.size() - 1).getProperty().getType();
+        String objectType = resultType.getFullQualifiedName().getFullQualifiedNameAsString();
+        EntityCollection ec = new EntityCollection();
+        ODataTypeTranslator odtt = getTypeTranslators().get(objectType);
+        for (BaseEntity baseEntity : current) {
+            ec.getEntities().add(entityCache.translate(objectType, odtt, baseEntity));
+        }
+        return ec;
     }
 
     /**
@@ -254,6 +309,131 @@ public class StoragePojo implements Storage {
      */
     public void setTypeTranslators(Map<String, ODataTypeTranslator> typeTranslators) {
         this.typeTranslators = typeTranslators;
+        this.relationships = null;
+    }
+
+    /**
+     * Method returns the EDM provider whose navigation property bindings define the relationships between the objects
+     * @return EDM provider, an OdataEdmProvider by default
+     */
+    public CsdlEdmProvider getEdmProvider() {
+        return edmProvider;
+    }
+
+    /**
+     * Method sets the EDM provider whose navigation property bindings define the relationships between the objects
+     * @param edmProvider EDM provider
+     */
+    public void setEdmProvider(CsdlEdmProvider edmProvider) {
+        this.edmProvider = edmProvider;
+        this.relationships = null;
+    }
+
+    /**
+     * Method returns the hash indexes configuration
+     * @return Map of entity type name to the names of the properties with a hash (equality) index
+     */
+    public Map<String, List<String>> getHashIndexes() {
+        return hashIndexes;
+    }
+
+    /**
+     * Method sets the hash indexes configuration. Indexes are built by buildIndexes
+     * @param hashIndexes Map of entity type name to the names of the properties with a hash (equality) index
+     */
+    public void setHashIndexes(Map<String, List<String>> hashIndexes) {
+        this.hashIndexes = hashIndexes;
+    }
+
+    /**
+     * Method returns the sorted indexes configuration
+     * @return Map of entity type name to the names of the properties with a sorted (range) index
+     */
+    public Map<String, List<String>> getSortedIndexes() {
+        return sortedIndexes;
+    }
+
+    /**
+     * Method sets the sorted indexes configuration. Indexes are built by buildIndexes
+     * @param sortedIndexes Map of entity type name to the names of the properties with a sorted (range) index
+     */
+    public void setSortedIndexes(Map<String, List<String>> sortedIndexes) {
+        this.sortedIndexes = sortedIndexes;
+    }
+
+    /**
+     * Method returns the maximum number of entities returned in one response
+     * @return Maximum page size, 0 if responses are not paged
+     */
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Method sets the maximum number of entities returned in one response. Larger results are paged with a nextLink
+     * @param maxPageSize Maximum page size, 0 to disable server driven paging
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Method returns the cache of translated entities
+     * @return TranslatedEntityCache used by the reads
+     */
+    public TranslatedEntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Method sets the cache of translated entities
+     * @param entityCache TranslatedEntityCache used by the reads
+     */
+    public void setEntityCache(TranslatedEntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Method returns the generator of the keys of the entities created without an Id
+     * @return KeyGenerator used by createEntity
+     */
+    public KeyGenerator getKeyGenerator() {
+        return keyGenerator;
+    }
+
+    /**
+     * Method sets the generator of the keys of the entities created without an Id. The keys of the stored entities are
+     * registered with it
+     * @param keyGenerator KeyGenerator used by createEntity
+     */
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method builds the configured secondary indexes from the stored entities. It is called once the type translators
+     * and the index configuration are set (see init-method in applicationContext.xml)
+     */
+    public void buildIndexes() {
+        LOG.info("In buildIndexes method");
+        for (String objectType : objects.keySet()) {
+            Lock lock = writeLocks.get(objectType);
+            lock.lock();
+            try {
+                Map<String, PropertyIndex> indexes = new HashMap<>();
+                addIndexes(indexes, objectType, hashIndexes.get(objectType), false);
+                addIndexes(indexes, objectType, sortedIndexes.get(objectType), true);
+                for (BaseEntity baseEntity : objects.get(objectType).values()) {
+                    for (PropertyIndex index : indexes.values()) {
+                        index.add(baseEntity);
+                    }
+                }
+                propertyIndexes.put(objectType, indexes);
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     /**
@@ -266,34 +446,47 @@ public class StoragePojo implements Storage {
     public EntityCollection getRelatedEntityCollection(Entity sourceEntity, EdmEntityType targetEntityType) {
         LOG.info("In getRelatedEntityCollection method");
         Map<String, BaseEntity> entities = objects.get(sourceEntity.getType());
-        BaseEntity ent = entities.get(Util.parseId(sourceEntity.getId()));
-        ODataTypeTranslator odtt = getTypeTranslators().get(targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
+        BaseEntity ent = entities == null ? null : entities.get(Util.parseId(sourceEntity.getId()));
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        ODataTypeTranslator odtt = getTypeTranslators().get(targetTypeName);
         EntityCollection ec = new EntityCollection();
-
-        // For brevity and clarity purposes the code will check the types and load the relationship data from the underlying objects. Normally implement in a more generic fashion by autowiring or configuring
-        // metadata lookups between the Odata entity model and the underlying persistence model
-
-        // If this object is a policy, and the target is a claim return the underlying claims from the policy object and translate
-        if ((targetEntityType.getFullQualifiedName().equals(OdataEdmProvider.ET_CLAIM_FQN)) && (sourceEntity.getType().equals(OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString()))) {
-            Policy pol = (Policy) ent;
-            if (pol.getClaims() != null) {
-                for (Claim c : pol.getClaims()) {
-                    ec.getEntities().add(odtt.translate(c));
-                }
+        if (ent != null) {
+            for (BaseEntity related : getRelatedBaseEntities(sourceEntity.getType(), ent, targetTypeName)) {
+                ec.getEntities().add(entityCache.translate(targetTypeName, odtt, related));
             }
         }
+        return ec;
+    }
 
-        // If this object is a claim, and the target is a beneficiary return the underlying beneficiary from the claim object and translate
-        if ((targetEntityType.getFullQualifiedName().equals(OdataEdmProvider.ET_BENEFICIARY_FQN)) && (sourceEntity.getType().equals(OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString()))) {
-            Claim claim = (Claim) ent;
-            if (claim.getBeneficiaries() != null) {
-                for (Beneficiary b : claim.getBeneficiaries()) {
-                    ec.getEntities().add(odtt.translate(b));
+    /**
+     * Method returns the related entities of each source entity passed in. The entities reference each other in memory
+     * so each source is looked up once by key and the relationship of the navigation property is followed from it,
+     * the related entities are translated through the entityCache
+     * @param sourceEntities Source entities, all of the same type
+     * @param navigationProperty Navigation property of the source type followed from each source entity
+     * @return One EntityCollection per source entity, in the order of the source entities
+     */
+    @Override
+    public List<EntityCollection> getRelatedEntityCollections(List<Entity> sourceEntities, EdmNavigationProperty navigationProperty) {
+        LOG.info("In getRelatedEntityCollections method");
+        String targetTypeName = navigationProperty.getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        ODataTypeTranslator odtt = getTypeTranslators().get(targetTypeName);
+        List<EntityCollection> collections = new ArrayList<>(sourceEntities.size());
+        RelationshipRegistry.Relationship relationship = sourceEntities.isEmpty() ? null
+                : getRelationships().getRelationship(sourceEntities.get(0).getType(), navigationProperty.getName());
+
+        for (Entity sourceEntity : sourceEntities) {
+            EntityCollection ec = new EntityCollection();
+            Map<String, BaseEntity> entities = objects.get(sourceEntity.getType());
+            BaseEntity ent = (relationship == null) || (entities == null) ? null : entities.get(Util.parseId(sourceEntity.getId()));
+            if (ent != null) {
+                for (BaseEntity related : relationship.getRelated(ent)) {
+                    ec.getEntities().add(entityCache.translate(targetTypeName, odtt, related));
                 }
             }
+            collections.add(ec);
         }
-
-        return ec;
+        return collections;
     }
 
     /**
@@ -307,60 +500,20 @@ public class StoragePojo implements Storage {
     public Entity getRelatedEntity(Entity sourceEntity, EdmEntityType targetEntityType, List<UriParameter> keyPredicates) {
         LOG.info("In getRelatedEntity method");
         Map<String, BaseEntity> entities = objects.get(sourceEntity.getType());
-        BaseEntity ent = entities.get(Util.parseId(sourceEntity.getId()));
-        ODataTypeTranslator odtt = getTypeTranslators().get(targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
-
-        Entity returnEntity = null;
-        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
-        String sourceTypeName = sourceEntity.getType();
-
-        // For brevity and clarity purposes the code will check the types and load the relationship data from the underlying objects. Normally implement in a more generic fashion by autowiring or configuring
-        // metadata lookups between the Odata entity model and the underlying persistence model
-
-        // If the object is a claim object look up either the related policy, or the related beneficiary (selected among the list)
-        if (OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString().equals(sourceTypeName)) {
-            Claim claim = (Claim) ent;
-            if (OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString().equals(targetTypeName)) {
-                returnEntity = odtt.translate(claim.getPolicy());
-            }
-            else if (OdataEdmProvider.ET_BENEFICIARY_FQN.getFullQualifiedNameAsString().equals(targetTypeName)) {
-                String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), keyPredicates);
-
-                for (Beneficiary b : claim.getBeneficiaries()) {
-                    if ((targetEntityId == null) || (targetEntityId.equals(b.getId()))) {
-                        returnEntity = odtt.translate(b);
-                        break;
-                    }
-                }
-            }
-        }
-
-        // If the object is a policy object look up either the related product, or the related claim (selected among the list)
-        else if (OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString().equals(sourceTypeName)) {
-            Policy pol = (Policy) ent;
-            if (OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString().equals(targetTypeName)) {
-                String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), keyPredicates);
-
-                for (Claim c : pol.getClaims()) {
-                    if ((targetEntityId == null) || (targetEntityId.equals(c.getId()))) {
-                        returnEntity = odtt.translate(c);
-                        break;
-                    }
-                }
-            }
-            else if (OdataEdmProvider.ET_PRODUCT_FQN.getFullQualifiedNameAsString().equals(targetTypeName)) {
-                returnEntity = odtt.translate(pol.getProduct());
-            }
+        BaseEntity ent = entities == null ? null : entities.get(Util.parseId(sourceEntity.getId()));
+        if (ent == null) {
+            return null;
         }
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), keyPredicates);
 
-        // If the object is a beneficiary look up the related claim.
-        else if (OdataEdmProvider.ET_BENEFICIARY_FQN.getFullQualifiedNameAsString().equals(sourceTypeName)) {
-            Beneficiary ben = (Beneficiary) ent;
-            if (OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString().equals(targetTypeName)) {
-                returnEntity = odtt.translate(ben.getClaim());
+        // Without key the first related object is returned (ex the Policy of a Claim)
+        for (BaseEntity related : getRelatedBaseEntities(sourceEntity.getType(), ent, targetTypeName)) {
+            if ((targetEntityId == null) || targetEntityId.equals(related.getId())) {
+                return entityCache.translate(targetTypeName, getTypeTranslators().get(targetTypeName), related);
             }
         }
-        return returnEntity;
+        return null;
     }
 
     /**
@@ -386,19 +539,31 @@ public class StoragePojo implements Storage {
         if (entity == null) {
             return null;
         }
-        BaseEntity be = getBaseEntityByKey(entity);
-        if (be == null) {
-            ODataTypeTranslator odtt = typeTranslators.get(entity.getType());
-            Map<String,BaseEntity> baseEntities = objects.get(entity.getType());
-            be = odtt.translate(entity, true);
-            if (be.getId() == null) {
-                setNextKey(be, baseEntities);
+        Lock lock = getWriteLock(entity);
+        lock.lock();
+        try {
+            BaseEntity be = getBaseEntityByKey(entity);
+            if (be == null) {
+                ODataTypeTranslator odtt = typeTranslators.get(entity.getType());
+                Map<String, BaseEntity> baseEntities = objects.get(entity.getType());
+                be = odtt.translate(entity, true, this::resolveRelated);
+                if (be.getId() == null) {
+                    setNextKey(be, entity.getType(), baseEntities);
+                } else {
+                    keyGenerator.observe(entity.getType(), be.getId());
+                }
+                baseEntities.put(be.getId(), be);
+                linkRelated(entity.getType(), be, null);
+                entityCache.invalidate(entity.getType(), be.getId());
+                entityCounts.get(entity.getType()).incrementAndGet();
+                addToIndexes(entity.getType(), be);
+                return odtt.translate(be);
+            } else {
+                LOG.error(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+                throw new ODataException(Messages.ERROR_ENTITY_ALREADY_EXISTS);
             }
-            baseEntities.put(be.getId(), be);
-            return odtt.translate(be);
-        } else {
-            LOG.error(Messages.ERROR_ENTITY_ALREADY_EXISTS);
-            throw new ODataException(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -415,19 +580,36 @@ public class StoragePojo implements Storage {
         if (entity == null) {
             return null;
         }
-        BaseEntity baseEntity = getBaseEntityByKey(entity);
-        if (baseEntity == null) {
-            throw new ODataException(Messages.ERROR_ENTITY_NOT_FOUND_FOR_UPDATE);
+        Lock lock = getWriteLock(entity);
+        lock.lock();
+        try {
+            BaseEntity baseEntity = getBaseEntityByKey(entity);
+            if (baseEntity == null) {
+                throw new ODataException(Messages.ERROR_ENTITY_NOT_FOUND_FOR_UPDATE);
+            }
+            ODataTypeTranslator ott = typeTranslators.get(entity.getType());
+            // The object is merged in place as other objects reference it (see the class comment)
+            List<BaseEntity> previousRelated = getRelatedObjects(ott, baseEntity);
+            Map<PropertyIndex, Object> previousKeys = getIndexKeys(entity.getType(), baseEntity);
+            try {
+                ott.merge(entity, baseEntity, forceNulls, this::resolveRelated);
+            } finally {
+                // A merge failing part way (ex a value of the wrong type) may have changed some properties already
+                linkRelated(entity.getType(), baseEntity, previousRelated);
+                updateIndexes(baseEntity, previousKeys);
+                // The version changes once the merge is complete so translations of the previous state are no longer returned
+                baseEntity.incrementVersion();
+                entityCache.invalidate(entity.getType(), baseEntity.getId());
+            }
+            return ott.translate(baseEntity);
+        } finally {
+            lock.unlock();
         }
-        Map<String, BaseEntity> typeObjects = getBaseEntitiesByType(entity);
-        ODataTypeTranslator ott = typeTranslators.get(entity.getType());
-        baseEntity = ott.merge(entity, baseEntity, forceNulls);
-        typeObjects.put(baseEntity.getId(), baseEntity);
-        return ott.translate(baseEntity);
     }
 
     /**
-     * Method Deletes the entity for the source entity passed in and persists it
+     * Method Deletes the entity for the source entity passed in and persists it. The references of the other objects to
+     * it are removed, like the other storages set the relatedId properties referencing it to null
      * @param edmEntitySet Source entitySet type
      * @param keyPredicates Primary key to find record to delete
      * @return Entity that was deleted from persistent storage
@@ -439,10 +621,41 @@ public class StoragePojo implements Storage {
         if ((edmEntitySet == null) || (keyPredicates == null)) {
             return null;
         }
-        ODataTypeTranslator odtt = typeTranslators.get(edmEntitySet.getEntityType().getName());
-        Map<String, BaseEntity> typeObjects = objects.get(edmEntitySet.getEntityType().getName());
+        String objectType = edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString();
+        ODataTypeTranslator odtt = typeTranslators.get(objectType);
+        Map<String, BaseEntity> typeObjects = objects.get(objectType);
         String id = Util.getPrimaryKeyFromParam(edmEntitySet.getEntityType().getKeyPredicateNames(),keyPredicates);
-        return odtt.translate(typeObjects.remove(id));
+        if (id == null) {
+            return null;
+        }
+
+        // The objects referencing the deleted object are changed too, the locks are taken in the order of the type
+        // names so deletes of related types can't deadlock
+        Map<String, List<RelatedProperty>> referencingProperties = getReferencingProperties(odtt.getEntityMapping().getEntityClass());
+        SortedSet<String> lockedTypes = new TreeSet<>(referencingProperties.keySet());
+        lockedTypes.add(objectType);
+        List<Lock> locks = new ArrayList<>(lockedTypes.size());
+        for (String lockedType : lockedTypes) {
+            Lock lock = writeLocks.get(lockedType);
+            lock.lock();
+            locks.add(lock);
+        }
+        try {
+            BaseEntity removed = typeObjects.remove(id);
+            if (removed == null) {
+                return null;
+            }
+            entityCounts.get(objectType).decrementAndGet();
+            removeFromIndexes(objectType, removed);
+            removed.incrementVersion();
+            entityCache.invalidate(objectType, id);
+            unlinkRelated(objectType, removed, referencingProperties);
+            return odtt.translate(removed);
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
     }
 
     /**
@@ -459,14 +672,316 @@ public class StoragePojo implements Storage {
         if (entity == null) {
             return null;
         }
-        BaseEntity be = getBaseEntityByKey(entity);
-        if (be == null) {
-            return createEntity(entity);
-        } else {
-            return updateEntity(entity, forceNulls);
+        // The write lock is reentrant so the check and the create or update happen as one atomic operation
+        Lock lock = getWriteLock(entity);
+        lock.lock();
+        try {
+            BaseEntity be = getBaseEntityByKey(entity);
+            if (be == null) {
+                return createEntity(entity);
+            } else {
+                return updateEntity(entity, forceNulls);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method follows the navigation path from the object of the first segment over the references between the objects
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the object of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Objects at the end of the path in a list that can be changed, null if an object before the last segment
+     * is not found
+     */
+    private List<BaseEntity> followNavigations(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations) {
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+        Map<String, BaseEntity> entities = objects.get(objectType);
+        BaseEntity ent = (keyValue == null) || (entities == null) ? null : entities.get(keyValue);
+        if (ent == null) {
+            return null;
+        }
+
+        List<BaseEntity> current = new ArrayList<>(Collections.singletonList(ent));
+        for (UriResourceNavigation navigation : navigations) {
+            // Only the last segment can return several objects
+            if (current.isEmpty()) {
+                return null;
+            }
+            EdmEntityType targetEntityType = navigation.getProperty().getType();
+            RelationshipRegistry.Relationship relationship = getRelationships().getRelationship(objectType, navigation.getProperty().getName());
+            List<BaseEntity> related = relationship == null ? new ArrayList<>() : relationship.getRelated(current.get(0));
+            String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), navigation.getKeyPredicates());
+            if (targetEntityId != null) {
+                related.removeIf(relatedEntity -> !targetEntityId.equals(relatedEntity.getId()));
+            }
+            current = related;
+            objectType = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        }
+        return current;
+    }
+
+    /**
+     * Method returns the objects of the target type the source object is related to, in both directions of the
+     * relationships (ex the Claims of a Policy or the Policy of a Claim)
+     * @param sourceTypeName Full qualified name of the source type
+     * @param ent Source object
+     * @param targetTypeName Full qualified name of the target type
+     * @return Related objects, empty if there are none or the types are not related
+     */
+    private List<BaseEntity> getRelatedBaseEntities(String sourceTypeName, BaseEntity ent, String targetTypeName) {
+        RelationshipRegistry.Relationship relationship = getRelationships().findRelationship(sourceTypeName, targetTypeName);
+        return relationship == null ? new ArrayList<>() : relationship.getRelated(ent);
+    }
+
+    /**
+     * Method returns the stored object referenced by a relatedId property of an entity being written
+     * @param relatedClass BaseEntity implementation of the referenced object
+     * @param id Primary key of the referenced object
+     * @return Stored object or null if there is none
+     */
+    private BaseEntity resolveRelated(Class<?> relatedClass, String id) {
+        String relatedType = getRelationships().getTypeName(relatedClass);
+        Map<String, BaseEntity> relatedObjects = relatedType == null ? null : objects.get(relatedType);
+        return relatedObjects == null ? null : relatedObjects.get(id);
+    }
+
+    /**
+     * Method returns the objects the relatedId properties of the object reference
+     * @param odtt Type translator of the object
+     * @param baseEntity Stored object
+     * @return Referenced objects in the order of the relatedId properties, with null for the unset ones
+     */
+    private List<BaseEntity> getRelatedObjects(ODataTypeTranslator odtt, BaseEntity baseEntity) {
+        List<RelatedProperty> relatedProperties = odtt.getEntityMapping().getRelatedProperties();
+        List<BaseEntity> relatedObjects = new ArrayList<>(relatedProperties.size());
+        for (RelatedProperty relatedProperty : relatedProperties) {
+            relatedObjects.add(relatedProperty.get(baseEntity));
+        }
+        return relatedObjects;
+    }
+
+    /**
+     * Method moves the object written from the collections of the objects it referenced to the collections of the
+     * objects it references (ex from the Claims of its previous Policy to the Claims of its new Policy), so the
+     * navigations from the referenced objects return it. It is called with the write lock of the object type
+     * @param objectType Full qualified name of the type of the object
+     * @param baseEntity Stored object
+     * @param previousRelated Objects referenced before the write, as returned by getRelatedObjects, null for a new object
+     */
+    private void linkRelated(String objectType, BaseEntity baseEntity, List<BaseEntity> previousRelated) {
+        List<RelatedProperty> relatedProperties = typeTranslators.get(objectType).getEntityMapping().getRelatedProperties();
+        for (int i = 0; i < relatedProperties.size(); i++) {
+            BaseEntity previous = previousRelated == null ? null : previousRelated.get(i);
+            BaseEntity current = relatedProperties.get(i).get(baseEntity);
+            String relatedType = getRelationships().getTypeName(relatedProperties.get(i).getRelatedClass());
+            RelationshipRegistry.Relationship inverse = relatedType == null ? null : getRelationships().findRelationship(relatedType, objectType);
+            if ((previous == current) || (inverse == null)) {
+                continue;
+            }
+            if (previous != null) {
+                inverse.removeRelated(previous, baseEntity);
+            }
+            if (current != null) {
+                inverse.addRelated(current, baseEntity);
+            }
+        }
+    }
+
+    /**
+     * Method returns the relatedId properties of each type that reference the class passed in (ex ClaimId of the
+     * Beneficiaries for the Claims)
+     * @param entityClass BaseEntity implementation of the referenced objects
+     * @return relatedId properties by full qualified name of the type declaring them
+     */
+    private Map<String, List<RelatedProperty>> getReferencingProperties(Class<?> entityClass) {
+        Map<String, List<RelatedProperty>> referencingProperties = new HashMap<>();
+        for (ODataTypeTranslator odtt : typeTranslators.values()) {
+            for (RelatedProperty relatedProperty : odtt.getEntityMapping().getRelatedProperties()) {
+                if (relatedProperty.getRelatedClass().equals(entityClass) && relatedProperty.isSettable()) {
+                    referencingProperties.computeIfAbsent(odtt.getEntityTypeName(), typeName -> new ArrayList<>()).add(relatedProperty);
+                }
+            }
+        }
+        return referencingProperties;
+    }
+
+    /**
+     * Method removes the references to a deleted object: it is removed from the collections of the objects it
+     * referenced (ex the Claims of its Policy) and the relatedId properties referencing it are set to null (ex the
+     * ClaimId of its Beneficiaries). The versions of the changed objects are incremented so their translations are no
+     * longer returned. It is called with the write locks of the deleted type and of the referencing types
+     * @param objectType Full qualified name of the type of the deleted object
+     * @param removed Deleted object
+     * @param referencingProperties relatedId properties referencing the type, as returned by getReferencingProperties
+     */
+    private void unlinkRelated(String objectType, BaseEntity removed, Map<String, List<RelatedProperty>> referencingProperties) {
+        List<RelatedProperty> relatedProperties = typeTranslators.get(objectType).getEntityMapping().getRelatedProperties();
+        List<BaseEntity> previousRelated = getRelatedObjects(typeTranslators.get(objectType), removed);
+        for (int i = 0; i < relatedProperties.size(); i++) {
+            String relatedType = getRelationships().getTypeName(relatedProperties.get(i).getRelatedClass());
+            RelationshipRegistry.Relationship inverse = relatedType == null ? null : getRelationships().findRelationship(relatedType, objectType);
+            if ((inverse != null) && (previousRelated.get(i) != null)) {
+                inverse.removeRelated(previousRelated.get(i), removed);
+            }
+        }
+
+        for (Map.Entry<String, List<RelatedProperty>> referencing : referencingProperties.entrySet()) {
+            String referencingType = referencing.getKey();
+            // The collection of the deleted object lists the objects referencing it, otherwise all of them are checked
+            RelationshipRegistry.Relationship relationship = getRelationships().findRelationship(objectType, referencingType);
+            Collection<BaseEntity> candidates = (relationship != null) && relationship.isCollection()
+                    ? relationship.getRelated(removed) : objects.get(referencingType).values();
+            for (BaseEntity candidate : candidates) {
+                for (RelatedProperty relatedProperty : referencing.getValue()) {
+                    BaseEntity related = relatedProperty.get(candidate);
+                    if ((related != null) && removed.getId().equals(related.getId())) {
+                        Map<PropertyIndex, Object> previousKeys = getIndexKeys(referencingType, candidate);
+                        relatedProperty.set(candidate, null);
+                        updateIndexes(candidate, previousKeys);
+                        candidate.incrementVersion();
+                        entityCache.invalidate(referencingType, candidate.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Method returns the registry of the relationships, built from the EDM provider and the type translators on first use
+     * @return RelationshipRegistry
+     */
+    private RelationshipRegistry getRelationships() {
+        RelationshipRegistry registry = relationships;
+        if (registry == null) {
+            synchronized (this) {
+                registry = relationships;
+                if (registry == null) {
+                    try {
+                        registry = new RelationshipRegistry(edmProvider, typeTranslators);
+                    } catch (ODataException e) {
+                        throw new ODataRuntimeException(e.getMessage(), e);
+                    }
+                    relationships = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Method creates the ordered concurrent map that holds the entities of the type passed in and registers the
+     * write lock for the type
+     * @param objectType Full qualified name of the entity type
+     * @return Map of BaseEntities for the type by id
+     */
+    private Map<String, BaseEntity> createEntityMap(String objectType) {
+        ConcurrentNavigableMap<String, BaseEntity> entityMap = new ConcurrentSkipListMap<>(keyComparator);
+        objects.put(objectType, entityMap);
+        writeLocks.put(objectType, new ReentrantLock());
+        return entityMap;
+    }
+
+    /**
+     * Method creates the indexes for the properties passed in
+     * @param indexes Map of property name to index that the new indexes are added to
+     * @param objectType Full qualified name of the entity type
+     * @param propertyNames Names of the properties to index, can be null
+     * @param sorted true to create sorted (range) indexes, false for hash (equality) indexes
+     */
+    private void addIndexes(Map<String, PropertyIndex> indexes, String objectType, List<String> propertyNames, boolean sorted) {
+        if (propertyNames == null) {
+            return;
+        }
+        ODataTypeTranslator odtt = typeTranslators.get(objectType);
+        for (String propertyName : propertyNames) {
+            Function<BaseEntity, Object> accessor = odtt.getPropertyAccessor(propertyName);
+            if (accessor == null) {
+                LOG.error("Unable to index unknown property {} of {}", propertyName, objectType);
+                continue;
+            }
+            indexes.put(propertyName, new PropertyIndex(propertyName, accessor, sorted, keyComparator));
+        }
+    }
+
+    /**
+     * Method adds the entity to the secondary indexes of its type. Must be called while holding the write lock of the type
+     * @param objectType Full qualified name of the entity type
+     * @param baseEntity BaseEntity implementation to add
+     */
+    private void addToIndexes(String objectType, BaseEntity baseEntity) {
+        Map<String, PropertyIndex> indexes = propertyIndexes.get(objectType);
+        if (indexes != null) {
+            for (PropertyIndex index : indexes.values()) {
+                index.add(baseEntity);
+            }
+        }
+    }
+
+    /**
+     * Method removes the entity from the secondary indexes of its type. Must be called while holding the write lock of the
+     * type and before the entity is changed
+     * @param objectType Full qualified name of the entity type
+     * @param baseEntity BaseEntity implementation to remove
+     */
+    private void removeFromIndexes(String objectType, BaseEntity baseEntity) {
+        Map<String, PropertyIndex> indexes = propertyIndexes.get(objectType);
+        if (indexes != null) {
+            for (PropertyIndex index : indexes.values()) {
+                index.remove(baseEntity);
+            }
+        }
+    }
+
+    /**
+     * Method returns the keys the entity is indexed under by the secondary indexes of its type. Must be called while
+     * holding the write lock of the type and before the entity is changed
+     * @param objectType Full qualified name of the entity type
+     * @param baseEntity BaseEntity implementation about to be changed
+     * @return Key of the entity by index, empty if the type has no index
+     */
+    private Map<PropertyIndex, Object> getIndexKeys(String objectType, BaseEntity baseEntity) {
+        Map<String, PropertyIndex> indexes = propertyIndexes.get(objectType);
+        if (indexes == null) {
+            return Collections.emptyMap();
+        }
+        Map<PropertyIndex, Object> indexKeys = new HashMap<>();
+        for (PropertyIndex index : indexes.values()) {
+            indexKeys.put(index, index.getKey(baseEntity));
+        }
+        return indexKeys;
+    }
+
+    /**
+     * Method moves the entity changed in place to the keys of its current values in the secondary indexes. Lookups
+     * running meanwhile find it under its previous or its current keys. Must be called while holding the write lock of
+     * the type
+     * @param baseEntity BaseEntity implementation that was changed
+     * @param previousKeys Keys returned by getIndexKeys before the change
+     */
+    private void updateIndexes(BaseEntity baseEntity, Map<PropertyIndex, Object> previousKeys) {
+        for (Map.Entry<PropertyIndex, Object> previousKey : previousKeys.entrySet()) {
+            previousKey.getKey().update(baseEntity, previousKey.getValue());
         }
     }
 
+    /**
+     * Method returns the lock that serializes writes for the type of the entity passed in
+     * @param entity Entity whose type is being written
+     * @return Lock for the entity type
+     * @throws ODataException If the entity type is not set or not known
+     */
+    private Lock getWriteLock(Entity entity) throws ODataException {
+        Lock lock = entity.getType() == null ? null : writeLocks.get(entity.getType());
+        if (lock == null) {
+            throw new ODataException(Messages.ERROR_ENTITY_TYPE_NOT_FOUND);
+        }
+        return lock;
+    }
+
     /**
      * Method will return a Maps of Base entity types based on the entity passed in.
      * @param entity Entity type to use as base for lookup
@@ -489,7 +1004,7 @@ public class StoragePojo implements Storage {
      * @return BaseEntity subclass if found or null
      * @throws ODataException If an error occurred looking up the entity
      */
-    private BaseEntity getBaseEntityByKey(Entity entity) throws ODataException {
+    BaseEntity getBaseEntityByKey(Entity entity) throws ODataException {
         LOG.info("In getBaseEntityByKey method");
         Map<String, BaseEntity> typeObjects = getBaseEntitiesByType(entity);
         Property property = entity.getProperty(Constants.ID);
@@ -503,73 +1018,242 @@ public class StoragePojo implements Storage {
     }
 
     /**
-     * Method finds the last key and sets the BaseEntity's subclass to max value + 1
+     * Method sets the key of the BaseEntity's subclass to a new key from the key generator
      * @param baseEntity Base Entity value whose key to set
+     * @param objectType Full qualified name of the entity type
      * @param entityMap Map of all the entities for the type
      */
-    private void setNextKey(BaseEntity baseEntity, Map<String, BaseEntity> entityMap) {
+    private void setNextKey(BaseEntity baseEntity, String objectType, Map<String, BaseEntity> entityMap) {
         LOG.info("In setNextKey method");
-        int newKey = 0;
-        for (String key : entityMap.keySet()) {
-           int keyValue = Integer.parseInt(key);
-           newKey = Math.max(newKey, keyValue);
+        String newKey = keyGenerator.nextKey(objectType);
+        // Only possible if a key was inserted without being observed, the next keys are checked until a free one is found
+        while (entityMap.containsKey(newKey)) {
+            newKey = keyGenerator.nextKey(objectType);
         }
-        baseEntity.setId(Integer.toString(newKey+1));
+        baseEntity.setId(newKey);
     }
 
     /**
-     * Method processes the orderBy parameter and orders the list in ascending or descending order
-     * @param entitySet The Collection containing the entities to sort
-     * @param uriInfo URI Info object containing the sort parameters
+     * Method registers the keys of the stored entities with the key generator. It is called once the entities are
+     * loaded and when the key generator is replaced
      */
-    private void processOrder(EntityCollection entitySet, UriInfo uriInfo) {
-        LOG.info("In processOrder method");
-        OrderByOption orderByOption = uriInfo.getOrderByOption();
-        if (orderByOption == null) {
-            return;
+    private void seedKeyGenerator() {
+        LOG.info("In seedKeyGenerator method");
+        for (Map.Entry<String, ConcurrentNavigableMap<String, BaseEntity>> entityMap : objects.entrySet()) {
+            Lock lock = writeLocks.get(entityMap.getKey());
+            lock.lock();
+            try {
+                for (String key : entityMap.getValue().keySet()) {
+                    keyGenerator.observe(entityMap.getKey(), key);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
+    }
 
-        for (OrderByItem orderByItem : orderByOption.getOrders()) {
-            Expression expression = orderByItem.getExpression();
-            if (expression instanceof Member) {
-                for (UriResource uriResource : ((Member) expression).getResourcePath().getUriResourceParts()) {
-                    if (uriResource instanceof UriResourcePrimitiveProperty) {
-                        String sortPropertyName = ((UriResourcePrimitiveProperty)uriResource).getProperty().getName();
-                        EntityComparator entityComparator = new EntityComparator(sortPropertyName,orderByItem.isDescending());
-                        Collections.sort (entitySet.getEntities(), entityComparator);
-                    }
-                }
+    /**
+     * Method counts the entities that match the filter without translating them. Without a filter the count is maintained
+     * by the writes. Otherwise the filter is evaluated against the candidates, which the indexes narrow down. The size of
+     * an index lookup is not used as the count: an entity updated meanwhile can be found in two entries or in an entry it
+     * no longer matches, so the count would differ from the entities the query returns
+     * @param objectType Full qualified name of the entity type
+     * @param pojoFilter Compiled filter, may be null
+     * @return Number of matching entities
+     * @throws ODataApplicationException Exception thrown if the filter can't be evaluated
+     */
+    private int countMatches(String objectType, PojoFilter pojoFilter) throws ODataApplicationException {
+        if (pojoFilter == null) {
+            return entityCounts.get(objectType).get();
+        }
+        return countMatches(selectCandidates(objectType, pojoFilter, null), pojoFilter);
+    }
+
+    /**
+     * Method counts the candidates that match the filter without translating them
+     * @param candidates Objects to evaluate
+     * @param pojoFilter Compiled filter, may be null
+     * @return Number of matching objects
+     * @throws ODataApplicationException Exception thrown if the filter can't be evaluated
+     */
+    private int countMatches(Collection<BaseEntity> candidates, PojoFilter pojoFilter) throws ODataApplicationException {
+        if (pojoFilter == null) {
+            return candidates.size();
+        }
+        int matched = 0;
+        for (BaseEntity baseEntity : candidates) {
+            if (pojoFilter.matches(baseEntity)) {
+                matched++;
             }
         }
+        return matched;
     }
 
-    private void filterEntities(FilterOption filterOption, EntityCollection entitySet, EdmEntitySet edmEntitySet) throws ExpressionVisitException, ODataApplicationException {
-        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
-        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
-        ODataTypeTranslator odtt = getTypeTranslators().get(objectType);
+    /**
+     * Method returns the value of the $skip option
+     * @param uriInfo URI Info object containing the skip parameter
+     * @return Number of entities to skip, 0 if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid skip value is passed in
+     */
+    private int getSkip(UriInfo uriInfo) throws ODataApplicationException {
+        SkipOption skipOption = uriInfo.getSkipOption();
+        if (skipOption == null) {
+            return 0;
+        }
+        int skip = skipOption.getValue();
+        if (skip < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_SKIP + "{}", skip);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_SKIP + skip, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+        }
+        return skip;
+    }
 
-        for (BaseEntity baseEntity : objects.get(objectType).values()) {
-            entitySet.getEntities().add(odtt.translate(baseEntity));
+    /**
+     * Method returns the value of the $top option
+     * @param uriInfo URI Info object containing the top parameter
+     * @return Maximum number of entities to return, Integer.MAX_VALUE if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid top value is passed in
+     */
+    private int getTop(UriInfo uriInfo) throws ODataApplicationException {
+        TopOption topOption = uriInfo.getTopOption();
+        if (topOption == null) {
+            return Integer.MAX_VALUE;
+        }
+        int top = topOption.getValue();
+        if (top < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_TOP + "{}", top);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_TOP + top, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
         }
+        return top;
+    }
 
-        if (filterOption == null) {
-            return;
+    /**
+     * Method returns the entities that need to be evaluated against the filter in primary key order. If a condition of
+     * the top level AND of the filter is on an indexed property the smallest index result is used, otherwise all the
+     * entities of the type are returned, starting after afterKey if it is set
+     * @param objectType Full qualified name of the entity type
+     * @param pojoFilter Compiled filter, may be null
+     * @param afterKey Key of the last entity of the previous page, may be null
+     * @return Candidate entities, the filter still needs to be evaluated against each of them
+     */
+    private Collection<BaseEntity> selectCandidates(String objectType, PojoFilter pojoFilter, String afterKey) {
+        ConcurrentNavigableMap<String, BaseEntity> entityMap = objects.get(objectType);
+        Collection<BaseEntity> allEntities = afterKey == null ? entityMap.values() : entityMap.tailMap(afterKey, false).values();
+        Map<String, PropertyIndex> indexes = propertyIndexes.get(objectType);
+        if ((pojoFilter == null) || (indexes == null) || indexes.isEmpty()) {
+            return allEntities;
+        }
+
+        Collection<BaseEntity> candidates = null;
+        boolean keyOrdered = false;
+        for (PojoFilter.Condition condition : pojoFilter.getConditions()) {
+            PropertyIndex index = indexes.get(condition.getPropertyName());
+            Collection<BaseEntity> found = index == null ? null : index.find(condition.getOperator(), condition.getValue());
+            if ((found != null) && ((candidates == null) || (found.size() < candidates.size()))) {
+                candidates = found;
+                keyOrdered = condition.getOperator() == BinaryOperatorKind.EQ;
+            }
+        }
+
+        if (candidates == null) {
+            return allEntities;
+        } else if (keyOrdered) {
+            return candidates;
+        }
+        // Range lookups span several index entries, restore the primary key order of a full scan. An entity moved to
+        // another entry by an update running meanwhile can be found in both entries, it is returned once
+        Map<String, BaseEntity> orderedCandidates = new TreeMap<>(keyComparator);
+        for (BaseEntity candidate : candidates) {
+            orderedCandidates.put(candidate.getId(), candidate);
+        }
+        return orderedCandidates.values();
+    }
+
+    /**
+     * Method returns the compiled filter for the filter option passed in. Compiled filters are cached by entity type and
+     * normalized filter expression so repeated queries (ex Salesforce list views) skip the compilation
+     * @param filterOption Filter option passed in, may be null
+     * @param objectType Full qualified name of the filtered type
+     * @param odtt Type translator used to read the properties of the filtered type
+     * @return Compiled filter or null if no filter was passed in
+     * @throws ODataApplicationException Exception thrown if the filter expression can't be visited (400) or uses
+     * unsupported operations
+     */
+    private PojoFilter getCompiledFilter(FilterOption filterOption, String objectType, ODataTypeTranslator odtt) throws ODataApplicationException {
+        if ((filterOption == null) || (filterOption.getExpression() == null)) {
+            return null;
         }
         Expression filterExpression = filterOption.getExpression();
+        // The expression string is rebuilt from the parsed tree so it doesn't depend on white space or encoding in the url
+        String cacheKey = objectType + ":" + filterExpression;
+        PojoFilter pojoFilter = compiledFilters.get(cacheKey);
+        if (pojoFilter == null) {
+            try {
+                pojoFilter = PojoFilter.compile(filterExpression, odtt);
+            } catch (ExpressionVisitException e) {
+                throw new ODataApplicationException(Messages.ERROR_INVALID_FILTER + e.getMessage(), HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT, e);
+            }
+            compiledFilters.put(cacheKey, pojoFilter);
+        }
+        return pojoFilter;
+    }
 
-        Iterator<Entity> entityIterator = entitySet.getEntities().iterator();
+    /**
+     * Iterator over the candidates that match the filter. The filter is evaluated lazily as the entities are read.
+     * Candidates up to afterKey belong to the previous pages and are skipped without evaluating the filter
+     */
+    private final class MatchingIterator implements Iterator<BaseEntity> {
+        private final Iterator<BaseEntity> candidates;
+        private final PojoFilter pojoFilter;
+        private final String afterKey;
+        private BaseEntity nextMatch;
+
+        /**
+         * Constructor used to populate the iterator
+         * @param candidates Entities to evaluate in primary key order
+         * @param pojoFilter Compiled filter, may be null
+         * @param afterKey Key of the last entity of the previous page, may be null
+         */
+        private MatchingIterator(Collection<BaseEntity> candidates, PojoFilter pojoFilter, String afterKey) {
+            this.candidates = candidates.iterator();
+            this.pojoFilter = pojoFilter;
+            this.afterKey = afterKey;
+        }
 
-        while (entityIterator.hasNext()) {
-            Entity currentEntity = entityIterator.next();
-            PojoFilterExpressionVisitor pojoFilterExpressionVisitor = new PojoFilterExpressionVisitor(currentEntity);
-            Object visitorResult = filterExpression.accept(pojoFilterExpressionVisitor);
-            if (visitorResult instanceof Boolean) {
-                if (!Boolean.TRUE.equals(visitorResult)) {
-                    entityIterator.remove();
+        /**
+         * Method returns true if there is another matching entity
+         * @return true if next will return an entity
+         */
+        @Override
+        public boolean hasNext() {
+            while ((nextMatch == null) && candidates.hasNext()) {
+                BaseEntity candidate = candidates.next();
+                if ((afterKey != null) && (keyComparator.compare(candidate.getId(), afterKey) <= 0)) {
+                    continue;
                 }
-            } else {
-                throw new ODataApplicationException("A filter expression must evaluate to type Edm.Boolean", HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ENGLISH);
+                try {
+                    if ((pojoFilter == null) || pojoFilter.matches(candidate)) {
+                        nextMatch = candidate;
+                    }
+                } catch (ODataApplicationException e) {
+                    throw new PojoFilter.EvaluationException(e);
+                }
+            }
+            return nextMatch != null;
+        }
+
+        /**
+         * Method returns the next matching entity
+         * @return BaseEntity implementation
+         */
+        @Override
+        public BaseEntity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            BaseEntity match = nextMatch;
+            nextMatch = null;
+            return match;
         }
     }
 }
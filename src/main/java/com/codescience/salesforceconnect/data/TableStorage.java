@@ -0,0 +1,964 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.service.Messages;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import com.codescience.salesforceconnect.util.KeyComparator;
+import com.codescience.salesforceconnect.util.Util;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Base class of the Storage implementations that keep each entity set in an EntityTable instead of BaseEntity objects.
+ * An entity only exists as an object while it is returned: the rows are materialized into BaseEntity implementations
+ * and translated one at a time as the response is written. The conditions of the top level AND of a $filter on stored
+ * properties are evaluated against the table, the compiled filter only runs on the materialized rows when the
+ * conditions don't answer the whole filter (ex conditions on computed properties such as TotalCostAmount, or, not).
+ * Collections are returned in insertion order (primary key order for the default records and generated keys).
+ * Writes are serialized per entity type by the lock of the table, reads don't lock.
+ * Subclasses create the tables and register them with addTable
+ */
+public abstract class TableStorage implements Storage {
+    private static final Logger LOG = LoggerFactory.getLogger(TableStorage.class);
+    private static final int MAX_COMPILED_FILTERS = 256;
+    private Map<String, ODataTypeTranslator> typeTranslators = new HashMap<>();
+    private final Map<String, EntityTable> tables = new ConcurrentHashMap<>();
+    private final Map<Class<?>, EntityTable> tablesByClass = new ConcurrentHashMap<>();
+    private int maxPageSize;
+    private KeyGenerator keyGenerator = new SequenceKeyGenerator();
+    private final Map<String, PojoFilter> compiledFilters = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PojoFilter> eldest) {
+            return size() > MAX_COMPILED_FILTERS;
+        }
+    });
+
+    /**
+     * Method registers the table of an entity type
+     * @param objectType Full qualified name of the entity type
+     * @param table Table storing the entities of the type
+     */
+    protected void addTable(String objectType, EntityTable table) {
+        tables.put(objectType, table);
+        tablesByClass.put(table.getEntityClass(), table);
+    }
+
+    /**
+     * Method returns the table that stores an entity class. Tables use it to materialize the related entities
+     * @param entityClass BaseEntity implementation
+     * @return Table or null if the class is not stored
+     */
+    protected EntityTable getTable(Class<?> entityClass) {
+        return tablesByClass.get(entityClass);
+    }
+
+    /**
+     * Method returns the stored entity referenced by a relatedId property of an entity being written
+     * @param relatedClass BaseEntity implementation of the referenced entity
+     * @param id Primary key of the referenced entity
+     * @return Materialized entity or null if there is none
+     */
+    private BaseEntity resolveRelated(Class<?> relatedClass, String id) {
+        EntityTable table = getTable(relatedClass);
+        int row = table == null ? -1 : table.findRow(id);
+        return row < 0 ? null : table.materialize(row);
+    }
+
+    /**
+     * Method returns the tables by full qualified entity type name
+     * @return Map of the registered tables
+     */
+    protected Map<String, EntityTable> getTables() {
+        return tables;
+    }
+
+    /**
+     * Method is called once a write to the table is complete, while the lock of the table is held. Subclasses can
+     * override it to make the write durable
+     * @param table Table that was written
+     */
+    protected void afterWrite(EntityTable table) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Method appends the default records to the tables
+     */
+    protected void loadSampleData() {
+        LOG.info("In loadSampleData method");
+        for (Map.Entry<String, List<BaseEntity>> sampleEntities : SampleData.create().entrySet()) {
+            EntityTable table = tables.get(sampleEntities.getKey());
+            table.getLock().lock();
+            try {
+                for (BaseEntity baseEntity : sampleEntities.getValue()) {
+                    table.insert(baseEntity);
+                }
+            } finally {
+                table.getLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Method reads the collection of rows of the type passed in. The $filter, $skip, $top and $count options are applied
+     * to the columns and only the rows returned are materialized and translated, while they are serialized. With
+     * $orderby a bounded heap selects the page among the materialized matches. If the result is larger than maxPageSize
+     * only the first page is returned and the next property of the iterator holds the $skiptoken query of the next page
+     * @param edmEntitySet EntitySet (collection) type to be read
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the Entities read from the columns
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
+     */
+    @Override
+    public EntityIterator readEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
+        LOG.info("In readEntitySetData method");
+        return query(edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString(), uriInfo, null);
+    }
+
+    /**
+     * Method reads the rows related to the entity at the end of the navigation path (ex the Claims of
+     * Policies('2000')/Claims). The $filter, $orderby, $skip, $top and $count options are applied to the related rows
+     * like readEntitySetData does, only the rows returned are materialized and translated
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the query options
+     * @return EntityIterator over the related Entities, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
+     */
+    @Override
+    public EntityIterator readNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                                UriInfo uriInfo) throws ODataException {
+        LOG.info("In readNavigationSetData method");
+        List<Integer> rows = followNavigations(edmEntitySet, keyParams, navigations);
+        if (rows == null) {
+            return null;
+        }
+        String objectType = navigations.get(navigations.size() - 1).getProperty().getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        return query(objectType, uriInfo, rows);
+    }
+
+    /**
+     * Method counts the rows related to the entity at the end of the navigation path that match the $filter option
+     * (ex Policies('2000')/Claims/$count). Only the rows the filter evaluates in memory are materialized
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment, the last one is a collection
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching related rows, null if an entity before the last segment is not found
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    @Override
+    public Integer countNavigationSetData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations,
+                                          UriInfo uriInfo) throws ODataException {
+        LOG.info("In countNavigationSetData method");
+        List<Integer> rows = followNavigations(edmEntitySet, keyParams, navigations);
+        if (rows == null) {
+            return null;
+        }
+        String objectType = navigations.get(navigations.size() - 1).getProperty().getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        EntityTable table = tables.get(objectType);
+        return countMatches(table, createRowFilter(table, getCompiledFilter(uriInfo.getFilterOption(), objectType, getTypeTranslators().get(objectType))), rows);
+    }
+
+    /**
+     * Method applies the $filter, $orderby, $skip, $top, $count and $skiptoken options to the rows of the table of the
+     * type, or to the rows passed in
+     * @param objectType Full qualified name of the entity type
+     * @param uriInfo URI Info object containing the query options
+     * @param rows Row numbers in row order, null to read the whole table
+     * @return EntityIterator over the Entities
+     * @throws ODataException Exception thrown if an invalid $skip, $top or $skiptoken value is passed in
+     */
+    private EntityIterator query(String objectType, UriInfo uriInfo, List<Integer> rows) throws ODataException {
+        ODataTypeTranslator odtt = getTypeTranslators().get(objectType);
+        EntityTable table = tables.get(objectType);
+
+        RowFilter rowFilter = createRowFilter(table, getCompiledFilter(uriInfo.getFilterOption(), objectType, odtt));
+        PojoComparator order = PojoComparator.create(uriInfo.getOrderByOption(), odtt, KeyComparator.INSTANCE);
+        CountOption countOption = uriInfo.getCountOption();
+        boolean countRequested = (countOption != null) && countOption.getValue();
+        int skip = getSkip(uriInfo);
+        int top = getTop(uriInfo);
+
+        // Without $orderby the next page of the table resumes after the row of the last key, or skips the previous
+        // pages if the row was deleted since. The next page of related rows skips the previous pages
+        SkipToken skipToken = SkipToken.parse(uriInfo.getSkipTokenOption());
+        int position = skipToken == null ? 0 : skipToken.getPosition();
+        int afterRow = (skipToken == null) || (order != null) || (rows != null) ? -1 : table.findRow(skipToken.getLastKey());
+        int remaining = top == Integer.MAX_VALUE ? top : Math.max(0, top - position);
+        int pageSkip = afterRow < 0 ? (int) Math.min((long) skip + position, Integer.MAX_VALUE) : 0;
+
+        // Only the $select properties are translated
+        Function<BaseEntity, Entity> translator = odtt.getProjection(Util.getSelectedProperties(uriInfo));
+        PojoEntityIterator entityIterator;
+        Integer count = null;
+        if (order == null) {
+            if (countRequested) {
+                count = countMatches(table, rowFilter, rows);
+            }
+            Iterator<BaseEntity> matches = new MatchingRowIterator(table, rowFilter, rows, afterRow + 1, pageSkip);
+            entityIterator = new PojoEntityIterator(matches, translator, 0, remaining, maxPageSize, position);
+            entityIterator.prefetch();
+        } else {
+            // One more entity than the page size is selected to know if there is a next page
+            int limit = maxPageSize > 0 ? (int) Math.min(remaining, maxPageSize + 1L) : remaining;
+            List<BaseEntity> sorted = new ArrayList<>();
+            if (limit > 0) {
+                try {
+                    int matched = order.select(() -> new MatchingRowIterator(table, rowFilter, rows, 0, 0), null, pageSkip, limit, sorted);
+                    count = countRequested ? matched : null;
+                } catch (PojoFilter.EvaluationException e) {
+                    throw e.getCause();
+                }
+            } else if (countRequested) {
+                // Only the count is needed ($top=0)
+                count = countMatches(table, rowFilter, rows);
+            }
+            entityIterator = new PojoEntityIterator(sorted.iterator(), translator, 0, remaining, maxPageSize, position);
+        }
+        entityIterator.setCount(count);
+        return entityIterator;
+    }
+
+    /**
+     * Method returns the number of rows of the entity set that match the $filter option
+     * @param edmEntitySet EntitySet (collection) type to be counted
+     * @param uriInfo URI Info object containing the filter option
+     * @return Number of matching rows
+     * @throws ODataException Exception thrown if the filter can't be evaluated
+     */
+    @Override
+    public int countEntitySetData(EdmEntitySet edmEntitySet, UriInfo uriInfo) throws ODataException {
+        LOG.info("In countEntitySetData method");
+        String objectType = edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString();
+        ODataTypeTranslator odtt = getTypeTranslators().get(objectType);
+        EntityTable table = tables.get(objectType);
+
+        return countMatches(table, createRowFilter(table, getCompiledFilter(uriInfo.getFilterOption(), objectType, odtt)), null);
+    }
+
+    /**
+     * Method reads an individual row from the columns
+     * @param edmEntitySet Type of object to read
+     * @param keyParams  Identity keys to read from the data storage
+     * @return Entity object containing data or null if nothing found
+     */
+    @Override
+    public Entity readEntityData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams) {
+        LOG.info("In readEntityData method");
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        String objectType = edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+
+        // No primary key sent nothing to return
+        if (keyValue == null) {
+            return null;
+        }
+        return translateRow(objectType, tables.get(objectType), tables.get(objectType).findRow(keyValue));
+    }
+
+    /**
+     * Method follows the navigation path over the rows: a reference is read from the row (ex the Policy of a Claim) and
+     * the rows referencing an entity are found in the target table (ex the Claims of a Policy). Only the rows at the end
+     * of the path are materialized and translated
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Entities at the end of the path, null if an entity before the last segment is not found
+     */
+    @Override
+    public EntityCollection readNavigationData(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations) {
+        LOG.info("In readNavigationData method");
+        List<Integer> rows = followNavigations(edmEntitySet, keyParams, navigations);
+        if (rows == null) {
+            return null;
+        }
+
+        EdmEntityType resultType = navigations.isEmpty() ? edmEntitySet.getEntityType() : navigations.get(navigations.size() - 1).getProperty().getType();
+        String objectType = resultType.getFullQualifiedName().getFullQualifiedNameAsString();
+        EntityTable table = tables.get(objectType);
+        EntityCollection ec = new EntityCollection();
+        for (int relatedRow : rows) {
+            ec.getEntities().add(translateRow(objectType, table, relatedRow));
+        }
+        return ec;
+    }
+
+    /**
+     * Method returns the TypeTranslators Map.
+     * @return TypeTranslator map that contains type translators for each object
+     */
+    public Map<String, ODataTypeTranslator> getTypeTranslators() {
+        return typeTranslators;
+    }
+
+    /**
+     * Method sets the TypeTranslators Map
+     * @param typeTranslators TypeTranslator Map that contains type translators for each object
+     */
+    public void setTypeTranslators(Map<String, ODataTypeTranslator> typeTranslators) {
+        this.typeTranslators = typeTranslators;
+    }
+
+    /**
+     * Method returns the maximum number of entities returned in one response
+     * @return Maximum page size, 0 if responses are not paged
+     */
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Method sets the maximum number of entities returned in one response. Larger results are paged with a nextLink
+     * @param maxPageSize Maximum page size, 0 to disable server driven paging
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Method returns the generator of the keys of the entities created without an Id
+     * @return KeyGenerator used by createEntity
+     */
+    public KeyGenerator getKeyGenerator() {
+        return keyGenerator;
+    }
+
+    /**
+     * Method sets the generator of the keys of the entities created without an Id. The keys of the stored rows are
+     * registered with it
+     * @param keyGenerator KeyGenerator used by createEntity
+     */
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+        seedKeyGenerator();
+    }
+
+    /**
+     * Method takes a source entity and returns the rows of the target type that reference it through a relatedId
+     * property (ex the Claims of a Policy)
+     * @param sourceEntity Source entity that is related to the returned target entity collection
+     * @param targetEntityType Target entity type that should be returned
+     * @return EntityCollection populated with 0 or more TargetEntityType objects
+     */
+    @Override
+    public EntityCollection getRelatedEntityCollection(Entity sourceEntity, EdmEntityType targetEntityType) {
+        LOG.info("In getRelatedEntityCollection method");
+        EntityTable sourceTable = tables.get(sourceEntity.getType());
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        EntityTable targetTable = tables.get(targetTypeName);
+        EntityCollection ec = new EntityCollection();
+
+        String sourceId = Util.parseId(sourceEntity.getId());
+        if ((sourceTable == null) || (targetTable == null) || (sourceTable.findRow(sourceId) < 0)) {
+            return ec;
+        }
+        for (int row : targetTable.findRelatedRows(sourceTable.getEntityClass(), sourceId)) {
+            ec.getEntities().add(translateRow(targetTypeName, targetTable, row));
+        }
+        return ec;
+    }
+
+    /**
+     * Method returns the related entities of each source entity passed in. For a single valued navigation property
+     * (ex the Policies of Claims) the row referenced by each source row is found by key, for a collection the rows
+     * referencing any of the source entities are found together in the target table (ex the Claims of Policies)
+     * @param sourceEntities Source entities, all of the same type
+     * @param navigationProperty Navigation property of the source type followed from each source entity
+     * @return One EntityCollection per source entity, in the order of the source entities
+     */
+    @Override
+    public List<EntityCollection> getRelatedEntityCollections(List<Entity> sourceEntities, EdmNavigationProperty navigationProperty) {
+        LOG.info("In getRelatedEntityCollections method");
+        String targetTypeName = navigationProperty.getType().getFullQualifiedName().getFullQualifiedNameAsString();
+        EntityTable targetTable = tables.get(targetTypeName);
+        List<EntityCollection> collections = new ArrayList<>(sourceEntities.size());
+
+        Map<String, List<Integer>> relatedRows = Collections.emptyMap();
+        EntityTable sourceTable = sourceEntities.isEmpty() || (targetTable == null) ? null : tables.get(sourceEntities.get(0).getType());
+        boolean reference = (sourceTable != null) && !navigationProperty.isCollection() && sourceTable.isRelatedTo(targetTable.getEntityClass());
+        if ((sourceTable != null) && navigationProperty.isCollection()) {
+            Set<String> sourceIds = new HashSet<>();
+            for (Entity sourceEntity : sourceEntities) {
+                sourceIds.add(Util.parseId(sourceEntity.getId()));
+            }
+            relatedRows = targetTable.findRelatedRows(sourceTable.getEntityClass(), sourceIds);
+        }
+
+        for (Entity sourceEntity : sourceEntities) {
+            EntityCollection ec = new EntityCollection();
+            String sourceId = Util.parseId(sourceEntity.getId());
+            int sourceRow = sourceTable == null ? -1 : sourceTable.findRow(sourceId);
+            if ((sourceRow >= 0) && reference) {
+                Entity related = translateRow(targetTypeName, targetTable, targetTable.findRow(sourceTable.getRelatedId(sourceRow, targetTable.getEntityClass())));
+                if (related != null) {
+                    ec.getEntities().add(related);
+                }
+            } else if (sourceRow >= 0) {
+                for (int row : relatedRows.getOrDefault(sourceId, Collections.emptyList())) {
+                    ec.getEntities().add(translateRow(targetTypeName, targetTable, row));
+                }
+            }
+            collections.add(ec);
+        }
+        return collections;
+    }
+
+    /**
+     * Method returns the entity that is related to the source entity. If the source row references the target type
+     * (ex the Policy of a Claim) the referenced row is returned, otherwise the first row of the target type referencing
+     * the source entity that matches the key predicates (ex a Claim of a Policy)
+     * @param sourceEntity Source entity that contains a reference to the target
+     * @param targetEntityType type of target object that will be returned
+     * @param keyPredicates  Filter parameters that can be sent it
+     * @return Entity of target type that matches the entity.
+     */
+    @Override
+    public Entity getRelatedEntity(Entity sourceEntity, EdmEntityType targetEntityType, List<UriParameter> keyPredicates) {
+        LOG.info("In getRelatedEntity method");
+        EntityTable sourceTable = tables.get(sourceEntity.getType());
+        String targetTypeName = targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString();
+        EntityTable targetTable = tables.get(targetTypeName);
+
+        String sourceId = Util.parseId(sourceEntity.getId());
+        int sourceRow = sourceTable == null ? -1 : sourceTable.findRow(sourceId);
+        if ((sourceRow < 0) || (targetTable == null)) {
+            return null;
+        }
+
+        if (sourceTable.isRelatedTo(targetTable.getEntityClass())) {
+            String targetId = sourceTable.getRelatedId(sourceRow, targetTable.getEntityClass());
+            return translateRow(targetTypeName, targetTable, targetTable.findRow(targetId));
+        }
+
+        String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), keyPredicates);
+        for (int row : targetTable.findRelatedRows(sourceTable.getEntityClass(), sourceId)) {
+            if ((targetEntityId == null) || targetEntityId.equals(targetTable.getId(row))) {
+                return translateRow(targetTypeName, targetTable, row);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method returns the entity that is related to the source entity. The returned entity is of targetEntity type
+     * @param sourceEntity Source entity that contains a reference to the target
+     * @param targetEntityType type of target object that will be returned
+     * @return Entity that is related to the source entity
+     */
+    @Override
+    public Entity getRelatedEntity(Entity sourceEntity, EdmEntityType targetEntityType) {
+        return getRelatedEntity(sourceEntity, targetEntityType, null);
+    }
+
+    /**
+     * Method Creates the entity for the source entity passed in and appends it to the table of its type
+     * @param entity Source entity
+     * @return Entity that was newly created
+     * @throws ODataException if error occurred creating the entity
+     */
+    @Override
+    public Entity createEntity(Entity entity) throws ODataException {
+        LOG.info("In createEntity method");
+        if (entity == null) {
+            return null;
+        }
+        EntityTable table = getWriteTable(entity);
+        table.getLock().lock();
+        try {
+            if (table.findRow(getKey(entity)) >= 0) {
+                LOG.error(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+                throw new ODataException(Messages.ERROR_ENTITY_ALREADY_EXISTS);
+            }
+            ODataTypeTranslator odtt = typeTranslators.get(entity.getType());
+            BaseEntity be = odtt.translate(entity, true, this::resolveRelated);
+            if (be.getId() == null) {
+                setNextKey(be, entity.getType(), table);
+            } else {
+                keyGenerator.observe(entity.getType(), be.getId());
+            }
+            table.insert(be);
+            afterWrite(table);
+            return odtt.translate(be);
+        } catch (IllegalArgumentException e) {
+            LOG.error(e.getMessage());
+            throw new ODataException(e.getMessage(), e);
+        } finally {
+            table.getLock().unlock();
+        }
+    }
+
+    /**
+     * Method Updates the row of the entity passed in. The row is materialized, merged with the entity and written back
+     * @param entity Source entity
+     * @param forceNulls If true a null passed in will replace a value, if false it won't
+     * @return Entity that was newly updated
+     * @throws ODataException if error occurred updating the entity
+     */
+    @Override
+    public Entity updateEntity(Entity entity, boolean forceNulls) throws ODataException {
+        LOG.info("In updateEntity method");
+        if (entity == null) {
+            return null;
+        }
+        EntityTable table = getWriteTable(entity);
+        table.getLock().lock();
+        try {
+            int row = table.findRow(getKey(entity));
+            if (row < 0) {
+                throw new ODataException(Messages.ERROR_ENTITY_NOT_FOUND_FOR_UPDATE);
+            }
+            ODataTypeTranslator ott = typeTranslators.get(entity.getType());
+            BaseEntity baseEntity = ott.merge(entity, table.materialize(row), forceNulls, this::resolveRelated);
+            table.update(row, baseEntity);
+            afterWrite(table);
+            return ott.translate(baseEntity);
+        } catch (IllegalArgumentException e) {
+            LOG.error(e.getMessage());
+            throw new ODataException(e.getMessage(), e);
+        } finally {
+            table.getLock().unlock();
+        }
+    }
+
+    /**
+     * Method Deletes the row of the entity passed in
+     * @param edmEntitySet Source entitySet type
+     * @param keyPredicates Primary key to find record to delete
+     * @return Entity that was deleted from persistent storage
+     */
+    @Override
+    public Entity deleteEntity(EdmEntitySet edmEntitySet, List<UriParameter> keyPredicates) {
+        LOG.info("In deleteEntity method");
+        // Null check
+        if ((edmEntitySet == null) || (keyPredicates == null)) {
+            return null;
+        }
+        String objectType = edmEntitySet.getEntityType().getFullQualifiedName().getFullQualifiedNameAsString();
+        EntityTable table = tables.get(objectType);
+        String id = Util.getPrimaryKeyFromParam(edmEntitySet.getEntityType().getKeyPredicateNames(), keyPredicates);
+        if (id == null) {
+            return null;
+        }
+
+        table.getLock().lock();
+        try {
+            int row = table.findRow(id);
+            if (row < 0) {
+                return null;
+            }
+            Entity deleted = translateRow(objectType, table, row);
+            table.delete(row);
+            afterWrite(table);
+            return deleted;
+        } finally {
+            table.getLock().unlock();
+        }
+    }
+
+    /**
+     * Method Upserts the entity for the source entity passed in.
+     * It will update it if it matches an existing row by key, otherwise it will create new
+     * @param entity Source entity
+     * @param forceNulls If true a null passed in will replace a value, if false it won't
+     * @return Entity that was upserted in storage
+     * @throws ODataException if error occurred creating or updating the entity
+     */
+    @Override
+    public Entity upsertEntity(Entity entity, boolean forceNulls) throws ODataException {
+        LOG.info("In upsertEntity method");
+        if (entity == null) {
+            return null;
+        }
+        // The table lock is reentrant so the check and the create or update happen as one atomic operation
+        EntityTable table = getWriteTable(entity);
+        table.getLock().lock();
+        try {
+            if (table.findRow(getKey(entity)) < 0) {
+                return createEntity(entity);
+            } else {
+                return updateEntity(entity, forceNulls);
+            }
+        } finally {
+            table.getLock().unlock();
+        }
+    }
+
+    /**
+     * Method materializes and translates a row
+     * @param objectType Full qualified name of the entity type
+     * @param table Table of the entity type
+     * @param row Row number, -1 if there is no row
+     * @return Olingo entity or null if there is no row
+     */
+    private Entity translateRow(String objectType, EntityTable table, int row) {
+        return row < 0 ? null : getTypeTranslators().get(objectType).translate(table.materialize(row));
+    }
+
+    /**
+     * Method returns the table of the type of the entity passed in
+     * @param entity Entity whose type is being written
+     * @return Table of the entity type
+     * @throws ODataException If the entity type is not set or not known
+     */
+    private EntityTable getWriteTable(Entity entity) throws ODataException {
+        EntityTable table = entity.getType() == null ? null : tables.get(entity.getType());
+        if (table == null) {
+            throw new ODataException(Messages.ERROR_ENTITY_TYPE_NOT_FOUND);
+        }
+        return table;
+    }
+
+    /**
+     * Method returns the primary key of the entity passed in
+     * @param entity Olingo entity
+     * @return Id or null if it is not set
+     */
+    private String getKey(Entity entity) {
+        Property property = entity.getProperty(Constants.ID);
+        return (property == null) || (property.getValue() == null) ? null : (String) property.getValue();
+    }
+
+    /**
+     * Method sets the key of the BaseEntity's subclass to a new key from the key generator
+     * @param baseEntity Base Entity value whose key to set
+     * @param objectType Full qualified name of the entity type
+     * @param table Table of the entity type
+     */
+    private void setNextKey(BaseEntity baseEntity, String objectType, EntityTable table) {
+        LOG.info("In setNextKey method");
+        String newKey = keyGenerator.nextKey(objectType);
+        // Only possible if a key was inserted without being observed, the next keys are checked until a free one is found
+        while (table.findRow(newKey) >= 0) {
+            newKey = keyGenerator.nextKey(objectType);
+        }
+        baseEntity.setId(newKey);
+    }
+
+    /**
+     * Method registers the keys of the stored rows with the key generator. It is called once the rows are loaded and
+     * when the key generator is replaced
+     */
+    protected void seedKeyGenerator() {
+        LOG.info("In seedKeyGenerator method");
+        for (Map.Entry<String, EntityTable> table : tables.entrySet()) {
+            Lock lock = table.getValue().getLock();
+            lock.lock();
+            try {
+                for (int row = 0; row < table.getValue().getRowCount(); row++) {
+                    if (!table.getValue().isDeleted(row)) {
+                        keyGenerator.observe(table.getKey(), table.getValue().getId(row));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Method splits the compiled filter into predicates on the columns and the part evaluated on materialized rows
+     * @param table Table of the filtered type
+     * @param pojoFilter Compiled filter, may be null
+     * @return RowFilter, null if there is no filter
+     */
+    private RowFilter createRowFilter(EntityTable table, PojoFilter pojoFilter) {
+        if (pojoFilter == null) {
+            return null;
+        }
+        List<IntPredicate> predicates = new ArrayList<>();
+        boolean allConditionsStored = true;
+        for (PojoFilter.Condition condition : pojoFilter.getConditions()) {
+            IntPredicate predicate = table.createPredicate(condition);
+            if (predicate == null) {
+                allConditionsStored = false;
+            } else {
+                predicates.add(predicate);
+            }
+        }
+        boolean columnsOnly = pojoFilter.isConditionsOnly() && allConditionsStored;
+        return new RowFilter(predicates.toArray(new IntPredicate[0]), columnsOnly ? null : pojoFilter);
+    }
+
+    /**
+     * Method counts the rows that match the filter. Rows are only materialized if the columns don't answer the filter
+     * @param table Table of the filtered type
+     * @param rowFilter Filter, may be null
+     * @param rows Row numbers to evaluate, null for every row of the table
+     * @return Number of matching rows
+     * @throws ODataApplicationException Exception thrown if the filter can't be evaluated
+     */
+    private int countMatches(EntityTable table, RowFilter rowFilter, List<Integer> rows) throws ODataApplicationException {
+        if (rowFilter == null) {
+            return rows == null ? table.size() : rows.size();
+        }
+        int matched = 0;
+        int rowCount = rows == null ? table.getRowCount() : rows.size();
+        for (int index = 0; index < rowCount; index++) {
+            int row = rows == null ? index : rows.get(index);
+            if (!table.isDeleted(row) && rowFilter.matchesColumns(row)
+                    && ((rowFilter.pojoFilter == null) || rowFilter.pojoFilter.matches(table.materialize(row)))) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Method returns the value of the $skip option
+     * @param uriInfo URI Info object containing the skip parameter
+     * @return Number of entities to skip, 0 if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid skip value is passed in
+     */
+    private int getSkip(UriInfo uriInfo) throws ODataApplicationException {
+        SkipOption skipOption = uriInfo.getSkipOption();
+        if (skipOption == null) {
+            return 0;
+        }
+        int skip = skipOption.getValue();
+        if (skip < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_SKIP + "{}", skip);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_SKIP + skip, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+        }
+        return skip;
+    }
+
+    /**
+     * Method returns the value of the $top option
+     * @param uriInfo URI Info object containing the top parameter
+     * @return Maximum number of entities to return, Integer.MAX_VALUE if not passed in
+     * @throws ODataApplicationException Exception thrown if an invalid top value is passed in
+     */
+    private int getTop(UriInfo uriInfo) throws ODataApplicationException {
+        TopOption topOption = uriInfo.getTopOption();
+        if (topOption == null) {
+            return Integer.MAX_VALUE;
+        }
+        int top = topOption.getValue();
+        if (top < 0) {
+            LOG.error(Messages.ERROR_INVALID_VALUE_FOR_TOP + "{}", top);
+            throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_TOP + top, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+        }
+        return top;
+    }
+
+    /**
+     * Method returns the compiled filter for the filter option passed in. Compiled filters are cached by entity type and
+     * normalized filter expression so repeated queries (ex Salesforce list views) skip the compilation
+     * @param filterOption Filter option passed in, may be null
+     * @param objectType Full qualified name of the filtered type
+     * @param odtt Type translator used to read the properties of the filtered type
+     * @return Compiled filter or null if no filter was passed in
+     * @throws ODataApplicationException Exception thrown if the filter expression can't be visited (400) or uses
+     * unsupported operations
+     */
+    private PojoFilter getCompiledFilter(FilterOption filterOption, String objectType, ODataTypeTranslator odtt) throws ODataApplicationException {
+        if ((filterOption == null) || (filterOption.getExpression() == null)) {
+            return null;
+        }
+        Expression filterExpression = filterOption.getExpression();
+        String cacheKey = objectType + ":" + filterExpression;
+        PojoFilter pojoFilter = compiledFilters.get(cacheKey);
+        if (pojoFilter == null) {
+            try {
+                pojoFilter = PojoFilter.compile(filterExpression, odtt);
+            } catch (ExpressionVisitException e) {
+                throw new ODataApplicationException(Messages.ERROR_INVALID_FILTER + e.getMessage(), HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT, e);
+            }
+            compiledFilters.put(cacheKey, pojoFilter);
+        }
+        return pojoFilter;
+    }
+
+    /**
+     * Method follows the navigation path over the rows: a reference is read from the row (ex the Policy of a Claim) and
+     * the rows referencing an entity are found in the target table (ex the Claims of a Policy)
+     * @param edmEntitySet Entity Set of the first segment
+     * @param keyParams Identity keys of the entity of the first segment
+     * @param navigations Navigation segments following the first segment
+     * @return Row numbers at the end of the path in the table of the last segment, null if an entity before the last
+     * segment is not found
+     */
+    private List<Integer> followNavigations(EdmEntitySet edmEntitySet, List<UriParameter> keyParams, List<UriResourceNavigation> navigations) {
+        EdmEntityType edmEntityType = edmEntitySet.getEntityType();
+        EntityTable table = tables.get(edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
+        String keyValue = Util.getPrimaryKeyFromParam(edmEntityType.getKeyPredicateNames(), keyParams);
+        int row = table == null ? -1 : table.findRow(keyValue);
+        if (row < 0) {
+            return null;
+        }
+
+        List<Integer> rows = Collections.singletonList(row);
+        for (UriResourceNavigation navigation : navigations) {
+            EdmEntityType targetEntityType = navigation.getProperty().getType();
+            EntityTable targetTable = tables.get(targetEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
+            // Only the last segment can return several rows
+            if (rows.isEmpty() || (targetTable == null)) {
+                return null;
+            }
+            int sourceRow = rows.get(0);
+            String targetEntityId = Util.getPrimaryKeyFromParam(targetEntityType.getKeyPredicateNames(), navigation.getKeyPredicates());
+
+            List<Integer> related = new ArrayList<>();
+            if (table.isRelatedTo(targetTable.getEntityClass())) {
+                String relatedId = table.getRelatedId(sourceRow, targetTable.getEntityClass());
+                int relatedRow = targetTable.findRow(relatedId);
+                if ((relatedRow >= 0) && ((targetEntityId == null) || targetEntityId.equals(relatedId))) {
+                    related.add(relatedRow);
+                }
+            } else if (targetEntityId != null) {
+                // The row with the key is found by key and checked instead of scanning the target table
+                int relatedRow = targetTable.findRow(targetEntityId);
+                if ((relatedRow >= 0) && table.getId(sourceRow).equals(targetTable.getRelatedId(relatedRow, table.getEntityClass()))) {
+                    related.add(relatedRow);
+                }
+            } else {
+                related = targetTable.findRelatedRows(table.getEntityClass(), table.getId(sourceRow));
+            }
+            rows = related;
+            table = targetTable;
+        }
+        return rows;
+    }
+
+    /**
+     * Filter of one request: predicates evaluated against the columns and, if they don't answer the whole filter, the
+     * compiled filter evaluated against the materialized rows that pass them
+     */
+    private static final class RowFilter {
+        private final IntPredicate[] predicates;
+        private final PojoFilter pojoFilter;
+
+        /**
+         * Constructor used to populate the filter
+         * @param predicates Predicates on the stored columns
+         * @param pojoFilter Compiled filter to evaluate on the materialized rows, null if the predicates answer the filter
+         */
+        private RowFilter(IntPredicate[] predicates, PojoFilter pojoFilter) {
+            this.predicates = predicates;
+            this.pojoFilter = pojoFilter;
+        }
+
+        /**
+         * Method returns true if the row matches every predicate on the columns
+         * @param row Row number
+         * @return true if the row can match the filter
+         */
+        private boolean matchesColumns(int row) {
+            for (IntPredicate predicate : predicates) {
+                if (!predicate.test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Iterator over the rows that match the filter in row order, materialized as they are read. Rows skipped by $skip
+     * are not materialized when the columns answer the filter
+     */
+    private static final class MatchingRowIterator implements Iterator<BaseEntity> {
+        private final EntityTable table;
+        private final RowFilter rowFilter;
+        private final List<Integer> rows;
+        private final int rowCount;
+        private int row;
+        private int skip;
+        private BaseEntity nextMatch;
+
+        /**
+         * Constructor used to populate the iterator
+         * @param table Table to read
+         * @param rowFilter Filter, may be null
+         * @param rows Row numbers to evaluate, null for every row of the table
+         * @param startRow First row to evaluate, or first index of rows
+         * @param skip Number of matching rows to skip
+         */
+        private MatchingRowIterator(EntityTable table, RowFilter rowFilter, List<Integer> rows, int startRow, int skip) {
+            this.table = table;
+            this.rowFilter = rowFilter;
+            this.rows = rows;
+            // Rows added after the request started are not returned
+            this.rowCount = rows == null ? table.getRowCount() : rows.size();
+            this.row = startRow;
+            this.skip = skip;
+        }
+
+        /**
+         * Method returns true if there is another matching row
+         * @return true if next will return an entity
+         */
+        @Override
+        public boolean hasNext() {
+            while ((nextMatch == null) && (row < rowCount)) {
+                int candidate = rows == null ? row++ : rows.get(row++);
+                if (table.isDeleted(candidate) || ((rowFilter != null) && !rowFilter.matchesColumns(candidate))) {
+                    continue;
+                }
+                if ((rowFilter == null) || (rowFilter.pojoFilter == null)) {
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        nextMatch = table.materialize(candidate);
+                    }
+                    continue;
+                }
+                BaseEntity baseEntity = table.materialize(candidate);
+                try {
+                    if (rowFilter.pojoFilter.matches(baseEntity)) {
+                        if (skip > 0) {
+                            skip--;
+                        } else {
+                            nextMatch = baseEntity;
+                        }
+                    }
+                } catch (ODataApplicationException e) {
+                    throw new PojoFilter.EvaluationException(e);
+                }
+            }
+            return nextMatch != null;
+        }
+
+        /**
+         * Method returns the next matching row
+         * @return Materialized BaseEntity implementation
+         */
+        @Override
+        public BaseEntity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BaseEntity match = nextMatch;
+            nextMatch = null;
+            return match;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.codescience.salesforceconnect.data;
+
+/**
+ * KeyGenerator that creates numeric keys ordered by creation time for several instances. A key is made of the
+ * milliseconds since epoch (2017-01-01), the node id of the instance (0 to 1023) and a counter of the keys generated in the
+ * same millisecond (0 to 4095). Each instance must have a different node id. The keys are never smaller than the keys
+ * observed, the generator moves its clock forward if needed, so it can be used with existing numeric keys
+ */
+public class TimeOrderedKeyGenerator implements KeyGenerator {
+
+    private static final long EPOCH = 1483228800000L;
+    private static final int NODE_BITS = 10;
+    private static final int COUNTER_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private long nodeId;
+    private long lastKey;
+
+    /**
+     * Method makes sure the next keys are larger than the key if it is numeric
+     * @param objectType Full qualified name of the entity type
+     * @param key Primary key of an existing entity
+     */
+    @Override
+    public synchronized void observe(String objectType, String key) {
+        lastKey = Math.max(lastKey, SequenceKeyGenerator.parseKey(key));
+    }
+
+    /**
+     * Method returns a key made of the current time, the node id and a counter. Keys are shared by all the types
+     * @param objectType Full qualified name of the entity type
+     * @return Primary key larger than the keys generated or observed
+     */
+    @Override
+    public synchronized String nextKey(String objectType) {
+        long timeKey = ((System.currentTimeMillis() - EPOCH) << (NODE_BITS + COUNTER_BITS)) | (nodeId << COUNTER_BITS);
+        if (timeKey > lastKey) {
+            lastKey = timeKey;
+        } else {
+            // Same millisecond, clock moved back or larger key observed: count up, moving to the next millisecond when
+            // the counter is full
+            long next = lastKey + 1;
+            long nodeOfNext = (next >>> COUNTER_BITS) & MAX_NODE_ID;
+            if (nodeOfNext != nodeId) {
+                long millis = (next >>> (NODE_BITS + COUNTER_BITS)) + (nodeOfNext > nodeId ? 1 : 0);
+                next = (millis << (NODE_BITS + COUNTER_BITS)) | (nodeId << COUNTER_BITS);
+            }
+            lastKey = next;
+        }
+        return Long.toString(lastKey);
+    }
+
+    /**
+     * Method returns the node id of this instance
+     * @return Node id
+     */
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Method sets the node id of this instance
+     * @param nodeId Node id between 0 and 1023
+     */
+    public void setNodeId(long nodeId) {
+        if ((nodeId < 0) || (nodeId > MAX_NODE_ID)) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+}
@@ -0,0 +1,340 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import org.apache.olingo.commons.api.data.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded, approximately least recently used cache of the Olingo entities translated from the BaseEntity
+ * implementations, so rows that are read often are translated once instead of on every request. An entry is keyed by type and id and holds the
+ * version of the entity it was translated from, and the version of the related entities its properties read (ex the
+ * Product of a Policy for the total cost). It is only returned while all these versions are unchanged.
+ * The size of the cache is the sum of the weights of the entries, the weight of an entry is its number of properties.
+ * Entries expire after ttl milliseconds so the properties computed from the current date (ex Active on a Policy) are
+ * refreshed. The cached entities are shared between requests and must not be modified. A maxWeight of 0 disables the cache.
+ * Reads take no lock, a hit only records its time on the entry. Once the weight exceeds maxWeight one writer evicts the
+ * entries read least recently until the cache is back to 3/4 of maxWeight, so the sort of the entries is paid once
+ * for many additions. Additions running meanwhile can exceed maxWeight until the next eviction
+ */
+public class TranslatedEntityCache {
+    private static final Logger LOG = LoggerFactory.getLogger(TranslatedEntityCache.class);
+    private final Map<CacheKey, CachedEntity> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private long maxWeight;
+    private long ttl;
+
+    /**
+     * Method returns the translated entity, from the cache if it is still valid, otherwise it translates the entity and caches it
+     * @param objectType Full qualified name of the entity type
+     * @param odtt Type translator of the entity type
+     * @param baseEntity BaseEntity implementation to translate, can be null
+     * @return Olingo entity or null if the BaseEntity is null
+     */
+    public Entity translate(String objectType, ODataTypeTranslator odtt, BaseEntity baseEntity) {
+        if ((baseEntity == null) || (maxWeight <= 0)) {
+            return baseEntity == null ? null : odtt.translate(baseEntity);
+        }
+
+        CacheKey key = new CacheKey(objectType, baseEntity.getId());
+        long now = System.currentTimeMillis();
+        Entity cached = getValid(key, baseEntity, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        // The versions are read before translating, if an update completes meanwhile the entry is stale and never returned
+        List<Function<BaseEntity, BaseEntity>> relatedAccessors = odtt.getRelatedEntityAccessors();
+        long version = baseEntity.getVersion();
+        BaseEntity[] related = new BaseEntity[relatedAccessors.size()];
+        long[] relatedVersions = new long[related.length];
+        for (int i = 0; i < related.length; i++) {
+            related[i] = relatedAccessors.get(i).apply(baseEntity);
+            relatedVersions[i] = related[i] == null ? 0 : related[i].getVersion();
+        }
+        Entity entity = odtt.translate(baseEntity);
+        long expiresAt = ttl > 0 ? now + ttl : Long.MAX_VALUE;
+        put(key, new CachedEntity(entity, baseEntity, relatedAccessors, version, related, relatedVersions, expiresAt, now));
+        return entity;
+    }
+
+    /**
+     * Method returns the entity translated with a projection (ex the $select list). A valid cached entity is returned
+     * as is since it holds every selected property, otherwise the entity is translated with the projection and is not
+     * cached as the cache only holds complete entities
+     * @param objectType Full qualified name of the entity type
+     * @param projection Translation of the selected properties returned by the type translator
+     * @param baseEntity BaseEntity implementation to translate, can be null
+     * @return Olingo entity or null if the BaseEntity is null
+     */
+    public Entity project(String objectType, Function<BaseEntity, Entity> projection, BaseEntity baseEntity) {
+        if ((baseEntity == null) || (maxWeight <= 0)) {
+            return baseEntity == null ? null : projection.apply(baseEntity);
+        }
+        Entity cached = getValid(new CacheKey(objectType, baseEntity.getId()), baseEntity, System.currentTimeMillis());
+        return cached == null ? projection.apply(baseEntity) : cached;
+    }
+
+    /**
+     * Method returns the cached entity if it is still valid and counts the hit or the miss
+     * @param key Type and id of the entity
+     * @param baseEntity BaseEntity implementation the entity was translated from
+     * @param now Current time in milliseconds
+     * @return Cached entity or null if there is no valid entry
+     */
+    private Entity getValid(CacheKey key, BaseEntity baseEntity, long now) {
+        CachedEntity cached = entries.get(key);
+        if ((cached != null) && cached.isValid(baseEntity, now)) {
+            // Only written when it changes so hits on a popular entry don't keep writing to it
+            if (cached.lastAccess != now) {
+                cached.lastAccess = now;
+            }
+            hitCount.incrementAndGet();
+            return cached.entity;
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Method removes the entry of an entity. Storage calls it when the entity is created, updated or deleted
+     * @param objectType Full qualified name of the entity type
+     * @param id Primary key of the entity
+     */
+    public void invalidate(String objectType, String id) {
+        CachedEntity removed = entries.remove(new CacheKey(objectType, id));
+        if (removed != null) {
+            weight.addAndGet(-removed.weight);
+        }
+    }
+
+    /**
+     * Method removes all the entries
+     */
+    public void clear() {
+        LOG.info("In clear method");
+        for (Map.Entry<CacheKey, CachedEntity> entry : entries.entrySet()) {
+            if (entries.remove(entry.getKey(), entry.getValue())) {
+                weight.addAndGet(-entry.getValue().weight);
+            }
+        }
+    }
+
+    /**
+     * Method adds the entry and evicts entries if the cache no longer fits in maxWeight
+     * @param key Type and id of the entity
+     * @param cachedEntity Entry to add
+     */
+    private void put(CacheKey key, CachedEntity cachedEntity) {
+        CachedEntity replaced = entries.put(key, cachedEntity);
+        long currentWeight = weight.addAndGet(cachedEntity.weight - (replaced == null ? 0 : replaced.weight));
+        // A single thread evicts, the others add their entries without waiting for it
+        if ((currentWeight > maxWeight) && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Method evicts the entries read least recently until the cache is at 3/4 of maxWeight. An entry replaced or
+     * invalidated meanwhile is left to the writer that removed it
+     */
+    private void evict() {
+        long targetWeight = maxWeight - maxWeight / 4;
+        if (weight.get() <= targetWeight) {
+            return;
+        }
+        List<Map.Entry<CacheKey, CachedEntity>> candidates = new ArrayList<>(entries.entrySet());
+        // Reads go on while sorting, the entries are sorted by the access times they had when the sort started
+        for (Map.Entry<CacheKey, CachedEntity> candidate : candidates) {
+            candidate.getValue().evictionOrder = candidate.getValue().lastAccess;
+        }
+        candidates.sort(Comparator.comparingLong(entry -> entry.getValue().evictionOrder));
+        for (Map.Entry<CacheKey, CachedEntity> candidate : candidates) {
+            if (weight.get() <= targetWeight) {
+                break;
+            }
+            if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                weight.addAndGet(-candidate.getValue().weight);
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Method returns the maximum weight (number of properties) of the cached entities
+     * @return Maximum weight, 0 if the cache is disabled
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Method sets the maximum weight (number of properties) of the cached entities
+     * @param maxWeight Maximum weight, 0 disables the cache
+     */
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        if (maxWeight <= 0) {
+            clear();
+        }
+    }
+
+    /**
+     * Method returns the time to live of an entry
+     * @return Time to live in milliseconds
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Method sets the time to live of an entry
+     * @param ttl Time to live in milliseconds, 0 if entries don't expire
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Method returns the current weight (number of properties) of the cached entities
+     * @return Weight of the cache
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * Method returns the number of translations served from the cache
+     * @return Number of hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Method returns the number of translations that were not in the cache or were no longer valid
+     * @return Number of misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Method returns the number of entries evicted to keep the cache under its maximum weight
+     * @return Number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Key of an entry, the entity type and the primary key
+     */
+    private static final class CacheKey {
+        private final String objectType;
+        private final String id;
+
+        /**
+         * Constructor used to populate the key
+         * @param objectType Full qualified name of the entity type
+         * @param id Primary key of the entity
+         */
+        private CacheKey(String objectType, String id) {
+            this.objectType = objectType;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+
+            CacheKey that = (CacheKey) o;
+            return objectType.equals(that.objectType) && Objects.equals(id, that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * objectType.hashCode() + Objects.hashCode(id);
+        }
+    }
+
+    /**
+     * Translated entity and the versions it was translated from
+     */
+    private static final class CachedEntity {
+        private final Entity entity;
+        private final BaseEntity source;
+        private final List<Function<BaseEntity, BaseEntity>> relatedAccessors;
+        private final long version;
+        private final BaseEntity[] related;
+        private final long[] relatedVersions;
+        private final long expiresAt;
+        private final int weight;
+        private volatile long lastAccess;
+        // Only used by the thread holding the eviction lock
+        private long evictionOrder;
+
+        /**
+         * Constructor used to populate the entry
+         * @param entity Translated entity
+         * @param source BaseEntity implementation the entity was translated from
+         * @param relatedAccessors Getters of the related entities read by the translation
+         * @param version Version of the entity when it was translated
+         * @param related Related entities when the entity was translated
+         * @param relatedVersions Versions of the related entities when the entity was translated
+         * @param expiresAt Time in milliseconds after which the entry is no longer valid
+         * @param lastAccess Time in milliseconds of the translation
+         */
+        private CachedEntity(Entity entity, BaseEntity source, List<Function<BaseEntity, BaseEntity>> relatedAccessors, long version,
+                             BaseEntity[] related, long[] relatedVersions, long expiresAt, long lastAccess) {
+            this.entity = entity;
+            this.source = source;
+            this.relatedAccessors = relatedAccessors;
+            this.version = version;
+            this.related = related;
+            this.relatedVersions = relatedVersions;
+            this.expiresAt = expiresAt;
+            this.weight = entity.getProperties().size() + 1;
+            this.lastAccess = lastAccess;
+        }
+
+        /**
+         * Method returns true if the entry was translated from the current version of the entity and of its related entities
+         * @param baseEntity BaseEntity implementation being translated
+         * @param now Current time in milliseconds
+         * @return true if the cached entity can be returned
+         */
+        private boolean isValid(BaseEntity baseEntity, long now) {
+            if ((now > expiresAt) || (baseEntity != source) || (baseEntity.getVersion() != version)) {
+                return false;
+            }
+            for (int i = 0; i < related.length; i++) {
+                BaseEntity current = relatedAccessors.get(i).apply(baseEntity);
+                if ((current != related[i]) || ((current != null) && (current.getVersion() != relatedVersions[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
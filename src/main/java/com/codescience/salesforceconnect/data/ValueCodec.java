@@ -0,0 +1,62 @@
+package com.codescience.salesforceconnect.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Utility class used by the storages that keep property values as primitives. Dates are encoded as the epoch day in the
+ * default time zone (the time of the day is dropped) and decimals as longs with 4 decimal places
+ */
+public final class ValueCodec {
+
+    public static final int DECIMAL_SCALE = 4;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /**
+     * Private Constructor to ensure static only
+     */
+    private ValueCodec() {
+
+    }
+
+    /**
+     * Method encodes a Date as the day it falls on in the default time zone
+     * @param date Date to encode
+     * @return Epoch day
+     */
+    public static int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(ZONE).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Method decodes an epoch day as the start of the day in the default time zone
+     * @param epochDay Epoch day
+     * @return Date at the start of the day
+     */
+    public static Date fromEpochDay(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZONE).toInstant());
+    }
+
+    /**
+     * Method encodes a decimal as a long with 4 decimal places, rounded half even
+     * @param value Decimal to encode
+     * @return Value multiplied by 10^4
+     * @throws ArithmeticException If the value doesn't fit in a long once scaled
+     */
+    public static long toScaledLong(BigDecimal value) {
+        return value.setScale(DECIMAL_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Method decodes a long with 4 decimal places. Trailing zeros are removed so whole numbers have a scale of 0
+     * @param scaledValue Value multiplied by 10^4
+     * @return Decimal value
+     */
+    public static BigDecimal fromScaledLong(long scaledValue) {
+        BigDecimal value = BigDecimal.valueOf(scaledValue, DECIMAL_SCALE).stripTrailingZeros();
+        return value.scale() < 0 ? value.setScale(0) : value;
+    }
+}
@@ -0,0 +1,216 @@
+package com.codescience.salesforceconnect.data;
+
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Utility class used to compare and convert the operands of filter expressions. Operands are converted lazily and only
+ * to the type needed by the comparison. The common pairs (String/String, Integer/Integer, BigDecimal/BigDecimal,
+ * BigDecimal/Integer, Boolean/Boolean and Date/LocalDate) are handled by dedicated paths that don't allocate.
+ * The conversion rules are applied in this order: numeric, boolean, date and finally string
+ */
+public final class ValueComparator {
+
+    /**
+     * Private Constructor to ensure static only
+     */
+    private ValueComparator() {
+
+    }
+
+    /**
+     * Method compares the two operands. Nulls are sorted first. Two numbers are compared by value, two operands that can
+     * be converted to boolean are compared as booleans, two dates are compared by day, otherwise the string values are compared
+     * @param left Left operand, can be null
+     * @param right Right operand, can be null
+     * @return 0 if equal, a negative value if left is smaller, a positive value if left is bigger
+     */
+    public static int compare(Object left, Object right) {
+        if ((left == null) && (right == null)) {
+            return 0;
+        } else if (left == null) {
+            return -1;
+        } else if (right == null) {
+            return 1;
+        }
+
+        // Fast paths for the operand pairs produced by the translators and the literals
+        if ((left instanceof String) && (right instanceof String)) {
+            return compareStrings((String) left, (String) right);
+        } else if ((left instanceof Integer) && (right instanceof Integer)) {
+            return Integer.compare((Integer) left, (Integer) right);
+        } else if ((left instanceof BigDecimal) && (right instanceof BigDecimal)) {
+            return ((BigDecimal) left).compareTo((BigDecimal) right);
+        } else if ((left instanceof Boolean) && (right instanceof Boolean)) {
+            return Boolean.compare((Boolean) left, (Boolean) right);
+        } else if ((left instanceof Number) && (right instanceof Number)) {
+            return compareNumbers((Number) left, (Number) right);
+        }
+
+        // Generic path
+        Boolean leftBoolean = toBoolean(left);
+        Boolean rightBoolean = leftBoolean == null ? null : toBoolean(right);
+        if (rightBoolean != null) {
+            return Boolean.compare(leftBoolean, rightBoolean);
+        }
+        if (isDate(left) && isDate(right)) {
+            return Long.compare(toEpochDay(left), toEpochDay(right));
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+    /**
+     * Method returns true if the result of compare satisfies the comparison operator
+     * @param operator Comparison operator (eq, gt, ge, lt or le)
+     * @param result Result of compare
+     * @return true if the comparison holds
+     */
+    public static boolean satisfies(BinaryOperatorKind operator, int result) {
+        if (operator == BinaryOperatorKind.EQ) {
+            return result == 0;
+        } else if (operator == BinaryOperatorKind.GT) {
+            return result > 0;
+        } else if (operator == BinaryOperatorKind.GE) {
+            return result >= 0;
+        } else if (operator == BinaryOperatorKind.LT) {
+            return result < 0;
+        }
+        // BinaryOperatorKind.LE
+        return result <= 0;
+    }
+
+    /**
+     * Method returns true if the value is a number
+     * @param value Value to inspect
+     * @return true if the value is numeric
+     */
+    public static boolean isNumeric(Object value) {
+        return value instanceof Number;
+    }
+
+    /**
+     * Method converts the number passed in to a BigDecimal. BigDecimals are returned as is, other numbers are converted
+     * from their double value
+     * @param number Number to convert
+     * @return BigDecimal for the numeric value
+     */
+    public static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        return new BigDecimal(number.doubleValue());
+    }
+
+    /**
+     * Method converts the object passed in to a boolean if possible - otherwise it returns null.
+     * Numbers are true when they are not 0. Strings are converted when their trimmed value is true or false ignoring case
+     * @param object Object to convert to Boolean
+     * @return Object converted to Boolean or null
+     */
+    public static Boolean toBoolean(Object object) {
+        if (object instanceof Boolean) {
+            return (Boolean) object;
+        } else if (object instanceof Number) {
+            return ((Number) object).doubleValue() != 0;
+        } else if (object instanceof String) {
+            return parseBoolean((String) object);
+        } else if ((object != null) && !isDate(object)) {
+            return parseBoolean(object.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Method compares two strings. If both hold a boolean value (ex true, FALSE) they are compared as booleans
+     * @param left Left operand
+     * @param right Right operand
+     * @return 0 if equal, a negative value if left is smaller, a positive value if left is bigger
+     */
+    private static int compareStrings(String left, String right) {
+        Boolean leftBoolean = parseBoolean(left);
+        if (leftBoolean != null) {
+            Boolean rightBoolean = parseBoolean(right);
+            if (rightBoolean != null) {
+                return Boolean.compare(leftBoolean, rightBoolean);
+            }
+        }
+        return left.compareTo(right);
+    }
+
+    /**
+     * Method compares two numbers. Whole numbers and whole decimals are compared as longs, other values as BigDecimals
+     * @param left Left operand
+     * @param right Right operand
+     * @return 0 if equal, a negative value if left is smaller, a positive value if left is bigger
+     */
+    private static int compareNumbers(Number left, Number right) {
+        if (isWholeNumber(left) && isWholeNumber(right)) {
+            return Long.compare(left.longValue(), right.longValue());
+        }
+        return toBigDecimal(left).compareTo(toBigDecimal(right));
+    }
+
+    /**
+     * Method returns true if the number can be read as a long without loss
+     * @param number Number to inspect
+     * @return true for Integer, Long, Short, Byte and BigDecimals without fraction that fit in a long
+     */
+    private static boolean isWholeNumber(Number number) {
+        if ((number instanceof Integer) || (number instanceof Long) || (number instanceof Short) || (number instanceof Byte)) {
+            return true;
+        }
+        if (number instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) number;
+            return (decimal.scale() == 0) && (decimal.precision() < 19);
+        }
+        return false;
+    }
+
+    /**
+     * Method will evaluate if the trimmed string is equal to true or false ignoring case. If so it will return the Boolean equivalent. If not it will return null
+     * @param string string to compare
+     * @return Boolean representing the string passed in or null
+     */
+    private static Boolean parseBoolean(String string) {
+        int start = 0;
+        int end = string.length();
+        while ((start < end) && (string.charAt(start) <= ' ')) {
+            start++;
+        }
+        while ((end > start) && (string.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        int length = end - start;
+        if ((length == 4) && string.regionMatches(true, start, "true", 0, 4)) {
+            return Boolean.TRUE;
+        } else if ((length == 5) && string.regionMatches(true, start, "false", 0, 5)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * Method returns true if the object is a Date or a LocalDate
+     * @param object Object to inspect
+     * @return true if the object is a date
+     */
+    private static boolean isDate(Object object) {
+        return (object instanceof Date) || (object instanceof LocalDate);
+    }
+
+    /**
+     * Method converts a Date (in the system time zone) or a LocalDate to the day since the epoch
+     * @param object Date or LocalDate
+     * @return Number of days since 1970-01-01
+     */
+    private static long toEpochDay(Object object) {
+        if (object instanceof LocalDate) {
+            return ((LocalDate) object).toEpochDay();
+        }
+        return LocalDate.ofInstant(((Date) object).toInstant(), ZoneId.systemDefault()).toEpochDay();
+    }
+}
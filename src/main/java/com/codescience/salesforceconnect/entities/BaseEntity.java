@@ -1,20 +1,33 @@
 package com.codescience.salesforceconnect.entities;
 
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.util.KeyComparator;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
+
 import java.io.Serializable;
 
 /**
- * Base Entity class that should be subclassed by all POJO entity model implementations
+ * Base Entity class that should be subclassed by all POJO entity model implementations. The JPA annotations map the
+ * fields to tables when the entities are stored by StorageJpa, the other storages ignore them
  */
+@MappedSuperclass
 public abstract class BaseEntity implements Serializable, Comparable<BaseEntity> {
 
     private static final long serialVersionUID = 1L;
 
+    @Id
     private String id;
 
+    @Version
+    private volatile long version;
+
     /**
      * Method returns the ID (Primary Key) parameter.  All entities assumed to have Integer primary keys
      * @return String representing a primary key
      */
+    @ODataProperty(Constants.ID)
     public String getId() {
         return id;
     }
@@ -27,6 +40,21 @@ public abstract class BaseEntity implements Serializable, Comparable<BaseEntity>
         this.id = id;
     }
 
+    /**
+     * Method returns the version of the entity. The version changes every time the entity is updated in storage
+     * @return Version of the entity, 0 until it is updated
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Method increments the version of the entity. Storage calls it once an update of the entity is complete
+     */
+    public synchronized void incrementVersion() {
+        version++;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -52,7 +80,7 @@ public abstract class BaseEntity implements Serializable, Comparable<BaseEntity>
     /**
      * Method compares the argument passed in to ID parameter of the base entity. If the value passed in is a different type than Base Entity return 0
      * If the object passed in is null return -1 (nulls go to the end). If the object passed in has a null id and this object has a null id return 0
-     * If one object has a null id it's sent to the end.
+     * If one object has a null id it's sent to the end. Numeric ids are compared by value (see KeyComparator)
      * @param be BaseEntity to compare
      * @return 0 if they are the same, -1 if this object is smaller, 1 if this object is bigger
      */
@@ -66,7 +94,7 @@ public abstract class BaseEntity implements Serializable, Comparable<BaseEntity>
             } else if (getId() == null) {
                 returnValue = 1;
             } else {
-                returnValue = getId().compareTo(be.getId());
+                returnValue = KeyComparator.INSTANCE.compare(getId(), be.getId());
             }
         } else {
             returnValue = 0;
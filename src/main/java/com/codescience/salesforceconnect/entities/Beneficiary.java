@@ -1,6 +1,8 @@
 package com.codescience.salesforceconnect.entities;
 
+import com.codescience.salesforceconnect.service.Constants;
 import com.codescience.salesforceconnect.service.Messages;
+import jakarta.persistence.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,13 +12,17 @@ import java.math.RoundingMode;
 /**
  * Implementation of the BaseEntity for each individual Beneficiary
  */
+@Entity
 public class Beneficiary extends BaseEntity {
     private static final Logger LOG = LoggerFactory.getLogger(Beneficiary.class);
 
     private static final long serialVersionUID = 1L;
 
+    @Column(precision = 19, scale = 4)
     private BigDecimal beneficiaryPercent;
 
+    @ManyToOne
+    @JoinColumn(name = "claimId")
     private Claim claim;
 
     private String contactIdentifierId;
@@ -25,6 +31,7 @@ public class Beneficiary extends BaseEntity {
      * Method returns the BeneficiaryPercent - A value between 0 and 100 or null if not specified
      * @return BigDecimal representing the Beneficiary Percent
      */
+    @ODataProperty(Constants.BENEFICIARY_PERCENT)
     public BigDecimal getBeneficiaryPercent() {
         return beneficiaryPercent;
     }
@@ -49,6 +56,7 @@ public class Beneficiary extends BaseEntity {
      * Method returns the Beneficiary Amount by multiplying the percentage by the claim amount
      * @return Beneficiary amount or null if either the claim, the claim amount or the beneficiary percent are null
      */
+    @ODataProperty(value = Constants.BENEFICIARY_AMOUNT, scale = 0, omitNull = true)
     public BigDecimal getBeneficiaryAmount() {
         if ((claim != null) && (getBeneficiaryPercent() != null) && claim.getClaimAmount() != null) {
             return claim.getClaimAmount().multiply(getBeneficiaryPercent().divide(BigDecimal.valueOf(100), RoundingMode.HALF_EVEN));
@@ -60,6 +68,7 @@ public class Beneficiary extends BaseEntity {
      * Method returns the Claim for the Beneficiary
      * @return Claim for the Beneficiary
      */
+    @ODataProperty(value = Constants.BENEFICIARY_CLAIM_ID, relatedId = true)
     public Claim getClaim() {
         return claim;
     }
@@ -76,6 +85,7 @@ public class Beneficiary extends BaseEntity {
      * Method returns the Contact Identifier. This is a unique identifier that identifies an individual
      * @return Contact Identifier for the Beneficiary
      */
+    @ODataProperty(Constants.CONTACT_IDENTIFIER)
     public String getContactIdentifierId() {
         return contactIdentifierId;
     }
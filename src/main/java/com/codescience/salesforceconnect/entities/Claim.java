@@ -1,17 +1,24 @@
 package com.codescience.salesforceconnect.entities;
 
+import com.codescience.salesforceconnect.service.Constants;
+
+import jakarta.persistence.*;
+
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * Implementation of the BaseEntity for each individual Claim
  */
+@Entity
 public class Claim extends BaseEntity {
 
     private static final long serialVersionUID = 1L;
 
+    @ManyToOne
+    @JoinColumn(name = "policyId")
     private Policy policy;
 
     private Date claimDate;
@@ -20,14 +27,19 @@ public class Claim extends BaseEntity {
 
     private boolean approved;
 
+    @Column(precision = 19, scale = 4)
     private BigDecimal claimAmount;
 
+    // The Beneficiaries are read by querying the claim of the Beneficiaries. The set is concurrent as the in memory
+    // storage links the Beneficiaries written while the set is read
+    @Transient
     private Set<Beneficiary> beneficiaries;
 
     /**
      * Method returns the Policy for the Claim
      * @return Policy object for the Claim
      */
+    @ODataProperty(value = Constants.CLAIM_POLICY_ID, relatedId = true)
     public Policy getPolicy() {
         return policy;
     }
@@ -44,6 +56,7 @@ public class Claim extends BaseEntity {
      * Method gets the Date for the Claim
      * @return Date of the Claim
      */
+    @ODataProperty(Constants.CLAIM_DATE)
     public Date getClaimDate() {
         return claimDate;
     }
@@ -60,6 +73,7 @@ public class Claim extends BaseEntity {
      * Method gets the Reason for the Claim
      * @return Reason for the Claim
      */
+    @ODataProperty(Constants.CLAIM_REASON)
     public String getClaimReason() { return claimReason; }
 
     /**
@@ -72,6 +86,7 @@ public class Claim extends BaseEntity {
      * Method returns true if the Claim is Approved
      * @return true if the Claim is Approved
      */
+    @ODataProperty(Constants.CLAIM_APPROVED)
     public boolean isApproved() {
         return approved;
     }
@@ -88,6 +103,7 @@ public class Claim extends BaseEntity {
      * Method returns the Claim Amount
      * @return BigDecimal of the Claim Amount
      */
+    @ODataProperty(value = Constants.CLAIM_AMOUNT, scale = 0, omitNull = true)
     public BigDecimal getClaimAmount() { return claimAmount; }
 
     /**
@@ -134,7 +150,7 @@ public class Claim extends BaseEntity {
             return;
         }
 
-        this.beneficiaries = this.beneficiaries == null ? new TreeSet<>() : this.beneficiaries;
+        this.beneficiaries = this.beneficiaries == null ? new ConcurrentSkipListSet<>() : this.beneficiaries;
         beneficiary.setClaim(this);
         this.beneficiaries.add(beneficiary);
     }
@@ -148,7 +164,7 @@ public class Claim extends BaseEntity {
             return;
         }
 
-        this.beneficiaries = this.beneficiaries == null ? new TreeSet<>() : this.beneficiaries;
+        this.beneficiaries = this.beneficiaries == null ? new ConcurrentSkipListSet<>() : this.beneficiaries;
         if (this.beneficiaries.remove(beneficiary)) {
             beneficiary.setClaim(null);
         }
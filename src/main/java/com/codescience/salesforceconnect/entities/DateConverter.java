@@ -0,0 +1,34 @@
+package com.codescience.salesforceconnect.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Date;
+
+/**
+ * JPA converter of the Date properties. They are stored in DATE columns and read back as java.util.Date, the
+ * java.sql.Date the driver returns doesn't support toInstant which the filters use
+ */
+@Converter(autoApply = true)
+public class DateConverter implements AttributeConverter<Date, java.sql.Date> {
+
+    /**
+     * Method returns the value stored in the column
+     * @param attribute Value of the property
+     * @return Day of the value
+     */
+    @Override
+    public java.sql.Date convertToDatabaseColumn(Date attribute) {
+        return attribute == null ? null : new java.sql.Date(attribute.getTime());
+    }
+
+    /**
+     * Method returns the value of the property
+     * @param dbData Value of the column
+     * @return Date at the start of the day in the default time zone
+     */
+    @Override
+    public Date convertToEntityAttribute(java.sql.Date dbData) {
+        return dbData == null ? null : new Date(dbData.getTime());
+    }
+}
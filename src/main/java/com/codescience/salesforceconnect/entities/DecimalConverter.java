@@ -0,0 +1,38 @@
+package com.codescience.salesforceconnect.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * JPA converter of the BigDecimal properties. The columns have a fixed scale, the trailing zeros the database adds are
+ * removed when a value is read so a stored value is returned (and computed with) the way it was written
+ */
+@Converter(autoApply = true)
+public class DecimalConverter implements AttributeConverter<BigDecimal, BigDecimal> {
+
+    /**
+     * Method returns the value stored in the column
+     * @param attribute Value of the property
+     * @return Value of the column
+     */
+    @Override
+    public BigDecimal convertToDatabaseColumn(BigDecimal attribute) {
+        return attribute;
+    }
+
+    /**
+     * Method returns the value of the property without the trailing zeros of the column scale
+     * @param dbData Value of the column
+     * @return Value of the property, with a scale of 0 or more
+     */
+    @Override
+    public BigDecimal convertToEntityAttribute(BigDecimal dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        BigDecimal stripped = dbData.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+}
@@ -0,0 +1,42 @@
+package com.codescience.salesforceconnect.entities;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation that maps a getter of a BaseEntity implementation to an OData property. The translators are generated from
+ * these annotations when they are created. If the entity has a matching setter (ex setClaimDate for getClaimDate) the
+ * property is also written when an OData entity is created or merged, otherwise it is read only (ex computed values)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ODataProperty {
+
+    /**
+     * Name of the OData property
+     * @return Property name as defined in the EDM
+     */
+    String value();
+
+    /**
+     * Scale the decimal value is rounded to (half even) when it is exposed through OData. -1 keeps the value as is
+     * @return Scale of the exposed value
+     */
+    int scale() default -1;
+
+    /**
+     * true if the getter returns a related entity and the OData property is the id of that entity. Relationships are read only
+     * @return true for the id of a related entity
+     */
+    boolean relatedId() default false;
+
+    /**
+     * true if the property is left out of the translated entity when its value is null, instead of being written as null
+     * @return true to omit a null value
+     */
+    boolean omitNull() default false;
+}
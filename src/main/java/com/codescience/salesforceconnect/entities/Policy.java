@@ -1,17 +1,24 @@
 package com.codescience.salesforceconnect.entities;
 
+import com.codescience.salesforceconnect.service.Constants;
+
+import jakarta.persistence.*;
+
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * Implementation of the BaseEntity for each individual Insurance Policy
  */
+@Entity
 public class Policy extends BaseEntity {
 
     private static final long serialVersionUID = 1L;
 
+    @ManyToOne
+    @JoinColumn(name = "productId")
     private Product product;
 
     private Date policyStartDate;
@@ -22,12 +29,16 @@ public class Policy extends BaseEntity {
 
     private int numberOfUnits;
 
+    // The Claims are read by querying the policy of the Claims. The set is concurrent as the in memory storage
+    // links the Claims written while the set is read
+    @Transient
     private Set<Claim> claims;
 
     /**
      * Method returns the Insurance product related to the Insurance policy
      * @return Product entity implementation
      */
+    @ODataProperty(value = Constants.POLICY_PRODUCT_ID, relatedId = true)
     public Product getProduct() {
         return product;
     }
@@ -44,6 +55,7 @@ public class Policy extends BaseEntity {
      * Method returns the Start date of the policy
      * @return Start Date of the Policy
      */
+    @ODataProperty(Constants.POLICY_START_DATE)
     public Date getPolicyStartDate() {
         return policyStartDate;
     }
@@ -60,6 +72,7 @@ public class Policy extends BaseEntity {
      * Method returns the End date of the policy. Null for policies that are active (i.e. don't have an end date yet)
      * @return End Date of the Policy. Can be null
      */
+    @ODataProperty(Constants.POLICY_END_DATE)
     public Date getPolicyEndDate() {
         return policyEndDate;
     }
@@ -76,6 +89,7 @@ public class Policy extends BaseEntity {
      * Method contains a unique id to identify the PolicyHolder
      * @return Unique identifier to represent the PolicyHolder
      */
+    @ODataProperty(Constants.POLICY_HOLDER_ID)
     public String getPolicyHolderId() {
         return policyHolderId;
     }
@@ -92,6 +106,7 @@ public class Policy extends BaseEntity {
      * Method returns the number of units. The Insurance policy is measured in units with each unit corresponding to a block of coverage
      * @return Number of Units
      */
+    @ODataProperty(Constants.NUMBER_OF_UNITS)
     public Integer getNumberOfUnits() {
         return numberOfUnits;
     }
@@ -110,6 +125,7 @@ public class Policy extends BaseEntity {
      * is specified but is before the current date the policy is not active, otherwise it is active
      * @return true if the Policy is Active
      */
+    @ODataProperty(Constants.POLICY_ACTIVE)
     public boolean isActive() {
         Date today = new Date();
         return hasPolicyStarted(today) && !hasPolicyEnded(today);
@@ -120,6 +136,7 @@ public class Policy extends BaseEntity {
      * It will return null if any value is unspecified.
      * @return Total Cost for the policy
      */
+    @ODataProperty(value = Constants.TOTAL_COST_AMOUNT, scale = 0, omitNull = true)
     public BigDecimal getTotalCost() {
         if ((product == null) || (product.getCostPerUnit() == null) || (getNumberOfUnits() == null)) {
             return null;
@@ -166,7 +183,7 @@ public class Policy extends BaseEntity {
             return;
         }
 
-        this.claims = this.claims == null ? new TreeSet<>() : this.claims;
+        this.claims = this.claims == null ? new ConcurrentSkipListSet<>() : this.claims;
         claim.setPolicy(this);
         this.claims.add(claim);
     }
@@ -181,7 +198,7 @@ public class Policy extends BaseEntity {
             return;
         }
 
-        this.claims = this.claims == null ? new TreeSet<>() : this.claims;
+        this.claims = this.claims == null ? new ConcurrentSkipListSet<>() : this.claims;
         if (this.claims.remove(claim)) {
             claim.setPolicy(null);
         }
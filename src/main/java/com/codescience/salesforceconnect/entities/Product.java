@@ -1,10 +1,16 @@
 package com.codescience.salesforceconnect.entities;
 
+import com.codescience.salesforceconnect.service.Constants;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+
 import java.math.BigDecimal;
 
 /**
  * Implementation of the BaseEntity for each individual Insurance Product
  */
+@Entity
 public class Product extends BaseEntity {
 
     private static final long serialVersionUID = 1L;
@@ -13,6 +19,7 @@ public class Product extends BaseEntity {
 
     private String productType;
 
+    @Column(precision = 19, scale = 4)
     private BigDecimal costPerUnit;
 
     private boolean active;
@@ -21,6 +28,7 @@ public class Product extends BaseEntity {
      * Method returns the name of the Product
      * @return String that represents the Product name
      */
+    @ODataProperty(Constants.PRODUCT_NAME)
     public String getProductName() {
         return productName;
     }
@@ -37,6 +45,7 @@ public class Product extends BaseEntity {
      * Method returns the Product Type
      * @return String that represents the Product type
      */
+    @ODataProperty(Constants.PRODUCT_TYPE)
     public String getProductType() {
         return productType;
     }
@@ -53,6 +62,7 @@ public class Product extends BaseEntity {
      * Method returns the Cost per Insurance Unit
      * @return BigDecimal that represents the Cost per Insurance Unit
      */
+    @ODataProperty(value = Constants.COST_PER_UNIT, scale = 0, omitNull = true)
     public BigDecimal getCostPerUnit() {
         return costPerUnit;
     }
@@ -69,6 +79,7 @@ public class Product extends BaseEntity {
      * Method returns true if the product is Active
      * @return true if the product is Active
      */
+    @ODataProperty(Constants.PRODUCT_ACTIVE)
     public boolean isActive() {
         return active;
     }
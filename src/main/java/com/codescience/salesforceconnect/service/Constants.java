@@ -91,6 +91,9 @@ public class Constants {
 
     public static final String BENEFICIARY_CLAIM_ID = "ClaimId";
 
+    // System query options
+    public static final String SKIP_TOKEN = "$skiptoken";
+
     /**
      * Private Constructor prevents instantiation
      */
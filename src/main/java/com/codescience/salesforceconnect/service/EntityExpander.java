@@ -0,0 +1,261 @@
+package com.codescience.salesforceconnect.service;
+
+import com.codescience.salesforceconnect.data.Storage;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Class implements the $expand option (ex Policies?$expand=Claims($expand=Beneficiaries)). The related entities of a
+ * batch of entities are read by one storage call per navigation property and level, instead of one navigation per
+ * entity. The entities returned by the storage may be shared (ex by the entity cache), so the expanded entities are
+ * copies holding the inline links
+ */
+final class EntityExpander {
+    private static final Logger LOG = LoggerFactory.getLogger(EntityExpander.class);
+    private static final int BATCH_SIZE = 500;
+
+    private final Storage storage;
+
+    /**
+     * Constructor used to create the expander
+     * @param storage Storage reading the related entities
+     */
+    EntityExpander(Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Method checks that the expand option only holds supported options. Expanded navigation properties can be
+     * expanded and selected but not filtered, ordered, paged, counted or expanded by levels
+     * @param expandOption Expand option passed in, may be null
+     * @throws ODataApplicationException Exception thrown if an unsupported option is passed in
+     */
+    static void validate(ExpandOption expandOption) throws ODataApplicationException {
+        if (expandOption == null) {
+            return;
+        }
+        for (ExpandItem item : expandOption.getExpandItems()) {
+            String unsupported = null;
+            if (item.getLevelsOption() != null) {
+                unsupported = "$levels";
+            } else if (item.getFilterOption() != null) {
+                unsupported = "$filter";
+            } else if (item.getOrderByOption() != null) {
+                unsupported = "$orderby";
+            } else if ((item.getSkipOption() != null) || (item.getTopOption() != null)) {
+                unsupported = "$skip/$top";
+            } else if ((item.getCountOption() != null) || item.hasCountPath()) {
+                unsupported = "$count";
+            } else if ((item.getSearchOption() != null) || (item.getApplyOption() != null)) {
+                unsupported = "$search/$apply";
+            }
+            if (unsupported != null) {
+                LOG.error(Messages.ERROR_EXPAND_OPTION_NOT_SUPPORTED + "{}", unsupported);
+                throw new ODataApplicationException(Messages.ERROR_EXPAND_OPTION_NOT_SUPPORTED + unsupported, HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+            }
+            validate(item.getExpandOption());
+        }
+    }
+
+    /**
+     * Method returns copies of the entities with the navigation properties of the expand option inlined
+     * @param entities Entities of the entity type
+     * @param entityType Type of the entities
+     * @param expandOption Expand option, may be null
+     * @return Expanded entities in the same order, the entities themselves if there is nothing to expand
+     * @throws ODataException Exception thrown if the related entities can't be read
+     */
+    List<Entity> expand(List<Entity> entities, EdmEntityType entityType, ExpandOption expandOption) throws ODataException {
+        if ((expandOption == null) || entities.isEmpty()) {
+            return entities;
+        }
+        LOG.info("In expand method");
+        List<Entity> expanded = new ArrayList<>(entities.size());
+        for (Entity entity : entities) {
+            expanded.add(copy(entity));
+        }
+
+        for (ExpandItem item : expandOption.getExpandItems()) {
+            for (EdmNavigationProperty navigationProperty : getNavigationProperties(entityType, item)) {
+                List<EntityCollection> relatedCollections = storage.getRelatedEntityCollections(entities, navigationProperty);
+
+                // The related entities of every entity are expanded together for the next level
+                List<Entity> related = new ArrayList<>();
+                for (EntityCollection relatedCollection : relatedCollections) {
+                    related.addAll(relatedCollection.getEntities());
+                }
+                List<Entity> expandedRelated = expand(related, navigationProperty.getType(), item.getExpandOption());
+
+                int position = 0;
+                for (int i = 0; i < expanded.size(); i++) {
+                    int size = relatedCollections.get(i).getEntities().size();
+                    List<Entity> inline = expandedRelated.subList(position, position + size);
+                    position += size;
+
+                    Link link = new Link();
+                    link.setTitle(navigationProperty.getName());
+                    if (navigationProperty.isCollection()) {
+                        EntityCollection inlineEntitySet = new EntityCollection();
+                        inlineEntitySet.getEntities().addAll(inline);
+                        link.setInlineEntitySet(inlineEntitySet);
+                    } else {
+                        link.setInlineEntity(inline.isEmpty() ? null : inline.get(0));
+                    }
+                    expanded.get(i).getNavigationLinks().add(link);
+                }
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Method returns an iterator over the entities of the iterator passed in, expanded by batches of BATCH_SIZE
+     * entities as the response is written. The first batch is expanded before the method returns, so a failure to read
+     * it is thrown before the serializer starts and the response is an error
+     * @param entities Iterator over the entities of the entity type
+     * @param entityType Type of the entities
+     * @param expandOption Expand option, may be null
+     * @return Iterator over the expanded entities
+     * @throws ODataException Exception thrown if the related entities of the first batch can't be read
+     */
+    EntityIterator expand(EntityIterator entities, EdmEntityType entityType, ExpandOption expandOption) throws ODataException {
+        if (expandOption == null) {
+            return entities;
+        }
+        ExpandingEntityIterator expandingEntities = new ExpandingEntityIterator(entities, entityType, expandOption);
+        expandingEntities.expandNextBatch();
+        return expandingEntities;
+    }
+
+    /**
+     * Method returns the navigation properties expanded by an expand item, all of them for *
+     * @param entityType Type of the expanded entities
+     * @param item Expand item
+     * @return Navigation properties
+     */
+    private static List<EdmNavigationProperty> getNavigationProperties(EdmEntityType entityType, ExpandItem item) {
+        if (item.isStar()) {
+            List<EdmNavigationProperty> navigationProperties = new ArrayList<>();
+            for (String name : entityType.getNavigationPropertyNames()) {
+                navigationProperties.add(entityType.getNavigationProperty(name));
+            }
+            return navigationProperties;
+        }
+        // The path ends with the navigation property, followed by $ref for references
+        List<UriResource> resourceParts = item.getResourcePath().getUriResourceParts();
+        for (int i = resourceParts.size() - 1; i >= 0; i--) {
+            if (resourceParts.get(i) instanceof UriResourceNavigation) {
+                return Collections.singletonList(((UriResourceNavigation) resourceParts.get(i)).getProperty());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Method returns a copy of the entity sharing its properties, the links added to the copy don't change the entity
+     * @param entity Entity to copy
+     * @return Copy of the entity
+     */
+    private static Entity copy(Entity entity) {
+        Entity copy = new Entity();
+        copy.setType(entity.getType());
+        copy.setId(entity.getId());
+        copy.setETag(entity.getETag());
+        copy.getProperties().addAll(entity.getProperties());
+        copy.getNavigationLinks().addAll(entity.getNavigationLinks());
+        return copy;
+    }
+
+    /**
+     * EntityIterator reading the entities of the storage iterator by batches and expanding each batch. The batches
+     * after the first one are expanded while the response is written, once its status is sent. If one of them can't
+     * be read the failure is logged and the response is aborted, so the entities written before it are not taken for
+     * the whole collection
+     */
+    private final class ExpandingEntityIterator extends EntityIterator {
+        private final EntityIterator entities;
+        private final EdmEntityType entityType;
+        private final ExpandOption expandOption;
+        private Iterator<Entity> batch = Collections.emptyIterator();
+        private Entity lastEntity;
+
+        /**
+         * Constructor used to populate the iterator
+         * @param entities Iterator over the entities to expand
+         * @param entityType Type of the entities
+         * @param expandOption Expand option
+         */
+        private ExpandingEntityIterator(EntityIterator entities, EdmEntityType entityType, ExpandOption expandOption) {
+            this.entities = entities;
+            this.entityType = entityType;
+            this.expandOption = expandOption;
+        }
+
+        /**
+         * Method reads the next batch of entities of the storage iterator and expands it
+         * @throws ODataException Exception thrown if the related entities can't be read
+         */
+        private void expandNextBatch() throws ODataException {
+            List<Entity> nextBatch = new ArrayList<>();
+            while ((nextBatch.size() < BATCH_SIZE) && entities.hasNext()) {
+                nextBatch.add(entities.next());
+            }
+            batch = expand(nextBatch, entityType, expandOption).iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!batch.hasNext() && entities.hasNext()) {
+                try {
+                    expandNextBatch();
+                } catch (ODataException e) {
+                    String lastId = lastEntity == null ? null : String.valueOf(lastEntity.getId());
+                    LOG.error(Messages.ERROR_EXPANDING_RESPONSE + "{}", lastId, e);
+                    throw new ODataRuntimeException(Messages.ERROR_EXPANDING_RESPONSE + lastId, e);
+                }
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public Entity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastEntity = batch.next();
+            return lastEntity;
+        }
+
+        @Override
+        public Integer getCount() {
+            return entities.getCount();
+        }
+
+        @Override
+        public URI getNext() {
+            return entities.getNext();
+        }
+    }
+}
@@ -12,15 +12,24 @@ public class Messages {
     public static final String ERROR_UPDATING_ENTITY = "Exception occurred creating Entity:";
     public static final String ERROR_READING_ENTITY = "Exception occurred reading Entity:";
     public static final String ERROR_MERGING_ENTITIES = "Exception occurred merging Entities:";
+    public static final String ERROR_RELATED_ENTITY_NOT_FOUND = "The related entity was not found: ";
+    public static final String ERROR_RELATED_PROPERTY_NOT_SETTABLE = "The relationship can't be set: ";
     public static final String ERROR_RESPONSE_EDM_NOT_SET = "ResponseEDMEntitySet not found";
     public static final String ERROR_ONLY_ENTITY_SET = "Only EntitySet is supported";
     public static final String ERROR_ENTITY_ALREADY_EXISTS = "This entity already exists";
     public static final String ERROR_ENTITY_NOT_FOUND_FOR_UPDATE = "This entity was not found for update";
     public static final String ERROR_ENTITY_NOT_FOUND = "Entity not found";
     public static final String ERROR_OCCURRED_READ_ENTITY_COLLECTION = "Error Occurred in readEntityCollection: ";
+    public static final String ERROR_OCCURRED_COUNT_ENTITY_COLLECTION = "Error Occurred in countEntityCollection: ";
     public static final String ERROR_INVALID_VALUE_FOR_SKIP = "Invalid value for $skip";
     public static final String ERROR_INVALID_VALUE_FOR_TOP = "Invalid value for $top";
+    public static final String ERROR_INVALID_VALUE_FOR_SKIP_TOKEN = "Invalid value for $skiptoken";
     public static final String ERROR_ENTITY_TYPE_NOT_FOUND = "Entity type for Entity passed in not found";
+    public static final String ERROR_VALUE_NOT_STORABLE = "The value is out of the range supported by the storage for property: ";
+    public static final String ERROR_INVALID_FILTER = "Invalid $filter: ";
+    public static final String ERROR_EVALUATING_FILTER = "The $filter can't be evaluated: ";
+    public static final String ERROR_EXPAND_OPTION_NOT_SUPPORTED = "Query option not supported in $expand: ";
+    public static final String ERROR_EXPANDING_RESPONSE = "The response is aborted, the related entities can't be read after entity: ";
     public static final String INVALID_BENEFICIARY_PERCENT = "The value passed in for the Beneficiary Percent must be between 0 and 100";
 
     /**
@@ -4,7 +4,7 @@ import com.codescience.salesforceconnect.data.Storage;
 import com.codescience.salesforceconnect.util.Util;
 import org.apache.olingo.commons.api.data.ContextURL;
 import org.apache.olingo.commons.api.data.Entity;
-import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
 import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
@@ -13,26 +13,27 @@ import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.*;
-import org.apache.olingo.server.api.processor.EntityCollectionProcessor;
+import org.apache.olingo.server.api.processor.CountEntityCollectionProcessor;
 import org.apache.olingo.server.api.serializer.EntityCollectionSerializerOptions;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
-import org.apache.olingo.server.api.serializer.SerializerResult;
+import org.apache.olingo.server.api.serializer.SerializerStreamResult;
 import org.apache.olingo.server.api.uri.*;
 import org.apache.olingo.server.api.uri.queryoption.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 /**
- * Class implements the EntityCollectionProcessor interface
- * It will fetch an entity collection
+ * Class implements the EntityCollectionProcessor and CountEntityCollectionProcessor interfaces
+ * It will fetch an entity collection or count it (/$count)
  * Created by marcparis on 12/23/16.
  */
-public class OdataEntityCollectionProcessor implements EntityCollectionProcessor {
+public class OdataEntityCollectionProcessor implements CountEntityCollectionProcessor {
     private static final Logger LOG = LoggerFactory.getLogger(OdataEntityCollectionProcessor.class);
 
     private OData odata;
@@ -67,7 +68,9 @@ public class OdataEntityCollectionProcessor implements EntityCollectionProcessor
     }
 
     /**
-     * Method used to Read a collection of entities. It will handle filters, sorts, skips, tops, and counts
+     * Method used to Read a collection of entities. It will handle filters, sorts, skips, tops, and counts.
+     * Entity sets and the collections at the end of a navigation path are filtered, sorted and paged by the storage and
+     * streamed to the response. Navigation properties passed in $expand are read by batches of entities and inlined
      * @param request ODataRequest containing the input data
      * @param response OdataResponse with serialized data
      * @param uriInfo UriInfo containing many of the parameters
@@ -76,6 +79,7 @@ public class OdataEntityCollectionProcessor implements EntityCollectionProcessor
      */
     public void readEntityCollection(ODataRequest request, ODataResponse response, UriInfo uriInfo, ContentType responseFormat) throws ODataApplicationException {
         LOG.info("In readEntityCollection method");
+        EntityExpander.validate(uriInfo.getExpandOption());
 
         try {
             List<UriResource> resourceParts = uriInfo.getUriResourceParts();
@@ -87,170 +91,171 @@ public class OdataEntityCollectionProcessor implements EntityCollectionProcessor
                 LOG.error(Messages.ERROR_ONLY_ENTITY_SET);
                 throw new ODataApplicationException(Messages.ERROR_ONLY_ENTITY_SET, HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
             }
-            // Read the top level entities
             UriResourceEntitySet uriResourceEntitySet = (UriResourceEntitySet) uriResource;
             EdmEntitySet responseEdmEntitySet = uriResourceEntitySet.getEntitySet();
-            List<UriParameter> keyPredicates = uriResourceEntitySet.getKeyPredicates();
-            EntityCollection responseEntityCollection = getStorage().readEntitySetData(responseEdmEntitySet, uriInfo);
-
-            int segmentIndex = 1;
-            while (segmentIndex < segmentCount) {
-                UriResource lastSegment = resourceParts.get(segmentIndex);
-                if (lastSegment instanceof UriResourceNavigation) {
-                    UriResourceNavigation uriResourceNavigation = (UriResourceNavigation) lastSegment;
-                    EdmNavigationProperty edmNavigationProperty = uriResourceNavigation.getProperty();
-                    EdmEntityType responseEdmEntityType = edmNavigationProperty.getType();
-                    responseEdmEntitySet = Util.getNavigationTargetEntitySet(responseEdmEntitySet, edmNavigationProperty);
+            ODataSerializer serializer = odata.createSerializer(responseFormat);
+            EntityExpander expander = new EntityExpander(getStorage());
 
-                    Entity sourceEntity = getStorage().readEntityData(responseEdmEntitySet, keyPredicates);
-                    if (sourceEntity == null) {
-                        LOG.error(Messages.ERROR_ENTITY_NOT_FOUND);
-                        throw new ODataApplicationException(Messages.ERROR_ENTITY_NOT_FOUND, HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
+            EntityIterator storageIterator;
+            if (segmentCount == 1) {
+                // Read the top level entities. They are translated by the storage while the serializer writes them
+                storageIterator = getStorage().readEntitySetData(responseEdmEntitySet, uriInfo);
+            } else {
+                // The storage follows the navigations from the first entity and applies the query options to the
+                // related entities, which are translated while the serializer writes them like an entity set
+                List<UriResourceNavigation> navigations = new ArrayList<>();
+                for (int segmentIndex = 1; segmentIndex < segmentCount; segmentIndex++) {
+                    UriResource lastSegment = resourceParts.get(segmentIndex);
+                    if (lastSegment instanceof UriResourceNavigation) {
+                        UriResourceNavigation uriResourceNavigation = (UriResourceNavigation) lastSegment;
+                        EdmNavigationProperty edmNavigationProperty = uriResourceNavigation.getProperty();
+                        responseEdmEntitySet = Util.getNavigationTargetEntitySet(responseEdmEntitySet, edmNavigationProperty);
+                        navigations.add(uriResourceNavigation);
                     }
-
-                    responseEntityCollection = getStorage().getRelatedEntityCollection(sourceEntity, responseEdmEntityType);
-                    keyPredicates = uriResourceNavigation.getKeyPredicates();
                 }
-                segmentIndex++;
-            }
-            EdmEntityType entityType = uriResourceEntitySet.getEntityType();
-            List<Entity> entityList = responseEntityCollection.getEntities();
-            boolean countSet = processCount(responseEntityCollection, uriInfo);
-            entityList = processSkip(entityList, uriInfo);
-            entityList = processTop(entityList, uriInfo);
-            String selectList = processSelect(entityType, uriInfo);
-
-            // If the collection size was changed through use of the $top or $skip, update the returned list
-            if (entityList.size() != responseEntityCollection.getEntities().size()) {
-                entityList = new ArrayList<>(entityList);// Avoid concurrent modification exception
-                responseEntityCollection.getEntities().clear();
-                for (Entity ent : entityList) {
-                    responseEntityCollection.getEntities().add(ent);
+                if (responseEdmEntitySet == null) {
+                    LOG.error(Messages.ERROR_RESPONSE_EDM_NOT_SET);
+                    throw new ODataApplicationException(Messages.ERROR_RESPONSE_EDM_NOT_SET, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+                }
+                storageIterator = getStorage().readNavigationSetData(uriResourceEntitySet.getEntitySet(), uriResourceEntitySet.getKeyPredicates(),
+                        navigations, uriInfo);
+                if (storageIterator == null) {
+                    LOG.error(Messages.ERROR_ENTITY_NOT_FOUND);
+                    throw new ODataApplicationException(Messages.ERROR_ENTITY_NOT_FOUND, HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
                 }
             }
 
-            if (responseEdmEntitySet == null) {
-                LOG.error(Messages.ERROR_RESPONSE_EDM_NOT_SET);
-                throw new ODataApplicationException(Messages.ERROR_RESPONSE_EDM_NOT_SET, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
-            }
-
-            EntityCollectionSerializerOptions.Builder builder;
-            final String id = request.getRawBaseUri();
-
-            // Build the builder. it changes if the select option has been defined
-            if (selectList != null) {
-                ContextURL contextUrl = ContextURL.with().entitySet(responseEdmEntitySet).selectList(selectList).build();
-                builder = EntityCollectionSerializerOptions.with().contextURL(contextUrl).select(uriInfo.getSelectOption()).id(id);
-            } else {
-                ContextURL contextUrl = ContextURL.with().entitySet(responseEdmEntitySet).build();
-                builder = EntityCollectionSerializerOptions.with().contextURL(contextUrl).id(id);
-            }
-
-            // Add the count if it was set
-            if (countSet) {
-                builder.count(uriInfo.getCountOption());
-            }
-
-            EntityCollectionSerializerOptions opts = builder.build();
+            EdmEntityType responseEntityType = responseEdmEntitySet.getEntityType();
+            EntityIterator entityIterator = new ResponseEntityIterator(expander.expand(storageIterator, responseEntityType, uriInfo.getExpandOption()), request);
+            EntityCollectionSerializerOptions opts = buildSerializerOptions(request, uriInfo, responseEdmEntitySet, responseEntityType, uriInfo.getCountOption() != null);
+            SerializerStreamResult serializerResult = serializer.entityCollectionStreamed(this.srvMetadata, responseEntityType, entityIterator, opts);
+            response.setODataContent(serializerResult.getODataContent());
 
-            EdmEntityType edmEntityType = responseEdmEntitySet.getEntityType();
-
-            ODataSerializer serializer = odata.createSerializer(responseFormat);
-            SerializerResult serializerResult = serializer.entityCollection(this.srvMetadata, edmEntityType, responseEntityCollection, opts);
-
-            response.setContent(serializerResult.getContent());
             response.setStatusCode(HttpStatusCode.OK.getStatusCode());
             response.setHeader(HttpHeader.CONTENT_TYPE, responseFormat.toContentTypeString());
+        } catch (ODataApplicationException e) {
+            // Keep the status of the error (ex 404 if the entity is not found)
+            throw e;
         } catch (ODataException e) {
             throw new ODataApplicationException(Messages.ERROR_OCCURRED_READ_ENTITY_COLLECTION + e.getMessage(), HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
         }
     }
 
     /**
-     * Method return the count of records in the collection if the $count=true parameter is passed in
-     * @param entityCollection Collection of entities to count
-     * @param info URIInfo containing the count parameter
-     * @return true if count was requested, false otherwise
+     * Method used to count a collection of entities (ex /Claims/$count or /Policies('2000')/Claims/$count). The storage
+     * follows the navigation path if there is one and applies the $filter option without reading the entities
+     * @param request ODataRequest containing the input data
+     * @param response OdataResponse with the count as plain text
+     * @param uriInfo UriInfo containing the filter parameter
+     * @throws ODataApplicationException Exception thrown if an error occurred
      */
-    private boolean processCount(EntityCollection entityCollection, UriInfo info) {
-        LOG.info("In processCount method");
-        if ((entityCollection == null) || (info == null)) {
-            return false;
-        }
+    public void countEntityCollection(ODataRequest request, ODataResponse response, UriInfo uriInfo) throws ODataApplicationException {
+        LOG.info("In countEntityCollection method");
+
+        try {
+            List<UriResource> resourceParts = uriInfo.getUriResourceParts();
+            UriResource uriResource = resourceParts.get(0);
+
+            if (!(uriResource instanceof UriResourceEntitySet)) {
+                LOG.error(Messages.ERROR_ONLY_ENTITY_SET);
+                throw new ODataApplicationException(Messages.ERROR_ONLY_ENTITY_SET, HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+            }
+            UriResourceEntitySet uriResourceEntitySet = (UriResourceEntitySet) uriResource;
 
-        CountOption countOption = info.getCountOption();
-        if (countOption != null) {
-            boolean isCount = countOption.getValue();
-            if (isCount) {
-                entityCollection.setCount(entityCollection.getEntities().size());
+            // The last segment is $count, the segments between the entity set and $count are navigations
+            List<UriResourceNavigation> navigations = new ArrayList<>();
+            for (int segmentIndex = 1; segmentIndex < resourceParts.size() - 1; segmentIndex++) {
+                if (resourceParts.get(segmentIndex) instanceof UriResourceNavigation) {
+                    navigations.add((UriResourceNavigation) resourceParts.get(segmentIndex));
+                }
+            }
+            int count;
+            if (navigations.isEmpty()) {
+                count = getStorage().countEntitySetData(uriResourceEntitySet.getEntitySet(), uriInfo);
+            } else {
+                Integer navigationCount = getStorage().countNavigationSetData(uriResourceEntitySet.getEntitySet(),
+                        uriResourceEntitySet.getKeyPredicates(), navigations, uriInfo);
+                if (navigationCount == null) {
+                    LOG.error(Messages.ERROR_ENTITY_NOT_FOUND);
+                    throw new ODataApplicationException(Messages.ERROR_ENTITY_NOT_FOUND, HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
+                }
+                count = navigationCount;
             }
-            return true;
+
+            response.setContent(odata.createFixedFormatSerializer().count(count));
+            response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+            response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.TEXT_PLAIN.toContentTypeString());
+        } catch (ODataApplicationException e) {
+            // Keep the status of the error (ex 404 if the entity is not found)
+            throw e;
+        } catch (ODataException e) {
+            throw new ODataApplicationException(Messages.ERROR_OCCURRED_COUNT_ENTITY_COLLECTION + e.getMessage(), HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
         }
-        return false;
     }
 
     /**
-     * Method will skip the number of records passed in if the skip parameter is set. It will return an empty list if skip > count of records
-     * @param entityList List of entities that should be processed
-     * @param info URIInfo containing the skip parameter
-     * @return List of entities reduced by skip if passed in
-     * @throws ODataApplicationException Throw error if an invalid skip value passed in
+     * Method builds the serializer options of the response. The context url includes the select list if $select or
+     * $expand was passed in
+     * @param request ODataRequest containing the base url
+     * @param uriInfo URIInfo containing the select and count parameters
+     * @param responseEdmEntitySet Entity set of the response
+     * @param entityType Entity type used to build the select list
+     * @param countSet true if the count must be written
+     * @return EntityCollectionSerializerOptions for the response
+     * @throws SerializerException exception thrown if unable to process select fields
      */
-    private List<Entity> processSkip(List<Entity> entityList, UriInfo info) throws ODataApplicationException {
-        LOG.info("In processSkip method");
-        if ((entityList == null) || (info == null)) {
-            return entityList;
+    private EntityCollectionSerializerOptions buildSerializerOptions(ODataRequest request, UriInfo uriInfo, EdmEntitySet responseEdmEntitySet,
+                                                                     EdmEntityType entityType, boolean countSet) throws SerializerException {
+        EntityCollectionSerializerOptions.Builder builder;
+        final String id = request.getRawBaseUri();
+        String selectList = processSelect(entityType, uriInfo);
+
+        // Build the builder. it changes if the select option has been defined
+        if (selectList != null) {
+            ContextURL contextUrl = ContextURL.with().entitySet(responseEdmEntitySet).selectList(selectList).build();
+            builder = EntityCollectionSerializerOptions.with().contextURL(contextUrl).select(uriInfo.getSelectOption())
+                    .expand(uriInfo.getExpandOption()).id(id);
+        } else {
+            ContextURL contextUrl = ContextURL.with().entitySet(responseEdmEntitySet).build();
+            builder = EntityCollectionSerializerOptions.with().contextURL(contextUrl).id(id);
         }
 
-        SkipOption skipOption = info.getSkipOption();
-        if (skipOption != null) {
-            int skip = skipOption.getValue();
-            if (skip >= 0) {
-                if (skip < entityList.size()) {
-                    entityList = entityList.subList(skip, entityList.size());
-                } else {
-                    entityList.clear();
-                }
-            } else {
-                LOG.error(Messages.ERROR_INVALID_VALUE_FOR_SKIP + "{}", skip);
-                throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_SKIP+skip, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
-            }
+        // Add the count if it was set
+        if (countSet) {
+            builder.count(uriInfo.getCountOption());
         }
-        return entityList;
+        return builder.build();
     }
 
     /**
-     * Method will reduce to top count the number of returned items in the list of entities.
-     * @param entityList List of entities that should be processed
-     * @param info URIInfo containing the top parameter
-     * @return List of entities reduced to top if passed in
-     * @throws ODataApplicationException Throw error if an invalid top value passed in
+     * Method turns the $skiptoken query set by the storage on a paged result into the absolute nextLink of the
+     * response. The other query options of the request are kept so the next page is read with the same filter and order
+     * @param request ODataRequest containing the request url
+     * @param next Relative next query set by the storage
+     * @return Absolute nextLink
      */
-    private List<Entity>  processTop(List<Entity> entityList, UriInfo info) throws ODataApplicationException {
-        LOG.info("In processTop method");
-        if ((entityList == null) || (info == null)) {
-            return entityList;
-        }
-
-        TopOption topOption = info.getTopOption();
-        if (topOption != null) {
-            int top = topOption.getValue();
-            if (top >= 0) {
-                if (top < entityList.size()) {
-                    entityList = entityList.subList(0, top);
+    private static URI buildNextLink(ODataRequest request, URI next) {
+        StringBuilder nextLink = new StringBuilder(request.getRawBaseUri()).append(request.getRawODataPath()).append('?');
+        String rawQueryPath = request.getRawQueryPath();
+        if (rawQueryPath != null) {
+            for (String queryOption : rawQueryPath.split("&")) {
+                // The $ of the option name may be percent encoded
+                int nameEnd = queryOption.indexOf('=');
+                String optionName = (nameEnd < 0 ? queryOption : queryOption.substring(0, nameEnd)).replace("%24", "$");
+                if (!queryOption.isEmpty() && !optionName.equals(Constants.SKIP_TOKEN)) {
+                    nextLink.append(queryOption).append('&');
                 }
-            } else {
-                LOG.error(Messages.ERROR_INVALID_VALUE_FOR_TOP + "{}", top);
-                throw new ODataApplicationException(Messages.ERROR_INVALID_VALUE_FOR_TOP+top, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
             }
         }
-        return entityList;
+        nextLink.append(next.getRawQuery());
+        return URI.create(nextLink.toString());
     }
 
     /**
-     * Method processes the Select Option if passed in. It will reduce the number of fields to only those included in the Select
+     * Method processes the Select Option if passed in. It will reduce the number of fields to only those included in the Select.
+     * The expanded navigation properties are added to the list
      * @param edmEntityType EntityType being process
-     * @param info URIInfo containing the select parameter
+     * @param info URIInfo containing the select and expand parameters
      * @return String containing the select fields - null if none passed in
      * @throws SerializerException exception thrown if unable to process select fields
      */
@@ -260,9 +265,50 @@ public class OdataEntityCollectionProcessor implements EntityCollectionProcessor
             return null;
         }
         SelectOption selectOption = info.getSelectOption();
-        if (selectOption != null) {
-            return odata.createUriHelper().buildContextURLSelectList(edmEntityType,null, selectOption);
+        ExpandOption expandOption = info.getExpandOption();
+        if ((selectOption != null) || (expandOption != null)) {
+            return odata.createUriHelper().buildContextURLSelectList(edmEntityType, expandOption, selectOption);
         }
         return null;
     }
+
+    /**
+     * EntityIterator returned to the serializer. It reads the entities from the storage iterator and turns the relative
+     * next query of the storage into the absolute nextLink of the request
+     */
+    private static final class ResponseEntityIterator extends EntityIterator {
+        private final EntityIterator storageIterator;
+        private final ODataRequest request;
+
+        /**
+         * Constructor used to populate the iterator
+         * @param storageIterator EntityIterator returned by the storage
+         * @param request ODataRequest containing the request url
+         */
+        private ResponseEntityIterator(EntityIterator storageIterator, ODataRequest request) {
+            this.storageIterator = storageIterator;
+            this.request = request;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return storageIterator.hasNext();
+        }
+
+        @Override
+        public Entity next() {
+            return storageIterator.next();
+        }
+
+        @Override
+        public Integer getCount() {
+            return storageIterator.getCount();
+        }
+
+        @Override
+        public URI getNext() {
+            URI next = storageIterator.getNext();
+            return next == null ? null : buildNextLink(request, next);
+        }
+    }
 }
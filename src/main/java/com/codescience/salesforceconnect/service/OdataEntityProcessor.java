@@ -4,6 +4,7 @@ import com.codescience.salesforceconnect.data.Storage;
 import com.codescience.salesforceconnect.util.Util;
 import org.apache.olingo.commons.api.data.ContextURL;
 import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.data.Property;
 import org.apache.olingo.commons.api.data.ValueType;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
@@ -23,10 +24,13 @@ import org.apache.olingo.server.api.serializer.EntitySerializerOptions;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerResult;
 import org.apache.olingo.server.api.uri.*;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -77,41 +81,45 @@ public class OdataEntityProcessor implements EntityProcessor {
      */
     public void readEntity(ODataRequest request, ODataResponse response, UriInfo uriInfo, ContentType responseFormat) throws ODataApplicationException {
         LOG.info("In readEntity method");
+        EntityExpander.validate(uriInfo.getExpandOption());
         try {
             UriResourceEntitySet uriResourceEntitySet = getUriResourceEntitySet(uriInfo);
             List<UriResource> resourceParts = uriInfo.getUriResourceParts();
-            int segmentCount = resourceParts.size();
-
-            // Read the top level entity
             EdmEntitySet responseEdmEntitySet = uriResourceEntitySet.getEntitySet();
-            EdmEntityType responseEdmEntityType = responseEdmEntitySet.getEntityType();
             List<UriParameter> keyPredicates = uriResourceEntitySet.getKeyPredicates();
-            Entity responseEntity = getStorage().readEntityData(responseEdmEntitySet, keyPredicates);
-            int segmentIndex = 1;
 
-            // If there are more object navigation then keep reading each object until you reach the end of the url
-            // Ex Object(1)/Object2/Object3
-            while (segmentIndex < segmentCount) {
-                UriResource nextSegment = resourceParts.get(segmentIndex);
+            // Collect the object navigations until the end of the url, ex Object(1)/Object2/Object3
+            List<UriResourceNavigation> navigations = new ArrayList<>();
+            for (UriResource nextSegment : resourceParts.subList(1, resourceParts.size())) {
                 if (nextSegment instanceof UriResourceNavigation) {
                     UriResourceNavigation uriResourceNavigation = (UriResourceNavigation) nextSegment;
                     EdmNavigationProperty edmNavigationProperty = uriResourceNavigation.getProperty();
                     responseEdmEntitySet = Util.getNavigationTargetEntitySet(responseEdmEntitySet, edmNavigationProperty);
-                    responseEdmEntityType = responseEdmEntitySet.getEntityType();
-
-                    List<UriParameter> navKeyPredicates = uriResourceNavigation.getKeyPredicates();
-
-                    // If not nav key predicatest it's going from the many side to the one side. If there are it's the opposite
-                    if (navKeyPredicates.isEmpty()) {
-                        responseEntity = getStorage().getRelatedEntity(responseEntity, responseEdmEntityType);
-                    } else {
-                        responseEntity = getStorage().getRelatedEntity(responseEntity, responseEdmEntityType, navKeyPredicates);
-                    }
-                    segmentIndex++;
+                    navigations.add(uriResourceNavigation);
                 }
             }
-            ContextURL contextUrl = ContextURL.with().entitySet(responseEdmEntitySet).suffix(ContextURL.Suffix.ENTITY).build();
-            EntitySerializerOptions opts = EntitySerializerOptions.with().contextURL(contextUrl).build();
+            EdmEntityType responseEdmEntityType = responseEdmEntitySet.getEntityType();
+
+            // Read the top level entity, or let the storage follow the navigations and translate the last entity only
+            Entity responseEntity;
+            if (navigations.isEmpty()) {
+                responseEntity = getStorage().readEntityData(responseEdmEntitySet, keyPredicates);
+            } else {
+                EntityCollection related = getStorage().readNavigationData(uriResourceEntitySet.getEntitySet(), keyPredicates, navigations);
+                responseEntity = (related == null) || related.getEntities().isEmpty() ? null : related.getEntities().get(0);
+            }
+            if (responseEntity == null) {
+                LOG.error(Messages.ERROR_ENTITY_NOT_FOUND);
+                throw new ODataApplicationException(Messages.ERROR_ENTITY_NOT_FOUND, HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
+            }
+            // Inline the navigation properties passed in $expand
+            ExpandOption expandOption = uriInfo.getExpandOption();
+            ContextURL.Builder contextUrlBuilder = ContextURL.with().entitySet(responseEdmEntitySet).suffix(ContextURL.Suffix.ENTITY);
+            if (expandOption != null) {
+                responseEntity = new EntityExpander(getStorage()).expand(Collections.singletonList(responseEntity), responseEdmEntityType, expandOption).get(0);
+                contextUrlBuilder.selectList(this.odata.createUriHelper().buildContextURLSelectList(responseEdmEntityType, expandOption, null));
+            }
+            EntitySerializerOptions opts = EntitySerializerOptions.with().contextURL(contextUrlBuilder.build()).expand(expandOption).build();
 
             ODataSerializer serializer = this.odata.createSerializer(responseFormat);
 
@@ -120,6 +128,9 @@ public class OdataEntityProcessor implements EntityProcessor {
             response.setContent(serializerResult.getContent());
             response.setStatusCode(HttpStatusCode.OK.getStatusCode());
             response.setHeader(HttpHeader.CONTENT_TYPE, responseFormat.toContentTypeString());
+        } catch (ODataApplicationException e) {
+            // Keep the status of the error (ex 404 if the entity is not found)
+            throw e;
         } catch (ODataException e) {
             throw new ODataApplicationException(Messages.ERROR_READING_ENTITY + e.getMessage(), HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
         }
@@ -158,6 +169,9 @@ public class OdataEntityProcessor implements EntityProcessor {
             response.setContent(serializedResponse.getContent());
             response.setStatusCode(HttpStatusCode.CREATED.getStatusCode());
             response.setHeader(HttpHeader.CONTENT_TYPE, responseFormat.toContentTypeString());
+        } catch (ODataApplicationException e) {
+            // Keep the status of the error (ex 400 if a related entity is not found)
+            throw e;
         } catch (ODataException e) {
             throw new ODataApplicationException(Messages.ERROR_CREATING_ENTITY + e.getMessage(), HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
         }
@@ -188,6 +202,9 @@ public class OdataEntityProcessor implements EntityProcessor {
             // Update the entity and return
             getStorage().updateEntity(entity, forceNulls);
             response.setStatusCode(HttpStatusCode.NO_CONTENT.getStatusCode());
+        } catch (ODataApplicationException e) {
+            // Keep the status of the error (ex 400 if a related entity is not found)
+            throw e;
         } catch (ODataException e) {
             throw new ODataApplicationException(Messages.ERROR_UPDATING_ENTITY, HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
         }
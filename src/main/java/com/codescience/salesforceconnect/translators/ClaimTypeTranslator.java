@@ -1,14 +1,8 @@
 package com.codescience.salesforceconnect.translators;
 
-import com.codescience.salesforceconnect.entities.BaseEntity;
 import com.codescience.salesforceconnect.entities.Claim;
 import com.codescience.salesforceconnect.service.Constants;
 import com.codescience.salesforceconnect.service.OdataEdmProvider;
-import org.apache.olingo.commons.api.data.Entity;
-import org.apache.olingo.commons.api.data.Property;
-import org.apache.olingo.commons.api.data.ValueType;
-
-import java.math.RoundingMode;
 
 /**
  * Subclass of ODataTypeTranslator to handle claims Translation from Pojo Claim object to Olingo Entity Object.
@@ -17,25 +11,10 @@ import java.math.RoundingMode;
 public class ClaimTypeTranslator extends ODataTypeTranslator {
 
     /**
-     * Implementation method to translate the BaseEntity implementation (Claim) to an Odata Entity object
-     * @param object BaseEntity implementation
-     * @return Olingo entity for the Claim
+     * Constructor generates the accessors from the ODataProperty annotations of the Claim
      */
-    public Entity translate(BaseEntity object) {
-        Claim claim = (Claim) object;
-        Entity entity = new Entity();
-
-        entity.addProperty(new Property(null, Constants.ID, ValueType.PRIMITIVE, claim.getId()));
-        entity.addProperty(new Property(null, Constants.CLAIM_DATE, ValueType.PRIMITIVE, claim.getClaimDate()));
-        entity.addProperty(new Property(null, Constants.CLAIM_REASON, ValueType.PRIMITIVE, claim.getClaimReason()));
-        entity.addProperty(new Property(null, Constants.CLAIM_APPROVED, ValueType.PRIMITIVE, claim.isApproved()));
-        if (claim.getClaimAmount() != null) {
-            entity.addProperty(new Property(null, Constants.CLAIM_AMOUNT, ValueType.PRIMITIVE, claim.getClaimAmount().setScale(0, RoundingMode.HALF_EVEN)));
-        }
-        entity.addProperty(new Property(null, Constants.CLAIM_POLICY_ID, ValueType.PRIMITIVE, claim.getPolicy().getId()));
-        entity.setType(OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString());
-        entity.setId(createId(entity, Constants.ID));
-        return entity;
+    public ClaimTypeTranslator() {
+        super(Claim.class);
     }
 
     /**
@@ -47,11 +26,11 @@ public class ClaimTypeTranslator extends ODataTypeTranslator {
     }
 
     /**
-     * Each translator will return the appropriate class name of the BaseEntity it represents
-     * @return Name of the Claim Class
+     * Method returns the full qualified name of the Claim Entity Type
+     * @return String with the Claim Entity Type name
      */
     @Override
-    public String getClassName() {
-        return Claim.class.getName();
+    public String getEntityTypeName() {
+        return OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString();
     }
 }
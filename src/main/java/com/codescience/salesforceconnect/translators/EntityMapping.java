@@ -0,0 +1,496 @@
+package com.codescience.salesforceconnect.translators;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.entities.ODataProperty;
+import com.codescience.salesforceconnect.service.Constants;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Mapping between a BaseEntity implementation and its OData properties generated from the ODataProperty annotations.
+ * The constructor, getters and setters are bound through LambdaMetafactory once per class, so translating in either
+ * direction is a direct (JIT inlinable) call without reflection. Mappings are shared by all the translators of a class
+ */
+public final class EntityMapping {
+    private static final Map<Class<?>, EntityMapping> MAPPINGS = new ConcurrentHashMap<>();
+    private static final String GETTER_PREFIX = "get";
+    private static final String BOOLEAN_GETTER_PREFIX = "is";
+
+    private final Class<? extends BaseEntity> entityClass;
+    private final Supplier<BaseEntity> constructor;
+    private final Map<String, Function<BaseEntity, Object>> accessors;
+    private final Map<String, WritableProperty> writableProperties;
+    private final List<RelatedProperty> relatedProperties;
+    private final List<Function<BaseEntity, BaseEntity>> relatedEntities;
+    private final Set<String> nullOmittedProperties;
+
+    /**
+     * Constructor used to populate the mapping
+     * @param entityClass BaseEntity implementation
+     * @param constructor Creates a new instance of the class
+     * @param accessors Accessors by OData property name
+     * @param writableProperties Properties with a setter by OData property name
+     * @param relatedProperties relatedId properties
+     * @param nullOmittedProperties Names of the properties left out of the translated entity when they are null
+     */
+    private EntityMapping(Class<? extends BaseEntity> entityClass, Supplier<BaseEntity> constructor, Map<String, Function<BaseEntity, Object>> accessors,
+                          Map<String, WritableProperty> writableProperties, List<RelatedProperty> relatedProperties, Set<String> nullOmittedProperties) {
+        this.entityClass = entityClass;
+        this.constructor = constructor;
+        this.accessors = Collections.unmodifiableMap(accessors);
+        this.writableProperties = Collections.unmodifiableMap(writableProperties);
+        this.relatedProperties = Collections.unmodifiableList(relatedProperties);
+        List<Function<BaseEntity, BaseEntity>> getters = new ArrayList<>();
+        for (RelatedProperty relatedProperty : relatedProperties) {
+            getters.add(relatedProperty::get);
+        }
+        this.relatedEntities = Collections.unmodifiableList(getters);
+        this.nullOmittedProperties = Collections.unmodifiableSet(nullOmittedProperties);
+    }
+
+    /**
+     * Method returns the mapping of the class, generating it on first use
+     * @param entityClass BaseEntity implementation with ODataProperty annotations
+     * @return EntityMapping for the class
+     */
+    public static EntityMapping forClass(Class<? extends BaseEntity> entityClass) {
+        return MAPPINGS.computeIfAbsent(entityClass, mappedClass -> generate(entityClass));
+    }
+
+    /**
+     * Method returns the mapped class
+     * @return BaseEntity implementation
+     */
+    public Class<? extends BaseEntity> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * Method creates a new instance of the mapped class
+     * @return BaseEntity implementation
+     */
+    public BaseEntity newInstance() {
+        return constructor.get();
+    }
+
+    /**
+     * Method returns the accessors of the OData properties in property name order
+     * @return Map of property name to the function that reads the property
+     */
+    public Map<String, Function<BaseEntity, Object>> getAccessors() {
+        return accessors;
+    }
+
+    /**
+     * Method returns the OData properties that have a setter, they hold the state of the entity besides its relationships
+     * @return Map of property name to property
+     */
+    public Map<String, WritableProperty> getWritableProperties() {
+        return writableProperties;
+    }
+
+    /**
+     * Method returns the relatedId properties, the relationships of the entity to another entity
+     * @return List of related properties
+     */
+    public List<RelatedProperty> getRelatedProperties() {
+        return relatedProperties;
+    }
+
+    /**
+     * Method returns the getters of the related entities read by the relatedId properties. Computed properties may
+     * read them too (ex the total cost of a Policy reads its Product)
+     * @return List of functions returning the related entity, which can be null
+     */
+    public List<Function<BaseEntity, BaseEntity>> getRelatedEntities() {
+        return relatedEntities;
+    }
+
+    /**
+     * Method returns the properties whose annotation omits them from the translated entity when they are null
+     * @return Set of property names
+     */
+    public Set<String> getNullOmittedProperties() {
+        return nullOmittedProperties;
+    }
+
+    /**
+     * Method binds the getter of a navigation property, named after the property (ex getClaims for Claims)
+     * @param navigationName Name of the navigation property
+     * @return Function taking the entity and returning the related entity or the collection of related entities
+     * @throws IllegalArgumentException Exception thrown if the class has no getter for the navigation property
+     */
+    public Function<BaseEntity, Object> bindNavigationGetter(String navigationName) {
+        Method getter;
+        try {
+            getter = entityClass.getMethod(GETTER_PREFIX + navigationName);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(entityClass.getName() + " has no getter for the navigation property " + navigationName, e);
+        }
+        try {
+            return bindGetter(MethodHandles.lookup(), entityClass, getter);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to bind the navigation property " + navigationName + " of " + entityClass.getName(), e);
+        }
+    }
+
+    /**
+     * Method binds the setter of a navigation property, named after the property (ex setClaims for Claims)
+     * @param navigationName Name of the navigation property
+     * @return BiConsumer taking the entity and the related entity or the collection of related entities, null if the
+     * class has no setter for the navigation property
+     */
+    public BiConsumer<BaseEntity, Object> bindNavigationSetter(String navigationName) {
+        Method setter = findSetter(entityClass, navigationName);
+        if (setter == null) {
+            return null;
+        }
+        try {
+            return bindSetter(MethodHandles.lookup(), entityClass, setter);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to bind the navigation property " + navigationName + " of " + entityClass.getName(), e);
+        }
+    }
+
+    /**
+     * Method generates the mapping of the class from the ODataProperty annotations of its public getters
+     * @param entityClass BaseEntity implementation
+     * @return EntityMapping for the class
+     */
+    private static EntityMapping generate(Class<? extends BaseEntity> entityClass) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Map<String, Function<BaseEntity, Object>> accessors = new TreeMap<>();
+            Map<String, WritableProperty> writableProperties = new HashMap<>();
+            List<RelatedProperty> relatedProperties = new ArrayList<>();
+            Set<String> nullOmittedProperties = new HashSet<>();
+
+            for (Method getter : entityClass.getMethods()) {
+                ODataProperty oDataProperty = getter.getAnnotation(ODataProperty.class);
+                if ((oDataProperty == null) || (getter.getParameterCount() != 0)) {
+                    continue;
+                }
+                Function<BaseEntity, Object> getterFunction = bindGetter(lookup, entityClass, getter);
+                accessors.put(oDataProperty.value(), createAccessor(getterFunction, oDataProperty));
+                if (oDataProperty.omitNull()) {
+                    nullOmittedProperties.add(oDataProperty.value());
+                }
+
+                String beanName = getBeanName(getter);
+                Method setter = beanName == null ? null : findSetter(entityClass, beanName);
+                BiConsumer<BaseEntity, Object> setterFunction = setter == null ? null : bindSetter(lookup, entityClass, setter);
+                if (oDataProperty.relatedId()) {
+                    relatedProperties.add(new RelatedProperty(oDataProperty.value(), toAttributeName(beanName), getterFunction,
+                            setterFunction, getter.getReturnType()));
+                } else if (setter != null) {
+                    writableProperties.put(oDataProperty.value(), new WritableProperty(oDataProperty.value(), toAttributeName(beanName),
+                            getterFunction, setterFunction, setter.getParameterTypes()[0], oDataProperty.scale()));
+                }
+            }
+            return new EntityMapping(entityClass, bindConstructor(lookup, entityClass), accessors, writableProperties, relatedProperties, nullOmittedProperties);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to generate the OData mapping of " + entityClass.getName(), e);
+        }
+    }
+
+    /**
+     * Method binds the getter of a property
+     * @param lookup Lookup used to bind the getter
+     * @param entityClass BaseEntity implementation
+     * @param getter Getter method
+     * @return Function taking the entity and returning the (boxed) value
+     * @throws Throwable Exception thrown if the getter can't be bound
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<BaseEntity, Object> bindGetter(MethodHandles.Lookup lookup, Class<?> entityClass, Method getter) throws Throwable {
+        MethodHandle getterHandle = lookup.unreflect(getter);
+        return (Function<BaseEntity, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class), getterHandle,
+                MethodType.methodType(getter.getReturnType(), entityClass).wrap().changeParameterType(0, entityClass)).getTarget().invoke();
+    }
+
+    /**
+     * Method creates the accessor of an OData property, applying the rounding or the related id of the annotation
+     * @param getter Bound getter of the property
+     * @param oDataProperty Annotation of the getter
+     * @return Function that reads the OData property value
+     */
+    private static Function<BaseEntity, Object> createAccessor(Function<BaseEntity, Object> getter, ODataProperty oDataProperty) {
+        if (oDataProperty.relatedId()) {
+            return object -> {
+                BaseEntity related = (BaseEntity) getter.apply(object);
+                return related == null ? null : related.getId();
+            };
+        } else if (oDataProperty.scale() >= 0) {
+            int scale = oDataProperty.scale();
+            return object -> {
+                BigDecimal amount = (BigDecimal) getter.apply(object);
+                return amount == null ? null : amount.setScale(scale, RoundingMode.HALF_EVEN);
+            };
+        }
+        return getter;
+    }
+
+    /**
+     * Method binds the setter of a property
+     * @param lookup Lookup used to bind the setter
+     * @param entityClass BaseEntity implementation
+     * @param setter Setter method
+     * @return BiConsumer taking the entity and the value
+     * @throws Throwable Exception thrown if the setter can't be bound
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<BaseEntity, Object> bindSetter(MethodHandles.Lookup lookup, Class<?> entityClass, Method setter) throws Throwable {
+        MethodHandle setterHandle = lookup.unreflect(setter);
+        return (BiConsumer<BaseEntity, Object>) LambdaMetafactory.metafactory(lookup, "accept",
+                MethodType.methodType(BiConsumer.class), MethodType.methodType(void.class, Object.class, Object.class), setterHandle,
+                MethodType.methodType(void.class, entityClass, setter.getParameterTypes()[0]).wrap().changeReturnType(void.class).changeParameterType(0, entityClass)).getTarget().invoke();
+    }
+
+    /**
+     * Method binds the no argument constructor of the class
+     * @param lookup Lookup used to bind the constructor
+     * @param entityClass BaseEntity implementation
+     * @return Supplier of new instances
+     * @throws Throwable Exception thrown if the constructor can't be bound
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<BaseEntity> bindConstructor(MethodHandles.Lookup lookup, Class<?> entityClass) throws Throwable {
+        MethodHandle constructorHandle = lookup.findConstructor(entityClass, MethodType.methodType(void.class));
+        return (Supplier<BaseEntity>) LambdaMetafactory.metafactory(lookup, "get",
+                MethodType.methodType(Supplier.class), MethodType.methodType(Object.class), constructorHandle,
+                MethodType.methodType(entityClass)).getTarget().invoke();
+    }
+
+    /**
+     * Method returns the capitalized bean name of the getter (ex Active for isActive)
+     * @param getter Getter method
+     * @return Bean name or null if the method is not named like a getter
+     */
+    private static String getBeanName(Method getter) {
+        String getterName = getter.getName();
+        if (getterName.startsWith(GETTER_PREFIX)) {
+            return getterName.substring(GETTER_PREFIX.length());
+        } else if (getterName.startsWith(BOOLEAN_GETTER_PREFIX)) {
+            return getterName.substring(BOOLEAN_GETTER_PREFIX.length());
+        }
+        return null;
+    }
+
+    /**
+     * Method returns the attribute name of a bean name, the name of the field holding the property (ex active for Active)
+     * @param beanName Capitalized bean name, can be null
+     * @return Attribute name or null
+     */
+    private static String toAttributeName(String beanName) {
+        if ((beanName == null) || beanName.isEmpty()) {
+            return beanName;
+        }
+        return Character.toLowerCase(beanName.charAt(0)) + beanName.substring(1);
+    }
+
+    /**
+     * Method finds the public setter of the bean name (ex setActive for Active)
+     * @param entityClass BaseEntity implementation
+     * @param beanName Capitalized bean name
+     * @return Setter with one parameter or null if the property is read only
+     */
+    private static Method findSetter(Class<?> entityClass, String beanName) {
+        for (Method method : entityClass.getMethods()) {
+            if (method.getName().equals(Constants.SETTER_PREFIX + beanName) && (method.getParameterCount() == 1)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * OData property with a setter. The value read by get is the value held by the entity, before the scale is applied
+     */
+    public static final class WritableProperty {
+        private final String propertyName;
+        private final String attributeName;
+        private final Function<BaseEntity, Object> getter;
+        private final BiConsumer<BaseEntity, Object> setter;
+        private final Class<?> type;
+        private final boolean primitive;
+        private final boolean date;
+        private final int scale;
+
+        /**
+         * Constructor used to populate the property
+         * @param propertyName Name of the OData property
+         * @param attributeName Name of the Java bean property (ex claimDate)
+         * @param getter Bound getter taking the BaseEntity
+         * @param setter Bound setter taking the BaseEntity and the value
+         * @param type Type of the setter parameter
+         * @param scale Scale the value is exposed with, -1 if it is exposed as is
+         */
+        private WritableProperty(String propertyName, String attributeName, Function<BaseEntity, Object> getter,
+                                 BiConsumer<BaseEntity, Object> setter, Class<?> type, int scale) {
+            this.propertyName = propertyName;
+            this.attributeName = attributeName;
+            this.getter = getter;
+            this.setter = setter;
+            this.type = type;
+            this.primitive = type.isPrimitive();
+            this.date = Date.class.equals(type);
+            this.scale = scale;
+        }
+
+        /**
+         * Method returns the name of the OData property
+         * @return Property name
+         */
+        public String getPropertyName() {
+            return propertyName;
+        }
+
+        /**
+         * Method returns the name of the Java bean property, the name of the field holding the value (ex claimDate)
+         * @return Attribute name
+         */
+        public String getAttributeName() {
+            return attributeName;
+        }
+
+        /**
+         * Method returns the type of the setter parameter
+         * @return Class of the property, a primitive class for primitive properties
+         */
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * Method returns true if the setter takes a primitive, it can't be set to null
+         * @return true for primitive properties
+         */
+        public boolean isPrimitive() {
+            return primitive;
+        }
+
+        /**
+         * Method reads the value held by the BaseEntity
+         * @param baseEntity BaseEntity implementation to read
+         * @return Value of the property, can be null
+         */
+        public Object get(BaseEntity baseEntity) {
+            return getter.apply(baseEntity);
+        }
+
+        /**
+         * Method sets the value on the BaseEntity. Dates are deserialized by Olingo as Calendars, they are converted
+         * for Date properties
+         * @param baseEntity BaseEntity implementation to update
+         * @param value Value to set, can be null
+         */
+        public void set(BaseEntity baseEntity, Object value) {
+            if (date && (value instanceof Calendar)) {
+                value = ((Calendar) value).getTime();
+            }
+            setter.accept(baseEntity, value);
+        }
+
+        /**
+         * Method returns the value exposed through OData for a value held by an entity, applying the scale of the property
+         * @param value Value of the property, can be null
+         * @return Value returned by the accessor of the property
+         */
+        public Object toODataValue(Object value) {
+            if ((scale >= 0) && (value instanceof BigDecimal)) {
+                return ((BigDecimal) value).setScale(scale, RoundingMode.HALF_EVEN);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * relatedId property, the OData property holds the id of the entity returned by the getter
+     */
+    public static final class RelatedProperty {
+        private final String propertyName;
+        private final String attributeName;
+        private final Function<BaseEntity, Object> getter;
+        private final BiConsumer<BaseEntity, Object> setter;
+        private final Class<?> relatedClass;
+
+        /**
+         * Constructor used to populate the property
+         * @param propertyName Name of the OData property
+         * @param attributeName Name of the Java bean property holding the related entity (ex policy)
+         * @param getter Bound getter returning the related entity
+         * @param setter Bound setter taking the related entity, null if the relationship can't be set
+         * @param relatedClass Class of the related entity
+         */
+        private RelatedProperty(String propertyName, String attributeName, Function<BaseEntity, Object> getter,
+                                BiConsumer<BaseEntity, Object> setter, Class<?> relatedClass) {
+            this.propertyName = propertyName;
+            this.attributeName = attributeName;
+            this.getter = getter;
+            this.setter = setter;
+            this.relatedClass = relatedClass;
+        }
+
+        /**
+         * Method returns the name of the OData property holding the id of the related entity
+         * @return Property name
+         */
+        public String getPropertyName() {
+            return propertyName;
+        }
+
+        /**
+         * Method returns the name of the Java bean property holding the related entity (ex policy)
+         * @return Attribute name
+         */
+        public String getAttributeName() {
+            return attributeName;
+        }
+
+        /**
+         * Method returns the class of the related entity
+         * @return BaseEntity implementation
+         */
+        public Class<?> getRelatedClass() {
+            return relatedClass;
+        }
+
+        /**
+         * Method returns true if the related entity can be set
+         * @return true if the entity has a setter for the relationship
+         */
+        public boolean isSettable() {
+            return setter != null;
+        }
+
+        /**
+         * Method returns the related entity
+         * @param baseEntity BaseEntity implementation to read
+         * @return Related entity, can be null
+         */
+        public BaseEntity get(BaseEntity baseEntity) {
+            return (BaseEntity) getter.apply(baseEntity);
+        }
+
+        /**
+         * Method sets the related entity. It must only be called if isSettable returns true
+         * @param baseEntity BaseEntity implementation to update
+         * @param related Related entity, can be null
+         */
+        public void set(BaseEntity baseEntity, BaseEntity related) {
+            setter.accept(baseEntity, related);
+        }
+    }
+}
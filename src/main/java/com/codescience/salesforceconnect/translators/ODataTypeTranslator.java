@@ -1,18 +1,21 @@
 package com.codescience.salesforceconnect.translators;
 
 import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.translators.EntityMapping.RelatedProperty;
+import com.codescience.salesforceconnect.translators.EntityMapping.WritableProperty;
 import com.codescience.salesforceconnect.service.Constants;
 import com.codescience.salesforceconnect.service.Messages;
 import com.codescience.salesforceconnect.util.Util;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
 import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * Base Class for the Various Type Translators. Each Translator implementation will convert a Java POJO to an Olingo Entity
@@ -20,155 +23,217 @@ import java.util.List;
  */
 public abstract class ODataTypeTranslator {
 
+    private final Map<String, Function<BaseEntity, Object>> propertyAccessors = new LinkedHashMap<>();
+    private final EntityMapping entityMapping;
+
+    /**
+     * Constructor registers the accessors generated from the ODataProperty annotations of the BaseEntity implementation
+     * @param entityClass BaseEntity implementation translated by the subclass
+     */
+    protected ODataTypeTranslator(Class<? extends BaseEntity> entityClass) {
+        this.entityMapping = EntityMapping.forClass(entityClass);
+        propertyAccessors.putAll(entityMapping.getAccessors());
+    }
+
     /**
-     * Base abstract method to translate a BaseEntity object to an Olingo Entity. This must be implemented by the subclasses
+     * Method translates a BaseEntity object to an Olingo Entity. Each property generated from the annotations or registered
+     * by the subclass through addPropertyAccessor is added to the entity
      * @param object Subclass of BaseEntity
      * @return Olingo entity
      */
-    public abstract Entity translate(BaseEntity object);
+    public Entity translate(BaseEntity object) {
+        return translate(object, propertyAccessors.entrySet());
+    }
+
+    /**
+     * Method returns a translation restricted to the properties passed in (ex the $select list), so the other
+     * properties, including the computed ones such as TotalCostAmount, are neither read nor allocated. The Id is always
+     * translated as the entity id is built from it
+     * @param propertyNames Names of the OData properties to translate, null to translate every property
+     * @return Function translating a BaseEntity object to an Olingo Entity with the selected properties
+     */
+    public Function<BaseEntity, Entity> getProjection(Collection<String> propertyNames) {
+        if (propertyNames == null) {
+            return this::translate;
+        }
+        List<Map.Entry<String, Function<BaseEntity, Object>>> selected = new ArrayList<>(propertyNames.size() + 1);
+        for (Map.Entry<String, Function<BaseEntity, Object>> accessor : propertyAccessors.entrySet()) {
+            if (accessor.getKey().equals(Constants.ID) || propertyNames.contains(accessor.getKey())) {
+                selected.add(accessor);
+            }
+        }
+        return object -> translate(object, selected);
+    }
+
+    /**
+     * Method translates a BaseEntity object to an Olingo Entity with the properties of the accessors passed in. The null
+     * properties whose annotation sets omitNull (ex a Total Cost without Product) are left out of the entity
+     * @param object Subclass of BaseEntity
+     * @param accessors Accessors of the properties to translate, in the order of the properties of the entity
+     * @return Olingo entity
+     */
+    private Entity translate(BaseEntity object, Collection<Map.Entry<String, Function<BaseEntity, Object>>> accessors) {
+        Entity entity = new Entity();
+        Set<String> nullOmittedProperties = entityMapping.getNullOmittedProperties();
+
+        for (Map.Entry<String, Function<BaseEntity, Object>> accessor : accessors) {
+            Object value = accessor.getValue().apply(object);
+            if ((value != null) || !nullOmittedProperties.contains(accessor.getKey())) {
+                entity.addProperty(new Property(null, accessor.getKey(), ValueType.PRIMITIVE, value));
+            }
+        }
+        entity.setType(getEntityTypeName());
+        entity.setId(createId(entity, Constants.ID));
+        return entity;
+    }
+
+    /**
+     * Method returns the accessor that reads the OData property from the BaseEntity implementation. The accessor returns
+     * the same value that translate puts on the Olingo entity, so it can be used to evaluate filters against the Pojo directly
+     * @param propertyName Name of the OData property
+     * @return Function that extracts the property value or null if the property is not known
+     */
+    public Function<BaseEntity, Object> getPropertyAccessor(String propertyName) {
+        return propertyAccessors.get(propertyName);
+    }
+
+    /**
+     * Method returns the getters of the entities the translated properties are read from besides the entity itself
+     * @return List of functions returning a related entity, which can be null
+     */
+    public List<Function<BaseEntity, BaseEntity>> getRelatedEntityAccessors() {
+        return entityMapping.getRelatedEntities();
+    }
+
+    /**
+     * Method returns the mapping generated from the ODataProperty annotations of the translated class
+     * @return EntityMapping of the BaseEntity implementation
+     */
+    public EntityMapping getEntityMapping() {
+        return entityMapping;
+    }
+
+    /**
+     * Method registers the accessor for an OData property that can't be described with an ODataProperty annotation.
+     * Subclasses call it from their constructor
+     * @param propertyName Name of the OData property
+     * @param accessor Function that extracts the property value from the BaseEntity implementation
+     */
+    protected void addPropertyAccessor(String propertyName, Function<BaseEntity, Object> accessor) {
+        propertyAccessors.put(propertyName, accessor);
+    }
 
     /**
      * Method translates an OData entity to a Backend object type
      * @param entity OData Entity
      * @param forceNulls if true will override existing values with nulls if false it will leave values as is
+     * @param resolver Resolver of the entities referenced by the relatedId properties
      * @return Subclass of BaseEntity
      * @throws ODataException if an error occurred
      */
-    public BaseEntity translate(Entity entity, boolean forceNulls) throws ODataException {
-        try {
-            // Ignore warning about class cast check, it will be caught by exception and thrown
-            Class<BaseEntity> baseEntityClass = (Class<BaseEntity>) Class.forName(getClassName());
-            BaseEntity baseEntity = baseEntityClass.getDeclaredConstructor().newInstance();
-            return merge(entity, baseEntity, forceNulls);
-        } catch (Exception e) {
-            throw new ODataException(Messages.ERROR_MERGING_ENTITIES, e);
-        }
+    public BaseEntity translate(Entity entity, boolean forceNulls, RelatedEntityResolver resolver) throws ODataException {
+        return merge(entity, entityMapping.newInstance(), forceNulls, resolver);
     }
 
     /**
      * Method will merge the changes from the entity into the Base Entity object passed in. It will only override
-     * parameters passed in. If force nulls is set a null passed in will null out the value otherwise it will ignore the null
+     * parameters passed in. If force nulls is set a null passed in will null out the value otherwise it will ignore the null.
+     * The relatedId properties (ex PolicyId) are set by resolving the entity with the id passed in
      * @param entity OData Entity with source data
      * @param baseEntity Back end entity with existing data
      * @param forceNulls if true a null passed in will override the content
+     * @param resolver Resolver of the entities referenced by the relatedId properties
      * @return BaseEntity update with new data
+     * @throws ODataApplicationException if a relatedId references an entity that doesn't exist or can't be set
      * @throws ODataException Exception if making a change occurred (ex method mismatch)
      */
-    public BaseEntity merge(Entity entity, BaseEntity baseEntity, boolean forceNulls) throws ODataException {
+    public BaseEntity merge(Entity entity, BaseEntity baseEntity, boolean forceNulls, RelatedEntityResolver resolver)
+            throws ODataException {
+        mergeRelatedProperties(entity, baseEntity, forceNulls, resolver);
         try {
-            // Ignore warning about class cast check, it will be caught by exception and thrown
-            Class<BaseEntity> baseEntityClass = (Class<BaseEntity>) Class.forName(getClassName());
-            List<Method> setMethods = new ArrayList<>();
-            List<Method> methodsToNull = new ArrayList<>();
-
-            populateMethods(setMethods, methodsToNull, baseEntityClass);
-            populateProperties(setMethods, methodsToNull, entity, baseEntity);
-            populateNulls(methodsToNull, baseEntity, forceNulls);
-
-            return baseEntity;
-        } catch (Exception e) {
-            throw new ODataException(Messages.ERROR_MERGING_ENTITIES, e);
-        }
-    }
-
-    /**
-     * Method Populates the setMethods and the methods to null lists with all the setters on the BaseEntityClass implementation
-     * @param setMethods List of setterMethods
-     * @param methodsToNull List of methods to null, will be reduced for all setters that populate a value
-     * @param baseEntityClass Class implementation of the BaseEntityClass to get the methods
-     */
-    private void populateMethods(List<Method> setMethods, List<Method> methodsToNull, Class<BaseEntity> baseEntityClass) {
-        // Track all the setter methods, ignore the rest
-        // Track all the relevant setters so they can be set to null if needed
-        for (Method method : baseEntityClass.getMethods()) {
-            if (method.getName().startsWith(Constants.SETTER_PREFIX)) {
-                setMethods.add(method);
-                methodsToNull.add(method);
-            }
-        }
-    }
+            Map<String, WritableProperty> setters = entityMapping.getWritableProperties();
+            Set<String> propertiesSet = forceNulls ? new HashSet<>() : null;
 
-    /**
-     * Method will populate the Properties on the BaseEntity with the Values from the Entity object
-     * @param setMethods List of Setter Methods
-     * @param methodsToNull List of Setter Methods to set params to null
-     * @param entity Source Entity with the data
-     * @param baseEntity BaseEntity implementation with the back end data
-     * @throws IllegalAccessException Thrown if trying to illegally access a method
-     * @throws InvocationTargetException Thrown in the case of an invocation error
-     */
-    private void populateProperties(List<Method> setMethods, List<Method> methodsToNull, Entity entity, BaseEntity baseEntity) throws IllegalAccessException, InvocationTargetException {
-        // Loop through each property, if there is a setter that matches the property name set the value
-        for (Property property : entity.getProperties()) {
-            for (Method method : setMethods) {
-                if (method.getName().equals(Constants.SETTER_PREFIX+property.getName())) {
+            // Set the properties passed in that have a setter
+            for (Property property : entity.getProperties()) {
+                WritableProperty setter = setters.get(property.getName());
+                if (setter != null) {
+                    if (forceNulls) {
+                        propertiesSet.add(property.getName());
+                    }
                     Object value = property.getValue();
-                    Object[] values = {value};
-                    methodsToNull.remove(method);
-
-                    if (!skipNull(method, value) && method.canAccess(baseEntity)) {
-                        method.invoke(baseEntity, values);
+                    if (!skipNull(setter, value)) {
+                        setter.set(baseEntity, value);
                     }
-                    break;
                 }
             }
-        }
-    }
 
-    /**
-     * Method will set nulls to any setter in the BaseEntity that wasn't passed in to the Entity. This occurs during PUTs
-     * @param methodsToNull List of methods whose parameter should be set to null
-     * @param baseEntity Base Entity implementation that contains the back end data
-     * @param forceNulls if true it will force nulls on unset parameters - otherwise it will skip
-     * @throws IllegalAccessException Thrown if trying to illegally access a method
-     * @throws InvocationTargetException Thrown in the case of an invocation error
-     */
-    private void populateNulls(List<Method> methodsToNull, BaseEntity baseEntity, boolean forceNulls) throws IllegalAccessException, InvocationTargetException {
-        // Null out parameters that weren't set if this was a PUT.
-        // Only null out if they are not primitives
-        if(forceNulls && !methodsToNull.isEmpty()) {
-            for (Method method : methodsToNull) {
-                Object[] values = {null};
-                if (!isPrimitiveParam(method) && method.canAccess(baseEntity)) {
-                    method.invoke(baseEntity, values);
+            // Null out parameters that weren't set if this was a PUT. Only null out if they are not primitives
+            if (forceNulls) {
+                for (WritableProperty setter : setters.values()) {
+                    if (!setter.isPrimitive() && !propertiesSet.contains(setter.getPropertyName())) {
+                        setter.set(baseEntity, null);
+                    }
                 }
             }
+            return baseEntity;
+        } catch (RuntimeException e) {
+            throw new ODataException(Messages.ERROR_MERGING_ENTITIES, e);
         }
     }
 
     /**
-     * Method will return true if the input is a primitive. Should not attempt to null it
-     * @param method Method to inspect
-     * @return true if is primitive otherwise false
+     * Method sets the relationships of the relatedId properties passed in. The referenced entities are all resolved before
+     * any relationship is set, so a rejected write leaves the Base Entity object unchanged. If force nulls is set the
+     * relationships that weren't passed in are removed
+     * @param entity OData Entity with source data
+     * @param baseEntity Back end entity with existing data
+     * @param forceNulls if true the relationships not passed in are removed
+     * @param resolver Resolver of the entities referenced by the relatedId properties
+     * @throws ODataApplicationException if a referenced entity doesn't exist or the relationship can't be set
+     * @throws ODataException if a referenced entity can't be read
      */
-    private boolean isPrimitiveParam(Method method) {
-        for (Class<?> paramClass : method.getParameterTypes()) {
-            if (paramClass.isPrimitive()) {
-                return true;
+    private void mergeRelatedProperties(Entity entity, BaseEntity baseEntity, boolean forceNulls,
+                                        RelatedEntityResolver resolver) throws ODataException {
+        Map<RelatedProperty, BaseEntity> related = new LinkedHashMap<>();
+        for (RelatedProperty relatedProperty : entityMapping.getRelatedProperties()) {
+            Property property = entity.getProperty(relatedProperty.getPropertyName());
+            if (property == null) {
+                if (forceNulls && relatedProperty.isSettable()) {
+                    related.put(relatedProperty, null);
+                }
+                continue;
+            }
+            if (!relatedProperty.isSettable()) {
+                throw new ODataApplicationException(Messages.ERROR_RELATED_PROPERTY_NOT_SETTABLE + relatedProperty.getPropertyName(),
+                        HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+            }
+            BaseEntity relatedEntity = null;
+            if (property.getValue() != null) {
+                String relatedId = property.getValue().toString();
+                relatedEntity = resolver.resolve(relatedProperty.getRelatedClass(), relatedId);
+                if (relatedEntity == null) {
+                    throw new ODataApplicationException(Messages.ERROR_RELATED_ENTITY_NOT_FOUND + relatedProperty.getPropertyName()
+                            + " = " + relatedId, HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+                }
             }
+            related.put(relatedProperty, relatedEntity);
+        }
+        for (Map.Entry<RelatedProperty, BaseEntity> relationship : related.entrySet()) {
+            relationship.getKey().set(baseEntity, relationship.getValue());
         }
-        return false;
     }
 
     /**
-     * Method will return true if the method is such that it should skip being set to null
-     * @param method Method whose parameters should be evaluated
+     * Method will return true if the setter is such that it should skip being set to null
+     * @param setter Setter of the property
      * @param value Value to be set
-     * @return true if this method's params should not be null, otherwise false
+     * @return true if this setter's param should not be null, otherwise false
      */
-    private boolean skipNull(Method method, Object value) {
+    private boolean skipNull(WritableProperty setter, Object value) {
         // Can't null out ID
         // Don't try to set null to a primitive
-        boolean returnValue = false;
-        if (value == null) {
-            if (method.getName().equals(Constants.SETTER_PREFIX + Constants.ID)) {
-                returnValue = true;
-            }
-            if (isPrimitiveParam(method)) {
-                returnValue = true;
-            }
-        }
-        return returnValue;
+        return (value == null) && (setter.isPrimitive() || setter.getPropertyName().equals(Constants.ID));
     }
 
     /**
@@ -188,8 +253,24 @@ public abstract class ODataTypeTranslator {
     public abstract String getEntitySetName();
 
     /**
-     * Each translator will return the appropriate class name of the BaseEntity it represents
-     * @return Name of the class of the BaseEntity implementation
+     * Each translator will return the full qualified name of the Entity Type it produces
+     * @return String that is the full qualified entity type name
      */
-    protected abstract String getClassName();
+    public abstract String getEntityTypeName();
+
+    /**
+     * Resolver of the entities referenced by the relatedId properties, each storage looks them up in its own backend
+     */
+    @FunctionalInterface
+    public interface RelatedEntityResolver {
+
+        /**
+         * Method returns the entity with the id passed in
+         * @param relatedClass BaseEntity implementation of the referenced entity
+         * @param id Primary key of the referenced entity
+         * @return Referenced entity or null if there is none
+         * @throws ODataException if the entity can't be read
+         */
+        BaseEntity resolve(Class<?> relatedClass, String id) throws ODataException;
+    }
 }
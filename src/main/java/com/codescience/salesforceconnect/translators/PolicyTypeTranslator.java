@@ -1,14 +1,8 @@
 package com.codescience.salesforceconnect.translators;
 
-import com.codescience.salesforceconnect.entities.BaseEntity;
 import com.codescience.salesforceconnect.entities.Policy;
 import com.codescience.salesforceconnect.service.Constants;
 import com.codescience.salesforceconnect.service.OdataEdmProvider;
-import org.apache.olingo.commons.api.data.Entity;
-import org.apache.olingo.commons.api.data.Property;
-import org.apache.olingo.commons.api.data.ValueType;
-
-import java.math.RoundingMode;
 
 /**
  * Subclass of ODataTypeTranslator to handle Policy Translation from Pojo Policy object to Olingo Entity Object.
@@ -17,27 +11,10 @@ import java.math.RoundingMode;
 public class PolicyTypeTranslator extends ODataTypeTranslator {
 
     /**
-     * Implementation method to translate the BaseEntity implementation (Policy) to an Odata Entity object
-     * @param object BaseEntity implementation (Policy)
-     * @return Olingo entity for the Policy
+     * Constructor generates the accessors from the ODataProperty annotations of the Policy
      */
-    public Entity translate(BaseEntity object) {
-        Policy policy = (Policy) object;
-        Entity entity = new Entity();
-
-        entity.addProperty(new Property(null, Constants.ID, ValueType.PRIMITIVE, policy.getId()));
-        entity.addProperty(new Property(null, Constants.NUMBER_OF_UNITS, ValueType.PRIMITIVE, policy.getNumberOfUnits()));
-        entity.addProperty(new Property(null, Constants.POLICY_END_DATE, ValueType.PRIMITIVE, policy.getPolicyEndDate()));
-        entity.addProperty(new Property(null, Constants.POLICY_HOLDER_ID, ValueType.PRIMITIVE, policy.getPolicyHolderId()));
-        entity.addProperty(new Property(null, Constants.POLICY_START_DATE, ValueType.PRIMITIVE, policy.getPolicyStartDate()));
-        if (policy.getTotalCost() != null) {
-            entity.addProperty(new Property(null, Constants.TOTAL_COST_AMOUNT, ValueType.PRIMITIVE, policy.getTotalCost().setScale(0, RoundingMode.HALF_EVEN)));
-        }
-        entity.addProperty(new Property(null, "Active", ValueType.PRIMITIVE, policy.isActive()));
-        entity.addProperty(new Property(null, "ProductId", ValueType.PRIMITIVE, policy.getProduct().getId()));
-        entity.setType(OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString());
-        entity.setId(createId(entity, Constants.ID));
-        return entity;
+    public PolicyTypeTranslator() {
+        super(Policy.class);
     }
 
     /**
@@ -49,11 +26,11 @@ public class PolicyTypeTranslator extends ODataTypeTranslator {
     }
 
     /**
-     * Each translator will return the appropriate class name of the BaseEntity it represents
-     * @return Name of the Policy Class
+     * Method returns the full qualified name of the Policy Entity Type
+     * @return String with the Policy Entity Type name
      */
     @Override
-    public String getClassName() {
-        return Policy.class.getName();
+    public String getEntityTypeName() {
+        return OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString();
     }
 }
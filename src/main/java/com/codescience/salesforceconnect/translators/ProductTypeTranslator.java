@@ -1,14 +1,8 @@
 package com.codescience.salesforceconnect.translators;
 
-import com.codescience.salesforceconnect.entities.BaseEntity;
 import com.codescience.salesforceconnect.entities.Product;
 import com.codescience.salesforceconnect.service.Constants;
 import com.codescience.salesforceconnect.service.OdataEdmProvider;
-import org.apache.olingo.commons.api.data.Entity;
-import org.apache.olingo.commons.api.data.Property;
-import org.apache.olingo.commons.api.data.ValueType;
-
-import java.math.RoundingMode;
 
 /**
  * Subclass of ODataTypeTranslator to handle Product Translation from Pojo Product object to Olingo Entity Object.
@@ -17,24 +11,10 @@ import java.math.RoundingMode;
 public class ProductTypeTranslator extends ODataTypeTranslator {
 
     /**
-     * Implementation method to translate the BaseEntity implementation (Product) to an Odata Entity object
-     * @param object BaseEntity implementation (Product)
-     * @return Olingo entity for the Product
+     * Constructor generates the accessors from the ODataProperty annotations of the Product
      */
-    public Entity translate(BaseEntity object) {
-        Product product = (Product) object;
-        Entity entity = new Entity();
-
-        entity.addProperty(new Property(null, Constants.ID, ValueType.PRIMITIVE, product.getId()));
-        entity.addProperty(new Property(null, Constants.PRODUCT_NAME, ValueType.PRIMITIVE, product.getProductName()));
-        entity.addProperty(new Property(null, Constants.PRODUCT_TYPE, ValueType.PRIMITIVE, product.getProductType()));
-        if (product.getCostPerUnit() != null) {
-            entity.addProperty(new Property(null, Constants.COST_PER_UNIT, ValueType.PRIMITIVE, product.getCostPerUnit().setScale(0, RoundingMode.HALF_EVEN)));
-        }
-        entity.addProperty(new Property(null, Constants.PRODUCT_ACTIVE, ValueType.PRIMITIVE, product.isActive()));
-        entity.setType(OdataEdmProvider.ET_PRODUCT_FQN.getFullQualifiedNameAsString());
-        entity.setId(createId(entity, Constants.ID));
-        return entity;
+    public ProductTypeTranslator() {
+        super(Product.class);
     }
 
     /**
@@ -46,11 +26,11 @@ public class ProductTypeTranslator extends ODataTypeTranslator {
     }
 
     /**
-     * Each translator will return the appropriate class name of the BaseEntity it represents
-     * @return Name of the Product Class
+     * Method returns the full qualified name of the Product Entity Type
+     * @return String with the Product Entity Type name
      */
     @Override
-    public String getClassName() {
-        return Product.class.getName();
+    public String getEntityTypeName() {
+        return OdataEdmProvider.ET_PRODUCT_FQN.getFullQualifiedNameAsString();
     }
 }
@@ -0,0 +1,95 @@
+package com.codescience.salesforceconnect.util;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * Comparator of the String primary keys that orders numeric keys by value ("2000" before "10000") without parsing them.
+ * Numeric keys sort before the other keys, which are compared as Strings. Numeric keys with the same value but different
+ * leading zeros are ordered as Strings so the order stays consistent with equals (the keys are map keys)
+ */
+public final class KeyComparator implements Comparator<String>, Serializable {
+
+    public static final KeyComparator INSTANCE = new KeyComparator();
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Private Constructor, use INSTANCE
+     */
+    private KeyComparator() {
+
+    }
+
+    /**
+     * Method compares two primary keys
+     * @param key1 the first key to be compared.
+     * @param key2 the second key to be compared.
+     * @return 0 if equal, a negative value if key1 sorts first, a positive value otherwise
+     */
+    @Override
+    public int compare(String key1, String key2) {
+        boolean numeric1 = isNumeric(key1);
+        boolean numeric2 = isNumeric(key2);
+        if (numeric1 != numeric2) {
+            return numeric1 ? -1 : 1;
+        } else if (!numeric1) {
+            return key1.compareTo(key2);
+        }
+
+        // Without the leading zeros the longer number is the larger one, numbers of the same length compare as Strings
+        int start1 = skipLeadingZeros(key1);
+        int start2 = skipLeadingZeros(key2);
+        int length1 = key1.length() - start1;
+        int length2 = key2.length() - start2;
+        if (length1 != length2) {
+            return length1 < length2 ? -1 : 1;
+        }
+        for (int i = 0; i < length1; i++) {
+            int result = key1.charAt(start1 + i) - key2.charAt(start2 + i);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return key1.compareTo(key2);
+    }
+
+    /**
+     * Method returns true if the key only contains digits
+     * @param key Primary key
+     * @return true if the key is a number
+     */
+    private static boolean isNumeric(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method returns the index of the first significant digit of a numeric key
+     * @param key Numeric primary key
+     * @return Index of the first digit that is not a leading zero, the last digit if the key is zero
+     */
+    private static int skipLeadingZeros(String key) {
+        int start = 0;
+        while ((start < key.length() - 1) && (key.charAt(start) == '0')) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Method keeps the singleton when the comparator is deserialized (ex with a serialized TreeSet)
+     * @return INSTANCE
+     */
+    private Object readResolve() {
+        return INSTANCE;
+    }
+}
@@ -9,15 +9,22 @@ import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
 import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfo;
 import org.apache.olingo.server.api.uri.UriParameter;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.SelectItem;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.regex.Matcher;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -26,6 +33,7 @@ import java.util.regex.Pattern;
  */
 public class Util {
     private static final Logger LOG = LoggerFactory.getLogger(Util.class);
+    private static final Pattern ID_PATTERN = Pattern.compile("-?\\d+");
 
     /**
      * Private Constructor to ensure static only
@@ -104,8 +112,7 @@ public class Util {
      */
     public static String parseId(URI uri) {
         LOG.info("In parseId");
-        Pattern p = Pattern.compile("-?\\d+");
-        Matcher m = p.matcher(uri.getRawPath());
+        Matcher m = ID_PATTERN.matcher(uri.getRawPath());
 
         if(m.find()) {
             return m.group();
@@ -115,6 +122,30 @@ public class Util {
         }
     }
 
+    /**
+     * Method returns the names of the properties listed in the $select option, which are the only properties the
+     * translators need to build (ex $select=Id,PolicyName returns Id and PolicyName)
+     * @param uriInfo URI Info object containing the select option
+     * @return Set of property names, null if there is no $select or it selects every property (*)
+     */
+    public static Set<String> getSelectedProperties(UriInfo uriInfo) {
+        SelectOption selectOption = uriInfo == null ? null : uriInfo.getSelectOption();
+        if ((selectOption == null) || selectOption.getSelectItems().isEmpty()) {
+            return null;
+        }
+        Set<String> propertyNames = new HashSet<>();
+        for (SelectItem selectItem : selectOption.getSelectItems()) {
+            if (selectItem.isStar() || (selectItem.getResourcePath() == null)) {
+                return null;
+            }
+            List<UriResource> resourceParts = selectItem.getResourcePath().getUriResourceParts();
+            if (!resourceParts.isEmpty() && (resourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+                propertyNames.add(((UriResourcePrimitiveProperty) resourceParts.get(0)).getProperty().getName());
+            }
+        }
+        return propertyNames;
+    }
+
     /**
      * This method will create an entity using the Entity type. The ID property name and the navigation name
      * For example for a Product this might return Product(1)
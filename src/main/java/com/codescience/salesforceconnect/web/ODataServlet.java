@@ -21,20 +21,31 @@ import java.io.IOException;
 import java.util.ArrayList;
 
 /**
- * Basic Servlet used to handle OData requests
+ * Basic Servlet used to handle OData requests. The OData instance, the Service Metadata (EDM) and the processors
+ * are built once when the servlet is initialized and shared by all requests
  */
 public class ODataServlet extends HttpServlet {
     private static final Logger LOG = LoggerFactory.getLogger(ODataServlet.class);
 
+    private transient volatile HandlerContext handlerContext;
+
     /**
-     * Method handles the OData request and generates a response
-     * @param req HttpServletRequest with input Data
-     * @param resp HttpServletResponse contains output
-     * @throws ServletException Exception thrown if a Servlet Error occurs
-     * @throws IOException Exception thrown if a IOException occurs
+     * Method initializes the OData pipeline (OData, Service Metadata and Processors) from the Spring application context
+     * @throws ServletException Exception thrown if the pipeline could not be built
      */
     @Override
-    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    public void init() throws ServletException {
+        LOG.info("In init method");
+        reload();
+    }
+
+    /**
+     * Method rebuilds the OData pipeline. It should be called when the EDM Provider or the processors change.
+     * Requests in flight keep using the previous pipeline, new requests will use the rebuilt one
+     * @throws ServletException Exception thrown if the pipeline could not be built
+     */
+    public synchronized void reload() throws ServletException {
+        LOG.info("In reload method");
         try {
             // Extract the Spring Application Context from the servlet context
             ServletContext servletContext = getServletContext();
@@ -43,12 +54,35 @@ public class ODataServlet extends HttpServlet {
             // Extract the EDM Provider from the Spring application context (see applicationContext.xml)
             CsdlEdmProvider provider = (CsdlEdmProvider) ctx.getBean(Constants.EDM_PROVIDER);
 
-            // create odata handler and configure it with EdmProvider and Processor. Use Spring configuration to request processors
+            // Create the odata instance and the service metadata. Use Spring configuration to request processors
             OData odata = OData.newInstance();
             ServiceMetadata edm = odata.createServiceMetadata(provider, new ArrayList<>());
-            ODataHttpHandler handler = odata.createHandler(edm);
-            handler.register((EntityCollectionProcessor) ctx.getBean(Constants.ENTITY_COLLECTION_PROCESSOR));
-            handler.register((EntityProcessor) ctx.getBean(Constants.ENTITY_PROCESSOR));
+            EntityCollectionProcessor entityCollectionProcessor = (EntityCollectionProcessor) ctx.getBean(Constants.ENTITY_COLLECTION_PROCESSOR);
+            EntityProcessor entityProcessor = (EntityProcessor) ctx.getBean(Constants.ENTITY_PROCESSOR);
+
+            this.handlerContext = new HandlerContext(odata, edm, entityCollectionProcessor, entityProcessor);
+        } catch (Exception e) {
+            LOG.error(Messages.SERVER_ERROR + "{}", e.getMessage(), e);
+            throw new ServletException(Messages.SERVER_ERROR + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Method handles the OData request and generates a response
+     * @param req HttpServletRequest with input Data
+     * @param resp HttpServletResponse contains output
+     * @throws ServletException Exception thrown if a Servlet Error occurs
+     * @throws IOException Exception thrown if a IOException occurs
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        try {
+            // The Olingo handler keeps per request state (uri info, last exception) so it is not shared between threads.
+            // Creating it is cheap as the service metadata and the processors are reused
+            HandlerContext context = this.handlerContext;
+            ODataHttpHandler handler = context.odata.createHandler(context.serviceMetadata);
+            handler.register(context.entityCollectionProcessor);
+            handler.register(context.entityProcessor);
 
             // let the handler do the work
             handler.process(req, resp);
@@ -57,4 +91,22 @@ public class ODataServlet extends HttpServlet {
             throw new ServletException(Messages.SERVER_ERROR + e.getMessage());
         }
     }
+
+    /**
+     * Immutable holder for the objects shared by all requests. It is swapped as a whole on reload
+     */
+    private static final class HandlerContext {
+        private final OData odata;
+        private final ServiceMetadata serviceMetadata;
+        private final EntityCollectionProcessor entityCollectionProcessor;
+        private final EntityProcessor entityProcessor;
+
+        private HandlerContext(OData odata, ServiceMetadata serviceMetadata,
+                               EntityCollectionProcessor entityCollectionProcessor, EntityProcessor entityProcessor) {
+            this.odata = odata;
+            this.serviceMetadata = serviceMetadata;
+            this.entityCollectionProcessor = entityCollectionProcessor;
+            this.entityProcessor = entityProcessor;
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package com.codescience.salesforceconnect.benchmark;
+
+import com.codescience.salesforceconnect.service.ODataTestClient;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+
+/**
+ * Timing helpers of the benchmarks. The benchmarks are main classes run by hand against the test classpath, they are
+ * not run by the build (ex java -Dorg.slf4j.simpleLogger.defaultLogLevel=warn -cp target/test-classes:target/classes:...
+ * com.codescience.salesforceconnect.benchmark.FilterPushdownBenchmark). Each operation is repeated after a warm up and
+ * reported as the mean time and the mean bytes allocated by the calling thread
+ */
+public final class Benchmark {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Benchmark() {
+    }
+
+    /**
+     * Method runs the operation warmups times, then iterations times and prints the mean time and allocation
+     * @param name Name printed with the results
+     * @param warmups Number of runs that are not measured
+     * @param iterations Number of measured runs
+     * @param operation Operation to measure
+     */
+    public static void run(String name, int warmups, int iterations, Runnable operation) {
+        for (int i = 0; i < warmups; i++) {
+            operation.run();
+        }
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf(Locale.ROOT, "%-60s %10.3f ms/op %12.1f KB/op%n", name, elapsed / 1e6 / iterations, allocated / 1024.0 / iterations);
+    }
+
+    /**
+     * Method returns the heap used by reachable objects, after a few full collections
+     * @return Used heap in bytes
+     */
+    public static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Method resets the peak usage of the heap pools holding the objects that survived a young collection
+     */
+    public static void resetTenuredPeak() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ((pool.getType() == MemoryType.HEAP) && pool.isCollectionUsageThresholdSupported() && !pool.getName().contains("Eden")) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Method returns the peak usage of the heap pools holding the objects that survived a young collection, since the
+     * last reset. Objects held for the whole response (ex a materialized collection) end up in these pools
+     * @return Peak usage in bytes
+     */
+    public static long tenuredPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ((pool.getType() == MemoryType.HEAP) && pool.isCollectionUsageThresholdSupported() && !pool.getName().contains("Eden")) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Method sends a GET request, discarding the body
+     * @param client Client of the storage
+     * @param path Path and query of the request
+     */
+    public static void get(ODataTestClient client, String path) {
+        int statusCode = client.get(path, OutputStream.nullOutputStream());
+        if (statusCode != 200) {
+            throw new IllegalStateException(path + " returned " + statusCode);
+        }
+    }
+
+    /**
+     * Method sends a POST request
+     * @param client Client of the storage
+     * @param path Path of the entity set
+     * @param body JSON body
+     */
+    public static void post(ODataTestClient client, String path, String body) {
+        ODataTestClient.Response response = client.post(path, body);
+        if (response.getStatusCode() != 201) {
+            throw new IllegalStateException(path + " returned " + response);
+        }
+    }
+
+    /**
+     * Method formats a size in megabytes
+     * @param bytes Size in bytes
+     * @return Formatted size
+     */
+    public static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / 1024.0 / 1024.0);
+    }
+}
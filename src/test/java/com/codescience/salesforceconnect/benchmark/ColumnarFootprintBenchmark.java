@@ -0,0 +1,53 @@
+package com.codescience.salesforceconnect.benchmark;
+
+import com.codescience.salesforceconnect.data.Storage;
+import com.codescience.salesforceconnect.data.StorageColumnar;
+import com.codescience.salesforceconnect.data.StoragePojo;
+import com.codescience.salesforceconnect.service.ODataTestClient;
+
+/**
+ * Benchmark of the heap held by the Claims of StoragePojo and StorageColumnar: the heap used by reachable objects is
+ * measured before and after the Claims are created through the service, then a filtered read of the Claims is timed.
+ * Arguments: number of Claims (1000000 by default) and storage (pojo, columnar or both by default)
+ */
+public final class ColumnarFootprintBenchmark {
+
+    private ColumnarFootprintBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int claims = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        String storages = args.length > 1 ? args[1] : "pojo,columnar";
+        for (String name : storages.split(",")) {
+            long empty = Benchmark.usedHeap();
+            Storage storage = create(name);
+            ODataTestClient client = new ODataTestClient(storage);
+            for (int i = 0; i < claims; i++) {
+                Benchmark.post(client, "/Claims", "{\"Id\":\"" + (100000 + i) + "\",\"ClaimReason\":\"Reason " + (i % 20)
+                        + "\",\"ClaimAmount\":" + (1000 + i % 5000) + ",\"Approved\":" + (i % 2 == 0) + ",\"ClaimDate\":\"20"
+                        + (10 + i % 10) + "-0" + (1 + i % 9) + "-1" + (i % 10) + "\",\"PolicyId\":\"" + (2000 + i % 3) + "\"}");
+            }
+            long loaded = Benchmark.usedHeap();
+            System.out.printf("%s, %d Claims: %s, %d bytes per Claim%n", name, claims, Benchmark.megabytes(loaded - empty), (loaded - empty) / claims);
+            Benchmark.run(name + ", " + claims + " Claims, $filter=ClaimAmount gt 5990", 3, 10,
+                    () -> Benchmark.get(client, "/Claims?$filter=ClaimAmount gt 5990"));
+        }
+    }
+
+    /**
+     * Method creates the storage holding the sample data
+     * @param name pojo or columnar
+     * @return Storage
+     */
+    private static Storage create(String name) {
+        if ("columnar".equals(name)) {
+            StorageColumnar storage = new StorageColumnar();
+            storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+            return storage;
+        }
+        StoragePojo storage = new StoragePojo();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        storage.buildIndexes();
+        return storage;
+    }
+}
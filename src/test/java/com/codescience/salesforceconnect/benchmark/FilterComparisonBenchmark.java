@@ -0,0 +1,39 @@
+package com.codescience.salesforceconnect.benchmark;
+
+import com.codescience.salesforceconnect.data.StoragePojo;
+import com.codescience.salesforceconnect.service.ODataTestClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Benchmark of the comparisons of the in memory $filter over the Products of StoragePojo: one filter per kind of
+ * operands compared on every Product. No Product matches so the time is spent evaluating the filter, not writing the
+ * response. Arguments: number of Products (20000 by default)
+ */
+public final class FilterComparisonBenchmark {
+
+    private FilterComparisonBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        StoragePojo storage = new StoragePojo();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        ODataTestClient client = new ODataTestClient(storage);
+        for (int i = 0; i < products; i++) {
+            Benchmark.post(client, "/Products", "{\"Id\":\"" + (100000 + i) + "\",\"ProductName\":\"Product " + i
+                    + "\",\"ProductType\":\"Type " + (i % 7) + "\",\"CostPerUnit\":" + (i % 100) + ",\"Active\":true}");
+        }
+
+        Map<String, String> filters = new LinkedHashMap<>();
+        filters.put("String eq String", "/Products?$filter=ProductType eq 'None'");
+        filters.put("BigDecimal gt Integer", "/Products?$filter=CostPerUnit gt 1000");
+        filters.put("BigDecimal mod Integer eq Integer", "/Products?$filter=CostPerUnit mod 7 eq 1000");
+        filters.put("Boolean eq Boolean", "/Products?$filter=Active eq false");
+        filters.put("String and BigDecimal", "/Products?$filter=ProductName eq 'None' and CostPerUnit lt 0");
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            Benchmark.run(products + " Products, " + filter.getKey(), 50, 200, () -> Benchmark.get(client, filter.getValue()));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.codescience.salesforceconnect.benchmark;
+
+import com.codescience.salesforceconnect.data.StoragePojo;
+import com.codescience.salesforceconnect.service.ODataTestClient;
+
+/**
+ * Benchmark of $filter over the Products of StoragePojo at 1%, 10% and 100% selectivity: time and allocation per
+ * request, the response body is discarded. The CostPerUnit of the n-th product is n % 100 so CostPerUnit lt k matches
+ * k% of the Products. Arguments: number of Products (20000 by default)
+ */
+public final class FilterPushdownBenchmark {
+
+    private FilterPushdownBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        StoragePojo storage = new StoragePojo();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        ODataTestClient client = new ODataTestClient(storage);
+        for (int i = 0; i < products; i++) {
+            Benchmark.post(client, "/Products", "{\"Id\":\"" + (100000 + i) + "\",\"ProductName\":\"Product " + i
+                    + "\",\"ProductType\":\"Type " + (i % 7) + "\",\"CostPerUnit\":" + (i % 100) + ",\"Active\":true}");
+        }
+
+        for (int selectivity : new int[] {1, 10, 100}) {
+            String path = "/Products?$filter=CostPerUnit lt " + selectivity;
+            Benchmark.run(products + " Products, " + selectivity + "% selected", 20, 50, () -> Benchmark.get(client, path));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.codescience.salesforceconnect.benchmark;
+
+import com.codescience.salesforceconnect.data.StoragePojo;
+import com.codescience.salesforceconnect.service.ODataTestClient;
+
+/**
+ * Benchmark of the memory held while a large collection is written: GET /Products over every Product of StoragePojo,
+ * the body is discarded. The heap used by reachable objects is measured before the request, and the peak of the heap
+ * pools holding the objects that survive a young collection during the request. Entities built for the whole
+ * response are promoted there, streamed entities are collected young. Arguments: number of Products (1000000 by
+ * default)
+ */
+public final class StreamingBenchmark {
+
+    private StreamingBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        StoragePojo storage = new StoragePojo();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        ODataTestClient client = new ODataTestClient(storage);
+        for (int i = 0; i < products; i++) {
+            Benchmark.post(client, "/Products", "{\"Id\":\"" + (100000 + i) + "\",\"ProductName\":\"Product " + i
+                    + "\",\"ProductType\":\"Type " + (i % 7) + "\",\"CostPerUnit\":" + (i % 100) + ",\"Active\":true}");
+        }
+
+        for (int i = 0; i < 3; i++) {
+            long stored = Benchmark.usedHeap();
+            Benchmark.resetTenuredPeak();
+            long start = System.nanoTime();
+            Benchmark.get(client, "/Products");
+            long elapsed = System.nanoTime() - start;
+            long peak = Benchmark.tenuredPeak();
+            System.out.printf("%d Products: %d ms, heap before the request %s, tenured peak during the request %s (+%s)%n", products,
+                    elapsed / 1000000, Benchmark.megabytes(stored), Benchmark.megabytes(peak), Benchmark.megabytes(Math.max(0, peak - stored)));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.codescience.salesforceconnect.benchmark;
+
+import com.codescience.salesforceconnect.data.StoragePojo;
+import com.codescience.salesforceconnect.entities.Product;
+import com.codescience.salesforceconnect.service.ODataTestClient;
+import com.codescience.salesforceconnect.translators.ProductTypeTranslator;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.ex.ODataException;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Benchmark of bulk writes: POST of new Products then PATCH of every property of the same Products through the
+ * service, then ODataTypeTranslator.merge alone on the same changes. The throughput of each round is printed, the
+ * first rounds warm up. Arguments: number of Products per round (10000 by default)
+ */
+public final class UpsertBenchmark {
+    private static final int ROUNDS = 10;
+
+    private UpsertBenchmark() {
+    }
+
+    public static void main(String[] args) throws ODataException {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        for (int round = 0; round < ROUNDS; round++) {
+            StoragePojo storage = new StoragePojo();
+            storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+            ODataTestClient client = new ODataTestClient(storage);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < products; i++) {
+                Benchmark.post(client, "/Products", "{\"Id\":\"" + (100000 + i) + "\",\"ProductName\":\"Product " + i
+                        + "\",\"ProductType\":\"Type " + (i % 7) + "\",\"CostPerUnit\":" + (i % 100) + ",\"Active\":true}");
+            }
+            long inserted = System.nanoTime();
+            for (int i = 0; i < products; i++) {
+                ODataTestClient.Response response = client.patch("/Products('" + (100000 + i) + "')", "{\"ProductName\":\"Renamed " + i
+                        + "\",\"ProductType\":\"Type " + (i % 5) + "\",\"CostPerUnit\":" + (i % 50) + ",\"Active\":false}");
+                if (response.getStatusCode() != 204 && response.getStatusCode() != 200) {
+                    throw new IllegalStateException("PATCH returned " + response);
+                }
+            }
+            long updated = System.nanoTime();
+            System.out.printf(Locale.ROOT, "Round %d, %d Products: POST %.0f requests/s, PATCH %.0f requests/s%n", round, products,
+                    products / ((inserted - start) / 1e9), products / ((updated - inserted) / 1e9));
+        }
+
+        ProductTypeTranslator translator = new ProductTypeTranslator();
+        Entity[] changes = new Entity[products];
+        for (int i = 0; i < products; i++) {
+            changes[i] = new Entity()
+                    .addProperty(new Property(null, "ProductName", ValueType.PRIMITIVE, "Renamed " + i))
+                    .addProperty(new Property(null, "ProductType", ValueType.PRIMITIVE, "Type " + (i % 5)))
+                    .addProperty(new Property(null, "CostPerUnit", ValueType.PRIMITIVE, BigDecimal.valueOf(i % 50)))
+                    .addProperty(new Property(null, "Active", ValueType.PRIMITIVE, Boolean.FALSE));
+        }
+        Product product = new Product();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int repeat = 0; repeat < 10; repeat++) {
+                for (Entity change : changes) {
+                    translator.merge(change, product, false, null);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "Round %d, merge of 4 properties: %.0f merges/s%n", round, products * 10 / (elapsed / 1e9));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.Claim;
+import com.codescience.salesforceconnect.entities.Policy;
+import com.codescience.salesforceconnect.translators.EntityMapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the rows found through the related row indexes of ColumnTable and MappedTable: they follow the inserts,
+ * updates and deletes and come back in primary key order
+ */
+public class EntityTableRelatedRowsTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void columnTableFindsRelatedRowsInKeyOrder() {
+        Map<Class<?>, EntityTable> tables = new HashMap<>();
+        EntityTable policies = new ColumnTable(EntityMapping.forClass(Policy.class), tables::get);
+        EntityTable claims = new ColumnTable(EntityMapping.forClass(Claim.class), tables::get);
+        tables.put(Policy.class, policies);
+        tables.put(Claim.class, claims);
+        checkRelatedRows(policies, claims);
+    }
+
+    @Test
+    public void mappedTableFindsRelatedRowsInKeyOrder() throws IOException {
+        Map<Class<?>, EntityTable> tables = new HashMap<>();
+        MappedTable policies = new MappedTable(EntityMapping.forClass(Policy.class), tables::get);
+        MappedTable claims = new MappedTable(EntityMapping.forClass(Claim.class), tables::get);
+        policies.open(directory, "Policy", 1 << 16);
+        claims.open(directory, "Claim", 1 << 16);
+        tables.put(Policy.class, policies);
+        tables.put(Claim.class, claims);
+        checkRelatedRows(policies, claims);
+
+        // The index is rebuilt from the records
+        MappedTable reopened = new MappedTable(EntityMapping.forClass(Claim.class), tables::get);
+        reopened.open(directory, "Claim", 1 << 16);
+        assertEquals(List.of("100"), ids(reopened, reopened.findRelatedRows(Policy.class, "2")));
+        assertEquals(List.of("4", "7", "30"), ids(reopened, reopened.findRelatedRows(Policy.class, "10")));
+    }
+
+    /**
+     * Method writes Claims of two Policies, with keys that are not in insertion order, and checks the related rows
+     * after each kind of write
+     * @param policies Table of the Policies
+     * @param claims Table of the Claims
+     */
+    private static void checkRelatedRows(EntityTable policies, EntityTable claims) {
+        Policy first = policy("2");
+        Policy second = policy("10");
+        policies.insert(first);
+        policies.insert(second);
+        claims.insert(claim("30", first));
+        claims.insert(claim("4", first));
+        claims.insert(claim("100", first));
+        int moved = claims.insert(claim("7", second));
+        claims.insert(claim("8", null));
+
+        // Numeric keys are in numeric order, like the related objects of StoragePojo
+        assertEquals(List.of("4", "30", "100"), ids(claims, claims.findRelatedRows(Policy.class, "2")));
+        assertEquals(List.of("7"), ids(claims, claims.findRelatedRows(Policy.class, "10")));
+        assertTrue(claims.findRelatedRows(Policy.class, "99").isEmpty());
+        assertTrue(claims.findRelatedRows(Policy.class, (String) null).isEmpty());
+
+        claims.update(claims.findRow("30"), claim("30", second));
+        claims.update(moved, claim("7", second));
+        assertEquals(List.of("4", "100"), ids(claims, claims.findRelatedRows(Policy.class, "2")));
+        assertEquals(List.of("7", "30"), ids(claims, claims.findRelatedRows(Policy.class, "10")));
+
+        claims.delete(claims.findRow("4"));
+        Map<String, List<Integer>> related = claims.findRelatedRows(Policy.class, Set.of("2", "10", "99"));
+        assertEquals(List.of("100"), ids(claims, related.get("2")));
+        assertEquals(List.of("7", "30"), ids(claims, related.get("10")));
+        assertFalse(related.containsKey("99"));
+
+        // The id of a deleted row can be used again, the new row takes its place
+        claims.insert(claim("4", second));
+        assertEquals(List.of("100"), ids(claims, claims.findRelatedRows(Policy.class, "2")));
+        assertEquals(List.of("4", "7", "30"), ids(claims, claims.findRelatedRows(Policy.class, "10")));
+    }
+
+    /**
+     * Method returns the ids of the rows
+     * @param table Table holding the rows
+     * @param rows Row numbers
+     * @return Ids in the order of the rows
+     */
+    private static List<String> ids(EntityTable table, List<Integer> rows) {
+        List<String> ids = new ArrayList<>();
+        for (int row : rows) {
+            ids.add(table.getId(row));
+        }
+        return ids;
+    }
+
+    /**
+     * Method creates a Policy
+     * @param id Primary key
+     * @return Policy
+     */
+    private static Policy policy(String id) {
+        Policy policy = new Policy();
+        policy.setId(id);
+        policy.setPolicyHolderId("Holder " + id);
+        policy.setNumberOfUnits(1);
+        return policy;
+    }
+
+    /**
+     * Method creates a Claim of a Policy
+     * @param id Primary key
+     * @param policy Policy of the Claim, can be null
+     * @return Claim
+     */
+    private static Claim claim(String id, Policy policy) {
+        Claim claim = new Claim();
+        claim.setId(id);
+        claim.setClaimReason("Reason " + id);
+        claim.setClaimAmount(BigDecimal.TEN);
+        claim.setPolicy(policy);
+        return claim;
+    }
+}
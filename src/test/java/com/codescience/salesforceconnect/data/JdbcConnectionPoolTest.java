@@ -0,0 +1,166 @@
+package com.codescience.salesforceconnect.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of JdbcConnectionPool over an HSQLDB database: the connections are reused once released, at most maxSize are
+ * in use, failed connections and unfinished transactions don't leak into the next use, and the statement cache keeps
+ * the most recently used statements
+ */
+public class JdbcConnectionPoolTest {
+
+    private DriverManagerDataSource dataSource;
+    private JdbcConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:" + UUID.randomUUID(), "SA", "");
+        dataSource.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table item (id integer primary key)");
+        }
+        pool = new JdbcConnectionPool(dataSource, 2, 2, 100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void reusesTheReleasedConnections() throws SQLException {
+        JdbcConnectionPool.PooledConnection first = pool.acquire();
+        JdbcConnectionPool.PooledConnection second = pool.acquire();
+        assertNotSame(first.getConnection(), second.getConnection());
+        pool.release(first, false);
+
+        JdbcConnectionPool.PooledConnection reused = pool.acquire();
+        assertSame(first, reused);
+        assertFalse(reused.getConnection().isClosed());
+        pool.release(reused, false);
+        pool.release(second, false);
+    }
+
+    @Test
+    public void waitsForAFreeConnection() throws SQLException {
+        JdbcConnectionPool.PooledConnection first = pool.acquire();
+        JdbcConnectionPool.PooledConnection second = pool.acquire();
+        assertThrows(SQLTimeoutException.class, pool::acquire);
+
+        pool.release(second, false);
+        JdbcConnectionPool.PooledConnection third = pool.acquire();
+        assertSame(second, third);
+        pool.release(first, false);
+        pool.release(third, false);
+    }
+
+    @Test
+    public void closesTheBrokenConnections() throws SQLException {
+        JdbcConnectionPool.PooledConnection broken = pool.acquire();
+        pool.release(broken, true);
+        assertTrue(broken.getConnection().isClosed());
+
+        JdbcConnectionPool.PooledConnection replacement = pool.acquire();
+        assertNotSame(broken, replacement);
+        assertFalse(replacement.getConnection().isClosed());
+        pool.release(replacement, false);
+
+        // A connection closed by its user is not handed out again
+        JdbcConnectionPool.PooledConnection closed = pool.acquire();
+        closed.getConnection().close();
+        pool.release(closed, false);
+        JdbcConnectionPool.PooledConnection next = pool.acquire();
+        assertNotSame(closed, next);
+        pool.release(next, false);
+    }
+
+    @Test
+    public void rollsBackTheUnfinishedTransactions() throws SQLException {
+        JdbcConnectionPool.PooledConnection pooledConnection = pool.acquire();
+        pooledConnection.getConnection().setAutoCommit(false);
+        PreparedStatement insert = pooledConnection.prepare("insert into item (id) values (?)");
+        insert.setInt(1, 1);
+        insert.executeUpdate();
+        pool.release(pooledConnection, false);
+
+        JdbcConnectionPool.PooledConnection reused = pool.acquire();
+        assertSame(pooledConnection, reused);
+        assertTrue(reused.getConnection().getAutoCommit());
+        assertEquals(0, countItems(reused));
+        pool.release(reused, false);
+    }
+
+    @Test
+    public void cachesTheRecentlyUsedStatements() throws SQLException {
+        JdbcConnectionPool.PooledConnection pooledConnection = pool.acquire();
+        PreparedStatement byId = pooledConnection.prepare("select id from item where id = ?");
+        PreparedStatement all = pooledConnection.prepare("select id from item");
+        byId.setInt(1, 1);
+        // The statement is reused with its parameters cleared
+        assertSame(byId, pooledConnection.prepare("select id from item where id = ?"));
+        assertThrows(SQLException.class, byId::executeQuery);
+
+        // byId was used last, all is the least recently used statement and is evicted
+        PreparedStatement count = pooledConnection.prepare("select count(*) from item");
+        assertTrue(all.isClosed());
+        assertFalse(byId.isClosed());
+        assertFalse(count.isClosed());
+        PreparedStatement prepared = pooledConnection.prepare("select id from item");
+        assertNotSame(all, prepared);
+        assertFalse(prepared.isClosed());
+        pool.release(pooledConnection, false);
+
+        // The statements of the cache stay open with the connection
+        JdbcConnectionPool.PooledConnection reused = pool.acquire();
+        assertSame(prepared, reused.prepare("select id from item"));
+        pool.release(reused, false);
+    }
+
+    @Test
+    public void closesTheConnectionsWithThePool() throws SQLException {
+        JdbcConnectionPool.PooledConnection idle = pool.acquire();
+        JdbcConnectionPool.PooledConnection inUse = pool.acquire();
+        PreparedStatement statement = inUse.prepare("select id from item");
+        pool.release(idle, false);
+
+        pool.close();
+        assertTrue(idle.getConnection().isClosed());
+        assertFalse(inUse.getConnection().isClosed());
+        assertThrows(SQLException.class, pool::acquire);
+
+        pool.release(inUse, false);
+        assertTrue(inUse.getConnection().isClosed());
+        assertTrue(statement.isClosed());
+    }
+
+    /**
+     * Method counts the rows of the item table
+     * @param pooledConnection Connection reading the table
+     * @return Number of rows
+     * @throws SQLException If the table can't be read
+     */
+    private static int countItems(JdbcConnectionPool.PooledConnection pooledConnection) throws SQLException {
+        try (ResultSet resultSet = pooledConnection.prepare("select count(*) from item").executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.entities.Product;
+import com.codescience.salesforceconnect.service.OdataEdmProvider;
+import com.codescience.salesforceconnect.translators.ProductTypeTranslator;
+import com.codescience.salesforceconnect.util.KeyComparator;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the order of PojoComparator: several sort properties in ascending and descending order, nulls, ties broken
+ * by primary key, and the page selected by the bounded heap is the one of a full sort
+ */
+public class PojoComparatorTest {
+    private static final OData ODATA = OData.newInstance();
+    private static final Edm EDM = ODATA.createServiceMetadata(new OdataEdmProvider(), new ArrayList<>()).getEdm();
+
+    @Test
+    public void ordersOnEachSortPropertyInTurn() throws Exception {
+        List<BaseEntity> products = List.of(
+                product("1", "Life", "Term", 300),
+                product("2", "Disability", "Short", 150),
+                product("3", "Life", "Whole", 350),
+                product("4", "Disability", "Long", 150),
+                product("5", "Life", "Accident", 300));
+
+        assertEquals(List.of("2", "4", "1", "5", "3"), sort(products, "ProductType,CostPerUnit"));
+        assertEquals(List.of("3", "1", "5", "2", "4"), sort(products, "ProductType desc,CostPerUnit desc"));
+        assertEquals(List.of("4", "2", "3", "5", "1"), sort(products, "ProductType asc,CostPerUnit desc,ProductName"));
+        assertEquals(List.of("3", "1", "5", "2", "4"), sort(products, "CostPerUnit desc,ProductName desc,ProductType"));
+    }
+
+    @Test
+    public void sortsTheNullsFirstInAscendingOrder() throws Exception {
+        List<BaseEntity> products = List.of(
+                product("1", "Life", null, 300),
+                product("2", "Life", "Term", 150),
+                product("3", "Life", null, 350),
+                product("4", "Life", "Accident", 150));
+
+        assertEquals(List.of("1", "3", "4", "2"), sort(products, "ProductName"));
+        // Descending puts the nulls last, the ties stay in primary key order
+        assertEquals(List.of("2", "4", "1", "3"), sort(products, "ProductName desc"));
+        assertEquals(List.of("3", "1", "4", "2"), sort(products, "ProductName,CostPerUnit desc"));
+    }
+
+    @Test
+    public void breaksTheTiesByPrimaryKey() throws Exception {
+        List<BaseEntity> products = List.of(
+                product("10", "Life", "Term", 100),
+                product("9", "Life", "Term", 100),
+                product("100", "Life", "Term", 100),
+                product("A", "Life", "Term", 100));
+
+        // Numeric keys are in numeric order, before the other keys
+        assertEquals(List.of("9", "10", "100", "A"), sort(products, "ProductType"));
+        assertEquals(List.of("9", "10", "100", "A"), sort(products, "CostPerUnit desc"));
+        assertEquals(List.of("A", "100", "10", "9"), sort(products, "Id desc"));
+        assertEquals(0, comparator("ProductType").compare(products.get(0), products.get(0)));
+    }
+
+    @Test
+    public void selectsThePageOfAFullSort() throws Exception {
+        Random random = new Random(42);
+        List<BaseEntity> products = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Few distinct values so the page boundaries fall within ties
+            products.add(product(String.valueOf(i), "Type " + random.nextInt(3), random.nextInt(5) == 0 ? null : "Name " + random.nextInt(4),
+                    random.nextInt(6) * 50));
+        }
+        for (String orderBy : List.of("ProductType,CostPerUnit desc", "ProductName desc,ProductType", "CostPerUnit")) {
+            PojoComparator comparator = comparator(orderBy);
+            List<BaseEntity> sorted = new ArrayList<>(products);
+            sorted.sort(comparator);
+            int[][] pages = {{0, 1}, {0, 10}, {5, 10}, {199, 1}, {199, 5}, {0, 200}, {0, 500}, {150, 100}, {200, 10}, {0, 0}, {10, 0}};
+            for (int[] page : pages) {
+                List<BaseEntity> selected = new ArrayList<>();
+                int matched = comparator.select(products, null, page[0], page[1], selected);
+                assertEquals(products.size(), matched);
+                List<BaseEntity> expected = sorted.subList(Math.min(page[0], sorted.size()), Math.min(page[0] + page[1], sorted.size()));
+                assertEquals(ids(expected), ids(selected), orderBy + " skip " + page[0] + " top " + page[1]);
+            }
+        }
+    }
+
+    @Test
+    public void ignoresTheItemsThatAreNotProperties() throws Exception {
+        assertNull(PojoComparator.create(null, new ProductTypeTranslator(), KeyComparator.INSTANCE));
+        List<BaseEntity> products = List.of(product("2", "Life", "Term", 100), product("1", "Life", "Term", 200));
+        // The expression is skipped, the last sort criteria is the primary key
+        assertEquals(List.of("2", "1"), sort(products, "length(ProductType),CostPerUnit"));
+        assertTrue(sort(List.of(), "CostPerUnit").isEmpty());
+    }
+
+    /**
+     * Method sorts the entities with the comparator of the $orderby option
+     * @param entities Entities to sort
+     * @param orderBy Value of the $orderby option
+     * @return Ids in sorted order
+     * @throws Exception If the option can't be parsed
+     */
+    private static List<String> sort(List<BaseEntity> entities, String orderBy) throws Exception {
+        List<BaseEntity> sorted = new ArrayList<>(entities);
+        sorted.sort(comparator(orderBy));
+        return ids(sorted);
+    }
+
+    /**
+     * Method creates the comparator of a $orderby option on the Products
+     * @param orderBy Value of the $orderby option
+     * @return Comparator
+     * @throws Exception If the option can't be parsed
+     */
+    private static PojoComparator comparator(String orderBy) throws Exception {
+        OrderByOption orderByOption = new Parser(EDM, ODATA).parseUri("Products", "$orderby=" + orderBy, null, "http://localhost/Odata.svc")
+                .getOrderByOption();
+        return PojoComparator.create(orderByOption, new ProductTypeTranslator(), KeyComparator.INSTANCE);
+    }
+
+    /**
+     * Method returns the ids of the entities
+     * @param entities BaseEntity implementations
+     * @return Ids in list order
+     */
+    private static List<String> ids(List<BaseEntity> entities) {
+        List<String> ids = new ArrayList<>();
+        for (BaseEntity entity : entities) {
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Method creates a Product
+     * @param id Primary key
+     * @param type Product type
+     * @param name Product name, can be null
+     * @param cost Cost per unit
+     * @return Product
+     */
+    private static Product product(String id, String type, String name, int cost) {
+        Product product = new Product();
+        product.setId(id);
+        product.setProductType(type);
+        product.setProductName(name);
+        product.setCostPerUnit(BigDecimal.valueOf(cost));
+        product.setActive(true);
+        return product;
+    }
+}
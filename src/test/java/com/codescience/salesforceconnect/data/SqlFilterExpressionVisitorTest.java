@@ -0,0 +1,112 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.service.ODataTestClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the parameters of the SQL built from $filter: the literals are bound to ? placeholders, never written into
+ * the SQL, so quotes, LIKE wildcards and SQL in a literal are compared as plain text
+ */
+public class SqlFilterExpressionVisitorTest {
+    private static final String INJECTION = "x' or '1'='1";
+
+    private StorageJdbc storage;
+    private ODataTestClient client;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:" + UUID.randomUUID(), "SA", "");
+        dataSource.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+        storage = new StorageJdbc();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        storage.setDataSource(dataSource);
+        storage.open();
+        client = new ODataTestClient(storage);
+        post("5000", "O'Brien Cover");
+        post("5001", "100% Cover");
+        post("5002", "Cover_Plus");
+        post("5003", "Cover!Plus");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void bindsTheLiteralsAsParameters() {
+        List<Object> parameters = new ArrayList<>();
+        SqlFilterExpressionVisitor visitor = new SqlFilterExpressionVisitor(Map.of(
+                "ProductName", new QueryFilterExpressionVisitor.QueryProperty("p.product_name", String.class, true),
+                "CostPerUnit", new QueryFilterExpressionVisitor.QueryProperty("p.cost_per_unit", BigDecimal.class, true)), parameters);
+
+        String condition = visitor.translate("ProductName", BinaryOperatorKind.EQ, INJECTION);
+        assertTrue(condition.contains("p.product_name"), condition);
+        assertTrue(condition.contains("?"), condition);
+        assertFalse(condition.contains("'"), condition);
+        assertEquals(List.of(INJECTION), parameters);
+
+        String comparison = visitor.translate("CostPerUnit", BinaryOperatorKind.GE, new BigDecimal("150"));
+        assertFalse(comparison.contains("150"), comparison);
+        assertEquals(List.of(INJECTION, new BigDecimal("150")), parameters);
+    }
+
+    @Test
+    public void comparesTheLiteralsAsText() {
+        assertEquals(List.of("5002"), getIds("/Products?$filter=ProductName eq 'Cover_Plus'"));
+        assertEquals(List.of("5000"), getIds("/Products?$filter=ProductName ge 'O' and ProductName lt 'P'"));
+        assertTrue(getIds("/Products?$filter=ProductName eq 'x'' or ''1''=''1'").isEmpty());
+        assertTrue(getIds("/Products?$filter=ProductName eq 'x''; drop table product; --'").isEmpty());
+        assertEquals(10, getIds("/Products?$select=Id").size());
+    }
+
+    @Test
+    public void escapesTheWildcardsOfContains() {
+        assertEquals(List.of("5001"), getIds("/Products?$filter=contains(ProductName,'%25')"));
+        assertEquals(List.of("5002"), getIds("/Products?$filter=contains(ProductName,'_')"));
+        assertEquals(List.of("5003"), getIds("/Products?$filter=contains(ProductName,'!')"));
+        assertTrue(getIds("/Products?$filter=contains(ProductName,'Cover%25')").isEmpty());
+        assertEquals(List.of("5000", "5001", "5002", "5003"), getIds("/Products?$filter=contains(ProductName,'Cover')"));
+    }
+
+    /**
+     * Method creates a Product
+     * @param id Primary key
+     * @param name Product name
+     */
+    private void post(String id, String name) {
+        ODataTestClient.Response response = client.post("/Products", "{\"Id\":\"" + id + "\",\"ProductName\":\"" + name
+                + "\",\"ProductType\":\"Life\",\"CostPerUnit\":10,\"Active\":true}");
+        assertEquals(201, response.getStatusCode(), response::toString);
+    }
+
+    /**
+     * Method returns the ids of the entities of a collection request
+     * @param path Path and query of the request
+     * @return Ids in response order
+     */
+    private List<String> getIds(String path) {
+        ODataTestClient.Response response = client.get(path);
+        assertEquals(200, response.getStatusCode(), response::toString);
+        List<String> ids = new ArrayList<>();
+        for (JsonNode entity : response.getJson().get("value")) {
+            ids.add(entity.get("Id").asText());
+        }
+        return ids;
+    }
+}
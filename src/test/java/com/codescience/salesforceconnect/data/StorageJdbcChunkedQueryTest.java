@@ -0,0 +1,139 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.service.ODataTestClient;
+import com.codescience.salesforceconnect.util.KeyComparator;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the StorageJdbc queries that are not bounded by a page: the entities are read by chunks and each one is
+ * returned once, in order, whatever the chunk boundaries
+ */
+public class StorageJdbcChunkedQueryTest {
+    private static final int PRODUCTS = 1300;
+
+    private StorageJdbc storage;
+    private ODataTestClient client;
+    private final List<String> productIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:" + UUID.randomUUID(), "SA", "");
+        dataSource.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+        storage = new StorageJdbc();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        storage.setDataSource(dataSource);
+        storage.open();
+        client = new ODataTestClient(storage);
+
+        productIds.addAll(getIds("/Products?$select=Id"));
+        for (int i = 0; i < PRODUCTS; i++) {
+            String id = String.valueOf(5000 + i);
+            ODataTestClient.Response response = client.post("/Products", "{\"Id\":\"" + id + "\",\"ProductName\":\"Product " + (PRODUCTS - i)
+                    + "\",\"ProductType\":\"Life\",\"CostPerUnit\":" + i + ",\"Active\":true}");
+            assertEquals(201, response.getStatusCode(), response::toString);
+            productIds.add(id);
+        }
+        productIds.sort(KeyComparator.INSTANCE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void returnsEveryEntityInKeyOrder() {
+        JsonNode body = get("/Products?$select=Id&$count=true");
+        assertEquals(productIds, ids(body));
+        assertEquals(productIds.size(), body.get("@odata.count").asInt());
+        assertNull(body.get("@odata.nextLink"));
+
+        assertEquals(productIds.subList(700, productIds.size()), getIds("/Products?$select=Id&$skip=700"));
+        assertEquals(productIds.subList(10, 1210), getIds("/Products?$select=Id&$skip=10&$top=1200"));
+    }
+
+    @Test
+    public void returnsEveryEntityInTheRequestedOrder() {
+        List<String> names = new ArrayList<>();
+        for (JsonNode product : get("/Products?$select=ProductName&$orderby=ProductName desc").get("value")) {
+            names.add(product.get("ProductName").asText());
+        }
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(Comparator.reverseOrder());
+        assertEquals(productIds.size(), names.size());
+        assertEquals(sorted, names);
+    }
+
+    @Test
+    public void filtersTheChunksInMemory() {
+        // div is evaluated in memory and rounded half even (199 div 2 is 100), the $skip applies to the matches
+        List<String> expected = new ArrayList<>();
+        for (int i = 199; i < PRODUCTS; i++) {
+            expected.add(String.valueOf(5000 + i));
+        }
+        JsonNode body = get("/Products?$select=Id&$filter=Id ge '5000' and CostPerUnit div 2 ge 100&$count=true");
+        assertEquals(expected, ids(body));
+        assertEquals(expected.size(), body.get("@odata.count").asInt());
+        assertEquals(expected.subList(600, expected.size()), getIds("/Products?$select=Id&$filter=Id ge '5000' and CostPerUnit div 2 ge 100&$skip=600"));
+    }
+
+    @Test
+    public void pagesLargeResultsByChunks() {
+        storage.setMaxPageSize(1000);
+        JsonNode firstPage = get("/Products?$select=Id");
+        assertEquals(productIds.subList(0, 1000), ids(firstPage));
+        String nextLink = firstPage.get("@odata.nextLink").asText();
+        assertTrue(nextLink.contains("$skiptoken="), nextLink);
+
+        JsonNode secondPage = get(nextLink.substring(nextLink.indexOf("/Products")));
+        assertEquals(productIds.subList(1000, productIds.size()), ids(secondPage));
+        assertFalse(secondPage.has("@odata.nextLink"));
+    }
+
+    /**
+     * Method sends a GET request and checks it succeeds
+     * @param path Path and query of the request
+     * @return JSON body
+     */
+    private JsonNode get(String path) {
+        ODataTestClient.Response response = client.get(path);
+        assertEquals(200, response.getStatusCode(), response::toString);
+        return response.getJson();
+    }
+
+    /**
+     * Method returns the ids of the entities of a collection request
+     * @param path Path and query of the request
+     * @return Ids in response order
+     */
+    private List<String> getIds(String path) {
+        return ids(get(path));
+    }
+
+    /**
+     * Method returns the ids of the entities of a response
+     * @param body JSON body of a collection
+     * @return Ids in response order
+     */
+    private static List<String> ids(JsonNode body) {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode entity : body.get("value")) {
+            ids.add(entity.get("Id").asText());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,160 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.service.ODataTestClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the query options of StorageJpa over the sample data, in the HSQLDB database of the jpa profile: the options
+ * translated into JPQL and the ones evaluated in memory return the same entities as the other storages
+ */
+@SpringJUnitConfig(locations = "file:src/main/webapp/WEB-INF/applicationContext.xml")
+@ActiveProfiles("jpa")
+public class StorageJpaQueryTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private StorageJpa storage;
+    private ODataTestClient client;
+
+    @BeforeEach
+    public void setUp() {
+        storage = new StorageJpa();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        storage.setEntityManagerFactory(entityManagerFactory);
+        storage.open();
+        client = new ODataTestClient(storage);
+    }
+
+    @Test
+    public void filtersTheEntities() {
+        assertEquals(List.of("1004", "1005"), getIds("/Products?$filter=ProductType eq 'Life'"));
+        assertEquals(List.of("1003", "1004", "1005"), getIds("/Products?$filter=CostPerUnit gt 150 and Active eq true"));
+        assertEquals(List.of("1000", "1001"), getIds("/Products?$filter=contains(ProductName,'Disability')"));
+        assertEquals(List.of("1002", "1003"), getIds("/Products?$filter=ProductType eq 'Liability' or not (Active eq true)"));
+        // TotalCostAmount is computed, the filter is evaluated in memory
+        assertEquals(List.of("2001", "2002"), getIds("/Policies?$filter=TotalCostAmount gt 20000"));
+        assertTrue(getIds("/Products?$filter=ProductType eq 'None'").isEmpty());
+    }
+
+    @Test
+    public void ordersTheEntities() {
+        assertEquals(List.of("1005", "1004", "1003", "1002", "1001", "1000"), getIds("/Products?$orderby=CostPerUnit desc"));
+        assertEquals(List.of("1005", "1004", "1000", "1001", "1003", "1002"), getIds("/Products?$orderby=ProductName,Id desc"));
+        assertEquals(List.of("2002", "2001", "2000"), getIds("/Policies?$orderby=TotalCostAmount desc"));
+    }
+
+    @Test
+    public void skipsAndLimitsTheEntities() {
+        assertEquals(List.of("1002", "1003", "1004"), getIds("/Products?$skip=2&$top=3"));
+        assertEquals(List.of("1004", "1003"), getIds("/Products?$orderby=CostPerUnit desc&$skip=1&$top=2"));
+        assertEquals(List.of("1005"), getIds("/Products?$filter=ProductType eq 'Life'&$skip=1"));
+        assertTrue(getIds("/Products?$skip=6").isEmpty());
+        assertTrue(getIds("/Products?$top=0").isEmpty());
+        assertEquals(400, client.get("/Products?$top=-1").getStatusCode());
+    }
+
+    @Test
+    public void pagesTheEntitiesWithASkipToken() {
+        storage.setMaxPageSize(4);
+        assertEquals(List.of(List.of("1000", "1001", "1002", "1003"), List.of("1004", "1005")), getPages("/Products"));
+
+        storage.setMaxPageSize(2);
+        assertEquals(List.of(List.of("1005", "1004"), List.of("1003", "1001"), List.of("1000")),
+                getPages("/Products?$filter=Active eq true&$orderby=CostPerUnit desc"));
+        assertEquals(List.of(List.of("2002", "2001"), List.of("2000")), getPages("/Policies?$orderby=TotalCostAmount desc"));
+        assertEquals(List.of(List.of("1001", "1002"), List.of("1003")), getPages("/Products?$skip=1&$top=3"));
+        assertEquals(400, client.get("/Products?$skiptoken=invalid").getStatusCode());
+    }
+
+    @Test
+    public void readsTheRelatedEntities() {
+        assertEquals(List.of("3000", "3001"), getIds("/Policies('2000')/Claims"));
+        assertEquals(List.of("3001"), getIds("/Policies('2000')/Claims?$filter=ClaimReason eq 'Accident'"));
+        assertEquals(List.of("3001", "3000"), getIds("/Policies('2000')/Claims?$orderby=ClaimAmount desc"));
+        assertEquals(List.of("4001", "4002"), getIds("/Policies('2000')/Claims('3001')/Beneficiaries"));
+        assertTrue(getIds("/Policies('2002')/Claims").isEmpty());
+        assertEquals("1000", get("/Policies('2000')/Product").get("Id").asText());
+        assertEquals(404, client.get("/Policies('9999')/Claims").getStatusCode());
+    }
+
+    @Test
+    public void countsTheEntities() {
+        JsonNode body = get("/Products?$filter=ProductType eq 'Liability'&$top=1&$count=true");
+        assertEquals(List.of("1002"), ids(body));
+        assertEquals(2, body.get("@odata.count").asInt());
+        assertEquals(6, get("/Products?$top=0&$count=true").get("@odata.count").asInt());
+        assertEquals(2, get("/Policies?$filter=TotalCostAmount gt 20000&$count=true").get("@odata.count").asInt());
+        assertEquals(2, get("/Policies('2000')/Claims?$count=true").get("@odata.count").asInt());
+
+        storage.setMaxPageSize(2);
+        JsonNode firstPage = get("/Products?$count=true");
+        assertEquals(6, firstPage.get("@odata.count").asInt());
+        assertTrue(firstPage.has("@odata.nextLink"));
+    }
+
+    /**
+     * Method sends a GET request and checks it succeeds
+     * @param path Path and query of the request
+     * @return JSON body
+     */
+    private JsonNode get(String path) {
+        ODataTestClient.Response response = client.get(path);
+        assertEquals(200, response.getStatusCode(), response::toString);
+        return response.getJson();
+    }
+
+    /**
+     * Method returns the ids of the entities of a collection request
+     * @param path Path and query of the request
+     * @return Ids in response order
+     */
+    private List<String> getIds(String path) {
+        return ids(get(path));
+    }
+
+    /**
+     * Method reads every page of a collection request, following the nextLinks
+     * @param path Path and query of the first page
+     * @return Ids of each page in response order
+     */
+    private List<List<String>> getPages(String path) {
+        List<List<String>> pages = new ArrayList<>();
+        JsonNode body = get(path);
+        pages.add(ids(body));
+        while (body.has("@odata.nextLink")) {
+            String nextLink = body.get("@odata.nextLink").asText();
+            assertTrue(nextLink.contains("$skiptoken="), nextLink);
+            body = get(nextLink.substring(nextLink.indexOf(".svc/") + 4));
+            pages.add(ids(body));
+            assertFalse(pages.size() > 10, "The nextLinks don't end");
+        }
+        return pages;
+    }
+
+    /**
+     * Method returns the ids of the entities of a response
+     * @param body JSON body of a collection
+     * @return Ids in response order
+     */
+    private static List<String> ids(JsonNode body) {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode entity : body.get("value")) {
+            ids.add(entity.get("Id").asText());
+        }
+        return ids;
+    }
+}
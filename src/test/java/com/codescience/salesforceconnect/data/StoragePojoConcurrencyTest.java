@@ -0,0 +1,157 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.BaseEntity;
+import com.codescience.salesforceconnect.service.Constants;
+import com.codescience.salesforceconnect.service.ODataTestClient;
+import com.codescience.salesforceconnect.service.OdataEdmProvider;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Stress test of the writes of StoragePojo: several threads create, update and delete Claims at the same time, and
+ * all of them update the same Claim. No write may be lost, so the counts and versions are checked once they are done
+ */
+public class StoragePojoConcurrencyTest {
+    private static final String CLAIM_TYPE = OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString();
+    private static final String SHARED_CLAIM_ID = "3000";
+    private static final int THREADS = 8;
+    private static final int CLAIMS_PER_THREAD = 40;
+    private static final int UPDATES = 5;
+
+    private StoragePojo storage;
+    private ODataTestClient client;
+
+    @BeforeEach
+    public void setUp() {
+        storage = new StoragePojo();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        storage.setSortedIndexes(Map.of(CLAIM_TYPE, List.of(Constants.CLAIM_AMOUNT)));
+        storage.buildIndexes();
+        client = new ODataTestClient(storage);
+    }
+
+    @Test
+    public void concurrentWritesAreNotLost() throws Exception {
+        int initialClaims = count("/Claims/$count");
+        int initialPolicyClaims = count("/Policies('2000')/Claims/$count");
+        long initialSharedVersion = getObject(SHARED_CLAIM_ID).getVersion();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                write(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            // Rethrows the assertion failures of the threads
+            result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int remaining = THREADS * CLAIMS_PER_THREAD / 2;
+        assertEquals(initialClaims + remaining, count("/Claims/$count"));
+        assertEquals(initialPolicyClaims + remaining, count("/Policies('2000')/Claims/$count"));
+        // The sorted index must hold each remaining Claim once, at its last amount
+        assertEquals(remaining, count("/Claims/$count?$filter=ClaimAmount eq " + (100000 + UPDATES)));
+        assertEquals(remaining, client.get("/Claims?$filter=ClaimAmount ge 100000").getJson().get("value").size());
+        assertEquals(initialSharedVersion + (long) THREADS * CLAIMS_PER_THREAD * UPDATES, getObject(SHARED_CLAIM_ID).getVersion());
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < CLAIMS_PER_THREAD; i++) {
+                BaseEntity claim = getObject(claimId(t, i));
+                if (i % 2 == 0) {
+                    assertNull(claim);
+                } else {
+                    assertNotNull(claim);
+                    assertEquals(UPDATES, claim.getVersion());
+                }
+            }
+        }
+    }
+
+    /**
+     * Method runs the writes of one thread: it creates its Claims, updates them and the shared Claim, then deletes
+     * half of its Claims
+     * @param thread Index of the thread
+     */
+    private void write(int thread) {
+        for (int i = 0; i < CLAIMS_PER_THREAD; i++) {
+            assertStatus(201, client.post("/Claims", "{\"Id\":\"" + claimId(thread, i) + "\",\"ClaimAmount\":1,"
+                    + "\"ClaimReason\":\"Stress\",\"Approved\":false,\"PolicyId\":\"2000\"}"));
+        }
+        for (int update = 1; update <= UPDATES; update++) {
+            for (int i = 0; i < CLAIMS_PER_THREAD; i++) {
+                assertStatus(204, client.patch("/Claims('" + claimId(thread, i) + "')", "{\"ClaimAmount\":" + (100000 + update) + "}"));
+                assertStatus(204, client.patch("/Claims('" + SHARED_CLAIM_ID + "')", "{\"ClaimReason\":\"Thread " + thread + "\"}"));
+            }
+        }
+        for (int i = 0; i < CLAIMS_PER_THREAD; i += 2) {
+            assertStatus(204, client.delete("/Claims('" + claimId(thread, i) + "')"));
+        }
+    }
+
+    /**
+     * Method returns the key of a Claim created by a thread
+     * @param thread Index of the thread
+     * @param index Index of the Claim in the thread
+     * @return Numeric key that no sample Claim uses
+     */
+    private static String claimId(int thread, int index) {
+        return String.valueOf(90000 + thread * 1000 + index);
+    }
+
+    /**
+     * Method reads the stored Claim
+     * @param id Key of the Claim
+     * @return Stored object, null if there is none
+     * @throws ODataException Exception thrown if the Claim can't be looked up
+     */
+    private BaseEntity getObject(String id) throws ODataException {
+        Entity entity = new Entity();
+        entity.setType(CLAIM_TYPE);
+        entity.addProperty(new Property(null, Constants.ID, ValueType.PRIMITIVE, id));
+        return storage.getBaseEntityByKey(entity);
+    }
+
+    /**
+     * Method reads a $count
+     * @param path Path of the $count request
+     * @return Count
+     */
+    private int count(String path) {
+        ODataTestClient.Response response = client.get(path);
+        assertStatus(200, response);
+        return Integer.parseInt(response.getBody().trim());
+    }
+
+    /**
+     * Method checks the status of a response
+     * @param expected Expected status code
+     * @param response Response
+     */
+    private static void assertStatus(int expected, ODataTestClient.Response response) {
+        assertEquals(expected, response.getStatusCode(), response::toString);
+    }
+}
@@ -0,0 +1,128 @@
+package com.codescience.salesforceconnect.data;
+
+import com.codescience.salesforceconnect.entities.Product;
+import com.codescience.salesforceconnect.translators.ProductTypeTranslator;
+import org.apache.olingo.commons.api.data.Entity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the validity, the invalidation and the eviction of the translated entity cache
+ */
+public class TranslatedEntityCacheTest {
+    private static final String PRODUCT_TYPE = "OData.InsuranceSystem.Product";
+    private static final int PRODUCTS = 100;
+
+    private final ProductTypeTranslator translator = new ProductTypeTranslator();
+    private final List<Product> products = new ArrayList<>();
+    private TranslatedEntityCache cache;
+    private long productWeight;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setId(String.valueOf(1000 + i));
+            product.setProductName("Product " + i);
+            product.setProductType("Life");
+            product.setCostPerUnit(BigDecimal.valueOf(i));
+            product.setActive(true);
+            products.add(product);
+        }
+        productWeight = translator.translate(products.get(0)).getProperties().size() + 1;
+        cache = new TranslatedEntityCache();
+        cache.setMaxWeight(productWeight * PRODUCTS);
+    }
+
+    @Test
+    public void returnsTheCachedEntityUntilItChanges() {
+        Product product = products.get(0);
+        Entity translated = cache.translate(PRODUCT_TYPE, translator, product);
+        assertSame(translated, cache.translate(PRODUCT_TYPE, translator, product));
+        assertEquals(1, cache.getHitCount());
+
+        product.setProductName("Renamed");
+        product.incrementVersion();
+        Entity updated = cache.translate(PRODUCT_TYPE, translator, product);
+        assertNotSame(translated, updated);
+        assertEquals("Renamed", updated.getProperty("ProductName").getValue());
+
+        cache.invalidate(PRODUCT_TYPE, product.getId());
+        assertEquals(0, cache.getWeight());
+        assertNotSame(updated, cache.translate(PRODUCT_TYPE, translator, product));
+    }
+
+    @Test
+    public void evictsTheEntriesReadLeastRecently() throws InterruptedException {
+        for (Product product : products) {
+            cache.translate(PRODUCT_TYPE, translator, product);
+        }
+        assertEquals(productWeight * PRODUCTS, cache.getWeight());
+        assertEquals(0, cache.getEvictionCount());
+
+        // The access times have a millisecond resolution
+        Thread.sleep(5);
+        Entity read = cache.translate(PRODUCT_TYPE, translator, products.get(0));
+        Product added = new Product();
+        added.setId("2000");
+        added.setProductName("Added");
+        cache.translate(PRODUCT_TYPE, translator, added);
+
+        // The cache evicts down to 3/4 of its maximum weight
+        assertTrue(cache.getWeight() <= productWeight * PRODUCTS * 3 / 4, () -> String.valueOf(cache.getWeight()));
+        assertTrue(cache.getEvictionCount() >= PRODUCTS / 4);
+        long hits = cache.getHitCount();
+        assertSame(read, cache.translate(PRODUCT_TYPE, translator, products.get(0)));
+        cache.translate(PRODUCT_TYPE, translator, added);
+        assertEquals(hits + 2, cache.getHitCount());
+    }
+
+    @Test
+    public void keepsTheWeightConsistentUnderConcurrentUse() throws Exception {
+        cache.setMaxWeight(productWeight * PRODUCTS / 2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    Product product = products.get((i * 7 + thread) % PRODUCTS);
+                    cache.translate(PRODUCT_TYPE, translator, product);
+                    if (i % 10 == thread) {
+                        cache.invalidate(PRODUCT_TYPE, product.getId());
+                    }
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Each remaining entry is counted once in the weight
+        long remaining = 0;
+        for (Product product : products) {
+            long hits = cache.getHitCount();
+            cache.translate(PRODUCT_TYPE, translator, product);
+            if (cache.getHitCount() > hits) {
+                remaining++;
+            }
+            cache.invalidate(PRODUCT_TYPE, product.getId());
+        }
+        assertTrue(remaining > 0);
+        assertEquals(0, cache.getWeight());
+    }
+}
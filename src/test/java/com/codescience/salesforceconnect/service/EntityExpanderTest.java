@@ -0,0 +1,142 @@
+package com.codescience.salesforceconnect.service;
+
+import com.codescience.salesforceconnect.data.Storage;
+import com.codescience.salesforceconnect.data.StorageColumnar;
+import com.codescience.salesforceconnect.data.StoragePojo;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the $expand option over the sample data: each expanded navigation property returns the entities of its own
+ * relationship, single valued or collection, at each level. A failure to read the related entities is an error
+ * response for the first batch and aborts the response for the next ones
+ */
+public class EntityExpanderTest {
+
+    /**
+     * Method returns the storages the requests are run against
+     * @return Storages holding the sample data
+     */
+    static Stream<Storage> storages() {
+        StoragePojo pojo = new StoragePojo();
+        pojo.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        pojo.buildIndexes();
+        StorageColumnar columnar = new StorageColumnar();
+        columnar.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        return Stream.of(pojo, columnar);
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    public void expandsEachNavigationPropertyOfTheCollection(Storage storage) {
+        JsonNode policies = get(storage, "/Policies?$expand=Claims($expand=Beneficiaries),Product").get("value");
+        assertEquals(List.of("2000", "2001", "2002"), ids(policies));
+
+        JsonNode policy = policies.get(0);
+        assertEquals("1000", policy.get("Product").get("Id").asText());
+        assertEquals(List.of("3000", "3001"), ids(policy.get("Claims")));
+        assertEquals(List.of("4000"), ids(policy.get("Claims").get(0).get("Beneficiaries")));
+        assertEquals(List.of("4001", "4002"), ids(policy.get("Claims").get(1).get("Beneficiaries")));
+        assertEquals(List.of("3002"), ids(policies.get(1).get("Claims")));
+        assertTrue(ids(policies.get(1).get("Claims").get(0).get("Beneficiaries")).isEmpty());
+        assertTrue(ids(policies.get(2).get("Claims")).isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    public void expandsTheReferencedEntity(Storage storage) {
+        JsonNode claims = get(storage, "/Claims?$expand=Policy($expand=Product)&$orderby=Id").get("value");
+        assertEquals(List.of("3000", "3001", "3002"), ids(claims));
+        assertEquals("2000", claims.get(0).get("Policy").get("Id").asText());
+        assertEquals("2000", claims.get(1).get("Policy").get("Id").asText());
+        assertEquals("2001", claims.get(2).get("Policy").get("Id").asText());
+        assertEquals("1000", claims.get(0).get("Policy").get("Product").get("Id").asText());
+
+        JsonNode beneficiary = get(storage, "/Beneficiaries('4001')?$expand=Claim($expand=Policy)");
+        assertEquals("3001", beneficiary.get("Claim").get("Id").asText());
+        assertEquals("2000", beneficiary.get("Claim").get("Policy").get("Id").asText());
+    }
+
+    @Test
+    public void returnsAnErrorIfTheFirstBatchCantBeExpanded() {
+        ODataTestClient.Response response = new ODataTestClient(failingStorage(1, new AtomicInteger())).get("/Claims?$expand=Policy");
+        assertEquals(500, response.getStatusCode(), response::toString);
+        assertTrue(response.getBody().contains("Expand failure"), response::toString);
+    }
+
+    @Test
+    public void abortsTheResponseIfALaterBatchCantBeExpanded() {
+        AtomicInteger calls = new AtomicInteger();
+        ODataTestClient client = new ODataTestClient(failingStorage(2, calls));
+        // More Beneficiaries than the entities expanded in one batch
+        for (int i = 0; i < 600; i++) {
+            ODataTestClient.Response response = client.post("/Beneficiaries", "{\"Id\":\"" + (50000 + i) + "\",\"BeneficiaryPercent\":1,"
+                    + "\"ContactIdentifierId\":\"20000\",\"ClaimId\":\"3000\"}");
+            assertEquals(201, response.getStatusCode(), response::toString);
+        }
+        assertThrows(ODataRuntimeException.class, () -> client.get("/Beneficiaries?$expand=Claim"));
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     * Method sends a GET request and checks it succeeds
+     * @param storage Storage the request reads
+     * @param path Path and query of the request
+     * @return JSON body
+     */
+    private static JsonNode get(Storage storage, String path) {
+        ODataTestClient.Response response = new ODataTestClient(storage).get(path);
+        assertEquals(200, response.getStatusCode(), response::toString);
+        return response.getJson();
+    }
+
+    /**
+     * Method returns the ids of the entities of a JSON array
+     * @param entities JSON array of entities
+     * @return Ids in the order of the array
+     */
+    private static List<String> ids(JsonNode entities) {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode entity : entities) {
+            ids.add(entity.get("Id").asText());
+        }
+        return ids;
+    }
+
+    /**
+     * Method returns a StoragePojo whose reads of related entities fail from a given call on
+     * @param failingCall Number of the first call of getRelatedEntityCollections that fails, from 1
+     * @param calls Counter of the calls of getRelatedEntityCollections
+     * @return Storage holding the sample data
+     */
+    private static Storage failingStorage(int failingCall, AtomicInteger calls) {
+        StoragePojo storage = new StoragePojo();
+        storage.setTypeTranslators(ODataTestClient.createTypeTranslators());
+        storage.buildIndexes();
+        return (Storage) Proxy.newProxyInstance(Storage.class.getClassLoader(), new Class<?>[] {Storage.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getRelatedEntityCollections") && (calls.incrementAndGet() >= failingCall)) {
+                throw new ODataException("Expand failure");
+            }
+            try {
+                return method.invoke(storage, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
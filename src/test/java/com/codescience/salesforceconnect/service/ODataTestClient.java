@@ -0,0 +1,215 @@
+package com.codescience.salesforceconnect.service;
+
+import com.codescience.salesforceconnect.data.Storage;
+import com.codescience.salesforceconnect.translators.BeneficiaryTypeTranslator;
+import com.codescience.salesforceconnect.translators.ClaimTypeTranslator;
+import com.codescience.salesforceconnect.translators.ODataTypeTranslator;
+import com.codescience.salesforceconnect.translators.PolicyTypeTranslator;
+import com.codescience.salesforceconnect.translators.ProductTypeTranslator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataHttpHandler;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.ServiceMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client used by the tests to send OData requests to the processors of the service without a servlet container. The
+ * requests go through the same handler and processors as in ODataServlet, backed by the storage passed in
+ */
+public class ODataTestClient {
+    private static final String BASE_URI = "http://localhost/Odata.svc";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final OData odata = OData.newInstance();
+    private final ServiceMetadata serviceMetadata;
+    private final OdataEntityCollectionProcessor entityCollectionProcessor = new OdataEntityCollectionProcessor();
+    private final OdataEntityProcessor entityProcessor = new OdataEntityProcessor();
+
+    /**
+     * Constructor sets the storage the processors read and write
+     * @param storage Storage of the entity sets
+     */
+    public ODataTestClient(Storage storage) {
+        serviceMetadata = odata.createServiceMetadata(new OdataEdmProvider(), new ArrayList<>());
+        entityCollectionProcessor.setStorage(storage);
+        entityProcessor.setStorage(storage);
+    }
+
+    /**
+     * Method returns the type translators of the service, as configured in applicationContext.xml
+     * @return Type translators by full qualified name of the entity type
+     */
+    public static Map<String, ODataTypeTranslator> createTypeTranslators() {
+        Map<String, ODataTypeTranslator> typeTranslators = new HashMap<>();
+        typeTranslators.put(OdataEdmProvider.ET_PRODUCT_FQN.getFullQualifiedNameAsString(), new ProductTypeTranslator());
+        typeTranslators.put(OdataEdmProvider.ET_POLICY_FQN.getFullQualifiedNameAsString(), new PolicyTypeTranslator());
+        typeTranslators.put(OdataEdmProvider.ET_CLAIM_FQN.getFullQualifiedNameAsString(), new ClaimTypeTranslator());
+        typeTranslators.put(OdataEdmProvider.ET_BENEFICIARY_FQN.getFullQualifiedNameAsString(), new BeneficiaryTypeTranslator());
+        return typeTranslators;
+    }
+
+    /**
+     * Method sends a GET request
+     * @param path Path and query relative to the service root (ex /Claims?$top=1)
+     * @return Response
+     */
+    public Response get(String path) {
+        return send(HttpMethod.GET, path, null);
+    }
+
+    /**
+     * Method sends a GET request and writes the body to the stream instead of keeping it, for large responses
+     * @param path Path and query relative to the service root (ex /Claims?$top=1)
+     * @param content Stream the body is written to
+     * @return HTTP status code
+     */
+    public int get(String path, OutputStream content) {
+        return send(HttpMethod.GET, path, null, content);
+    }
+
+    /**
+     * Method sends a POST request with a JSON body
+     * @param path Path relative to the service root
+     * @param body JSON body
+     * @return Response
+     */
+    public Response post(String path, String body) {
+        return send(HttpMethod.POST, path, body);
+    }
+
+    /**
+     * Method sends a PATCH request with a JSON body
+     * @param path Path relative to the service root
+     * @param body JSON body
+     * @return Response
+     */
+    public Response patch(String path, String body) {
+        return send(HttpMethod.PATCH, path, body);
+    }
+
+    /**
+     * Method sends a DELETE request
+     * @param path Path relative to the service root
+     * @return Response
+     */
+    public Response delete(String path) {
+        return send(HttpMethod.DELETE, path, null);
+    }
+
+    /**
+     * Method sends a request to a new handler, like ODataServlet does for each request
+     * @param method HTTP method
+     * @param path Path and query relative to the service root, the query is not encoded further
+     * @param body JSON body, null if the request has none
+     * @return Response
+     */
+    private Response send(HttpMethod method, String path, String body) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int statusCode = send(method, path, body, content);
+        return new Response(statusCode, content.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method sends a request to a new handler, like ODataServlet does for each request, and writes the response body
+     * @param method HTTP method
+     * @param path Path and query relative to the service root, the query is not encoded further
+     * @param body JSON body, null if the request has none
+     * @param content Stream the response body is written to
+     * @return HTTP status code
+     */
+    private int send(HttpMethod method, String path, String body, OutputStream content) {
+        ODataHttpHandler handler = odata.createHandler(serviceMetadata);
+        handler.register(entityCollectionProcessor);
+        handler.register(entityProcessor);
+
+        int queryStart = path.indexOf('?');
+        ODataRequest request = new ODataRequest();
+        request.setMethod(method);
+        request.setProtocol("HTTP/1.1");
+        request.setRawBaseUri(BASE_URI);
+        request.setRawRequestUri(BASE_URI + path);
+        request.setRawODataPath(queryStart < 0 ? path : path.substring(0, queryStart));
+        request.setRawQueryPath(queryStart < 0 ? null : path.substring(queryStart + 1).replace(" ", "%20"));
+        request.addHeader("Accept", "application/json;odata.metadata=minimal");
+        if (body != null) {
+            request.addHeader("Content-Type", "application/json");
+            request.setBody(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        ODataResponse response = handler.process(request);
+        try {
+            if (response.getContent() != null) {
+                response.getContent().transferTo(content);
+            } else if (response.getODataContent() != null) {
+                response.getODataContent().write(content);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return response.getStatusCode();
+    }
+
+    /**
+     * Status and body of a response
+     */
+    public static final class Response {
+        private final int statusCode;
+        private final String body;
+
+        /**
+         * Constructor used to populate the response
+         * @param statusCode HTTP status code
+         * @param body Body, empty if the response has none
+         */
+        private Response(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        /**
+         * Method returns the HTTP status code
+         * @return Status code
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Method returns the body
+         * @return Body, empty if the response has none
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Method parses the JSON body
+         * @return Root node of the body
+         */
+        public JsonNode getJson() {
+            try {
+                return MAPPER.readTree(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return statusCode + " " + body;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.codescience.salesforceconnect.translators;
+
+import com.codescience.salesforceconnect.entities.Claim;
+import com.codescience.salesforceconnect.entities.Policy;
+import com.codescience.salesforceconnect.entities.Product;
+import com.codescience.salesforceconnect.service.Constants;
+import org.apache.olingo.commons.api.data.Entity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of the null properties of the translated entities: the amounts are left out when they are null, the other
+ * properties are written as null
+ */
+public class ODataTypeTranslatorTest {
+
+    @Test
+    public void omitsTheNullAmounts() {
+        Policy policy = new Policy();
+        policy.setId("2000");
+        policy.setNumberOfUnits(3);
+        Entity entity = new PolicyTypeTranslator().translate(policy);
+        assertNull(entity.getProperty(Constants.TOTAL_COST_AMOUNT));
+        assertNotNull(entity.getProperty(Constants.POLICY_END_DATE));
+        assertNull(entity.getProperty(Constants.POLICY_END_DATE).getValue());
+
+        Claim claim = new Claim();
+        claim.setId("3000");
+        Entity claimEntity = new ClaimTypeTranslator().translate(claim);
+        assertNull(claimEntity.getProperty(Constants.CLAIM_AMOUNT));
+        assertNotNull(claimEntity.getProperty(Constants.CLAIM_REASON));
+    }
+
+    @Test
+    public void writesTheRoundedAmounts() {
+        Product product = new Product();
+        product.setId("1000");
+        product.setCostPerUnit(new BigDecimal("10.6"));
+        Policy policy = new Policy();
+        policy.setId("2000");
+        policy.setNumberOfUnits(3);
+        policy.setProduct(product);
+        assertEquals(new BigDecimal("32"), new PolicyTypeTranslator().translate(policy).getProperty(Constants.TOTAL_COST_AMOUNT).getValue());
+        assertEquals(new BigDecimal("11"), new ProductTypeTranslator().translate(product).getProperty(Constants.COST_PER_UNIT).getValue());
+
+        // A selected amount is left out the same way
+        Entity selected = new ProductTypeTranslator().getProjection(Set.of(Constants.COST_PER_UNIT)).apply(new Product());
+        assertNull(selected.getProperty(Constants.COST_PER_UNIT));
+    }
+}